@@ -3,22 +3,134 @@ package IMPL;
 
 import banca.grpc.BancaServiceGrpc;
 import banca.grpc.RichiestaPagamento;
+import banca.grpc.RichiestaPagamentoBatch;
 import banca.grpc.RispostaPagamento;
+import banca.grpc.RispostaPagamentoBatch;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 
+/**
+ * 🏦 BANCA SIMULATA - Con latenze, rifiuti e saldi configurabili
+ *
+ * Di default risponde subito e i conti partono con un saldo molto alto. Con un
+ * {@link ProfiloBanca} (da proprietà {@code banca.*}) ogni RPC subisce la latenza
+ * campionata e ogni pagamento può essere rifiutato, per test di carico realistici.
+ * Gli addebiti passano dal {@link RegistroConti}, che applica saldo e idempotenza.
+ */
 public class BancaServiceImpl extends BancaServiceGrpc.BancaServiceImplBase {
 
+    private final ProfiloBanca profilo;
+    private final RegistroConti registro;
+
+    public BancaServiceImpl() {
+        this(ProfiloBanca.daProprieta(System.getProperties()));
+    }
+
+    public BancaServiceImpl(ProfiloBanca profilo) {
+        this.profilo = profilo;
+        this.registro = new RegistroConti(profilo.getSaldoIniziale());
+        if (!profilo.isImmediato()) {
+            System.out.println("🎲 Banca simulata con " + profilo);
+        }
+    }
+
     @Override
     public void paga(RichiestaPagamento request, StreamObserver<RispostaPagamento> responseObserver) {
-        System.out.println("✅ Pagamento ricevuto da cliente " + request.getIdCliente() +
-                " per €" + request.getImporto() + " | Causale: " + request.getCausale());
+        if (!simulaLatenza(responseObserver)) {
+            return;
+        }
+        responseObserver.onNext(elaboraPagamento(request));
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * 📦 Pagamenti aggregati: un esito per ogni richiesta, nello stesso ordine
+     */
+    @Override
+    public void pagaBatch(RichiestaPagamentoBatch request, StreamObserver<RispostaPagamentoBatch> responseObserver) {
+        System.out.println("📦 Batch pagamenti ricevuto: " + request.getPagamentiCount() + " operazioni");
+
+        if (!simulaLatenza(responseObserver)) {
+            return;
+        }
+
+        RispostaPagamentoBatch.Builder risposta = RispostaPagamentoBatch.newBuilder();
+        for (RichiestaPagamento pagamento : request.getPagamentiList()) {
+            risposta.addEsiti(elaboraPagamento(pagamento));
+        }
+
+        responseObserver.onNext(risposta.build());
+        responseObserver.onCompleted();
+    }
 
-        RispostaPagamento risposta = RispostaPagamento.newBuilder()
-                .setSuccesso(true)
-                .setMessaggio("Pagamento accettato")
-                .build();
+    /**
+     * 💸 Rimborso: riaccredita l'importo (idempotente sulla chiave del rimborso)
+     */
+    @Override
+    public void rimborsa(RichiestaPagamento request, StreamObserver<RispostaPagamento> responseObserver) {
+        if (!simulaLatenza(responseObserver)) {
+            return;
+        }
+
+        RispostaPagamento esito = registro.eseguiUnaVolta(chiaveRimborso(request), () -> {
+            System.out.println("💸 Rimborso a cliente " + request.getIdCliente() +
+                    " di €" + request.getImporto() + " | Causale: " + request.getCausale());
+            return registro.accredita(request.getIdCliente(), request.getImporto());
+        });
 
-        responseObserver.onNext(risposta);
+        responseObserver.onNext(esito);
         responseObserver.onCompleted();
     }
-}
\ No newline at end of file
+
+    public RegistroConti getRegistro() {
+        return registro;
+    }
+
+    private RispostaPagamento elaboraPagamento(RichiestaPagamento request) {
+        return registro.eseguiUnaVolta(request.getChiaveIdempotenza(), () -> addebita(request));
+    }
+
+    private RispostaPagamento addebita(RichiestaPagamento request) {
+        if (profilo.campionaRifiuto()) {
+            System.out.println("❌ Pagamento rifiutato (simulato) per cliente " + request.getIdCliente() +
+                    " | €" + request.getImporto());
+            return RispostaPagamento.newBuilder()
+                    .setSuccesso(false)
+                    .setMessaggio("Pagamento rifiutato")
+                    .build();
+        }
+
+        RispostaPagamento esito = registro.addebita(request.getIdCliente(), request.getImporto());
+        if (esito.getSuccesso()) {
+            System.out.println("✅ Pagamento ricevuto da cliente " + request.getIdCliente() +
+                    " per €" + request.getImporto() + " | Causale: " + request.getCausale());
+        } else {
+            System.out.println("❌ Pagamento di €" + request.getImporto() + " rifiutato per cliente " +
+                    request.getIdCliente() + ": " + esito.getMessaggio());
+        }
+        return esito;
+    }
+
+    private static String chiaveRimborso(RichiestaPagamento request) {
+        return request.getChiaveIdempotenza().isEmpty() ? "" : "rimborso:" + request.getChiaveIdempotenza();
+    }
+
+    /**
+     * ⏱️ Applica la latenza del profilo; false se la RPC è stata chiusa con errore
+     */
+    private boolean simulaLatenza(StreamObserver<?> responseObserver) {
+        long latenzaMs = profilo.campionaLatenzaMs();
+        if (latenzaMs <= 0) {
+            return true;
+        }
+
+        try {
+            Thread.sleep(latenzaMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            responseObserver.onError(Status.CANCELLED.withDescription("Banca interrotta").asRuntimeException());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package IMPL;
+
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 🎲 PROFILO BANCA - Latenze, rifiuti e stalli simulati per i test di carico
+ *
+ * Configurabile da proprietà di sistema, ad esempio:
+ * <pre>
+ *   -Dbanca.latenza.tipo=CODA_LUNGA -Dbanca.latenza.ms=20 -Dbanca.latenza.maxMs=2000
+ *   -Dbanca.rifiuti.ratio=0.05 -Dbanca.stallo.ratio=0.001 -Dbanca.stallo.ms=30000
+ *   -Dbanca.saldo.iniziale=500
+ * </pre>
+ *
+ * Tipi di latenza:
+ * - NESSUNA: risposta immediata (comportamento storico, default)
+ * - FISSA: sempre {@code latenza.ms}
+ * - UNIFORME: uniforme tra {@code latenza.ms} e {@code latenza.maxMs}
+ * - CODA_LUNGA: Pareto con minimo {@code latenza.ms}, forma {@code latenza.alpha},
+ *   troncata a {@code latenza.maxMs} se positivo, altrimenti senza limite
+ *   (la maggior parte veloce, pochi molto lenti)
+ */
+public class ProfiloBanca {
+
+    public enum TipoLatenza {
+        NESSUNA,
+        FISSA,
+        UNIFORME,
+        CODA_LUNGA
+    }
+
+    public static final double SALDO_INIZIALE_DEFAULT = 1_000_000.0;
+
+    public static final ProfiloBanca IMMEDIATO = new Builder().build();
+
+    private final TipoLatenza tipoLatenza;
+    private final long latenzaMs;
+    private final long latenzaMaxMs;
+    private final double alpha;
+    private final double rapportoRifiuti;
+    private final double rapportoStalli;
+    private final long stalloMs;
+    private final double saldoIniziale;
+
+    private ProfiloBanca(Builder builder) {
+        this.tipoLatenza = builder.tipoLatenza;
+        this.latenzaMs = Math.max(0, builder.latenzaMs);
+        // 0 = nessun tetto (CODA_LUNGA); un tetto positivo non scende sotto il minimo
+        this.latenzaMaxMs = builder.latenzaMaxMs > 0 ? Math.max(this.latenzaMs, builder.latenzaMaxMs) : 0;
+        this.alpha = builder.alpha > 0 ? builder.alpha : 1.5;
+        this.rapportoRifiuti = limita(builder.rapportoRifiuti);
+        this.rapportoStalli = limita(builder.rapportoStalli);
+        this.stalloMs = Math.max(0, builder.stalloMs);
+        this.saldoIniziale = Math.max(0, builder.saldoIniziale);
+    }
+
+    /**
+     * 🔧 Legge il profilo dalle proprietà {@code banca.*} (valori mancanti = default)
+     */
+    public static ProfiloBanca daProprieta(Properties p) {
+        return new Builder()
+                .tipoLatenza(TipoLatenza.valueOf(p.getProperty("banca.latenza.tipo", "NESSUNA")
+                        .trim().toUpperCase(Locale.ROOT)))
+                .latenzaMs(Long.parseLong(p.getProperty("banca.latenza.ms", "0").trim()))
+                .latenzaMaxMs(Long.parseLong(p.getProperty("banca.latenza.maxMs", "0").trim()))
+                .alpha(Double.parseDouble(p.getProperty("banca.latenza.alpha", "1.5").trim()))
+                .rapportoRifiuti(Double.parseDouble(p.getProperty("banca.rifiuti.ratio", "0").trim()))
+                .rapportoStalli(Double.parseDouble(p.getProperty("banca.stallo.ratio", "0").trim()))
+                .stalloMs(Long.parseLong(p.getProperty("banca.stallo.ms", "30000").trim()))
+                .saldoIniziale(Double.parseDouble(p.getProperty("banca.saldo.iniziale",
+                        String.valueOf(SALDO_INIZIALE_DEFAULT)).trim()))
+                .build();
+    }
+
+    /**
+     * ⏱️ Campiona la latenza (stallo incluso) da applicare a una RPC
+     */
+    public long campionaLatenzaMs() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (rapportoStalli > 0 && random.nextDouble() < rapportoStalli) {
+            return stalloMs;
+        }
+
+        return switch (tipoLatenza) {
+            case NESSUNA -> 0;
+            case FISSA -> latenzaMs;
+            case UNIFORME -> latenzaMaxMs > latenzaMs ? random.nextLong(latenzaMs, latenzaMaxMs + 1) : latenzaMs;
+            case CODA_LUNGA -> {
+                double u = 1.0 - random.nextDouble(); // (0, 1]
+                double pareto = Math.max(1, latenzaMs) / Math.pow(u, 1.0 / alpha);
+                yield latenzaMaxMs > 0 ? Math.min((long) pareto, latenzaMaxMs) : (long) pareto;
+            }
+        };
+    }
+
+    /**
+     * ❌ true se il singolo pagamento deve essere rifiutato
+     */
+    public boolean campionaRifiuto() {
+        return rapportoRifiuti > 0 && ThreadLocalRandom.current().nextDouble() < rapportoRifiuti;
+    }
+
+    /**
+     * 💰 Saldo con cui viene aperto il conto di un nuovo cliente
+     */
+    public double getSaldoIniziale() {
+        return saldoIniziale;
+    }
+
+    public boolean isImmediato() {
+        return tipoLatenza == TipoLatenza.NESSUNA && rapportoRifiuti == 0 && rapportoStalli == 0;
+    }
+
+    private static double limita(double rapporto) {
+        return Math.max(0.0, Math.min(1.0, rapporto));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProfiloBanca{latenza=%s %d-%dms, alpha=%.2f, rifiuti=%.3f, stalli=%.4f x %dms, saldo=€%.2f}",
+                tipoLatenza, latenzaMs, latenzaMaxMs, alpha, rapportoRifiuti, rapportoStalli, stalloMs, saldoIniziale);
+    }
+
+    public static class Builder {
+        private TipoLatenza tipoLatenza = TipoLatenza.NESSUNA;
+        private long latenzaMs = 0;
+        private long latenzaMaxMs = 0;
+        private double alpha = 1.5;
+        private double rapportoRifiuti = 0;
+        private double rapportoStalli = 0;
+        private long stalloMs = 30000;
+        private double saldoIniziale = SALDO_INIZIALE_DEFAULT;
+
+        public Builder tipoLatenza(TipoLatenza tipoLatenza) { this.tipoLatenza = tipoLatenza; return this; }
+        public Builder latenzaMs(long latenzaMs) { this.latenzaMs = latenzaMs; return this; }
+        public Builder latenzaMaxMs(long latenzaMaxMs) { this.latenzaMaxMs = latenzaMaxMs; return this; }
+        public Builder alpha(double alpha) { this.alpha = alpha; return this; }
+        public Builder rapportoRifiuti(double rapportoRifiuti) { this.rapportoRifiuti = rapportoRifiuti; return this; }
+        public Builder rapportoStalli(double rapportoStalli) { this.rapportoStalli = rapportoStalli; return this; }
+        public Builder stalloMs(long stalloMs) { this.stalloMs = stalloMs; return this; }
+        public Builder saldoIniziale(double saldoIniziale) { this.saldoIniziale = saldoIniziale; return this; }
+
+        public ProfiloBanca build() { return new ProfiloBanca(this); }
+    }
+}
@@ -0,0 +1,133 @@
+package IMPL;
+
+import banca.grpc.RispostaPagamento;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 📒 REGISTRO CONTI - Saldi per cliente della banca simulata
+ *
+ * - Un conto per cliente, aperto al primo utilizzo con il saldo iniziale
+ * - Importi in centesimi su {@link AtomicLong}: addebiti e accrediti con CAS,
+ *   senza lock globali (clienti diversi non si contendono nulla)
+ * - Chiavi di idempotenza: la stessa chiave restituisce sempre il primo esito,
+ *   così retry e hedging non addebitano due volte
+ */
+public class RegistroConti {
+
+    private static final int MAX_CHIAVI_RICORDATE = 100_000;
+
+    private final long saldoInizialeCentesimi;
+    private final Map<String, AtomicLong> saldi = new ConcurrentHashMap<>();
+
+    // Idempotenza: esito per chiave + ordine di inserimento per l'evizione
+    private final Map<String, RispostaPagamento> esitiPerChiave = new ConcurrentHashMap<>();
+    private final Queue<String> ordineChiavi = new ConcurrentLinkedQueue<>();
+
+    // Statistiche
+    private final AtomicLong addebiti = new AtomicLong();
+    private final AtomicLong rifiutiSaldo = new AtomicLong();
+    private final AtomicLong rimborsi = new AtomicLong();
+    private final AtomicLong duplicatiIntercettati = new AtomicLong();
+    private final AtomicLong totaleAddebitatoCentesimi = new AtomicLong();
+    private final AtomicLong totaleRimborsatoCentesimi = new AtomicLong();
+
+    public RegistroConti(double saldoIniziale) {
+        this.saldoInizialeCentesimi = inCentesimi(saldoIniziale);
+    }
+
+    /**
+     * 🔁 Esegue l'operazione una sola volta per chiave (chiave vuota = nessuna deduplica)
+     */
+    public RispostaPagamento eseguiUnaVolta(String chiave, Supplier<RispostaPagamento> operazione) {
+        if (chiave == null || chiave.isEmpty()) {
+            return operazione.get();
+        }
+
+        AtomicBoolean eseguita = new AtomicBoolean(false);
+        RispostaPagamento esito = esitiPerChiave.computeIfAbsent(chiave, k -> {
+            eseguita.set(true);
+            return operazione.get();
+        });
+
+        if (eseguita.get()) {
+            ordineChiavi.add(chiave);
+            while (esitiPerChiave.size() > MAX_CHIAVI_RICORDATE) {
+                String vecchia = ordineChiavi.poll();
+                if (vecchia == null) {
+                    break;
+                }
+                esitiPerChiave.remove(vecchia);
+            }
+        } else {
+            duplicatiIntercettati.incrementAndGet();
+            System.out.println("🔁 Operazione duplicata intercettata (chiave " + chiave + ")");
+        }
+        return esito;
+    }
+
+    /**
+     * ➖ Addebito atomico: fallisce senza effetti se il saldo non basta
+     */
+    public RispostaPagamento addebita(String idCliente, double importo) {
+        long centesimi = inCentesimi(importo);
+        AtomicLong saldo = conto(idCliente);
+
+        while (true) {
+            long attuale = saldo.get();
+            if (attuale < centesimi) {
+                rifiutiSaldo.incrementAndGet();
+                return esito(false, "Saldo insufficiente");
+            }
+            if (saldo.compareAndSet(attuale, attuale - centesimi)) {
+                addebiti.incrementAndGet();
+                totaleAddebitatoCentesimi.addAndGet(centesimi);
+                return esito(true, "Pagamento accettato");
+            }
+        }
+    }
+
+    /**
+     * ➕ Accredito atomico (rimborsi)
+     */
+    public RispostaPagamento accredita(String idCliente, double importo) {
+        long centesimi = inCentesimi(importo);
+        conto(idCliente).addAndGet(centesimi);
+        rimborsi.incrementAndGet();
+        totaleRimborsatoCentesimi.addAndGet(centesimi);
+        return esito(true, "Rimborso accreditato");
+    }
+
+    public double getSaldo(String idCliente) {
+        return conto(idCliente).get() / 100.0;
+    }
+
+    public String getStatistiche() {
+        return String.format("Conti: %d | Addebiti: %d (€%.2f) | Rimborsi: %d (€%.2f) | " +
+                        "Saldo insufficiente: %d | Duplicati intercettati: %d",
+                saldi.size(), addebiti.get(), totaleAddebitatoCentesimi.get() / 100.0,
+                rimborsi.get(), totaleRimborsatoCentesimi.get() / 100.0,
+                rifiutiSaldo.get(), duplicatiIntercettati.get());
+    }
+
+    private AtomicLong conto(String idCliente) {
+        return saldi.computeIfAbsent(idCliente, k -> new AtomicLong(saldoInizialeCentesimi));
+    }
+
+    private static long inCentesimi(double importo) {
+        return Math.round(importo * 100);
+    }
+
+    private static RispostaPagamento esito(boolean successo, String messaggio) {
+        return RispostaPagamento.newBuilder()
+                .setSuccesso(successo)
+                .setMessaggio(messaggio)
+                .build();
+    }
+}
@@ -1,13 +1,16 @@
 package command;
 
+import dto.PaginaTratteDTO;
 import dto.RichiestaDTO;
-import dto.RispostaDTO;
 import dto.TrattaDTO;
 import service.ClientService;
 
+import java.util.List;
 import java.util.Scanner;
 
 public class CercaTratteCommand implements Command {
+    private static final int MAX_TRATTE_MOSTRATE = 15;
+
     private final ClientService clientService;
     private final Scanner scanner;
 
@@ -26,21 +29,33 @@ public class CercaTratteCommand implements Command {
             String filtro = scanner.nextLine().trim();
             if (filtro.isEmpty()) filtro = ";;;";
 
+            System.out.print("Ordina per (orario/prezzo) [orario]: ");
+            String ordinamento = scanner.nextLine().trim();
+
+            System.out.print("Posti liberi minimi [nessun minimo]: ");
+            String posti = scanner.nextLine().trim();
+            Integer postiMinimi = posti.isEmpty() ? null : Integer.parseInt(posti);
+
             RichiestaDTO richiesta = new RichiestaDTO.Builder()
-                    .tipo("FILTRA")
+                    .tipo("FILTRA_PAGINA")
                     .messaggioExtra(filtro)
+                    .ordinamento(ordinamento.isEmpty() ? "ORARIO" : ordinamento)
+                    .dimensionePagina(MAX_TRATTE_MOSTRATE)
+                    .postiMinimi(postiMinimi)
                     .build();
 
-            RispostaDTO risposta = clientService.inviaRichiesta(richiesta);
+            // 📄 Solo la prima pagina: il server non prepara né serializza le altre
+            List<PaginaTratteDTO> pagine = clientService.cercaTratte(richiesta, 1);
+            PaginaTratteDTO pagina = pagine.isEmpty() ? null : pagine.get(0);
 
-            if (risposta.getTratte() != null && !risposta.getTratte().isEmpty()) {
-                System.out.println("\n📋 TRATTE TROVATE (" + risposta.getTratte().size() + "):");
-                for (int i = 0; i < Math.min(risposta.getTratte().size(), 15); i++) {
-                    TrattaDTO tratta = risposta.getTratte().get(i);
+            if (pagina != null && !pagina.getTratte().isEmpty()) {
+                System.out.println("\n📋 TRATTE TROVATE (" + pagina.getTotaleRisultati() + "):");
+                for (int i = 0; i < pagina.getTratte().size(); i++) {
+                    TrattaDTO tratta = pagina.getTratte().get(i);
                     System.out.println((i + 1) + ") " + formatTratta(tratta));
                 }
-                if (risposta.getTratte().size() > 15) {
-                    System.out.println("... e altre " + (risposta.getTratte().size() - 15) + " tratte");
+                if (pagina.getTotaleRisultati() > pagina.getTratte().size()) {
+                    System.out.println("... e altre " + (pagina.getTotaleRisultati() - pagina.getTratte().size()) + " tratte");
                 }
             } else {
                 System.out.println("❌ Nessuna tratta trovata");
@@ -52,13 +67,14 @@ public class CercaTratteCommand implements Command {
 
     private String formatTratta(TrattaDTO tratta) {
         try {
-            return String.format("%s → %s | %s %s | Bin.%d | Treno: %s",
+            return String.format("%s → %s | %s %s | Bin.%d | Treno: %s | Posti liberi: %s",
                     tratta.getStazionePartenza(),
                     tratta.getStazioneArrivo(),
                     tratta.getData(),
                     tratta.getOra(),
                     tratta.getBinario(),
-                    tratta.getTreno() != null ? tratta.getTreno().getNomeCommerciale() : "N/A");
+                    tratta.getTreno() != null ? tratta.getTreno().getNomeCommerciale() : "N/A",
+                    tratta.getPostiDisponibili() != null ? tratta.getPostiDisponibili() : "N/A");
         } catch (Exception e) {
             return "Tratta non valida: " + e.getMessage();
         }
@@ -2,15 +2,33 @@ package service;
 
 import Assembler.AssemblerCliente;
 import dto.ClienteDTO;
+import dto.PaginaTratteDTO;
+import dto.PrezzoGiornoDTO;
 import dto.RichiestaDTO;
 import dto.RispostaDTO;
 import dto.TrattaDTO;
+import enums.ClasseServizio;
 import grpc.*;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import util.GrpcMapper;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
 public class ClientService {
 
     private final TrenicalServiceGrpc.TrenicalServiceBlockingStub stub;
@@ -18,6 +36,9 @@ public class ClientService {
 
     private ClienteDTO cliente;
 
+    // ⏳ Richieste rimaste IN_ELABORAZIONE (senza chiave) ➜ chiave da riusare al prossimo invio
+    private final Map<RichiestaGrpc, String> chiaviInElaborazione = new ConcurrentHashMap<>();
+
     public ClientService(String host, int port) {
         ManagedChannel channel = ManagedChannelBuilder
                 .forAddress(host, port)
@@ -56,11 +77,195 @@ public class ClientService {
         // RIMUOVI checkClienteAttivo() per le richieste che non necessitano cliente
         // checkClienteAttivo();
 
-        RichiestaGrpc grpcRequest = GrpcMapper.toGrpc(richiestaDTO);
-        RispostaGrpc grpcResponse = stub.inviaRichiesta(grpcRequest);
+        RichiestaGrpc senzaChiave = GrpcMapper.toGrpc(richiestaDTO);
+        String chiaveInElaborazione = senzaChiave.getChiaveIdempotenza().isEmpty()
+                ? chiaviInElaborazione.get(senzaChiave) : null;
+        RichiestaGrpc grpcRequest = chiaveInElaborazione != null
+                ? senzaChiave.toBuilder().setChiaveIdempotenza(chiaveInElaborazione).build()
+                : conChiaveIdempotenza(senzaChiave);
+
+        RispostaGrpc grpcResponse;
+        try {
+            grpcResponse = stub.inviaRichiesta(grpcRequest);
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() != Status.Code.UNAVAILABLE || grpcRequest.getChiaveIdempotenza().isEmpty()) {
+                throw e;
+            }
+            System.out.println("🔁 Server non raggiungibile, nuovo tentativo con la stessa chiave...");
+            grpcResponse = stub.inviaRichiesta(grpcRequest);
+        }
+
+        // ⏳ Esito non ancora noto: ripetere la stessa richiesta deve ritrovare la stessa operazione
+        if (senzaChiave.getChiaveIdempotenza().isEmpty()) {
+            if (RispostaDTO.ESITO_IN_ELABORAZIONE.equals(grpcResponse.getEsito())) {
+                chiaviInElaborazione.put(senzaChiave, grpcRequest.getChiaveIdempotenza());
+            } else {
+                chiaviInElaborazione.remove(senzaChiave);
+            }
+        }
         return GrpcMapper.fromGrpc(grpcResponse);
     }
 
+    /**
+     * 📦 Invia molte richieste su un solo stream: le risposte tornano nello stesso
+     * ordine della lista (il server le elabora in parallelo, con limite per stream)
+     */
+    public List<RispostaDTO> inviaRichiesteBatch(List<RichiestaDTO> richieste) {
+        RispostaGrpc[] risultati = new RispostaGrpc[richieste.size()];
+        CompletableFuture<Void> fine = new CompletableFuture<>();
+
+        StreamObserver<RichiestaBatchGrpc> invio = asyncStub.inviaRichiesteBatch(new StreamObserver<>() {
+            @Override
+            public void onNext(RispostaBatchGrpc value) {
+                risultati[Integer.parseInt(value.getIdCorrelazione())] = value.getRisposta();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fine.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                fine.complete(null);
+            }
+        });
+
+        for (int i = 0; i < richieste.size(); i++) {
+            invio.onNext(RichiestaBatchGrpc.newBuilder()
+                    .setIdCorrelazione(String.valueOf(i))
+                    .setRichiesta(conChiaveIdempotenza(GrpcMapper.toGrpc(richieste.get(i))))
+                    .build());
+        }
+        invio.onCompleted();
+        fine.join();
+
+        List<RispostaDTO> risposte = new ArrayList<>(risultati.length);
+        for (RispostaGrpc risultato : risultati) {
+            risposte.add(risultato != null
+                    ? GrpcMapper.fromGrpc(risultato)
+                    : new RispostaDTO("KO", "❌ Nessuna risposta dal server", null));
+        }
+        return risposte;
+    }
+
+    /**
+     * 📄 Ricerca tratte paginata in streaming: riceve al massimo {@code maxPagine} pagine
+     * (0 = tutte). Le successive si chiedono con il token dell'ultima pagina ricevuta.
+     */
+    public List<PaginaTratteDTO> cercaTratte(RichiestaDTO richiestaDTO, int maxPagine) {
+        RichiestaGrpc richiesta = GrpcMapper.toGrpc(richiestaDTO).toBuilder()
+                .setTipo("FILTRA_PAGINA")
+                .setMaxPagine(Math.max(0, maxPagine))
+                .build();
+
+        List<PaginaTratteDTO> pagine = new ArrayList<>();
+        Iterator<RispostaGrpc> stream = stub.cercaTratte(richiesta);
+        while (stream.hasNext()) {
+            RispostaDTO risposta = GrpcMapper.fromGrpc(stream.next());
+            if (risposta.getPaginaTratte() == null) {
+                throw new IllegalArgumentException(risposta.getMessaggio());
+            }
+            pagine.add(risposta.getPaginaTratte());
+        }
+        return pagine;
+    }
+
+    /**
+     * 🔤 Nomi di stazione che completano o correggono il testo digitato
+     */
+    public List<String> suggerisciStazioni(String testo, int limite) {
+        RichiestaGrpc richiesta = RichiestaGrpc.newBuilder()
+                .setTipo("SUGGERISCI_STAZIONI")
+                .setMessaggioExtra(testo)
+                .setDimensionePagina(Math.max(0, limite))
+                .build();
+        RispostaDTO risposta = GrpcMapper.fromGrpc(stub.suggerisciStazioni(richiesta));
+        if (!"OK".equals(risposta.getEsito())) {
+            throw new IllegalArgumentException(risposta.getMessaggio());
+        }
+        return risposta.getSuggerimenti() != null ? risposta.getSuggerimenti() : List.of();
+    }
+
+    /**
+     * 📅 Prezzo più basso di ogni giorno del mese di {@code giorno}, per rotta e classe
+     */
+    public List<PrezzoGiornoDTO> calendarioPrezzi(String partenza, String arrivo, LocalDate giorno, ClasseServizio classe) {
+        RichiestaDTO richiesta = new RichiestaDTO.Builder()
+                .tipo("CALENDARIO_PREZZI")
+                .partenza(partenza)
+                .arrivo(arrivo)
+                .data(giorno)
+                .classeServizio(classe)
+                .build();
+        RispostaDTO risposta = GrpcMapper.fromGrpc(stub.calendarioPrezzi(GrpcMapper.toGrpc(richiesta)));
+        if (!"OK".equals(risposta.getEsito())) {
+            throw new IllegalArgumentException(risposta.getMessaggio());
+        }
+        return risposta.getCalendario() != null ? risposta.getCalendario() : List.of();
+    }
+
+    /**
+     * 🚉 Tabellone partenze di una stazione: {@code ricevitore} riceve le prossime partenze
+     * e poi le variazioni. Ritorna l'azione che chiude l'iscrizione.
+     */
+    public Runnable iscriviTabellonePartenze(String stazione, int maxPartenze,
+                                             Consumer<VariazioneTabelloneGrpc> ricevitore) {
+        IscrizioneTabelloneGrpc richiesta = IscrizioneTabelloneGrpc.newBuilder()
+                .setStazione(stazione)
+                .setMaxPartenze(Math.max(0, maxPartenze))
+                .build();
+
+        AtomicReference<ClientCallStreamObserver<IscrizioneTabelloneGrpc>> chiamata = new AtomicReference<>();
+        asyncStub.tabellonePartenze(richiesta, new ClientResponseObserver<IscrizioneTabelloneGrpc, VariazioneTabelloneGrpc>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<IscrizioneTabelloneGrpc> requestStream) {
+                chiamata.set(requestStream);
+            }
+
+            @Override
+            public void onNext(VariazioneTabelloneGrpc value) {
+                ricevitore.accept(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (Status.fromThrowable(t).getCode() != Status.Code.CANCELLED) {
+                    System.err.println("❌ Errore tabellone partenze: " + t.getMessage());
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+                System.out.println("🔚 Stream tabellone partenze completato.");
+            }
+        });
+        return () -> chiamata.get().cancel("Iscrizione tabellone chiusa dal client", null);
+    }
+
+    /**
+     * 🔌 Apre una sessione persistente: richieste, promozioni e notifiche su un solo stream
+     */
+    public SessioneClient apriSessione() {
+        return new SessioneClient(asyncStub);
+    }
+
+    // 🔁 Operazioni con effetti (acquisti, pagamenti): chiave di idempotenza,
+    // così il retry dopo un errore di rete non compra né addebita due volte
+    static RichiestaGrpc conChiaveIdempotenza(RichiestaGrpc richiesta) {
+        if (richiesta.getChiaveIdempotenza().isEmpty() && !isSolaLettura(richiesta.getTipo())) {
+            return richiesta.toBuilder().setChiaveIdempotenza(UUID.randomUUID().toString()).build();
+        }
+        return richiesta;
+    }
+
+    private static boolean isSolaLettura(String tipo) {
+        return "FILTRA".equalsIgnoreCase(tipo) || "RICERCA_TRATTE".equalsIgnoreCase(tipo)
+                || "FILTRA_PAGINA".equalsIgnoreCase(tipo) || "MAPPA_POSTI".equalsIgnoreCase(tipo)
+                || "PIANIFICA_VIAGGIO".equalsIgnoreCase(tipo) || "SUGGERISCI_STAZIONI".equalsIgnoreCase(tipo)
+                || "CALENDARIO_PREZZI".equalsIgnoreCase(tipo);
+    }
+
     // MANTIENI checkClienteAttivo() ma usalo solo dove necessario:
     private void checkClienteAttivo() {
         if (cliente == null) {
@@ -75,6 +280,7 @@ public class ClientService {
         IscrizioneNotificheGrpc richiesta = IscrizioneNotificheGrpc.newBuilder()
                 .setEmailCliente(cliente.getEmail())
                 .setTrattaId(tratta.getId().toString())
+                .setIdCliente(cliente.getId().toString())
                 .build();
 
         asyncStub.streamNotificheTratta(richiesta, new StreamObserver<>() {
@@ -0,0 +1,135 @@
+package service;
+
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import grpc.*;
+import io.grpc.stub.StreamObserver;
+import util.GrpcMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 🔌 SESSIONE CLIENT - Richieste, promozioni e notifiche su un solo stream
+ *
+ * Alternativa alle chiamate separate di {@link ClientService}: una sola RPC
+ * {@code sessione} resta aperta e trasporta tutto. Le risposte sono abbinate
+ * alle richieste tramite id di correlazione, le notifiche al listener della
+ * loro tratta.
+ */
+public class SessioneClient {
+
+    private final StreamObserver<MessaggioClienteGrpc> invio;
+    private final Map<String, CompletableFuture<RispostaDTO>> inAttesa = new ConcurrentHashMap<>();
+    private final AtomicLong prossimoId = new AtomicLong();
+
+    private final List<Consumer<PromozioneGrpc>> suPromozione = new CopyOnWriteArrayList<>();
+    private final Map<String, Consumer<NotificaTrattaGrpc>> suNotificaPerTratta = new ConcurrentHashMap<>();
+
+    SessioneClient(TrenicalServiceGrpc.TrenicalServiceStub asyncStub) {
+        this.invio = asyncStub.sessione(new StreamObserver<>() {
+            @Override
+            public void onNext(MessaggioServerGrpc messaggio) {
+                switch (messaggio.getContenutoCase()) {
+                    case RISPOSTA -> {
+                        CompletableFuture<RispostaDTO> futura = inAttesa.remove(messaggio.getIdCorrelazione());
+                        if (futura != null) {
+                            futura.complete(GrpcMapper.fromGrpc(messaggio.getRisposta()));
+                        }
+                    }
+                    case PROMOZIONE -> suPromozione.forEach(l -> l.accept(messaggio.getPromozione()));
+                    case NOTIFICA -> notifica(messaggio.getNotifica());
+                    default -> { }
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                System.err.println("❌ Sessione interrotta: " + t.getMessage());
+                fallisciInAttesa(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                System.out.println("🔚 Sessione chiusa dal server.");
+                fallisciInAttesa(new IllegalStateException("Sessione chiusa"));
+            }
+        });
+    }
+
+    /**
+     * 📨 Invia una richiesta sulla sessione; la risposta arriva in modo asincrono
+     */
+    public CompletableFuture<RispostaDTO> invia(RichiestaDTO richiesta) {
+        String idCorrelazione = String.valueOf(prossimoId.incrementAndGet());
+        CompletableFuture<RispostaDTO> risposta = new CompletableFuture<>();
+        inAttesa.put(idCorrelazione, risposta);
+
+        scrivi(MessaggioClienteGrpc.newBuilder()
+                .setIdCorrelazione(idCorrelazione)
+                .setRichiesta(ClientService.conChiaveIdempotenza(GrpcMapper.toGrpc(richiesta)))
+                .build());
+        return risposta;
+    }
+
+    public void iscriviPromozioni(Consumer<PromozioneGrpc> listener) {
+        suPromozione.add(listener);
+        scrivi(MessaggioClienteGrpc.newBuilder()
+                .setIscrizionePromozioni(RichiestaPromozioni.getDefaultInstance())
+                .build());
+    }
+
+    public void iscriviTratta(UUID idTratta, String emailCliente, Consumer<NotificaTrattaGrpc> listener) {
+        iscriviTratta(idTratta, null, emailCliente, listener);
+    }
+
+    /**
+     * 📡 Iscrive la sessione a una tratta: le sue notifiche vanno a {@code listener},
+     * quelle delle altre tratte ai rispettivi listener. Con {@code idCliente} arrivano
+     * anche le notifiche rivolte solo a quel cliente (posto offerto dalla lista d'attesa).
+     */
+    public void iscriviTratta(UUID idTratta, UUID idCliente, String emailCliente, Consumer<NotificaTrattaGrpc> listener) {
+        suNotificaPerTratta.put(idTratta.toString(), listener);
+        IscrizioneNotificheGrpc.Builder iscrizione = IscrizioneNotificheGrpc.newBuilder()
+                .setEmailCliente(emailCliente)
+                .setTrattaId(idTratta.toString());
+        if (idCliente != null) {
+            iscrizione.setIdCliente(idCliente.toString());
+        }
+        scrivi(MessaggioClienteGrpc.newBuilder()
+                .setIscrizioneTratta(iscrizione)
+                .build());
+    }
+
+    /**
+     * 🛑 Chiude la sessione (il server rimuove tutte le iscrizioni)
+     */
+    public synchronized void chiudi() {
+        invio.onCompleted();
+    }
+
+    // Lo stream in uscita non è thread-safe
+    private synchronized void scrivi(MessaggioClienteGrpc messaggio) {
+        invio.onNext(messaggio);
+    }
+
+    private void notifica(NotificaTrattaGrpc notifica) {
+        Consumer<NotificaTrattaGrpc> listener = suNotificaPerTratta.get(notifica.getTrattaId());
+        if (listener != null) {
+            listener.accept(notifica);
+        } else {
+            System.out.println("📢 Notifica tratta ricevuta: " + notifica.getMessaggio());
+        }
+    }
+
+    private void fallisciInAttesa(Throwable causa) {
+        inAttesa.values().forEach(f -> f.completeExceptionally(causa));
+        inAttesa.clear();
+    }
+}
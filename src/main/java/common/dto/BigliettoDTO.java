@@ -13,10 +13,17 @@ public class BigliettoDTO {
     private final TipoPrezzo tipoPrezzo;
     private final double prezzoEffettivo;
     private final StatoBiglietto stato;
+    private final Integer numeroPosto;
 
     public BigliettoDTO(UUID id, ClienteDTO cliente, TrattaDTO tratta,
                         ClasseServizio classeServizio, TipoPrezzo tipoPrezzo,
                         double prezzoEffettivo, StatoBiglietto stato) {
+        this(id, cliente, tratta, classeServizio, tipoPrezzo, prezzoEffettivo, stato, null);
+    }
+
+    public BigliettoDTO(UUID id, ClienteDTO cliente, TrattaDTO tratta,
+                        ClasseServizio classeServizio, TipoPrezzo tipoPrezzo,
+                        double prezzoEffettivo, StatoBiglietto stato, Integer numeroPosto) {
         this.id = id;
         this.cliente = cliente;
         this.tratta = tratta;
@@ -24,6 +31,7 @@ public class BigliettoDTO {
         this.tipoPrezzo = tipoPrezzo;
         this.prezzoEffettivo = prezzoEffettivo;
         this.stato = stato;
+        this.numeroPosto = numeroPosto;
     }
 
     public UUID getId() { return id; }
@@ -33,6 +41,7 @@ public class BigliettoDTO {
     public TipoPrezzo getTipoPrezzo() { return tipoPrezzo; }
     public double getPrezzoEffettivo() { return prezzoEffettivo; }
     public StatoBiglietto getStato() { return stato; }
+    public Integer getNumeroPosto() { return numeroPosto; }
 
     @Override
     public String toString() {
@@ -44,6 +53,7 @@ public class BigliettoDTO {
                 ", tipoPrezzo=" + tipoPrezzo +
                 ", prezzoEffettivo=" + prezzoEffettivo +
                 ", stato=" + stato +
+                ", numeroPosto=" + numeroPosto +
                 '}';
     }
 }
\ No newline at end of file
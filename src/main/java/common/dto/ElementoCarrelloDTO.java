@@ -0,0 +1,36 @@
+package dto;
+
+import enums.ClasseServizio;
+import enums.TipoPrezzo;
+
+import java.util.UUID;
+
+public class ElementoCarrelloDTO {
+
+    private final UUID idTratta;
+    private final ClasseServizio classeServizio;
+    private final TipoPrezzo tipoPrezzo;
+
+    public ElementoCarrelloDTO(UUID idTratta, ClasseServizio classeServizio, TipoPrezzo tipoPrezzo) {
+        this.idTratta = idTratta;
+        this.classeServizio = classeServizio;
+        this.tipoPrezzo = tipoPrezzo;
+    }
+
+    public UUID getIdTratta() {
+        return idTratta;
+    }
+
+    public ClasseServizio getClasseServizio() {
+        return classeServizio;
+    }
+
+    public TipoPrezzo getTipoPrezzo() {
+        return tipoPrezzo;
+    }
+
+    @Override
+    public String toString() {
+        return idTratta + " [" + classeServizio + ", " + tipoPrezzo + "]";
+    }
+}
@@ -0,0 +1,39 @@
+package dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 🧭 Itinerario con cambi restituito da PIANIFICA_VIAGGIO
+ *
+ * Gli arrivi sono stimati dal server (le tratte hanno solo l'orario di partenza).
+ */
+public class ItinerarioDTO {
+    private final List<TrattaDTO> tratte;
+    private final List<LocalDateTime> arriviStimati;
+
+    public ItinerarioDTO(List<TrattaDTO> tratte, List<LocalDateTime> arriviStimati) {
+        this.tratte = tratte;
+        this.arriviStimati = arriviStimati;
+    }
+
+    public List<TrattaDTO> getTratte() { return tratte; }
+    public List<LocalDateTime> getArriviStimati() { return arriviStimati; }
+
+    public LocalDateTime getArrivoStimato() {
+        return arriviStimati.get(arriviStimati.size() - 1);
+    }
+
+    public int getCambi() {
+        return tratte.size() - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "ItinerarioDTO{" +
+                "tratte=" + tratte.size() +
+                ", arrivoStimato=" + getArrivoStimato() +
+                ", cambi=" + getCambi() +
+                '}';
+    }
+}
@@ -0,0 +1,96 @@
+package dto;
+
+import enums.ClasseServizio;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 💺 Mappa posti di una tratta in forma compatta (immutabile)
+ *
+ * Ogni segmento è una bitmap: il client interroga i singoli posti senza
+ * che server o client materializzino un oggetto per posto.
+ */
+public class MappaPostiDTO {
+    private final UUID idTratta;
+    private final int postiPerCarrozza;
+    private final List<Segmento> segmenti;
+
+    public MappaPostiDTO(UUID idTratta, int postiPerCarrozza, List<Segmento> segmenti) {
+        this.idTratta = idTratta;
+        this.postiPerCarrozza = postiPerCarrozza;
+        this.segmenti = List.copyOf(segmenti);
+    }
+
+    public UUID getIdTratta() { return idTratta; }
+    public int getPostiPerCarrozza() { return postiPerCarrozza; }
+    public List<Segmento> getSegmenti() { return segmenti; }
+
+    public int carrozzaDi(int numeroPosto) {
+        return (numeroPosto - 1) / postiPerCarrozza + 1;
+    }
+
+    /**
+     * 🔎 Segmento che serve la classe ({@code null} se la classe non ha posti)
+     */
+    public Segmento getSegmento(ClasseServizio classe) {
+        for (Segmento segmento : segmenti) {
+            if (segmento.getClasse() == null || segmento.getClasse() == classe) {
+                return segmento;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "MappaPostiDTO{" +
+                "idTratta=" + idTratta +
+                ", postiPerCarrozza=" + postiPerCarrozza +
+                ", segmenti=" + segmenti +
+                '}';
+    }
+
+    /**
+     * Posti consecutivi di una classe; {@code classe == null} = posti condivisi tra le classi
+     */
+    public static class Segmento {
+        private final ClasseServizio classe;
+        private final int primoPosto;
+        private final int numeroPosti;
+        private final int postiLiberi;
+        private final BitSet occupati;
+
+        public Segmento(ClasseServizio classe, int primoPosto, int numeroPosti, int postiLiberi, byte[] bitmap) {
+            this.classe = classe;
+            this.primoPosto = primoPosto;
+            this.numeroPosti = numeroPosti;
+            this.postiLiberi = postiLiberi;
+            this.occupati = BitSet.valueOf(bitmap);
+        }
+
+        public ClasseServizio getClasse() { return classe; }
+        public int getPrimoPosto() { return primoPosto; }
+        public int getNumeroPosti() { return numeroPosti; }
+        public int getPostiLiberi() { return postiLiberi; }
+        public byte[] getBitmap() { return occupati.toByteArray(); }
+
+        public boolean isOccupato(int numeroPosto) {
+            int bit = numeroPosto - primoPosto;
+            if (bit < 0 || bit >= numeroPosti) {
+                throw new IllegalArgumentException("Posto " + numeroPosto + " fuori dal segmento");
+            }
+            return occupati.get(bit);
+        }
+
+        @Override
+        public String toString() {
+            return "Segmento{" +
+                    "classe=" + (classe != null ? classe : "CONDIVISO") +
+                    ", posti=" + primoPosto + "-" + (primoPosto + numeroPosti - 1) +
+                    ", liberi=" + postiLiberi +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package dto;
+
+import java.util.List;
+
+/**
+ * 📄 Una pagina di risultati della ricerca tratte
+ *
+ * Il token di continuazione va rimandato con FILTRA_PAGINA per la pagina
+ * successiva; null quando i risultati sono finiti.
+ */
+public class PaginaTratteDTO {
+    private final List<TrattaDTO> tratte;
+    private final String tokenContinuazione;
+    private final int totaleRisultati;
+
+    public PaginaTratteDTO(List<TrattaDTO> tratte, String tokenContinuazione, int totaleRisultati) {
+        this.tratte = tratte;
+        this.tokenContinuazione = tokenContinuazione;
+        this.totaleRisultati = totaleRisultati;
+    }
+
+    public List<TrattaDTO> getTratte() { return tratte; }
+    public String getTokenContinuazione() { return tokenContinuazione; }
+    public int getTotaleRisultati() { return totaleRisultati; }
+
+    public boolean isUltima() {
+        return tokenContinuazione == null;
+    }
+
+    @Override
+    public String toString() {
+        return "PaginaTratteDTO{" +
+                "tratte=" + tratte.size() +
+                ", tokenContinuazione='" + tokenContinuazione + '\'' +
+                ", totaleRisultati=" + totaleRisultati +
+                '}';
+    }
+}
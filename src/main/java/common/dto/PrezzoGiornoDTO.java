@@ -0,0 +1,42 @@
+package dto;
+
+import enums.ClasseServizio;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * 📅 Un giorno del calendario prezzi: prezzo più basso della classe e tratta che lo offre
+ */
+public class PrezzoGiornoDTO {
+    private final LocalDate data;
+    private final ClasseServizio classe;
+    private final double prezzoMinimo;
+    private final UUID idTratta;
+    private final int numeroTratte;
+
+    public PrezzoGiornoDTO(LocalDate data, ClasseServizio classe, double prezzoMinimo, UUID idTratta, int numeroTratte) {
+        this.data = data;
+        this.classe = classe;
+        this.prezzoMinimo = prezzoMinimo;
+        this.idTratta = idTratta;
+        this.numeroTratte = numeroTratte;
+    }
+
+    public LocalDate getData() { return data; }
+    public ClasseServizio getClasse() { return classe; }
+    public double getPrezzoMinimo() { return prezzoMinimo; }
+    public UUID getIdTratta() { return idTratta; }
+    public int getNumeroTratte() { return numeroTratte; }
+
+    @Override
+    public String toString() {
+        return "PrezzoGiornoDTO{" +
+                "data=" + data +
+                ", classe=" + classe +
+                ", prezzoMinimo=" + prezzoMinimo +
+                ", idTratta=" + idTratta +
+                ", numeroTratte=" + numeroTratte +
+                '}';
+    }
+}
@@ -4,6 +4,7 @@ import enums.ClasseServizio;
 import enums.TipoPrezzo;
 
 import java.time.LocalDate;
+import java.util.List;
 
 public class RichiestaDTO {
 
@@ -24,6 +25,26 @@ public class RichiestaDTO {
 
     private final String messaggioExtra;
 
+    // Chiave di idempotenza (opzionale): i retry con la stessa chiave non vengono rielaborati
+    private final String chiaveIdempotenza;
+
+    // Acquisto di gruppo: numero di posti richiesti
+    private final Integer numeroPosti;
+
+    // Checkout carrello: tratte acquistate insieme
+    private final List<ElementoCarrelloDTO> carrello;
+
+    // Checkout in due fasi: token di una trattenuta da riscattare
+    private final String tokenTrattenuta;
+
+    // Ricerca paginata: dimensione pagina, token di continuazione e ordinamento ("ORARIO" o "PREZZO")
+    private final Integer dimensionePagina;
+    private final String tokenContinuazione;
+    private final String ordinamento;
+
+    // Ricerca tratte: solo tratte con almeno N posti liberi (nella classe richiesta, se indicata)
+    private final Integer postiMinimi;
+
     private RichiestaDTO(Builder builder) {
         this.tipo = builder.tipo;
         this.idCliente = builder.idCliente;
@@ -40,6 +61,14 @@ public class RichiestaDTO {
         this.fasciaOraria = builder.fasciaOraria;
 
         this.messaggioExtra = builder.messaggioExtra;
+        this.chiaveIdempotenza = builder.chiaveIdempotenza;
+        this.numeroPosti = builder.numeroPosti;
+        this.carrello = builder.carrello;
+        this.tokenTrattenuta = builder.tokenTrattenuta;
+        this.dimensionePagina = builder.dimensionePagina;
+        this.tokenContinuazione = builder.tokenContinuazione;
+        this.ordinamento = builder.ordinamento;
+        this.postiMinimi = builder.postiMinimi;
     }
 
     public String getTipo() { return tipo; }
@@ -57,6 +86,14 @@ public class RichiestaDTO {
     public String getFasciaOraria() { return fasciaOraria; }
 
     public String getMessaggioExtra() { return messaggioExtra; }
+    public String getChiaveIdempotenza() { return chiaveIdempotenza; }
+    public Integer getNumeroPosti() { return numeroPosti; }
+    public List<ElementoCarrelloDTO> getCarrello() { return carrello; }
+    public String getTokenTrattenuta() { return tokenTrattenuta; }
+    public Integer getDimensionePagina() { return dimensionePagina; }
+    public String getTokenContinuazione() { return tokenContinuazione; }
+    public String getOrdinamento() { return ordinamento; }
+    public Integer getPostiMinimi() { return postiMinimi; }
 
     public static class Builder {
         private String tipo;
@@ -74,6 +111,14 @@ public class RichiestaDTO {
         private String fasciaOraria;
 
         private String messaggioExtra;
+        private String chiaveIdempotenza;
+        private Integer numeroPosti;
+        private List<ElementoCarrelloDTO> carrello;
+        private String tokenTrattenuta;
+        private Integer dimensionePagina;
+        private String tokenContinuazione;
+        private String ordinamento;
+        private Integer postiMinimi;
 
         public Builder tipo(String tipo) {
             this.tipo = tipo;
@@ -140,6 +185,46 @@ public class RichiestaDTO {
             return this;
         }
 
+        public Builder chiaveIdempotenza(String chiaveIdempotenza) {
+            this.chiaveIdempotenza = chiaveIdempotenza;
+            return this;
+        }
+
+        public Builder numeroPosti(Integer numeroPosti) {
+            this.numeroPosti = numeroPosti;
+            return this;
+        }
+
+        public Builder carrello(List<ElementoCarrelloDTO> carrello) {
+            this.carrello = carrello;
+            return this;
+        }
+
+        public Builder tokenTrattenuta(String tokenTrattenuta) {
+            this.tokenTrattenuta = tokenTrattenuta;
+            return this;
+        }
+
+        public Builder dimensionePagina(Integer dimensionePagina) {
+            this.dimensionePagina = dimensionePagina;
+            return this;
+        }
+
+        public Builder tokenContinuazione(String tokenContinuazione) {
+            this.tokenContinuazione = tokenContinuazione;
+            return this;
+        }
+
+        public Builder ordinamento(String ordinamento) {
+            this.ordinamento = ordinamento;
+            return this;
+        }
+
+        public Builder postiMinimi(Integer postiMinimi) {
+            this.postiMinimi = postiMinimi;
+            return this;
+        }
+
         public RichiestaDTO build() {
             return new RichiestaDTO(this);
         }
@@ -161,6 +246,14 @@ public class RichiestaDTO {
                 ", tipoTreno='" + tipoTreno + '\'' +
                 ", fasciaOraria='" + fasciaOraria + '\'' +
                 ", messaggioExtra='" + messaggioExtra + '\'' +
+                ", chiaveIdempotenza='" + chiaveIdempotenza + '\'' +
+                ", numeroPosti=" + numeroPosti +
+                ", carrello=" + carrello +
+                ", tokenTrattenuta='" + tokenTrattenuta + '\'' +
+                ", dimensionePagina=" + dimensionePagina +
+                ", tokenContinuazione='" + tokenContinuazione + '\'' +
+                ", ordinamento='" + ordinamento + '\'' +
+                ", postiMinimi=" + postiMinimi +
                 '}';
     }
 }
\ No newline at end of file
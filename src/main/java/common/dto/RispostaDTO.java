@@ -2,6 +2,9 @@
 
 public class RispostaDTO {
 
+    // Pagamento accettato ma senza esito entro l'attesa: da non memorizzare come risposta definitiva
+    public static final String ESITO_IN_ELABORAZIONE = "IN_ELABORAZIONE";
+
     private final String esito;           // "OK" o "ERRORE"
     private final String messaggio;       // eventuale messaggio di errore o conferma
     private final Object dati;            // può essere BigliettoDTO, List<TrattaDTO>, ecc.
@@ -31,6 +34,69 @@ public class RispostaDTO {
         return null;
     }
 
+    /**
+     * Operazione di pagamento ancora in corso (solo con esito {@link #ESITO_IN_ELABORAZIONE})
+     */
+    public java.util.UUID getIdOperazione() {
+        if (dati instanceof java.util.UUID) {
+            return (java.util.UUID) dati;
+        }
+        return null;
+    }
+
+    public dto.MappaPostiDTO getMappaPosti() {
+        if (dati instanceof dto.MappaPostiDTO) {
+            return (dto.MappaPostiDTO) dati;
+        }
+        return null;
+    }
+
+    public dto.TrattenutaDTO getTrattenuta() {
+        if (dati instanceof dto.TrattenutaDTO) {
+            return (dto.TrattenutaDTO) dati;
+        }
+        return null;
+    }
+
+    public dto.PaginaTratteDTO getPaginaTratte() {
+        if (dati instanceof dto.PaginaTratteDTO) {
+            return (dto.PaginaTratteDTO) dati;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public java.util.List<dto.PrezzoGiornoDTO> getCalendario() {
+        if (dati instanceof java.util.List<?> list && !list.isEmpty() && list.get(0) instanceof dto.PrezzoGiornoDTO) {
+            return (java.util.List<dto.PrezzoGiornoDTO>) list;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public java.util.List<String> getSuggerimenti() {
+        if (dati instanceof java.util.List<?> list && !list.isEmpty() && list.get(0) instanceof String) {
+            return (java.util.List<String>) list;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public java.util.List<dto.ItinerarioDTO> getItinerari() {
+        if (dati instanceof java.util.List<?> list && !list.isEmpty() && list.get(0) instanceof dto.ItinerarioDTO) {
+            return (java.util.List<dto.ItinerarioDTO>) list;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public java.util.List<dto.BigliettoDTO> getBiglietti() {
+        if (dati instanceof java.util.List<?> list && !list.isEmpty() && list.get(0) instanceof dto.BigliettoDTO) {
+            return (java.util.List<dto.BigliettoDTO>) list;
+        }
+        return null;
+    }
+
     @SuppressWarnings("unchecked")
     public java.util.List<dto.TrattaDTO> getTratte() {
         if (dati instanceof java.util.List<?> list && !list.isEmpty() && list.get(0) instanceof dto.TrattaDTO) {
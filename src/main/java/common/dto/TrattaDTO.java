@@ -17,10 +17,24 @@ public class TrattaDTO {
     private final int binario;
     private final TrenoDTO treno;
     private final Map<ClasseServizio, PrezzoDTO> prezzi;
+    private final Map<ClasseServizio, Integer> capienzaPerClasse;   // null = non nota
+    private final Map<ClasseServizio, Integer> postiDisponibili;    // null = non calcolati
 
     public TrattaDTO(UUID id, String stazionePartenza, String stazioneArrivo,
                      LocalDate data, LocalTime ora, int binario,
                      TrenoDTO treno, Map<ClasseServizio, PrezzoDTO> prezzi) {
+        this(id, stazionePartenza, stazioneArrivo, data, ora, binario, treno, prezzi, null, null);
+    }
+
+    /**
+     * Con i posti per classe: se il treno non suddivide i posti per classe ogni
+     * classe riporta la capienza (e i posti liberi) dell'intero treno.
+     */
+    public TrattaDTO(UUID id, String stazionePartenza, String stazioneArrivo,
+                     LocalDate data, LocalTime ora, int binario,
+                     TrenoDTO treno, Map<ClasseServizio, PrezzoDTO> prezzi,
+                     Map<ClasseServizio, Integer> capienzaPerClasse,
+                     Map<ClasseServizio, Integer> postiDisponibili) {
         this.id = id;
         this.stazionePartenza = stazionePartenza;
         this.stazioneArrivo = stazioneArrivo;
@@ -29,6 +43,8 @@ public class TrattaDTO {
         this.binario = binario;
         this.treno = treno;
         this.prezzi = prezzi;
+        this.capienzaPerClasse = capienzaPerClasse;
+        this.postiDisponibili = postiDisponibili;
     }
 
     public UUID getId() { return id; }
@@ -39,6 +55,12 @@ public class TrattaDTO {
     public int getBinario() { return binario; }
     public TrenoDTO getTreno() { return treno; }
     public Map<ClasseServizio, PrezzoDTO> getPrezzi() { return prezzi; }
+    public Map<ClasseServizio, Integer> getCapienzaPerClasse() { return capienzaPerClasse; }
+    public Map<ClasseServizio, Integer> getPostiDisponibili() { return postiDisponibili; }
+
+    public Integer getPostiDisponibili(ClasseServizio classe) {
+        return postiDisponibili != null ? postiDisponibili.get(classe) : null;
+    }
 
     @Override
     public String toString() {
@@ -51,6 +73,7 @@ public class TrattaDTO {
                 ", binario=" + binario +
                 ", treno=" + treno +
                 ", prezzi=" + prezzi +
+                ", postiDisponibili=" + postiDisponibili +
                 '}';
     }
 }
\ No newline at end of file
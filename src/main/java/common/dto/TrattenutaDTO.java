@@ -0,0 +1,45 @@
+package dto;
+
+import enums.ClasseServizio;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 🎟️ Posto trattenuto per un tempo limitato (checkout in due fasi)
+ *
+ * Il token va rimandato con ACQUISTA o CONFERMA prima della scadenza:
+ * finché non viene riscattato il server non scrive nulla su disco.
+ */
+public class TrattenutaDTO {
+    private final UUID token;
+    private final UUID idTratta;
+    private final ClasseServizio classe;
+    private final int numeroPosto;
+    private final LocalDateTime scadenza;
+
+    public TrattenutaDTO(UUID token, UUID idTratta, ClasseServizio classe, int numeroPosto, LocalDateTime scadenza) {
+        this.token = token;
+        this.idTratta = idTratta;
+        this.classe = classe;
+        this.numeroPosto = numeroPosto;
+        this.scadenza = scadenza;
+    }
+
+    public UUID getToken() { return token; }
+    public UUID getIdTratta() { return idTratta; }
+    public ClasseServizio getClasse() { return classe; }
+    public int getNumeroPosto() { return numeroPosto; }
+    public LocalDateTime getScadenza() { return scadenza; }
+
+    @Override
+    public String toString() {
+        return "TrattenutaDTO{" +
+                "token=" + token +
+                ", idTratta=" + idTratta +
+                ", classe=" + classe +
+                ", numeroPosto=" + numeroPosto +
+                ", scadenza=" + scadenza +
+                '}';
+    }
+}
@@ -20,7 +20,8 @@ public class AssemblerBiglietto {
                 model.getClasse(),
                 tipoPrezzo,
                 model.getPrezzoPagato(),
-                stato
+                stato,
+                model.getNumeroPosto()
         );
     }
     public static Biglietto fromDTO(BigliettoDTO dto) {
@@ -6,22 +6,37 @@ import dto.PrezzoDTO;
 import dto.TrattaDTO;
 import dto.TrenoDTO;
 import enums.ClasseServizio;
+import model.LayoutPosti;
 import model.Prezzo;
 import model.Tratta;
 import model.Treno;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
 public class AssemblerTratta {
 
     public static TrattaDTO toDTO(Tratta tratta) {
+        return toDTO(tratta, null);
+    }
+
+    /**
+     * @param postiDisponibili posti liberi per classe, {@code null} se non richiesti
+     */
+    public static TrattaDTO toDTO(Tratta tratta, Map<ClasseServizio, Integer> postiDisponibili) {
         Map<ClasseServizio, PrezzoDTO> prezziDTO = new HashMap<>();
         tratta.getPrezzi().forEach((classe, prezzo) ->
                 prezziDTO.put(classe, AssemblerPrezzo.toDTO(prezzo)));
 
         TrenoDTO trenoDTO = AssemblerTreno.toDTO(tratta.getTreno());
 
+        LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+        Map<ClasseServizio, Integer> capienzaPerClasse = new EnumMap<>(ClasseServizio.class);
+        for (ClasseServizio classe : ClasseServizio.values()) {
+            capienzaPerClasse.put(classe, layout.getNumeroPosti(classe));
+        }
+
         return new TrattaDTO(
                 tratta.getId(),
                 tratta.getStazionePartenza(),
@@ -30,7 +45,9 @@ public class AssemblerTratta {
                 tratta.getOra(),
                 tratta.getBinario(),
                 trenoDTO,
-                prezziDTO
+                prezziDTO,
+                capienzaPerClasse,
+                postiDisponibili
         );
     }
 
@@ -6,31 +6,51 @@ import dto.ClienteDTO;
 import dto.RichiestaDTO;
 import dto.RispostaDTO;
 import dto.TrattaDTO;
+import enums.ClasseServizio;
 import enums.StatoBiglietto;
+import enums.TipoPrezzo;
 import model.Biglietto;
+import model.LayoutPosti;
 import model.Tratta;
+import model.Trattenuta;
 import persistence.MemoriaBiglietti;
 import persistence.MemoriaClientiFedeli;
 import persistence.MemoriaTratte;
 import persistence.MemoriaOsservatori;  // ✅ AGGIUNTO
-import service.BancaServiceClient;
+import scheduling.ProcessoreOutboxPagamenti;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 🔒 ACQUISTA BIGLIETTO COMMAND - CON AUTO-ISCRIZIONE NOTIFICHE
  *
  * NUOVO: Auto-iscrizione automatica alle notifiche della tratta acquistata
+ *
+ * OUTBOX: il posto viene trattenuto in memoria e il pagamento registrato
+ * nell'outbox; il biglietto viene scritto su disco solo a pagamento riuscito.
+ *
+ * Se l'esito non arriva entro l'attesa la risposta è IN_ELABORAZIONE, con l'id
+ * dell'operazione. Con una chiave di idempotenza l'id (anche del biglietto) deriva
+ * da cliente e chiave: ripetere la richiesta con la stessa chiave ritrova
+ * l'operazione in corso o il biglietto emesso invece di comprarne un altro.
  */
 public class AcquistaBigliettoCommand implements ServerCommand {
 
+    // La trattenuta deve sopravvivere al pagamento (timeout banca + coda outbox)
+    static final long DURATA_POSTO_IN_PAGAMENTO_MS = 60_000;
+    static final long ATTESA_ESITO_MS = 30_000;
+
     private final RichiestaDTO richiesta;
     private final MemoriaBiglietti memoriaBiglietti;
     private final MemoriaClientiFedeli memoriaFedeli;
     private final MemoriaTratte memoriaTratte;
     private final MemoriaOsservatori memoriaOsservatori;  // ✅ AGGIUNTO
-    private final BancaServiceClient banca;
+    private final ProcessoreOutboxPagamenti outbox;
 
     public AcquistaBigliettoCommand(
             RichiestaDTO richiesta,
@@ -38,14 +58,14 @@ public class AcquistaBigliettoCommand implements ServerCommand {
             MemoriaClientiFedeli mf,
             MemoriaTratte mt,
             MemoriaOsservatori mo,  // ✅ NUOVO PARAMETRO
-            BancaServiceClient b
+            ProcessoreOutboxPagamenti outbox
     ) {
         this.richiesta = richiesta;
         this.memoriaBiglietti = mb;
         this.memoriaFedeli = mf;
         this.memoriaTratte = mt;
         this.memoriaOsservatori = mo;  // ✅ INJECTION
-        this.banca = b;
+        this.outbox = outbox;
     }
 
     @Override
@@ -53,7 +73,22 @@ public class AcquistaBigliettoCommand implements ServerCommand {
         System.out.println("🔍 DEBUG ACQUISTO con AUTO-ISCRIZIONE: Iniziando acquisto");
 
         UUID idCliente = UUID.fromString(richiesta.getIdCliente());
-        Tratta tratta = memoriaTratte.getTrattaById(richiesta.getTratta().getId());
+
+        // 🎟️ Checkout in due fasi: tratta e classe vengono dalla trattenuta
+        Trattenuta trattenuta = null;
+        if (richiesta.getTokenTrattenuta() != null) {
+            trattenuta = memoriaBiglietti.getTrattenuta(UUID.fromString(richiesta.getTokenTrattenuta()));
+            if (trattenuta == null || !trattenuta.getIdCliente().equals(idCliente)) {
+                return new RispostaDTO("KO", "❌ Trattenuta scaduta o non valida", null);
+            }
+        } else if (richiesta.getTratta() == null) {
+            return new RispostaDTO("KO", "❌ Tratta non specificata", null);
+        }
+
+        UUID idTratta = trattenuta != null ? trattenuta.getIdTratta() : richiesta.getTratta().getId();
+        ClasseServizio classe = trattenuta != null ? trattenuta.getClasse() : richiesta.getClasseServizio();
+        TipoPrezzo tipoPrezzo = richiesta.getTipoPrezzo() != null ? richiesta.getTipoPrezzo() : TipoPrezzo.INTERO;
+        Tratta tratta = memoriaTratte.getTrattaById(idTratta);
 
         if (tratta == null) {
             return new RispostaDTO("KO", "❌ Tratta non trovata", null);
@@ -61,44 +96,67 @@ public class AcquistaBigliettoCommand implements ServerCommand {
 
         // Verifica tipo prezzo
         boolean isFedele = memoriaFedeli.isClienteFedele(idCliente);
-        if (richiesta.getTipoPrezzo() == enums.TipoPrezzo.FEDELTA && !isFedele) {
+        if (tipoPrezzo == TipoPrezzo.FEDELTA && !isFedele) {
             return new RispostaDTO("KO", "❌ Prezzo fedeltà non disponibile", null);
         }
 
         double prezzo = tratta.getPrezzi()
-                .get(richiesta.getClasseServizio())
-                .getPrezzo(richiesta.getTipoPrezzo());
+                .get(classe)
+                .getPrezzo(tipoPrezzo);
 
         System.out.println("💰 DEBUG: Prezzo calcolato: €" + prezzo);
 
         // Crea biglietto
-        Biglietto biglietto = new Biglietto.Builder()
+        UUID idAcquisto = idAcquisto(idCliente);
+        Biglietto richiesto = new Biglietto.Builder()
+                .id(idAcquisto)
                 .idCliente(idCliente)
                 .idTratta(tratta.getId())
-                .classe(richiesta.getClasseServizio())
+                .classe(classe)
                 .prezzoPagato(prezzo)
                 .dataAcquisto(LocalDate.now())
                 .conCartaFedelta(isFedele)
                 .tipoAcquisto("acquisto")
                 .build();
 
-        // 🔒 CONTROLLO ATOMICO CAPIENZA + PRENOTAZIONE POSTO
-        int capienza = tratta.getTreno().getCapienzaTotale();
-        boolean postoRiservato = memoriaBiglietti.aggiungiSeSpazioDiponibile(biglietto, capienza);
-
-        if (!postoRiservato) {
-            System.out.println("❌ DEBUG: Treno pieno - capienza rispettata atomicamente");
-            return new RispostaDTO("KO", "❌ Treno pieno, nessun posto disponibile", null);
+        // 🔁 Retry di un acquisto già emesso o ancora in corso: nessun nuovo posto né pagamento
+        Biglietto giaEmesso = memoriaBiglietti.getById(idAcquisto);
+        CompletableFuture<Biglietto> esito = giaEmesso != null
+                ? CompletableFuture.completedFuture(giaEmesso)
+                : outbox.esitoDi(idAcquisto);
+
+        if (esito == null) {
+            // 🔒 CONTROLLO ATOMICO CAPIENZA: posto trattenuto in memoria, nessuna scrittura su disco
+            if (trattenuta == null) {
+                trattenuta = memoriaBiglietti.trovaTrattenuta(tratta.getId(), idCliente, classe);
+            }
+            if (trattenuta == null) {
+                trattenuta = memoriaBiglietti.trattieniPosto(tratta.getId(), idCliente, classe,
+                        LayoutPosti.di(tratta.getTreno()), DURATA_POSTO_IN_PAGAMENTO_MS);
+            }
+            if (trattenuta == null) {
+                System.out.println("❌ DEBUG: Treno pieno - capienza rispettata atomicamente");
+                return new RispostaDTO("KO", "❌ Treno pieno, nessun posto disponibile (richiedi LISTA_ATTESA per essere avvisato)", null);
+            }
+
+            System.out.println("✅ DEBUG: Posto " + trattenuta.getNumeroPosto() + " trattenuto, pagamento registrato nell'outbox");
+
+            // 💳 PAGAMENTO via outbox: il biglietto esiste solo se il pagamento riesce
+            esito = outbox.accoda(idAcquisto, richiesto, trattenuta.getId(), "Pagamento biglietto");
         }
 
-        System.out.println("✅ DEBUG: Posto riservato atomicamente, procedo con pagamento");
-
-        // 💳 PAGAMENTO
-        boolean esitoPagamento = banca.paga(idCliente.toString(), prezzo, "Pagamento biglietto");
+        Biglietto biglietto;
+        try {
+            biglietto = esito.get(ATTESA_ESITO_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Né OK né KO: il biglietto può ancora essere emesso, la risposta non va memorizzata
+            return new RispostaDTO(RispostaDTO.ESITO_IN_ELABORAZIONE, "⏳ Pagamento in elaborazione (operazione " +
+                    idAcquisto + "): ripeti la richiesta con la stessa chiave per conoscere l'esito", idAcquisto);
+        } catch (Exception e) {
+            return new RispostaDTO("KO", "❌ Pagamento fallito: " + e.getMessage(), null);
+        }
 
-        if (!esitoPagamento) {
-            // Rollback: rimuovi il biglietto se il pagamento fallisce
-            memoriaBiglietti.rimuoviBiglietto(biglietto.getId());
+        if (biglietto == null) {
             System.out.println("❌ DEBUG: Pagamento fallito, posto rilasciato");
             return new RispostaDTO("KO", "❌ Pagamento fallito", null);
         }
@@ -127,11 +185,23 @@ public class AcquistaBigliettoCommand implements ServerCommand {
                 clienteDTO,
                 trattaDTO,
                 biglietto.getClasse(),
-                richiesta.getTipoPrezzo(),
+                tipoPrezzo,
                 biglietto.getPrezzoPagato(),
-                StatoBiglietto.CONFERMATO
+                StatoBiglietto.CONFERMATO,
+                biglietto.getNumeroPosto()
         );
 
         return new RispostaDTO("OK", "✅ Acquisto completato + notifiche attive", bigliettoDTO);
     }
+
+    /**
+     * 🔑 Id di operazione e biglietto: stabile per (cliente, chiave di idempotenza)
+     */
+    private UUID idAcquisto(UUID idCliente) {
+        String chiave = richiesta.getChiaveIdempotenza();
+        if (chiave == null || chiave.isEmpty()) {
+            return UUID.randomUUID();
+        }
+        return UUID.nameUUIDFromBytes(("acquisto|" + idCliente + "|" + chiave).getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,225 @@
+package command;
+
+import Assembler.AssemblerTratta;
+import dto.BigliettoDTO;
+import dto.ClienteDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import dto.TrattaDTO;
+import enums.StatoBiglietto;
+import enums.TipoPrezzo;
+import model.Biglietto;
+import model.LayoutPosti;
+import model.Prezzo;
+import model.Tratta;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaClientiFedeli;
+import persistence.MemoriaOsservatori;
+import persistence.MemoriaTratte;
+import service.BancaServiceClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 👨‍👩‍👧‍👦 ACQUISTA GRUPPO COMMAND - N posti sulla stessa tratta, tutti o nessuno
+ *
+ * Rispetto a N richieste ACQUISTA separate:
+ * - un solo controllo di capienza e un solo salvataggio (lock preso una volta)
+ * - un solo pagamento per l'importo complessivo
+ * - nessun gruppo spezzato a metà quando il treno si riempie
+ *
+ * Il pagamento usa una chiave derivata dall'operazione: i posti si liberano solo se
+ * la banca rifiuta. Con esito incerto restano occupati e il pagamento viene ripetuto
+ * con la stessa chiave; se l'esito non arriva in tempo la risposta è IN_ELABORAZIONE
+ * e ripetere la richiesta con la stessa chiave ritrova lo stesso gruppo.
+ */
+public class AcquistaGruppoCommand implements ServerCommand {
+
+    public static final int MAX_POSTI_GRUPPO = 50;
+
+    private final RichiestaDTO richiesta;
+    private final MemoriaBiglietti memoriaBiglietti;
+    private final MemoriaClientiFedeli memoriaFedeli;
+    private final MemoriaTratte memoriaTratte;
+    private final MemoriaOsservatori memoriaOsservatori;
+    private final BancaServiceClient banca;
+
+    public AcquistaGruppoCommand(
+            RichiestaDTO richiesta,
+            MemoriaBiglietti mb,
+            MemoriaClientiFedeli mf,
+            MemoriaTratte mt,
+            MemoriaOsservatori mo,
+            BancaServiceClient b
+    ) {
+        this.richiesta = richiesta;
+        this.memoriaBiglietti = mb;
+        this.memoriaFedeli = mf;
+        this.memoriaTratte = mt;
+        this.memoriaOsservatori = mo;
+        this.banca = b;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        Integer numeroPosti = richiesta.getNumeroPosti();
+        if (numeroPosti == null || numeroPosti < 1) {
+            return new RispostaDTO("KO", "❌ Numero di posti non valido", null);
+        }
+        if (numeroPosti > MAX_POSTI_GRUPPO) {
+            return new RispostaDTO("KO", "❌ Massimo " + MAX_POSTI_GRUPPO + " posti per gruppo", null);
+        }
+
+        System.out.println("🔍 DEBUG ACQUISTO GRUPPO: " + numeroPosti + " posti");
+
+        if (richiesta.getTratta() == null) {
+            return new RispostaDTO("KO", "❌ Tratta non specificata", null);
+        }
+
+        UUID idCliente = UUID.fromString(richiesta.getIdCliente());
+        Tratta tratta = memoriaTratte.getTrattaById(richiesta.getTratta().getId());
+
+        if (tratta == null) {
+            return new RispostaDTO("KO", "❌ Tratta non trovata", null);
+        }
+
+        TipoPrezzo tipoPrezzo = richiesta.getTipoPrezzo() != null ? richiesta.getTipoPrezzo() : TipoPrezzo.INTERO;
+        boolean isFedele = memoriaFedeli.isClienteFedele(idCliente);
+        if (tipoPrezzo == TipoPrezzo.FEDELTA && !isFedele) {
+            return new RispostaDTO("KO", "❌ Prezzo fedeltà non disponibile", null);
+        }
+
+        Prezzo prezzoClasse = richiesta.getClasseServizio() != null
+                ? tratta.getPrezzi().get(richiesta.getClasseServizio())
+                : null;
+        if (prezzoClasse == null) {
+            return new RispostaDTO("KO", "❌ Classe " + richiesta.getClasseServizio()
+                    + " non disponibile sulla tratta " + tratta.getId(), null);
+        }
+        double prezzo = prezzoClasse.getPrezzo(tipoPrezzo);
+        double totale = prezzo * numeroPosti;
+        UUID idOperazione = idOperazione(idCliente);
+
+        // 🔁 Retry di un gruppo già riservato (risposta IN_ELABORAZIONE): stessi biglietti, stesso pagamento
+        List<Biglietto> gruppo = gruppoGiaRiservato(idOperazione, numeroPosti);
+        if (gruppo == null) {
+            gruppo = riserva(idCliente, tratta, prezzo, isFedele, idOperazione, numeroPosti);
+            if (gruppo == null) {
+                return new RispostaDTO("KO", "❌ Posti insufficienti per " + numeroPosti + " persone", null);
+            }
+        }
+
+        // 💳 PAGAMENTO UNICO: i posti si liberano solo con rifiuto certo
+        List<UUID> idBiglietti = gruppo.stream().map(Biglietto::getId).toList();
+        CompletableFuture<BancaServiceClient.EsitoPagamento> pagamento = banca.pagaFinoAEsito(idCliente.toString(),
+                totale, "Pagamento gruppo " + numeroPosti + " biglietti", "gruppo:" + idOperazione);
+
+        BancaServiceClient.EsitoPagamento esito;
+        try {
+            esito = pagamento.get(AcquistaBigliettoCommand.ATTESA_ESITO_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            esito = BancaServiceClient.EsitoPagamento.INCERTO;
+        } catch (Exception e) {
+            System.err.println("❌ Attesa pagamento gruppo interrotta: " + e.getMessage());
+            esito = BancaServiceClient.EsitoPagamento.INCERTO;
+        }
+
+        if (esito == BancaServiceClient.EsitoPagamento.RIFIUTATO) {
+            memoriaBiglietti.rimuoviBiglietti(idBiglietti);
+            System.out.println("❌ DEBUG: Pagamento gruppo rifiutato, " + numeroPosti + " posti rilasciati");
+            return new RispostaDTO("KO", "❌ Pagamento fallito", null);
+        }
+        if (esito == BancaServiceClient.EsitoPagamento.INCERTO) {
+            // I posti restano: si liberano solo se i tentativi successivi finiscono in un rifiuto
+            pagamento.thenAccept(finale -> {
+                if (finale == BancaServiceClient.EsitoPagamento.RIFIUTATO) {
+                    memoriaBiglietti.rimuoviBiglietti(idBiglietti);
+                    System.out.println("❌ Pagamento gruppo " + idOperazione + " rifiutato, posti rilasciati");
+                }
+            });
+            return new RispostaDTO(RispostaDTO.ESITO_IN_ELABORAZIONE, "⏳ Pagamento gruppo in elaborazione (operazione " +
+                    idOperazione + "): ripeti la richiesta con la stessa chiave per conoscere l'esito", idOperazione);
+        }
+
+        // 📡 Una sola iscrizione: i biglietti sono dello stesso cliente e della stessa tratta
+        try {
+            memoriaOsservatori.aggiungiOsservatore(tratta.getId(), idCliente);
+        } catch (Exception e) {
+            System.err.println("⚠️ Errore auto-iscrizione notifiche (non critico): " + e.getMessage());
+        }
+
+        ClienteDTO clienteDTO = new ClienteDTO(
+                idCliente, "Cliente", "Test", "cliente@test.com",
+                isFedele, 0, "", 0, ""
+        );
+        TrattaDTO trattaDTO = AssemblerTratta.toDTO(tratta);
+
+        List<BigliettoDTO> bigliettiDTO = gruppo.stream()
+                .map(b -> new BigliettoDTO(
+                        b.getId(),
+                        clienteDTO,
+                        trattaDTO,
+                        b.getClasse(),
+                        tipoPrezzo,
+                        b.getPrezzoPagato(),
+                        StatoBiglietto.CONFERMATO,
+                        b.getNumeroPosto()))
+                .toList();
+
+        return new RispostaDTO("OK", String.format("✅ Acquisto di gruppo completato: %d biglietti (€%.2f)",
+                numeroPosti, totale), bigliettiDTO);
+    }
+
+    /**
+     * 🔒 CONTROLLO ATOMICO CAPIENZA per tutto il gruppo (posti vicini quando possibile)
+     */
+    private List<Biglietto> riserva(UUID idCliente, Tratta tratta, double prezzo, boolean isFedele,
+                                    UUID idOperazione, int numeroPosti) {
+        List<Biglietto> richiesti = new ArrayList<>(numeroPosti);
+        for (int i = 0; i < numeroPosti; i++) {
+            richiesti.add(new Biglietto.Builder()
+                    .id(idBiglietto(idOperazione, i))
+                    .idCliente(idCliente)
+                    .idTratta(tratta.getId())
+                    .classe(richiesta.getClasseServizio())
+                    .prezzoPagato(prezzo)
+                    .dataAcquisto(LocalDate.now())
+                    .conCartaFedelta(isFedele)
+                    .tipoAcquisto("acquisto")
+                    .build());
+        }
+        return memoriaBiglietti.riservaPosti(richiesti, Map.of(tratta.getId(), LayoutPosti.di(tratta.getTreno())));
+    }
+
+    private List<Biglietto> gruppoGiaRiservato(UUID idOperazione, int numeroPosti) {
+        List<Biglietto> gruppo = new ArrayList<>(numeroPosti);
+        for (int i = 0; i < numeroPosti; i++) {
+            gruppo.add(memoriaBiglietti.getById(idBiglietto(idOperazione, i)));
+        }
+        return gruppo.stream().allMatch(Objects::nonNull) ? gruppo : null;
+    }
+
+    /**
+     * 🔑 Id dell'operazione: stabile per (cliente, chiave di idempotenza), casuale senza chiave
+     */
+    private UUID idOperazione(UUID idCliente) {
+        String chiave = richiesta.getChiaveIdempotenza();
+        if (chiave == null || chiave.isEmpty()) {
+            return UUID.randomUUID();
+        }
+        return UUID.nameUUIDFromBytes(("gruppo|" + idCliente + "|" + chiave).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UUID idBiglietto(UUID idOperazione, int indice) {
+        return UUID.nameUUIDFromBytes((idOperazione + "|" + indice).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,47 @@
+package command;
+
+import dto.PrezzoGiornoDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import enums.ClasseServizio;
+import persistence.CalendarioPrezzi;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 📅 CALENDARIO PREZZI COMMAND - Prezzo più basso di ogni giorno di un mese
+ *
+ * Partenza e arrivo obbligatori; il mese è quello della data indicata (oggi se
+ * assente) e la classe è BASE se non specificata. Letto dalla vista materializzata,
+ * senza eseguire una ricerca per ogni giorno.
+ */
+public class CalendarioPrezziCommand implements ServerCommand {
+
+    private final RichiestaDTO richiesta;
+    private final CalendarioPrezzi calendario;
+
+    public CalendarioPrezziCommand(RichiestaDTO richiesta, CalendarioPrezzi calendario) {
+        this.richiesta = richiesta;
+        this.calendario = calendario;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        if (richiesta.getPartenza() == null || richiesta.getPartenza().isBlank()
+                || richiesta.getArrivo() == null || richiesta.getArrivo().isBlank()) {
+            return new RispostaDTO("KO", "❌ Stazione di partenza e di arrivo obbligatorie", null);
+        }
+
+        YearMonth mese = YearMonth.from(richiesta.getData() != null ? richiesta.getData() : LocalDate.now());
+        ClasseServizio classe = richiesta.getClasseServizio() != null ? richiesta.getClasseServizio() : ClasseServizio.BASE;
+
+        List<PrezzoGiornoDTO> giorni = new ArrayList<>();
+        for (CalendarioPrezzi.PrezzoGiorno g : calendario.mese(richiesta.getPartenza(), richiesta.getArrivo(), mese, classe)) {
+            giorni.add(new PrezzoGiornoDTO(g.getData(), classe, g.getPrezzo(), g.getIdTratta(), g.getNumeroTratte()));
+        }
+        return new RispostaDTO("OK", "Prezzi di " + mese + ": " + giorni.size() + " giorni con tratte", giorni);
+    }
+}
@@ -0,0 +1,225 @@
+package command;
+
+import Assembler.AssemblerTratta;
+import dto.BigliettoDTO;
+import dto.ClienteDTO;
+import dto.ElementoCarrelloDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import enums.StatoBiglietto;
+import enums.TipoPrezzo;
+import model.Biglietto;
+import model.LayoutPosti;
+import model.Prezzo;
+import model.Tratta;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaClientiFedeli;
+import persistence.MemoriaOsservatori;
+import persistence.MemoriaTratte;
+import service.BancaServiceClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 🛒 CHECKOUT CARRELLO COMMAND - Più tratte (andata/ritorno, coincidenze) tutte o nessuna
+ *
+ * - Validazione e prezzi di tutti gli elementi prima di toccare i posti
+ * - Un solo controllo atomico di capienza su tutte le tratte coinvolte
+ * - Un solo pagamento per il totale, con rilascio di tutti i posti se la banca rifiuta
+ *
+ * Con esito incerto i posti restano e il pagamento viene ripetuto con la stessa
+ * chiave (derivata dall'operazione); se l'esito non arriva in tempo la risposta è
+ * IN_ELABORAZIONE e ripetere la richiesta con la stessa chiave ritrova lo stesso carrello.
+ */
+public class CheckoutCarrelloCommand implements ServerCommand {
+
+    public static final int MAX_ELEMENTI_CARRELLO = 10;
+
+    private final RichiestaDTO richiesta;
+    private final MemoriaBiglietti memoriaBiglietti;
+    private final MemoriaClientiFedeli memoriaFedeli;
+    private final MemoriaTratte memoriaTratte;
+    private final MemoriaOsservatori memoriaOsservatori;
+    private final BancaServiceClient banca;
+
+    public CheckoutCarrelloCommand(
+            RichiestaDTO richiesta,
+            MemoriaBiglietti mb,
+            MemoriaClientiFedeli mf,
+            MemoriaTratte mt,
+            MemoriaOsservatori mo,
+            BancaServiceClient b
+    ) {
+        this.richiesta = richiesta;
+        this.memoriaBiglietti = mb;
+        this.memoriaFedeli = mf;
+        this.memoriaTratte = mt;
+        this.memoriaOsservatori = mo;
+        this.banca = b;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        List<ElementoCarrelloDTO> carrello = richiesta.getCarrello();
+        if (carrello == null || carrello.isEmpty()) {
+            return new RispostaDTO("KO", "❌ Carrello vuoto", null);
+        }
+        if (carrello.size() > MAX_ELEMENTI_CARRELLO) {
+            return new RispostaDTO("KO", "❌ Massimo " + MAX_ELEMENTI_CARRELLO + " tratte per carrello", null);
+        }
+
+        System.out.println("🛒 DEBUG CHECKOUT: " + carrello.size() + " elementi nel carrello");
+
+        UUID idCliente = UUID.fromString(richiesta.getIdCliente());
+        boolean isFedele = memoriaFedeli.isClienteFedele(idCliente);
+        UUID idOperazione = idOperazione(idCliente);
+
+        // 1️⃣ Validazione e prezzi, senza ancora riservare nulla
+        Map<UUID, Tratta> tratte = new LinkedHashMap<>();
+        Map<UUID, LayoutPosti> layoutPerTratta = new HashMap<>();
+        List<Biglietto> richiesti = new ArrayList<>(carrello.size());
+        double totale = 0;
+
+        for (ElementoCarrelloDTO elemento : carrello) {
+            Tratta tratta = tratte.computeIfAbsent(elemento.getIdTratta(), memoriaTratte::getTrattaById);
+            if (tratta == null) {
+                return new RispostaDTO("KO", "❌ Tratta non trovata: " + elemento.getIdTratta(), null);
+            }
+
+            TipoPrezzo tipoPrezzo = elemento.getTipoPrezzo() != null ? elemento.getTipoPrezzo() : TipoPrezzo.INTERO;
+            if (tipoPrezzo == TipoPrezzo.FEDELTA && !isFedele) {
+                return new RispostaDTO("KO", "❌ Prezzo fedeltà non disponibile", null);
+            }
+
+            Prezzo prezzoClasse = elemento.getClasseServizio() != null
+                    ? tratta.getPrezzi().get(elemento.getClasseServizio())
+                    : null;
+            if (prezzoClasse == null) {
+                return new RispostaDTO("KO", "❌ Classe " + elemento.getClasseServizio()
+                        + " non disponibile sulla tratta " + tratta.getId(), null);
+            }
+
+            double prezzo = prezzoClasse.getPrezzo(tipoPrezzo);
+            totale += prezzo;
+
+            layoutPerTratta.put(tratta.getId(), LayoutPosti.di(tratta.getTreno()));
+            richiesti.add(new Biglietto.Builder()
+                    .id(idBiglietto(idOperazione, richiesti.size()))
+                    .idCliente(idCliente)
+                    .idTratta(tratta.getId())
+                    .classe(elemento.getClasseServizio())
+                    .prezzoPagato(prezzo)
+                    .dataAcquisto(LocalDate.now())
+                    .conCartaFedelta(isFedele)
+                    .tipoAcquisto("acquisto")
+                    .build());
+        }
+
+        // 2️⃣ 🔒 Tutti i posti o nessuno (un retry dopo IN_ELABORAZIONE ritrova quelli già presi)
+        List<Biglietto> biglietti = giaRiservati(richiesti);
+        if (biglietti == null) {
+            biglietti = memoriaBiglietti.riservaPosti(richiesti, layoutPerTratta);
+        }
+        if (biglietti == null) {
+            return new RispostaDTO("KO", "❌ Posti non disponibili su almeno una tratta del carrello", null);
+        }
+
+        // 3️⃣ 💳 Un solo pagamento per il totale: i posti si liberano solo con rifiuto certo
+        List<UUID> idBiglietti = biglietti.stream().map(Biglietto::getId).toList();
+        CompletableFuture<BancaServiceClient.EsitoPagamento> pagamento = banca.pagaFinoAEsito(idCliente.toString(),
+                totale, "Pagamento carrello " + biglietti.size() + " biglietti", "carrello:" + idOperazione);
+
+        BancaServiceClient.EsitoPagamento esito;
+        try {
+            esito = pagamento.get(AcquistaBigliettoCommand.ATTESA_ESITO_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            esito = BancaServiceClient.EsitoPagamento.INCERTO;
+        } catch (Exception e) {
+            System.err.println("❌ Attesa pagamento carrello interrotta: " + e.getMessage());
+            esito = BancaServiceClient.EsitoPagamento.INCERTO;
+        }
+
+        if (esito == BancaServiceClient.EsitoPagamento.RIFIUTATO) {
+            memoriaBiglietti.rimuoviBiglietti(idBiglietti);
+            System.out.println("❌ DEBUG: Pagamento carrello rifiutato, tutti i posti rilasciati");
+            return new RispostaDTO("KO", "❌ Pagamento fallito", null);
+        }
+        if (esito == BancaServiceClient.EsitoPagamento.INCERTO) {
+            // I posti restano: si liberano solo se i tentativi successivi finiscono in un rifiuto
+            pagamento.thenAccept(finale -> {
+                if (finale == BancaServiceClient.EsitoPagamento.RIFIUTATO) {
+                    memoriaBiglietti.rimuoviBiglietti(idBiglietti);
+                    System.out.println("❌ Pagamento carrello " + idOperazione + " rifiutato, posti rilasciati");
+                }
+            });
+            return new RispostaDTO(RispostaDTO.ESITO_IN_ELABORAZIONE, "⏳ Pagamento carrello in elaborazione (operazione " +
+                    idOperazione + "): ripeti la richiesta con la stessa chiave per conoscere l'esito", idOperazione);
+        }
+
+        // 📡 Iscrizione alle notifiche di ogni tratta acquistata
+        for (UUID idTratta : tratte.keySet()) {
+            try {
+                memoriaOsservatori.aggiungiOsservatore(idTratta, idCliente);
+            } catch (Exception e) {
+                System.err.println("⚠️ Errore auto-iscrizione notifiche (non critico): " + e.getMessage());
+            }
+        }
+
+        ClienteDTO clienteDTO = new ClienteDTO(
+                idCliente, "Cliente", "Test", "cliente@test.com",
+                isFedele, 0, "", 0, ""
+        );
+
+        List<BigliettoDTO> bigliettiDTO = new ArrayList<>(biglietti.size());
+        for (int i = 0; i < biglietti.size(); i++) {
+            Biglietto b = biglietti.get(i);
+            TipoPrezzo tipoPrezzo = carrello.get(i).getTipoPrezzo() != null ? carrello.get(i).getTipoPrezzo() : TipoPrezzo.INTERO;
+            bigliettiDTO.add(new BigliettoDTO(
+                    b.getId(),
+                    clienteDTO,
+                    AssemblerTratta.toDTO(tratte.get(b.getIdTratta())),
+                    b.getClasse(),
+                    tipoPrezzo,
+                    b.getPrezzoPagato(),
+                    StatoBiglietto.CONFERMATO,
+                    b.getNumeroPosto()));
+        }
+
+        return new RispostaDTO("OK", String.format("✅ Checkout completato: %d biglietti (€%.2f)",
+                bigliettiDTO.size(), totale), bigliettiDTO);
+    }
+
+    private List<Biglietto> giaRiservati(List<Biglietto> richiesti) {
+        List<Biglietto> riservati = new ArrayList<>(richiesti.size());
+        for (Biglietto b : richiesti) {
+            riservati.add(memoriaBiglietti.getById(b.getId()));
+        }
+        return riservati.stream().allMatch(Objects::nonNull) ? riservati : null;
+    }
+
+    /**
+     * 🔑 Id dell'operazione: stabile per (cliente, chiave di idempotenza), casuale senza chiave
+     */
+    private UUID idOperazione(UUID idCliente) {
+        String chiave = richiesta.getChiaveIdempotenza();
+        if (chiave == null || chiave.isEmpty()) {
+            return UUID.randomUUID();
+        }
+        return UUID.nameUUIDFromBytes(("carrello|" + idCliente + "|" + chiave).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UUID idBiglietto(UUID idOperazione, int indice) {
+        return UUID.nameUUIDFromBytes((idOperazione + "|" + indice).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -73,6 +73,9 @@ public class ConfermaBigliettoCommand implements ServerCommand {
         boolean successo = memoria.confermaPrenotazione(bigliettoModel);
 
         if (!successo) {
+            // 💸 Compensazione: pagamento già addebitato ma prenotazione non confermata
+            banca.rimborsa(bigliettoModel.getIdCliente().toString(), bigliettoModel.getPrezzoPagato(),
+                    "Rimborso conferma non riuscita");
             return new RispostaDTO("KO", "❌ Errore durante la conferma", null);
         }
 
@@ -97,7 +100,8 @@ public class ConfermaBigliettoCommand implements ServerCommand {
                 bigliettoModel.isConCartaFedelta(),
                 bigliettoModel.getPrezzoPagato(),
                 LocalDate.now(),
-                "acquisto" // Cambia tipo
+                "acquisto", // Cambia tipo
+                bigliettoModel.getNumeroPosto() // Stesso posto della prenotazione
         );
 
         // DTO response
@@ -115,7 +119,8 @@ public class ConfermaBigliettoCommand implements ServerCommand {
                 confermato.getClasse(),
                 confermato.isConCartaFedelta() ? TipoPrezzo.FEDELTA : TipoPrezzo.INTERO,
                 confermato.getPrezzoPagato(),
-                StatoBiglietto.CONFERMATO
+                StatoBiglietto.CONFERMATO,
+                confermato.getNumeroPosto()
         );
 
         return new RispostaDTO("OK", "✅ Biglietto confermato + notifiche attive", bigliettoDTO);
@@ -1,17 +1,23 @@
 package command;
 
-import Assembler.AssemblerTratta;
 import dto.RichiestaDTO;
 import dto.RispostaDTO;
 import dto.TrattaDTO;
+import enums.ClasseServizio;
+import model.LayoutPosti;
 import model.Tratta;
+import persistence.DizionarioStazioni;
+import persistence.FiltroTratte;
+import persistence.MemoriaBiglietti;
 import persistence.MemoriaTratte;
+import util.CacheTratteGrpc;
+import util.RichiesteInVolo;
 
 import java.time.LocalDate;
-import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * Command Pattern Implementation per filtraggio tratte
@@ -21,17 +27,118 @@ public class FiltraTratteCommand implements ServerCommand {
 
     private final RichiestaDTO richiesta;
     private final MemoriaTratte memoria;
+    private final MemoriaBiglietti memoriaBiglietti;  // null = risultati senza posti disponibili
+    private final DizionarioStazioni dizionario;      // null = nessun suggerimento sulle stazioni
+    private final RichiesteInVolo<List<?>, RispostaDTO> inVolo;  // null = ogni richiesta calcola da sé
 
     public FiltraTratteCommand(RichiestaDTO richiesta, MemoriaTratte memoria) {
+        this(richiesta, memoria, null);
+    }
+
+    public FiltraTratteCommand(RichiestaDTO richiesta, MemoriaTratte memoria, MemoriaBiglietti memoriaBiglietti) {
+        this(richiesta, memoria, memoriaBiglietti, null);
+    }
+
+    public FiltraTratteCommand(RichiestaDTO richiesta, MemoriaTratte memoria, MemoriaBiglietti memoriaBiglietti,
+                               DizionarioStazioni dizionario) {
+        this(richiesta, memoria, memoriaBiglietti, dizionario, null);
+    }
+
+    /**
+     * Ricerche identiche (stesso filtro e stessi posti minimi) in corso nello
+     * stesso momento condividono un solo calcolo tramite {@code inVolo}
+     */
+    public FiltraTratteCommand(RichiestaDTO richiesta, MemoriaTratte memoria, MemoriaBiglietti memoriaBiglietti,
+                               DizionarioStazioni dizionario, RichiesteInVolo<List<?>, RispostaDTO> inVolo) {
         this.richiesta = richiesta;
         this.memoria = memoria;
+        this.memoriaBiglietti = memoriaBiglietti;
+        this.dizionario = dizionario;
+        this.inVolo = inVolo;
     }
 
     @Override
     public RispostaDTO esegui() {  // ✅ FIXED: Nessun parametro confusing
-        List<Tratta> tutte = memoria.getTutteTratte();
+        FiltroTratte filtro;
+        try {
+            filtro = filtroDa(richiesta);
+        } catch (IllegalArgumentException e) {
+            return new RispostaDTO("KO", e.getMessage(), null);
+        }
+
+        int postiMinimi = richiesta.getPostiMinimi() == null ? 0 : richiesta.getPostiMinimi();
+        if (postiMinimi > 0 && memoriaBiglietti == null) {
+            return new RispostaDTO("KO", "❌ Filtro sui posti liberi non disponibile", null);
+        }
+
+        // 🛫 Stessa ricerca già in corso: si attende quel risultato invece di ricalcolarlo
+        return inVolo == null ? cerca(filtro, postiMinimi)
+                : inVolo.esegui(List.of(filtro, postiMinimi), () -> cerca(filtro, postiMinimi));
+    }
+
+    private RispostaDTO cerca(FiltroTratte filtro, int postiMinimi) {
+        // 📇 Ricerca sull'indice di MemoriaTratte: niente copia né scansione di tutte le tratte
+        List<Tratta> filtrate = memoria.cerca(filtro);
+
+        // 💺 Posti liberi per classe dai contatori incrementali (nessuna scansione dei biglietti),
+        //    letti una sola volta per tratta sia per il filtro sia per la riga
+        // 🧩 Parte statica della tratta dalla cache dei frammenti: nessun DTO/TrattaGrpc ricostruito
+        List<TrattaDTO> risultati = new ArrayList<>(filtrate.size());
+        for (Tratta t : filtrate) {
+            Map<ClasseServizio, Integer> posti = postiLiberi(t, memoriaBiglietti);
+            if (postiMinimi > 0 && !postiSufficienti(t, posti, filtro.getClasse(), postiMinimi)) continue;
+            risultati.add(rigaRisultato(t, posti));
+        }
+
+        String messaggio = "Trovate " + risultati.size() + " tratte";
+        if (risultati.isEmpty()) {
+            messaggio += suggerimento(filtro.getPartenza()) + suggerimento(filtro.getArrivo());
+        }
+        return new RispostaDTO("OK", messaggio, risultati);
+    }
+
+    // 🔤 Stazione scritta in modo diverso da quella conosciuta: la si indica subito al client
+    private String suggerimento(String stazione) {
+        if (dizionario == null || stazione == null) return "";
+        String corretta = dizionario.correggi(stazione);
+        return corretta == null || corretta.equalsIgnoreCase(stazione) ? ""
+                : " | Stazione \"" + stazione + "\" non trovata, forse cercavi \"" + corretta + "\"?";
+    }
+
+    static TrattaDTO rigaRisultato(Tratta t, MemoriaBiglietti memoriaBiglietti) {
+        return rigaRisultato(t, postiLiberi(t, memoriaBiglietti));
+    }
+
+    static TrattaDTO rigaRisultato(Tratta t, Map<ClasseServizio, Integer> posti) {
+        return CacheTratteGrpc.getInstance().toDTO(t, posti);
+    }
+
+    // null se la memoria biglietti non è disponibile (risultati senza posti)
+    static Map<ClasseServizio, Integer> postiLiberi(Tratta t, MemoriaBiglietti memoriaBiglietti) {
+        return memoriaBiglietti == null ? null
+                : memoriaBiglietti.getPostiDisponibili(t.getId(), LayoutPosti.di(t.getTreno()));
+    }
+
+    /**
+     * Almeno {@code minimi} posti liberi nella classe richiesta o, senza classe,
+     * in tutto il treno (posti condivisi tra le classi contati una volta sola)
+     */
+    static boolean postiSufficienti(Tratta t, Map<ClasseServizio, Integer> posti, ClasseServizio classe, int minimi) {
+        if (classe != null) {
+            return posti.getOrDefault(classe, 0) >= minimi;
+        }
+        IntStream liberi = posti.values().stream().mapToInt(Integer::intValue);
+        int totale = LayoutPosti.di(t.getTreno()).isCondiviso() ? liberi.max().orElse(0) : liberi.sum();
+        return totale >= minimi;
+    }
 
-        // ✅ Gestisci il caso del messaggio extra (formato: "data;partenza;arrivo;fascia")
+    /**
+     * Filtro normalizzato dalla richiesta: i campi espliciti possono essere
+     * sovrascritti dal messaggio extra (formato: "data;partenza;arrivo;fascia")
+     *
+     * @throws IllegalArgumentException se il messaggio extra non è valido
+     */
+    static FiltroTratte filtroDa(RichiestaDTO richiesta) {
         LocalDate dataFiltro = richiesta.getData();
         String partenzaFiltro = richiesta.getPartenza();
         String arrivoFiltro = richiesta.getArrivo();
@@ -46,39 +153,18 @@ public class FiltraTratteCommand implements ServerCommand {
                     if (!parti[2].trim().isEmpty()) arrivoFiltro = parti[2].trim();
                     if (!parti[3].trim().isEmpty()) fasciaFiltro = parti[3].trim();
                 } catch (Exception e) {
-                    return new RispostaDTO("KO", "❌ Formato filtro non valido. Usa: data;partenza;arrivo;fascia", null);
+                    throw new IllegalArgumentException("❌ Formato filtro non valido. Usa: data;partenza;arrivo;fascia");
                 }
             }
         }
 
-        // ✅ Applica i filtri
-        final LocalDate dataFinale = dataFiltro;
-        final String partenzaFinale = partenzaFiltro;
-        final String arrivoFinale = arrivoFiltro;
-        final String fasciaFinale = fasciaFiltro;
-
-        List<Tratta> filtrate = tutte.stream()
-                .filter(t -> dataFinale == null || t.getData().equals(dataFinale))
-                .filter(t -> partenzaFinale == null || t.getStazionePartenza().equalsIgnoreCase(partenzaFinale))
-                .filter(t -> arrivoFinale == null || t.getStazioneArrivo().equalsIgnoreCase(arrivoFinale))
-                .filter(t -> richiesta.getTipoTreno() == null || t.getTreno().getTipologia().equalsIgnoreCase(richiesta.getTipoTreno()))
-                .filter(t -> richiesta.getClasseServizio() == null || t.getPrezzi().containsKey(richiesta.getClasseServizio()))
-                .filter(t -> {
-                    if (fasciaFinale == null) return true;
-                    LocalTime ora = t.getOra();
-                    return switch (fasciaFinale.toUpperCase(Locale.ROOT)) {
-                        case "MATTINA", "MATTINO" -> ora.isBefore(LocalTime.NOON);
-                        case "POMERIGGIO" -> ora.isAfter(LocalTime.NOON) && ora.isBefore(LocalTime.of(18, 0));
-                        case "SERA" -> ora.isAfter(LocalTime.of(18, 0));
-                        default -> true;
-                    };
-                })
-                .toList();
-
-        List<TrattaDTO> risultati = filtrate.stream()
-                .map(AssemblerTratta::toDTO)
-                .collect(Collectors.toList());
-
-        return new RispostaDTO("OK", "Trovate " + risultati.size() + " tratte", risultati);
+        return new FiltroTratte.Builder()
+                .data(dataFiltro)
+                .partenza(partenzaFiltro)
+                .arrivo(arrivoFiltro)
+                .tipoTreno(richiesta.getTipoTreno())
+                .classe(richiesta.getClasseServizio())
+                .fascia(fasciaFiltro)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package command;
+
+import dto.PaginaTratteDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import dto.TrattaDTO;
+import enums.ClasseServizio;
+import model.Prezzo;
+import model.Tratta;
+import persistence.FiltroTratte;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaTratte;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * 📄 FILTRA PAGINA COMMAND - Una pagina della ricerca tratte, ordinata per orario o prezzo
+ *
+ * Paginazione keyset: il token di continuazione contiene la chiave di ordinamento
+ * dell'ultima tratta restituita, non uno stato sul server. Per ogni pagina si
+ * scorre il risultato (già in cache in MemoriaTratte) tenendo solo le migliori
+ * N tratte oltre il token in un heap limitato: niente ordinamento completo e DTO
+ * costruiti solo per le tratte della pagina.
+ */
+public class FiltraTrattePaginaCommand implements ServerCommand {
+
+    public static final int DIMENSIONE_PAGINA_DEFAULT = 20;
+    public static final int DIMENSIONE_PAGINA_MAX = 100;
+
+    private enum Ordinamento { ORARIO, PREZZO }
+
+    /**
+     * Chiave di ordinamento: prezzo (0 per ORARIO), data, ora e id per rompere i pari merito.
+     * La tratta è null per la chiave letta dal token; i posti sono già letti
+     * solo se la richiesta filtra sui posti liberi.
+     */
+    private static final class Chiave {
+        final double prezzo;
+        final LocalDate data;
+        final LocalTime ora;
+        final UUID id;
+        final Tratta tratta;
+        Map<ClasseServizio, Integer> posti;
+
+        Chiave(double prezzo, LocalDate data, LocalTime ora, UUID id, Tratta tratta) {
+            this.prezzo = prezzo;
+            this.data = data;
+            this.ora = ora;
+            this.id = id;
+            this.tratta = tratta;
+        }
+    }
+
+    private static final Comparator<Chiave> ORDINE = Comparator.<Chiave>comparingDouble(c -> c.prezzo)
+            .thenComparing(c -> c.data)
+            .thenComparing(c -> c.ora)
+            .thenComparing(c -> c.id);
+
+    private final RichiestaDTO richiesta;
+    private final MemoriaTratte memoria;
+    private final MemoriaBiglietti memoriaBiglietti;
+
+    public FiltraTrattePaginaCommand(RichiestaDTO richiesta, MemoriaTratte memoria, MemoriaBiglietti memoriaBiglietti) {
+        this.richiesta = richiesta;
+        this.memoria = memoria;
+        this.memoriaBiglietti = memoriaBiglietti;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        FiltroTratte filtro;
+        Ordinamento ordinamento;
+        Chiave dopo;
+        try {
+            filtro = FiltraTratteCommand.filtroDa(richiesta);
+            ordinamento = leggiOrdinamento(richiesta.getOrdinamento());
+            dopo = leggiToken(richiesta.getTokenContinuazione(), ordinamento);
+        } catch (IllegalArgumentException e) {
+            return new RispostaDTO("KO", e.getMessage(), null);
+        }
+
+        int postiMinimi = richiesta.getPostiMinimi() == null ? 0 : richiesta.getPostiMinimi();
+        if (postiMinimi > 0 && memoriaBiglietti == null) {
+            return new RispostaDTO("KO", "❌ Filtro sui posti liberi non disponibile", null);
+        }
+
+        Integer dimensioneRichiesta = richiesta.getDimensionePagina();
+        int dimensione = dimensioneRichiesta == null || dimensioneRichiesta <= 0 ? DIMENSIONE_PAGINA_DEFAULT
+                : Math.min(dimensioneRichiesta, DIMENSIONE_PAGINA_MAX);
+
+        // Heap limitato: in testa la peggiore tra le migliori "dimensione" tratte oltre il token
+        PriorityQueue<Chiave> migliori = new PriorityQueue<>(dimensione + 1, ORDINE.reversed());
+        List<Tratta> risultati = memoria.cerca(filtro);
+        int totale = 0;
+        int rimanenti = 0;
+        for (Tratta t : risultati) {
+            Chiave c = chiave(t, ordinamento, filtro);
+            if (postiMinimi > 0) {
+                c.posti = FiltraTratteCommand.postiLiberi(t, memoriaBiglietti);
+                if (!FiltraTratteCommand.postiSufficienti(t, c.posti, filtro.getClasse(), postiMinimi)) continue;
+            }
+            totale++;
+            if (dopo != null && ORDINE.compare(c, dopo) <= 0) continue;
+            rimanenti++;
+            migliori.offer(c);
+            if (migliori.size() > dimensione) {
+                migliori.poll();
+            }
+        }
+
+        List<Chiave> pagina = new ArrayList<>(migliori);
+        pagina.sort(ORDINE);
+
+        List<TrattaDTO> righe = new ArrayList<>(pagina.size());
+        for (Chiave c : pagina) {
+            righe.add(c.posti != null ? FiltraTratteCommand.rigaRisultato(c.tratta, c.posti)
+                    : FiltraTratteCommand.rigaRisultato(c.tratta, memoriaBiglietti));
+        }
+
+        String token = rimanenti > pagina.size()
+                ? scriviToken(pagina.get(pagina.size() - 1), ordinamento)
+                : null;
+
+        return new RispostaDTO("OK", "Pagina di " + righe.size() + " tratte su " + totale,
+                new PaginaTratteDTO(righe, token, totale));
+    }
+
+    private static Chiave chiave(Tratta t, Ordinamento ordinamento, FiltroTratte filtro) {
+        double prezzo = ordinamento == Ordinamento.PREZZO ? prezzoDa(t, filtro.getClasse()) : 0.0;
+        return new Chiave(prezzo, t.getData(), t.getOra(), t.getId(), t);
+    }
+
+    private static Ordinamento leggiOrdinamento(String valore) {
+        if (valore == null || valore.isBlank()) {
+            return Ordinamento.ORARIO;
+        }
+        try {
+            return Ordinamento.valueOf(valore.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("❌ Ordinamento non valido: " + valore + " (usa ORARIO o PREZZO)");
+        }
+    }
+
+    // Prezzo intero della classe cercata, o il più basso tra le classi se non specificata
+    private static double prezzoDa(Tratta t, ClasseServizio classe) {
+        if (classe != null) {
+            Prezzo prezzo = t.getPrezzi().get(classe);
+            return prezzo != null ? prezzo.getIntero() : Double.MAX_VALUE;
+        }
+        return t.getPrezzi().values().stream()
+                .mapToDouble(Prezzo::getIntero)
+                .min()
+                .orElse(Double.MAX_VALUE);
+    }
+
+    private static String scriviToken(Chiave c, Ordinamento ordinamento) {
+        String testo = ordinamento + ";" + c.prezzo + ";" + c.data + ";" + c.ora + ";" + c.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(testo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Chiave leggiToken(String token, Ordinamento ordinamento) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parti = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8).split(";");
+            if (parti.length != 5 || !parti[0].equals(ordinamento.name())) {
+                throw new IllegalArgumentException();
+            }
+            return new Chiave(Double.parseDouble(parti[1]), LocalDate.parse(parti[2]),
+                    LocalTime.parse(parti[3]), UUID.fromString(parti[4]), null);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("❌ Token di continuazione non valido per l'ordinamento " + ordinamento);
+        }
+    }
+}
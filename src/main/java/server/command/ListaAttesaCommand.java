@@ -0,0 +1,64 @@
+package command;
+
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import enums.ClasseServizio;
+import model.Tratta;
+import persistence.MemoriaOsservatori;
+import persistence.MemoriaTratte;
+import scheduling.ListaAttesaPosti;
+
+import java.util.UUID;
+
+/**
+ * ⏳ LISTA ATTESA COMMAND - Iscrizione alla lista d'attesa di una tratta piena
+ *
+ * Il cliente viene iscritto anche alle notifiche della tratta: l'offerta del posto
+ * arriva come notifica POSTO_DISPONIBILE solo sugli stream che ha aperto con il
+ * proprio ID cliente. Se nel frattempo un posto è già libero l'offerta parte subito.
+ */
+public class ListaAttesaCommand implements ServerCommand {
+
+    private final RichiestaDTO richiesta;
+    private final ListaAttesaPosti listaAttesa;
+    private final MemoriaTratte memoriaTratte;
+    private final MemoriaOsservatori memoriaOsservatori;
+
+    public ListaAttesaCommand(RichiestaDTO richiesta, ListaAttesaPosti listaAttesa,
+                              MemoriaTratte memoriaTratte, MemoriaOsservatori memoriaOsservatori) {
+        this.richiesta = richiesta;
+        this.listaAttesa = listaAttesa;
+        this.memoriaTratte = memoriaTratte;
+        this.memoriaOsservatori = memoriaOsservatori;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        if (richiesta.getTratta() == null || richiesta.getIdCliente() == null) {
+            return new RispostaDTO("KO", "❌ Tratta o cliente non specificati", null);
+        }
+
+        UUID idCliente = UUID.fromString(richiesta.getIdCliente());
+        Tratta tratta = memoriaTratte.getTrattaById(richiesta.getTratta().getId());
+        if (tratta == null) {
+            return new RispostaDTO("KO", "❌ Tratta non trovata", null);
+        }
+
+        ClasseServizio classe = richiesta.getClasseServizio() != null ?
+                richiesta.getClasseServizio() : ClasseServizio.BASE;
+
+        try {
+            memoriaOsservatori.aggiungiOsservatore(tratta.getId(), idCliente);
+        } catch (Exception e) {
+            System.err.println("⚠️ Errore iscrizione notifiche lista attesa: " + e.getMessage());
+        }
+
+        int posizione = listaAttesa.iscrivi(tratta.getId(), idCliente, classe);
+        listaAttesa.offri(tratta.getId());
+
+        if (listaAttesa.getPosizione(tratta.getId(), idCliente) == 0) {
+            return new RispostaDTO("OK", "💺 Posto disponibile: trattenuto per te, completa l'acquisto", null);
+        }
+        return new RispostaDTO("OK", "⏳ In lista d'attesa " + classe + ", posizione " + posizione, null);
+    }
+}
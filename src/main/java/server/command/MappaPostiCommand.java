@@ -0,0 +1,89 @@
+package command;
+
+import dto.MappaPostiDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import enums.ClasseServizio;
+import model.LayoutPosti;
+import model.Tratta;
+import persistence.MappaPosti;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaTratte;
+import util.RichiesteInVolo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 💺 MAPPA POSTI COMMAND - Disponibilità posto per posto di una tratta
+ *
+ * Query command: restituisce una bitmap per classe (o una sola condivisa se il
+ * treno non suddivide i posti per classe), pronta da inviare così com'è al client.
+ */
+public class MappaPostiCommand implements ServerCommand {
+
+    private final RichiestaDTO richiesta;
+    private final MemoriaBiglietti memoriaBiglietti;
+    private final MemoriaTratte memoriaTratte;
+    private final RichiesteInVolo<UUID, RispostaDTO> inVolo;  // null = ogni richiesta calcola da sé
+
+    public MappaPostiCommand(RichiestaDTO richiesta, MemoriaBiglietti mb, MemoriaTratte mt) {
+        this(richiesta, mb, mt, null);
+    }
+
+    /**
+     * Richieste della mappa della stessa tratta in corso nello stesso momento
+     * condividono una sola copia della mappa tramite {@code inVolo}
+     */
+    public MappaPostiCommand(RichiestaDTO richiesta, MemoriaBiglietti mb, MemoriaTratte mt,
+                             RichiesteInVolo<UUID, RispostaDTO> inVolo) {
+        this.richiesta = richiesta;
+        this.memoriaBiglietti = mb;
+        this.memoriaTratte = mt;
+        this.inVolo = inVolo;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        if (richiesta.getTratta() == null) {
+            return new RispostaDTO("KO", "❌ Tratta non specificata", null);
+        }
+
+        Tratta tratta = memoriaTratte.getTrattaById(richiesta.getTratta().getId());
+        if (tratta == null) {
+            return new RispostaDTO("KO", "❌ Tratta non trovata", null);
+        }
+
+        return inVolo == null ? mappa(tratta) : inVolo.esegui(tratta.getId(), () -> mappa(tratta));
+    }
+
+    private RispostaDTO mappa(Tratta tratta) {
+        LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+        MappaPosti mappa = memoriaBiglietti.getMappaPosti(tratta.getId(), layout);
+
+        List<MappaPostiDTO.Segmento> segmenti = new ArrayList<>();
+        if (layout.isCondiviso()) {
+            segmenti.add(segmento(null, mappa, layout));
+        } else {
+            for (ClasseServizio classe : ClasseServizio.values()) {
+                if (layout.getNumeroPosti(classe) > 0) {
+                    segmenti.add(segmento(classe, mappa, layout));
+                }
+            }
+        }
+
+        MappaPostiDTO dto = new MappaPostiDTO(tratta.getId(), layout.getPostiPerCarrozza(), segmenti);
+        return new RispostaDTO("OK", "✅ Mappa posti: " + segmenti.size() + " segmenti", dto);
+    }
+
+    private static MappaPostiDTO.Segmento segmento(ClasseServizio classe, MappaPosti mappa, LayoutPosti layout) {
+        ClasseServizio chiave = classe != null ? classe : ClasseServizio.BASE;
+        return new MappaPostiDTO.Segmento(
+                classe,
+                layout.getPrimoIndice(chiave) + 1,
+                layout.getNumeroPosti(chiave),
+                mappa.getPostiLiberi(chiave),
+                mappa.getBitmap(chiave));
+    }
+}
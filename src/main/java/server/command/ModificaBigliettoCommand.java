@@ -8,42 +8,77 @@ import dto.RispostaDTO;
 import dto.TrattaDTO;
 import enums.StatoBiglietto;
 import model.Biglietto;
+import model.LayoutPosti;
 import model.Tratta;
+import model.Trattenuta;
 import persistence.MemoriaBiglietti;
 import persistence.MemoriaClientiFedeli;
 import persistence.MemoriaTratte;
 import persistence.MemoriaOsservatori;  // ✅ AGGIUNTO
+import scheduling.ProcessoreOutboxPagamenti;
 import service.BancaServiceClient;
+import service.BancaServiceClient.EsitoPagamento;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 🔒 MODIFICA BIGLIETTO COMMAND - CON SWITCH INTELLIGENTE NOTIFICHE
  *
  * NUOVO: Rimuove dalle notifiche vecchia tratta + iscrive a nuova tratta
+ *
+ * SAGA: prima si trattiene il posto sulla nuova tratta, poi si addebitano biglietto e
+ * penale in parallelo, infine si conferma la modifica sul posto trattenuto. Ogni passo
+ * fallito compensa i precedenti (rimborsi + rilascio del posto). Con treno pieno il
+ * cliente non viene mai addebitato.
+ *
+ * Ogni addebito ha una chiave derivata dall'id della saga. I rimborsi passano
+ * dall'outbox (RIMBORSO_IN_CORSO): registrati, ripetuti fino a conferma e chiesti
+ * anche per gli addebiti con esito incerto, che l'outbox chiarisce con la stessa chiave.
  */
 public class ModificaBigliettoCommand implements ServerCommand {
 
+    // Deve coprire i due addebiti; scaduta la trattenuta la conferma fallisce e si rimborsa
+    static final long DURATA_RISERVA_MS = 30_000;
+
+    // 📊 Metriche saga (condivise da tutte le modifiche)
+    private static final AtomicLong sagheAvviate = new AtomicLong();
+    private static final AtomicLong sagheCompletate = new AtomicLong();
+    private static final AtomicLong addebitiEvitati = new AtomicLong();
+    private static final AtomicLong compensazioni = new AtomicLong();
+
     private final RichiestaDTO richiesta;
     private final MemoriaBiglietti memoriaBiglietti;
     private final MemoriaClientiFedeli memoriaClientiFedeli;
     private final MemoriaTratte memoriaTratte;
     private final MemoriaOsservatori memoriaOsservatori;  // ✅ AGGIUNTO
     private final BancaServiceClient banca;
+    private final ProcessoreOutboxPagamenti outbox;
+    private final ExecutorService esecutorePagamenti;
 
+    /**
+     * @param esecutorePagamenti esecutore limitato (del handler) per i due addebiti in parallelo
+     */
     public ModificaBigliettoCommand(RichiestaDTO richiesta,
                                     MemoriaBiglietti memoriaBiglietti,
                                     MemoriaClientiFedeli memoriaClientiFedeli,
                                     MemoriaTratte memoriaTratte,
                                     MemoriaOsservatori memoriaOsservatori,  // ✅ NUOVO PARAMETRO
-                                    BancaServiceClient banca) {
+                                    BancaServiceClient banca,
+                                    ProcessoreOutboxPagamenti outbox,
+                                    ExecutorService esecutorePagamenti) {
         this.richiesta = richiesta;
         this.memoriaBiglietti = memoriaBiglietti;
         this.memoriaClientiFedeli = memoriaClientiFedeli;
         this.memoriaTratte = memoriaTratte;
         this.memoriaOsservatori = memoriaOsservatori;  // ✅ INJECTION
         this.banca = banca;
+        this.outbox = outbox;
+        this.esecutorePagamenti = esecutorePagamenti;
     }
 
     @Override
@@ -85,20 +120,39 @@ public class ModificaBigliettoCommand implements ServerCommand {
                 .getPrezzo(richiesta.getTipoPrezzo());
 
         double penale = (richiesta.getPenale() != null) ? richiesta.getPenale() : 5.0;
+        LayoutPosti layoutNuovo = LayoutPosti.di(nuovaTratta.getTreno());
+        sagheAvviate.incrementAndGet();
 
-        // 💳 Pagamenti
-        boolean pagatoBiglietto = banca.paga(idCliente.toString(), prezzoNuovo, "Pagamento nuovo biglietto");
-        if (!pagatoBiglietto) {
-            return new RispostaDTO("KO", "❌ Pagamento biglietto fallito", null);
+        // 1️⃣ RISERVA: il posto sulla nuova tratta prima di qualsiasi addebito
+        Trattenuta riserva = memoriaBiglietti.trattieniPosto(
+                nuovaTrattaId, idCliente, richiesta.getClasseServizio(), layoutNuovo, DURATA_RISERVA_MS);
+        if (riserva == null && !stessaTratta) {
+            addebitiEvitati.addAndGet(2);
+            System.out.println("🛑 SAGA MODIFICA: nuova tratta piena, nessun addebito");
+            return new RispostaDTO("KO", "❌ Modifica fallita: treno pieno", null);
         }
+        // Sulla stessa tratta il posto originale può bastare: decide la conferma atomica
+
+        // 2️⃣ ADDEBITI in parallelo (finiscono nello stesso batch verso la banca)
+        UUID idSaga = idSaga(idCliente);
+        Addebito biglietto = new Addebito(idAddebito(idSaga, "biglietto"), prezzoNuovo, "Pagamento nuovo biglietto");
+        Addebito penaleModifica = new Addebito(idAddebito(idSaga, "penale"), penale, "Pagamento penale modifica");
+        CompletableFuture<EsitoPagamento> pagamentoBiglietto = addebita(idCliente, biglietto);
+        CompletableFuture<EsitoPagamento> pagamentoPenale = addebita(idCliente, penaleModifica);
+        EsitoPagamento esitoBiglietto = pagamentoBiglietto.join();
+        EsitoPagamento esitoPenale = pagamentoPenale.join();
 
-        boolean pagatoPenale = banca.paga(idCliente.toString(), penale, "Pagamento penale modifica");
-        if (!pagatoPenale) {
-            return new RispostaDTO("KO", "❌ Pagamento penale fallito", null);
+        if (esitoBiglietto != EsitoPagamento.ADDEBITATO || esitoPenale != EsitoPagamento.ADDEBITATO) {
+            // 💸 Compensazione: rimborsa ciò che è (o può essere) stato addebitato e libera il posto
+            compensa(idCliente, nuovaTrattaId, riserva,
+                    esitoBiglietto != EsitoPagamento.RIFIUTATO ? biglietto : null,
+                    esitoPenale != EsitoPagamento.RIFIUTATO ? penaleModifica : null);
+            return new RispostaDTO("KO", esitoBiglietto == EsitoPagamento.ADDEBITATO
+                    ? "❌ Pagamento penale fallito" : "❌ Pagamento biglietto fallito", null);
         }
 
-        // 🔒 MODIFICA ATOMICA: Rimuovi vecchio + Aggiungi nuovo
-        Biglietto nuovo = new Biglietto.Builder()
+        // 3️⃣ CONFERMA: Rimuovi vecchio + Aggiungi nuovo sul posto trattenuto
+        Biglietto richiesto = new Biglietto.Builder()
                 .idCliente(idCliente)
                 .idTratta(nuovaTratta.getId())
                 .classe(richiesta.getClasseServizio())
@@ -109,12 +163,15 @@ public class ModificaBigliettoCommand implements ServerCommand {
                 .build();
 
         // Operazione atomica di modifica
-        int capienza = nuovaTratta.getTreno().getCapienzaTotale();
-        boolean modificaRiuscita = memoriaBiglietti.modificaBigliettoAtomico(originale.getId(), nuovo, capienza);
+        Biglietto nuovo = memoriaBiglietti.modificaConPosto(originale.getId(), richiesto, layoutNuovo,
+                riserva != null ? riserva.getId() : null);
 
-        if (!modificaRiuscita) {
+        if (nuovo == null) {
+            // 💸 Compensazione: biglietto e penale addebitati senza modifica
+            compensa(idCliente, nuovaTrattaId, riserva, biglietto, penaleModifica);
             return new RispostaDTO("KO", "❌ Modifica fallita: treno pieno o errore interno", null);
         }
+        sagheCompletate.incrementAndGet();
 
         System.out.println("✅ DEBUG MODIFICA: Modifica completata atomicamente");
 
@@ -161,9 +218,70 @@ public class ModificaBigliettoCommand implements ServerCommand {
                 nuovo.getClasse(),
                 richiesta.getTipoPrezzo(),
                 nuovo.getPrezzoPagato(),
-                StatoBiglietto.CONFERMATO
+                StatoBiglietto.CONFERMATO,
+                nuovo.getNumeroPosto()
         );
 
         return new RispostaDTO("OK", "✅ Biglietto modificato + notifiche aggiornate", bigliettoDTO);
     }
-}
\ No newline at end of file
+
+    private CompletableFuture<EsitoPagamento> addebita(UUID idCliente, Addebito addebito) {
+        return CompletableFuture
+                .supplyAsync(() -> banca.pagaConEsito(idCliente.toString(), addebito.importo(), addebito.causale(),
+                        addebito.id().toString()), esecutorePagamenti)
+                .exceptionally(e -> {
+                    // Non si sa se la richiesta è partita: la compensazione lo chiarisce con la stessa chiave
+                    System.err.println("❌ Addebito senza esito: " + e.getMessage());
+                    return EsitoPagamento.INCERTO;
+                });
+    }
+
+    /**
+     * 💸 Libera il posto e affida all'outbox il rimborso degli addebiti indicati (null = nessun rimborso)
+     */
+    private void compensa(UUID idCliente, UUID idTratta, Trattenuta riserva, Addebito... daRimborsare) {
+        compensazioni.incrementAndGet();
+        if (riserva != null) {
+            memoriaBiglietti.rilasciaTrattenuta(riserva.getId());
+        }
+        for (Addebito addebito : daRimborsare) {
+            if (addebito == null || addebito.importo() <= 0) {
+                continue;
+            }
+            Biglietto riferimento = new Biglietto.Builder()
+                    .idCliente(idCliente)
+                    .idTratta(idTratta)
+                    .classe(richiesta.getClasseServizio())
+                    .prezzoPagato(addebito.importo())
+                    .dataAcquisto(LocalDate.now())
+                    .tipoAcquisto("modifica")
+                    .build();
+            outbox.rimborsa(addebito.id(), riferimento, addebito.causale());
+        }
+    }
+
+    /**
+     * 🔑 Id della saga: stabile per (cliente, chiave di idempotenza), casuale senza chiave
+     */
+    private UUID idSaga(UUID idCliente) {
+        String chiave = richiesta.getChiaveIdempotenza();
+        if (chiave == null || chiave.isEmpty()) {
+            return UUID.randomUUID();
+        }
+        return UUID.nameUUIDFromBytes(("modifica|" + idCliente + "|" + chiave).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UUID idAddebito(UUID idSaga, String passo) {
+        return UUID.nameUUIDFromBytes((idSaga + "|" + passo).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Addebito(UUID id, double importo, String causale) {}
+
+    /**
+     * 📊 Metriche della saga di modifica
+     */
+    public static String getStatistiche() {
+        return String.format("Modifiche Stats: Avviate=%d, Completate=%d, AddebitiEvitati=%d, Compensazioni=%d",
+                sagheAvviate.get(), sagheCompletate.get(), addebitiEvitati.get(), compensazioni.get());
+    }
+}
@@ -0,0 +1,73 @@
+package command;
+
+import dto.ItinerarioDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import dto.TrattaDTO;
+import model.Itinerario;
+import model.Tratta;
+import persistence.FiltroTratte;
+import persistence.GrafoConnessioni;
+import persistence.MemoriaBiglietti;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 🧭 PIANIFICA VIAGGIO COMMAND - Itinerari con cambi tra partenza e arrivo
+ *
+ * Partenza, arrivo e data si leggono come in FILTRA (anche dal messaggio extra
+ * "data;partenza;arrivo;fascia"). Senza data, o per la data di oggi, si parte da adesso.
+ * Restituisce gli itinerari dal meno cambi al più veloce (fronte di Pareto).
+ */
+public class PianificaViaggioCommand implements ServerCommand {
+
+    private final RichiestaDTO richiesta;
+    private final GrafoConnessioni grafo;
+    private final MemoriaBiglietti memoriaBiglietti;
+
+    public PianificaViaggioCommand(RichiestaDTO richiesta, GrafoConnessioni grafo, MemoriaBiglietti memoriaBiglietti) {
+        this.richiesta = richiesta;
+        this.grafo = grafo;
+        this.memoriaBiglietti = memoriaBiglietti;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        FiltroTratte filtro;
+        try {
+            filtro = FiltraTratteCommand.filtroDa(richiesta);
+        } catch (IllegalArgumentException e) {
+            return new RispostaDTO("KO", e.getMessage(), null);
+        }
+        if (filtro.getPartenza() == null || filtro.getArrivo() == null) {
+            return new RispostaDTO("KO", "❌ Stazione di partenza e di arrivo obbligatorie", null);
+        }
+        if (filtro.getPartenza().equals(filtro.getArrivo())) {
+            return new RispostaDTO("KO", "❌ Partenza e arrivo coincidono", null);
+        }
+
+        LocalDateTime adesso = LocalDateTime.now();
+        LocalDate data = filtro.getData();
+        LocalDateTime da = data == null || !data.isAfter(adesso.toLocalDate()) ? adesso : data.atStartOfDay();
+
+        List<Itinerario> itinerari = grafo.pianifica(filtro.getPartenza(), filtro.getArrivo(), da,
+                GrafoConnessioni.MAX_TRATTE_DEFAULT);
+        if (itinerari.isEmpty()) {
+            return new RispostaDTO("KO", "❌ Nessun itinerario da " + filtro.getPartenza()
+                    + " a " + filtro.getArrivo(), null);
+        }
+
+        List<ItinerarioDTO> risultati = new ArrayList<>(itinerari.size());
+        for (Itinerario i : itinerari) {
+            List<TrattaDTO> tratte = new ArrayList<>(i.getTratte().size());
+            for (Tratta t : i.getTratte()) {
+                tratte.add(FiltraTratteCommand.rigaRisultato(t, memoriaBiglietti));
+            }
+            risultati.add(new ItinerarioDTO(tratte, i.getArriviStimati()));
+        }
+        return new RispostaDTO("OK", "Trovati " + risultati.size() + " itinerari", risultati);
+    }
+}
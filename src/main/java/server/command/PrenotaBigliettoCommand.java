@@ -9,6 +9,7 @@ import dto.TrattaDTO;
 import enums.StatoBiglietto;
 import enums.TipoPrezzo;
 import model.Biglietto;
+import model.LayoutPosti;
 import model.Tratta;
 import persistence.MemoriaBiglietti;
 import persistence.MemoriaClientiFedeli;
@@ -68,7 +69,7 @@ public class PrenotaBigliettoCommand implements ServerCommand {
                 .getPrezzo(tipoPrezzoEffettivo);
 
         // Crea biglietto prenotato
-        Biglietto biglietto = new Biglietto.Builder()
+        Biglietto richiesto = new Biglietto.Builder()
                 .idCliente(idCliente)
                 .idTratta(tratta.getId())
                 .classe(richiesta.getClasseServizio())
@@ -79,12 +80,11 @@ public class PrenotaBigliettoCommand implements ServerCommand {
                 .build();
 
         // 🔒 CONTROLLO ATOMICO CAPIENZA + PRENOTAZIONE
-        int capienza = tratta.getTreno().getCapienzaTotale();
-        boolean postoRiservato = memoriaBiglietti.aggiungiSeSpazioDiponibile(biglietto, capienza);
+        Biglietto biglietto = memoriaBiglietti.riservaPosto(richiesto, LayoutPosti.di(tratta.getTreno()));
 
-        if (!postoRiservato) {
+        if (biglietto == null) {
             System.out.println("❌ DEBUG PRENOTA: Treno pieno");
-            return new RispostaDTO("KO", "❌ Treno pieno, nessun posto disponibile", null);
+            return new RispostaDTO("KO", "❌ Treno pieno, nessun posto disponibile (richiedi LISTA_ATTESA per essere avvisato)", null);
         }
 
         System.out.println("✅ DEBUG PRENOTA: Posto riservato per prenotazione");
@@ -116,7 +116,8 @@ public class PrenotaBigliettoCommand implements ServerCommand {
                 biglietto.getClasse(),
                 tipoPrezzoEffettivo,
                 biglietto.getPrezzoPagato(),
-                StatoBiglietto.NON_CONFERMATO
+                StatoBiglietto.NON_CONFERMATO,
+                biglietto.getNumeroPosto()
         );
 
         return new RispostaDTO("OK", "✅ Prenotazione effettuata + notifiche attive", bigliettoDTO);
@@ -3,8 +3,18 @@ package command;
 import dto.RichiestaDTO;
 import dto.RispostaDTO;
 import command.*;
+import factory.TrattaFactoryConcrete;
 import persistence.*;
+import scheduling.ListaAttesaPosti;
+import scheduling.ProcessoreOutboxPagamenti;
 import service.BancaServiceClient;
+import util.CacheTratteGrpc;
+import util.RichiesteInVolo;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 🔒 SERVER REQUEST HANDLER THREAD-SAFE - OBSERVER REFACTORED
@@ -24,20 +34,71 @@ public class ServerRequestHandler {
     private final MemoriaTratte memoriaTratte;
     private final BancaServiceClient banca;
     private final MemoriaOsservatori memoriaOsservatori;
+    private final ListaAttesaPosti listaAttesa;
+    private final ProcessoreOutboxPagamenti outbox;
+    private final GrafoConnessioni grafoConnessioni;
+    private final DizionarioStazioni dizionarioStazioni;
+    private final CalendarioPrezzi calendarioPrezzi;
+    private final TabellonePartenze tabellonePartenze;
+
+    // 🛫 Ricerche e mappe posti identiche in corso nello stesso momento: un solo calcolo
+    private final RichiesteInVolo<List<?>, RispostaDTO> ricercheInVolo = new RichiesteInVolo<>("RicercheInVolo");
+    private final RichiesteInVolo<UUID, RispostaDTO> mappePostiInVolo = new RichiesteInVolo<>("MappePostiInVolo");
+
+    // 💳 Addebiti paralleli delle saghe MODIFICA: pool limitato, anche durante una tempesta di modifiche
+    private static final int THREAD_PAGAMENTI_MODIFICA = 16;
+    private final ExecutorService pagamentiModifica = Executors.newFixedThreadPool(THREAD_PAGAMENTI_MODIFICA, r -> {
+        Thread t = new Thread(r, "modifica-pagamenti");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Durata delle trattenute TRATTIENI (lease), configurabile dal main
+    private volatile long durataTrattenutaMs = TrattieniPostoCommand.DURATA_DEFAULT_MS;
 
     /**
      * Constructor SEMPLIFICATO - Senza EventDispatcher per persistenza
      *
      * I Command ricevono solo le dipendenze necessarie per le loro responsabilità core.
      * Gli eventi per notifiche cross-domain sono gestiti via ListaEventiS quando necessario.
+     * La lista d'attesa è propria (avviata qui); l'outbox è del chiamante, che ne sceglie
+     * il journal e decide se eseguire il recupero con {@link ProcessoreOutboxPagamenti#avvia()}.
+     */
+    public ServerRequestHandler(MemoriaBiglietti mb, MemoriaClientiFedeli mc, MemoriaTratte mt,
+                                BancaServiceClient banca, MemoriaOsservatori mobs, ProcessoreOutboxPagamenti outbox) {
+        this(mb, mc, mt, banca, mobs, new ListaAttesaPosti(mb, mt), outbox);
+        this.listaAttesa.avvia();
+    }
+
+    /**
+     * Constructor completo: lista d'attesa e outbox pagamenti (recupero già eseguito dal main)
      */
     public ServerRequestHandler(MemoriaBiglietti mb, MemoriaClientiFedeli mc, MemoriaTratte mt,
-                                BancaServiceClient banca,MemoriaOsservatori mobs) {
+                                BancaServiceClient banca, MemoriaOsservatori mobs, ListaAttesaPosti listaAttesa,
+                                ProcessoreOutboxPagamenti outbox) {
         this.memoriaBiglietti = mb;
         this.memoriaClienti = mc;
         this.memoriaTratte = mt;
         this.banca = banca;
         this.memoriaOsservatori=mobs;
+        this.listaAttesa = listaAttesa;
+        this.outbox = outbox;
+
+        // 🧩 I frammenti TrattaGrpc delle tratte modificate o rimosse vanno ricostruiti
+        mt.aggiungiAscoltatoreModifiche(CacheTratteGrpc.getInstance()::invalida);
+
+        // 🧭 Grafo delle connessioni per PIANIFICA_VIAGGIO, aggiornato dagli stessi avvisi
+        this.grafoConnessioni = new GrafoConnessioni(mt);
+
+        // 🔤 Stazioni conosciute (configurazione e tratte) per suggerimenti e correzioni
+        this.dizionarioStazioni = new DizionarioStazioni(
+                TrattaFactoryConcrete.TrattaGenerationConfig.defaultConfig().getStazioni(), mt);
+
+        // 📅 Prezzo minimo per giorno e rotta, aggiornato dagli stessi avvisi
+        this.calendarioPrezzi = new CalendarioPrezzi(mt);
+
+        // 🚉 Tabelloni partenze per stazione: modifiche tratte e vendite diventano variazioni
+        this.tabellonePartenze = new TabellonePartenze(mt, mb);
     }
 
     /**
@@ -57,7 +118,19 @@ public class ServerRequestHandler {
                     System.out.println("✅ DEBUG: Creando AcquistaBigliettoCommand THREAD-SAFE");
                     // ✅ REFACTORED: Senza EventDispatcher - Command ha responsabilità diretta
                     yield new AcquistaBigliettoCommand(
-                            richiesta, memoriaBiglietti, memoriaClienti, memoriaTratte,memoriaOsservatori, banca
+                            richiesta, memoriaBiglietti, memoriaClienti, memoriaTratte, memoriaOsservatori, outbox
+                    );
+                }
+                case "ACQUISTA_GRUPPO" -> {
+                    System.out.println("✅ DEBUG: Creando AcquistaGruppoCommand THREAD-SAFE");
+                    yield new AcquistaGruppoCommand(
+                            richiesta, memoriaBiglietti, memoriaClienti, memoriaTratte, memoriaOsservatori, banca
+                    );
+                }
+                case "CHECKOUT_CARRELLO" -> {
+                    System.out.println("✅ DEBUG: Creando CheckoutCarrelloCommand THREAD-SAFE");
+                    yield new CheckoutCarrelloCommand(
+                            richiesta, memoriaBiglietti, memoriaClienti, memoriaTratte, memoriaOsservatori, banca
                     );
                 }
                 case "PRENOTA" -> {
@@ -71,9 +144,17 @@ public class ServerRequestHandler {
                     System.out.println("✅ DEBUG: Creando ModificaBigliettoCommand THREAD-SAFE");
                     // ✅ REFACTORED: Senza EventDispatcher - Command ha responsabilità diretta
                     yield new ModificaBigliettoCommand(
-                            richiesta, memoriaBiglietti, memoriaClienti, memoriaTratte,memoriaOsservatori,banca);
+                            richiesta, memoriaBiglietti, memoriaClienti, memoriaTratte, memoriaOsservatori, banca,
+                            outbox, pagamentiModifica);
                 }
                 case "CONFERMA" -> {
+                    if (richiesta.getBiglietto() == null && richiesta.getTokenTrattenuta() != null) {
+                        // Checkout in due fasi: la conferma di una trattenuta è un acquisto del posto trattenuto
+                        System.out.println("✅ DEBUG: CONFERMA trattenuta → AcquistaBigliettoCommand");
+                        yield new AcquistaBigliettoCommand(
+                                richiesta, memoriaBiglietti, memoriaClienti, memoriaTratte, memoriaOsservatori, outbox
+                        );
+                    }
                     System.out.println("✅ DEBUG: Creando ConfermaBigliettoCommand THREAD-SAFE");
                     // ✅ REFACTORED: Senza EventDispatcher - Command ha responsabilità diretta
                     yield new ConfermaBigliettoCommand(richiesta, memoriaBiglietti,banca,memoriaTratte,memoriaOsservatori);
@@ -86,7 +167,36 @@ public class ServerRequestHandler {
                 case "RICERCA_TRATTE", "FILTRA" -> {
                     System.out.println("✅ DEBUG: Creando FiltraTratteCommand");
                     // ✅ Query command - nessuna persistenza necessaria
-                    yield new FiltraTratteCommand(richiesta, memoriaTratte);
+                    yield new FiltraTratteCommand(richiesta, memoriaTratte, memoriaBiglietti, dizionarioStazioni,
+                            ricercheInVolo);
+                }
+                case "FILTRA_PAGINA" -> {
+                    System.out.println("✅ DEBUG: Creando FiltraTrattePaginaCommand");
+                    yield new FiltraTrattePaginaCommand(richiesta, memoriaTratte, memoriaBiglietti);
+                }
+                case "SUGGERISCI_STAZIONI" -> {
+                    System.out.println("✅ DEBUG: Creando SuggerisciStazioniCommand");
+                    yield new SuggerisciStazioniCommand(richiesta, dizionarioStazioni);
+                }
+                case "CALENDARIO_PREZZI" -> {
+                    System.out.println("✅ DEBUG: Creando CalendarioPrezziCommand");
+                    yield new CalendarioPrezziCommand(richiesta, calendarioPrezzi);
+                }
+                case "PIANIFICA_VIAGGIO" -> {
+                    System.out.println("✅ DEBUG: Creando PianificaViaggioCommand");
+                    yield new PianificaViaggioCommand(richiesta, grafoConnessioni, memoriaBiglietti);
+                }
+                case "MAPPA_POSTI" -> {
+                    System.out.println("✅ DEBUG: Creando MappaPostiCommand");
+                    yield new MappaPostiCommand(richiesta, memoriaBiglietti, memoriaTratte, mappePostiInVolo);
+                }
+                case "TRATTIENI" -> {
+                    System.out.println("✅ DEBUG: Creando TrattieniPostoCommand");
+                    yield new TrattieniPostoCommand(richiesta, memoriaBiglietti, memoriaTratte, durataTrattenutaMs);
+                }
+                case "LISTA_ATTESA" -> {
+                    System.out.println("✅ DEBUG: Creando ListaAttesaCommand");
+                    yield new ListaAttesaCommand(richiesta, listaAttesa, memoriaTratte, memoriaOsservatori);
                 }
                 default -> {
                     System.out.println("❌ DEBUG: Tipo comando non riconosciuto: " + tipo);
@@ -112,14 +222,38 @@ public class ServerRequestHandler {
         }
     }
 
+    /**
+     * 🎉 Promozioni pubbliche applicate al calendario prezzi (collegate dal main)
+     */
+    public void collegaPromozioni(MemoriaPromozioni memoriaPromozioni) {
+        calendarioPrezzi.collegaPromozioni(memoriaPromozioni);
+    }
+
+    public TabellonePartenze getTabellonePartenze() {
+        return tabellonePartenze;
+    }
+
+    public void setDurataTrattenutaMs(long durataTrattenutaMs) {
+        if (durataTrattenutaMs <= 0) {
+            throw new IllegalArgumentException("Durata trattenuta non valida: " + durataTrattenutaMs);
+        }
+        this.durataTrattenutaMs = durataTrattenutaMs;
+    }
+
     /**
      * Metodo di utilità per diagnostica
      */
     public String getStatistiche() {
-        return String.format("Handler Stats: Biglietti=%d, Tratte=%d, ClientiFedeli=%s",
+        return String.format("Handler Stats: Biglietti=%d, Tratte=%d, ClientiFedeli=%s | %s",
                 memoriaBiglietti.getTuttiIBiglietti().size(),
                 memoriaTratte.getTutteTratte().size(),
-                "N/A" // MemoriaClientiFedeli non ha metodo getSize()
+                "N/A", // MemoriaClientiFedeli non ha metodo getSize()
+                ModificaBigliettoCommand.getStatistiche() + " | " + outbox.getStatistiche()
+                        + " | " + memoriaTratte.getCacheRicerche().getStatistiche()
+                        + " | " + CacheTratteGrpc.getInstance().getStatistiche()
+                        + " | " + tabellonePartenze.getStatistiche()
+                        + " | " + ricercheInVolo.getStatistiche()
+                        + " | " + mappePostiInVolo.getStatistiche()
         );
     }
 }
\ No newline at end of file
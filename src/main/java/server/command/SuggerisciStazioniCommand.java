@@ -0,0 +1,39 @@
+package command;
+
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import persistence.DizionarioStazioni;
+
+import java.util.List;
+
+/**
+ * 🔤 SUGGERISCI STAZIONI COMMAND - Autocompletamento e correzione dei nomi di stazione
+ *
+ * Il testo digitato arriva nel messaggio extra (o in partenza); la dimensione
+ * pagina, se indicata, è il numero massimo di suggerimenti.
+ */
+public class SuggerisciStazioniCommand implements ServerCommand {
+
+    private final RichiestaDTO richiesta;
+    private final DizionarioStazioni dizionario;
+
+    public SuggerisciStazioniCommand(RichiestaDTO richiesta, DizionarioStazioni dizionario) {
+        this.richiesta = richiesta;
+        this.dizionario = dizionario;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        String testo = richiesta.getMessaggioExtra() != null && !richiesta.getMessaggioExtra().isBlank()
+                ? richiesta.getMessaggioExtra()
+                : richiesta.getPartenza();
+        if (testo == null || testo.isBlank()) {
+            return new RispostaDTO("KO", "❌ Testo da completare mancante", null);
+        }
+
+        Integer limite = richiesta.getDimensionePagina();
+        List<String> suggerimenti = dizionario.suggerisci(testo,
+                limite == null ? DizionarioStazioni.SUGGERIMENTI_DEFAULT : limite);
+        return new RispostaDTO("OK", suggerimenti.size() + " stazioni suggerite", suggerimenti);
+    }
+}
@@ -0,0 +1,71 @@
+package command;
+
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import dto.TrattenutaDTO;
+import enums.ClasseServizio;
+import model.LayoutPosti;
+import model.Tratta;
+import model.Trattenuta;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaTratte;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * 🎟️ TRATTIENI POSTO COMMAND - Prima fase del checkout
+ *
+ * Blocca un posto per la durata del lease e restituisce un token che ACQUISTA o
+ * CONFERMA riscattano. La trattenuta vive solo in memoria: un checkout abbandonato
+ * non scrive nulla su disco e il posto torna libero alla scadenza.
+ */
+public class TrattieniPostoCommand implements ServerCommand {
+
+    public static final long DURATA_DEFAULT_MS = 60_000;
+
+    private final RichiestaDTO richiesta;
+    private final MemoriaBiglietti memoriaBiglietti;
+    private final MemoriaTratte memoriaTratte;
+    private final long durataMs;
+
+    public TrattieniPostoCommand(RichiestaDTO richiesta, MemoriaBiglietti mb, MemoriaTratte mt, long durataMs) {
+        this.richiesta = richiesta;
+        this.memoriaBiglietti = mb;
+        this.memoriaTratte = mt;
+        this.durataMs = durataMs;
+    }
+
+    @Override
+    public RispostaDTO esegui() {
+        if (richiesta.getTratta() == null || richiesta.getIdCliente() == null) {
+            return new RispostaDTO("KO", "❌ Tratta o cliente non specificati", null);
+        }
+
+        Tratta tratta = memoriaTratte.getTrattaById(richiesta.getTratta().getId());
+        if (tratta == null) {
+            return new RispostaDTO("KO", "❌ Tratta non trovata", null);
+        }
+
+        ClasseServizio classe = richiesta.getClasseServizio() != null ?
+                richiesta.getClasseServizio() : ClasseServizio.BASE;
+
+        Trattenuta trattenuta = memoriaBiglietti.trattieniPosto(
+                tratta.getId(), UUID.fromString(richiesta.getIdCliente()), classe,
+                LayoutPosti.di(tratta.getTreno()), durataMs);
+
+        if (trattenuta == null) {
+            return new RispostaDTO("KO", "❌ Treno pieno, nessun posto disponibile (richiedi LISTA_ATTESA per essere avvisato)", null);
+        }
+
+        LocalDateTime scadenza = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(trattenuta.getScadenzaMillis()), ZoneId.systemDefault());
+        TrattenutaDTO dto = new TrattenutaDTO(
+                trattenuta.getId(), tratta.getId(), classe, trattenuta.getNumeroPosto(), scadenza);
+
+        return new RispostaDTO("OK", "🎟️ Posto " + trattenuta.getNumeroPosto() + " trattenuto per " +
+                durataMs / 1000 + "s", dto);
+    }
+}
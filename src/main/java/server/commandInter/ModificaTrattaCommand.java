@@ -106,9 +106,11 @@ public class ModificaTrattaCommand implements ServerConsoleCommand {
                 prezziFinali  // ✅ USA PREZZI AGGIORNATI
         );
 
-        // ✅ OPERAZIONE ATOMICA: Rimuovi vecchia + Aggiungi nuova
-        memoriaTratte.rimuoviTratteDelGiorno(tratta.getData());
-        memoriaTratte.aggiungiTratta(trattaModificata);
+        // ✅ OPERAZIONE ATOMICA: sostituisce solo questa tratta e invalida le ricerche in cache che la includono
+        if (!memoriaTratte.sostituisciTratta(trattaModificata)) {
+            System.out.println("❌ Tratta rimossa nel frattempo, modifica annullata.");
+            return;
+        }
 
         // ✅ NOTIFICA CLIENTI della modifica
         ListaEventiS.getInstance().notifica(new EventoModificaTratta(trattaModificata.getId()));
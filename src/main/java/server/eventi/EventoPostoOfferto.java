@@ -0,0 +1,23 @@
+package eventi;
+
+import model.Trattenuta;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+public class EventoPostoOfferto implements EventoS {
+    private final Trattenuta trattenuta;
+
+    public EventoPostoOfferto(Trattenuta trattenuta) {
+        this.trattenuta = trattenuta;
+    }
+
+    @Override
+    public TipoEvento getTipo() { return TipoEvento.POSTO_OFFERTO; }
+
+    @Override
+    public Set<UUID> getDestinatari() { return Collections.singleton(trattenuta.getIdCliente()); }
+
+    public Trattenuta getTrattenuta() { return trattenuta; }
+}
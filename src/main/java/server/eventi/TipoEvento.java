@@ -5,5 +5,6 @@ public enum TipoEvento {
     PROMO_FEDELTA,
     PROMO_GENERALE,
     PROMO_TRATTA,
-    ACQUISTO_CARTA_FEDELTA
+    ACQUISTO_CARTA_FEDELTA,
+    POSTO_OFFERTO
 }
\ No newline at end of file
@@ -15,6 +15,10 @@ import java.util.*;
 
 public class TrattaFactoryConcrete implements TrattaFactory {
 
+    // 💺 Quote di posti riservate alle classi superiori, il resto è BASE
+    private static final double QUOTA_GOLD = 0.15;
+    private static final double QUOTA_ARGENTO = 0.25;
+
     private final TrattaGenerationConfig config;
     private final Random random;
     private final MemoriaPromozioni memoriaPromozioni;  // ✅ AGGIUNTO
@@ -150,10 +154,13 @@ public class TrattaFactoryConcrete implements TrattaFactory {
         List<String> tipiTreno = config.getTipiTreno();
         String tipo = tipiTreno.get(random.nextInt(tipiTreno.size()));
 
+        int capienza = config.getCapienzaBase() + random.nextInt(50);
+
         return new Treno.Builder()
                 .numero(config.getNumeroTrenoBase() + indice)
                 .tipologia(tipo)
-                .capienzaTotale(config.getCapienzaBase() + random.nextInt(50))
+                .capienzaTotale(capienza)
+                .postiPerClasse(suddividiPerClasse(capienza))
                 .wifiDisponibile(random.nextBoolean())
                 .preseElettriche(random.nextBoolean())
                 .ariaCondizionata(true)
@@ -163,6 +170,16 @@ public class TrattaFactoryConcrete implements TrattaFactory {
                 .build();
     }
 
+    private static Map<ClasseServizio, Integer> suddividiPerClasse(int capienza) {
+        int gold = (int) (capienza * QUOTA_GOLD);
+        int argento = (int) (capienza * QUOTA_ARGENTO);
+        Map<ClasseServizio, Integer> posti = new EnumMap<>(ClasseServizio.class);
+        posti.put(ClasseServizio.GOLD, gold);
+        posti.put(ClasseServizio.ARGENTO, argento);
+        posti.put(ClasseServizio.BASE, capienza - gold - argento);
+        return posti;
+    }
+
     private double getMoltiplicatoreClasse(ClasseServizio classe) {
         return switch (classe) {
             case BASE -> 1.0;
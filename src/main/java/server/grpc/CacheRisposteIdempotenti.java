@@ -0,0 +1,139 @@
+package grpc;
+
+import dto.RispostaDTO;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 🔁 CACHE RISPOSTE IDEMPOTENTI - Deduplica dei retry dei client
+ *
+ * Una richiesta con chiave di idempotenza viene elaborata una sola volta per
+ * cliente: i retry con la stessa chiave ricevono la {@link RispostaGrpc} salvata,
+ * senza consumare un altro posto né un altro pagamento. Un duplicato che arriva
+ * mentre l'originale è ancora in corso attende lo stesso esito.
+ *
+ * - Limitata a {@code maxVoci}: oltre, si scartano le voci più vecchie
+ * - Ogni voce scade dopo {@code ttlMs}; con TTL uniforme l'ordine di inserimento
+ *   coincide con l'ordine di scadenza, quindi basta controllare la testa della coda
+ * - Le elaborazioni terminate con eccezione non vengono ricordate (il retry riesegue)
+ * - Nemmeno le risposte provvisorie ({@code IN_ELABORAZIONE}): il retry chiede di
+ *   nuovo l'esito, che l'elaborazione ritrova a partire dalla stessa chiave
+ */
+public class CacheRisposteIdempotenti {
+
+    public static final int MAX_VOCI_DEFAULT = 10_000;
+    public static final long TTL_MS_DEFAULT = TimeUnit.MINUTES.toMillis(10);
+
+    private final int maxVoci;
+    private final long ttlNanos;
+    private final Map<String, Voce> voci = new ConcurrentHashMap<>();
+    private final Queue<Voce> ordineInserimento = new ConcurrentLinkedQueue<>();
+
+    // Statistiche
+    private final AtomicLong elaborate = new AtomicLong();
+    private final AtomicLong duplicati = new AtomicLong();
+    private final AtomicLong scadute = new AtomicLong();
+    private final AtomicLong scartate = new AtomicLong();
+
+    public CacheRisposteIdempotenti() {
+        this(MAX_VOCI_DEFAULT, TTL_MS_DEFAULT);
+    }
+
+    public CacheRisposteIdempotenti(int maxVoci, long ttlMs) {
+        this.maxVoci = Math.max(1, maxVoci);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ttlMs));
+    }
+
+    /**
+     * 🔒 Elabora la richiesta una sola volta per (cliente, chiave)
+     */
+    public RispostaGrpc eseguiUnaVolta(String idCliente, String chiave, Supplier<RispostaGrpc> elaborazione) {
+        long adesso = System.nanoTime();
+        rimuoviScadute(adesso);
+
+        String chiaveCompleta = idCliente + "|" + chiave;
+        Voce nuova = new Voce(chiaveCompleta, adesso + ttlNanos);
+        Voce voce = voci.compute(chiaveCompleta, (k, esistente) ->
+                esistente == null || esistente.isScaduta(adesso) ? nuova : esistente);
+
+        if (voce != nuova) {
+            duplicati.incrementAndGet();
+            System.out.println("🔁 Richiesta duplicata (chiave " + chiave + "): restituita la risposta salvata");
+            try {
+                return voce.risposta.join();
+            } catch (CompletionException e) {
+                // L'originale è fallito ed è stato rimosso: si elabora da capo
+                return eseguiUnaVolta(idCliente, chiave, elaborazione);
+            }
+        }
+
+        ordineInserimento.add(nuova);
+        elaborate.incrementAndGet();
+        limitaDimensione();
+
+        try {
+            RispostaGrpc risposta = elaborazione.get();
+            if (RispostaDTO.ESITO_IN_ELABORAZIONE.equals(risposta.getEsito())) {
+                voci.remove(chiaveCompleta, nuova);
+            }
+            nuova.risposta.complete(risposta);
+            return risposta;
+        } catch (RuntimeException e) {
+            voci.remove(chiaveCompleta, nuova);
+            nuova.risposta.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void rimuoviScadute(long adesso) {
+        Voce testa;
+        while ((testa = ordineInserimento.peek()) != null && testa.isScaduta(adesso)) {
+            if (ordineInserimento.remove(testa) && voci.remove(testa.chiave, testa)) {
+                scadute.incrementAndGet();
+            }
+        }
+    }
+
+    private void limitaDimensione() {
+        while (voci.size() > maxVoci) {
+            Voce vecchia = ordineInserimento.poll();
+            if (vecchia == null) {
+                break;
+            }
+            if (voci.remove(vecchia.chiave, vecchia)) {
+                scartate.incrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+        return voci.size();
+    }
+
+    public String getStatistiche() {
+        return String.format("Idempotenza: %d voci | Elaborate: %d | Duplicati serviti: %d | Scadute: %d | Scartate: %d",
+                voci.size(), elaborate.get(), duplicati.get(), scadute.get(), scartate.get());
+    }
+
+    private static final class Voce {
+        private final String chiave;
+        private final long scadenzaNanos;
+        private final CompletableFuture<RispostaGrpc> risposta = new CompletableFuture<>();
+
+        private Voce(String chiave, long scadenzaNanos) {
+            this.chiave = chiave;
+            this.scadenzaNanos = scadenzaNanos;
+        }
+
+        private boolean isScaduta(long adesso) {
+            return adesso - scadenzaNanos >= 0;
+        }
+    }
+}
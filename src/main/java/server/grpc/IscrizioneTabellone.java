@@ -0,0 +1,69 @@
+package grpc;
+
+import Assembler.AssemblerTratta;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import persistence.TabellonePartenze;
+import util.GrpcMapper;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🚉 ISCRIZIONE TABELLONE - Stream server delle variazioni di un tabellone partenze
+ *
+ * - Prima le prossime partenze della stazione (INIZIALE), poi solo le variazioni
+ * - Lo stream resta aperto finché il client non annulla la chiamata: a quel punto
+ *   l'iscrizione viene tolta dal tabellone
+ * - TabellonePartenze consegna in ordine e da un thread alla volta, quindi
+ *   lo StreamObserver non viene mai usato in concorrenza
+ */
+public class IscrizioneTabellone {
+
+    private final ServerCallStreamObserver<VariazioneTabelloneGrpc> variazioni;
+    private final TabellonePartenze tabellone;
+    private final IscrizioneTabelloneGrpc richiesta;
+
+    public IscrizioneTabellone(IscrizioneTabelloneGrpc richiesta,
+                               StreamObserver<VariazioneTabelloneGrpc> variazioni,
+                               TabellonePartenze tabellone) {
+        this.variazioni = (ServerCallStreamObserver<VariazioneTabelloneGrpc>) variazioni;
+        this.tabellone = tabellone;
+        this.richiesta = richiesta;
+    }
+
+    public void avvia() {
+        if (richiesta.getStazione().isBlank()) {
+            variazioni.onError(io.grpc.Status.INVALID_ARGUMENT
+                    .withDescription("Stazione mancante").asRuntimeException());
+            return;
+        }
+
+        AtomicReference<Runnable> annulla = new AtomicReference<>();
+        variazioni.setOnCancelHandler(() -> {
+            Runnable a = annulla.get();
+            if (a != null) a.run();
+            System.out.println("🚉 Tabellone " + richiesta.getStazione() + ": iscrizione chiusa dal client");
+        });
+
+        annulla.set(tabellone.iscrivi(richiesta.getStazione(), richiesta.getMaxPartenze(), this::invia));
+        // Annullata mentre si inviava l'istantanea: il cancel handler non aveva ancora l'iscrizione
+        if (variazioni.isCancelled()) {
+            annulla.get().run();
+        }
+        System.out.println("🚉 Nuovo iscritto al tabellone partenze di " + richiesta.getStazione());
+    }
+
+    private void invia(TabellonePartenze.Variazione variazione) {
+        if (variazioni.isCancelled()) return;
+
+        TabellonePartenze.Riga riga = variazione.getRiga();
+        variazioni.onNext(VariazioneTabelloneGrpc.newBuilder()
+                .setTipo(variazione.getTipo().name())
+                .setTratta(GrpcMapper.toGrpc(AssemblerTratta.toDTO(riga.getTratta())))
+                .setPostiLiberi(riga.getPostiLiberi() != null ? riga.getPostiLiberi() : -1)
+                .setMinutiRitardo(variazione.getMinutiRitardo())
+                .setTimestamp(LocalDateTime.now().toString())
+                .build());
+    }
+}
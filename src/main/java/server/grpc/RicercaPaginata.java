@@ -0,0 +1,77 @@
+package grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.function.Function;
+
+/**
+ * 📄 RICERCA PAGINATA - Stream server di pagine FILTRA_PAGINA
+ *
+ * - Una pagina viene calcolata solo quando il trasporto è pronto a spedirla
+ *   (onReadyHandler): un client lento o che smette di leggere non fa
+ *   accumulare pagine in memoria sul server
+ * - Ogni pagina riparte dal token di continuazione della precedente
+ * - Lo stream termina all'ultima pagina, dopo {@code maxPagine} pagine,
+ *   al primo KO o quando il client annulla la chiamata
+ */
+public class RicercaPaginata implements Runnable {
+
+    private final ServerCallStreamObserver<RispostaGrpc> risposte;
+    private final Function<RichiestaGrpc, RispostaGrpc> elaborazione;
+    private final RichiestaGrpc richiesta;
+    private final int maxPagine;
+
+    // Stato dello stream (protetto da this)
+    private String token;
+    private int inviate = 0;
+    private boolean finita = false;
+
+    public RicercaPaginata(RichiestaGrpc richiesta,
+                           StreamObserver<RispostaGrpc> risposte,
+                           Function<RichiestaGrpc, RispostaGrpc> elaborazione) {
+        this.risposte = (ServerCallStreamObserver<RispostaGrpc>) risposte;
+        this.elaborazione = elaborazione;
+        // Senza chiave di idempotenza: ogni pagina è una richiesta diversa e non
+        // deve ricevere dalla cache la risposta della prima
+        this.richiesta = richiesta.toBuilder()
+                .setTipo("FILTRA_PAGINA")
+                .clearChiaveIdempotenza()
+                .build();
+        this.maxPagine = Math.max(0, richiesta.getMaxPagine());
+        this.token = richiesta.getTokenContinuazione();
+    }
+
+    public void avvia() {
+        risposte.setOnCancelHandler(() -> {
+            synchronized (this) {
+                if (!finita) {
+                    finita = true;
+                    System.out.println("📄 Ricerca paginata annullata dal client dopo " + inviate + " pagine");
+                }
+            }
+        });
+        risposte.setOnReadyHandler(this);
+        run();
+    }
+
+    @Override
+    public synchronized void run() {
+        while (!finita && risposte.isReady()) {
+            if (risposte.isCancelled()) {
+                finita = true;
+                return;
+            }
+
+            RispostaGrpc pagina = elaborazione.apply(richiesta.toBuilder().setTokenContinuazione(token).build());
+            risposte.onNext(pagina);
+            inviate++;
+
+            token = pagina.hasPagina() ? pagina.getPagina().getTokenContinuazione() : "";
+            if (!"OK".equals(pagina.getEsito()) || token.isEmpty() || (maxPagine > 0 && inviate >= maxPagine)) {
+                finita = true;
+                risposte.onCompleted();
+            }
+        }
+    }
+}
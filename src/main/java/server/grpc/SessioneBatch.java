@@ -0,0 +1,127 @@
+package grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * 📦 SESSIONE BATCH - Uno stream bidirezionale di richieste in blocco
+ *
+ * - Le richieste vengono elaborate in parallelo sul pool condiviso, al massimo
+ *   {@code maxInVolo} per stream: il controllo di flusso gRPC chiede un nuovo
+ *   messaggio al client solo quando una risposta è stata inviata
+ * - Ogni risposta riporta l'id di correlazione della richiesta
+ * - Con {@code ordinato=true} (letto dal primo messaggio) le risposte escono
+ *   nell'ordine di invio; altrimenti appena pronte
+ * - Lo stream si chiude quando il client ha finito e tutte le risposte sono uscite
+ */
+public class SessioneBatch implements StreamObserver<RichiestaBatchGrpc> {
+
+    private final ServerCallStreamObserver<RispostaBatchGrpc> risposte;
+    private final Function<RichiestaGrpc, RispostaGrpc> elaborazione;
+    private final Function<RichiestaGrpc, Executor> executorPer;
+
+    // Stato dello stream (protetto da this)
+    private boolean ordinato;
+    private long ricevute = 0;
+    private long prossimaDaInviare = 0;
+    private long inviate = 0;
+    private boolean clientTerminato = false;
+    private boolean chiusa = false;
+    private final Map<Long, RispostaBatchGrpc> inAttesaDiOrdine = new TreeMap<>();
+
+    public SessioneBatch(StreamObserver<RispostaBatchGrpc> risposte,
+                         Function<RichiestaGrpc, RispostaGrpc> elaborazione,
+                         Function<RichiestaGrpc, Executor> executorPer,
+                         int maxInVolo) {
+        this.risposte = (ServerCallStreamObserver<RispostaBatchGrpc>) risposte;
+        this.elaborazione = elaborazione;
+        this.executorPer = executorPer;
+
+        this.risposte.disableAutoRequest();
+        this.risposte.request(Math.max(1, maxInVolo));
+    }
+
+    @Override
+    public void onNext(RichiestaBatchGrpc messaggio) {
+        long sequenza;
+        synchronized (this) {
+            if (chiusa) {
+                return;
+            }
+            if (ricevute == 0) {
+                ordinato = messaggio.getOrdinato();
+            }
+            sequenza = ricevute++;
+        }
+
+        try {
+            executorPer.apply(messaggio.getRichiesta()).execute(() -> completa(sequenza, messaggio.getIdCorrelazione(),
+                    elaborazione.apply(messaggio.getRichiesta())));
+        } catch (RejectedExecutionException e) {
+            completa(sequenza, messaggio.getIdCorrelazione(), RispostaGrpc.newBuilder()
+                    .setEsito("KO")
+                    .setMessaggio("Server in chiusura")
+                    .build());
+        }
+    }
+
+    private synchronized void completa(long sequenza, String idCorrelazione, RispostaGrpc risposta) {
+        if (chiusa) {
+            return;
+        }
+
+        RispostaBatchGrpc esito = RispostaBatchGrpc.newBuilder()
+                .setIdCorrelazione(idCorrelazione)
+                .setRisposta(risposta)
+                .build();
+
+        if (!ordinato) {
+            invia(esito);
+        } else {
+            inAttesaDiOrdine.put(sequenza, esito);
+            RispostaBatchGrpc prossima;
+            while ((prossima = inAttesaDiOrdine.remove(prossimaDaInviare)) != null) {
+                invia(prossima);
+                prossimaDaInviare++;
+            }
+        }
+        chiudiSeFinito();
+    }
+
+    private void invia(RispostaBatchGrpc esito) {
+        if (risposte.isCancelled()) {
+            chiusa = true;
+            return;
+        }
+        risposte.onNext(esito);
+        inviate++;
+        risposte.request(1);
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        System.err.println("❌ Stream batch interrotto dal client: " + t.getMessage());
+        chiusa = true;
+        inAttesaDiOrdine.clear();
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        clientTerminato = true;
+        chiudiSeFinito();
+    }
+
+    private void chiudiSeFinito() {
+        if (!chiusa && clientTerminato && inviate == ricevute) {
+            chiusa = true;
+            System.out.println("📦 Stream batch completato: " + inviate + " risposte");
+            risposte.onCompleted();
+        }
+    }
+}
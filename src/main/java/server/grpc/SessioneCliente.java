@@ -0,0 +1,256 @@
+package grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import observer.NotificaDispatcher;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 🔌 SESSIONE CLIENTE - Un solo stream bidirezionale per client
+ *
+ * Multiplexa sullo stesso stream HTTP/2:
+ * - richieste → risposte (abbinate tramite id di correlazione)
+ * - iscrizione alle promozioni → promozioni in push
+ * - iscrizione a una tratta → notifiche della tratta in push
+ *
+ * Promozioni e notifiche passano dagli stessi registri degli stream dedicati
+ * (adattatori verso questo stream), quindi broadcast e dispatcher non cambiano.
+ * Alla chiusura della sessione tutte le iscrizioni vengono rimosse.
+ */
+public class SessioneCliente implements StreamObserver<MessaggioClienteGrpc> {
+
+    private final String idSessione = "sessione_" + UUID.randomUUID();
+    private final ServerCallStreamObserver<MessaggioServerGrpc> uscita;
+    private final Function<RichiestaGrpc, RispostaGrpc> elaborazione;
+    private final Function<RichiestaGrpc, Executor> executorPer;
+    private final NotificaDispatcher notificaDispatcher;
+    private final Map<String, StreamObserver<PromozioneGrpc>> promozioniStreams;
+    private final Consumer<StreamObserver<PromozioneGrpc>> promozioniEsistenti;
+    private final Consumer<SessioneCliente> allaChiusura;
+
+    private final Map<UUID, StreamObserver<NotificaTrattaGrpc>> tratteIscritte = new ConcurrentHashMap<>();
+    private volatile boolean chiusa = false;
+
+    // Protetti da uscita: lo stream si completa quando il client ha finito e le risposte sono uscite
+    private int richiesteInCorso = 0;
+    private boolean clientTerminato = false;
+
+    public SessioneCliente(StreamObserver<MessaggioServerGrpc> uscita,
+                           Function<RichiestaGrpc, RispostaGrpc> elaborazione,
+                           Function<RichiestaGrpc, Executor> executorPer,
+                           NotificaDispatcher notificaDispatcher,
+                           Map<String, StreamObserver<PromozioneGrpc>> promozioniStreams,
+                           Consumer<StreamObserver<PromozioneGrpc>> promozioniEsistenti,
+                           int maxRichiesteInVolo,
+                           Consumer<SessioneCliente> allaChiusura) {
+        this.uscita = (ServerCallStreamObserver<MessaggioServerGrpc>) uscita;
+        this.elaborazione = elaborazione;
+        this.executorPer = executorPer;
+        this.notificaDispatcher = notificaDispatcher;
+        this.promozioniStreams = promozioniStreams;
+        this.promozioniEsistenti = promozioniEsistenti;
+        this.allaChiusura = allaChiusura;
+
+        this.uscita.disableAutoRequest();
+        this.uscita.request(Math.max(1, maxRichiesteInVolo));
+        System.out.println("🔌 Sessione aperta: " + idSessione);
+    }
+
+    @Override
+    public void onNext(MessaggioClienteGrpc messaggio) {
+        switch (messaggio.getContenutoCase()) {
+            case RICHIESTA -> elaboraRichiesta(messaggio.getIdCorrelazione(), messaggio.getRichiesta());
+            case ISCRIZIONETRATTA -> {
+                iscriviTratta(messaggio.getIscrizioneTratta());
+                uscita.request(1);
+            }
+            case ISCRIZIONEPROMOZIONI -> {
+                iscriviPromozioni();
+                uscita.request(1);
+            }
+            default -> {
+                System.err.println("⚠️ Messaggio di sessione vuoto ignorato (" + idSessione + ")");
+                uscita.request(1);
+            }
+        }
+    }
+
+    private void elaboraRichiesta(String idCorrelazione, RichiestaGrpc richiesta) {
+        synchronized (uscita) {
+            richiesteInCorso++;
+        }
+        try {
+            executorPer.apply(richiesta).execute(() -> {
+                try {
+                    rispondi(idCorrelazione, elaborazione.apply(richiesta));
+                    uscita.request(1);
+                } catch (IllegalStateException e) {
+                    System.err.println("⚠️ Risposta non consegnata, " + e.getMessage());
+                } finally {
+                    richiestaTerminata();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try {
+                rispondi(idCorrelazione, RispostaGrpc.newBuilder()
+                        .setEsito("KO")
+                        .setMessaggio("Server in chiusura")
+                        .build());
+            } catch (IllegalStateException chiusaNelFrattempo) {
+                System.err.println("⚠️ Risposta non consegnata, " + chiusaNelFrattempo.getMessage());
+            } finally {
+                richiestaTerminata();
+            }
+        }
+    }
+
+    private void rispondi(String idCorrelazione, RispostaGrpc risposta) {
+        invia(MessaggioServerGrpc.newBuilder()
+                .setIdCorrelazione(idCorrelazione)
+                .setRisposta(risposta)
+                .build());
+    }
+
+    private void richiestaTerminata() {
+        synchronized (uscita) {
+            richiesteInCorso--;
+        }
+        chiudiSeFinito();
+    }
+
+    private void iscriviTratta(IscrizioneNotificheGrpc iscrizione) {
+        UUID idTratta;
+        UUID idCliente;
+        try {
+            idTratta = UUID.fromString(iscrizione.getTrattaId());
+            idCliente = iscrizione.getIdCliente().isEmpty() ? null : UUID.fromString(iscrizione.getIdCliente());
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ ID tratta o cliente non valido in sessione: " + iscrizione.getTrattaId());
+            return;
+        }
+
+        // Sullo stesso stream arrivano più tratte: ogni notifica porta la sua
+        String trattaId = idTratta.toString();
+        StreamObserver<NotificaTrattaGrpc> adattatore = new Adattatore<>(n ->
+                MessaggioServerGrpc.newBuilder()
+                        .setNotifica(n.getTrattaId().isEmpty() ? n.toBuilder().setTrattaId(trattaId).build() : n)
+                        .build());
+        if (tratteIscritte.putIfAbsent(idTratta, adattatore) == null) {
+            notificaDispatcher.registraOsservatore(idTratta, idCliente, adattatore);
+            adattatore.onNext(NotificaTrattaGrpc.newBuilder()
+                    .setMessaggio("✅ Iscrizione completata per la tratta " + idTratta)
+                    .setTrattaId(trattaId)
+                    .build());
+            System.out.println("📡 Sessione " + idSessione + " iscritta alla tratta " + idTratta);
+        }
+    }
+
+    private void iscriviPromozioni() {
+        StreamObserver<PromozioneGrpc> adattatore = new Adattatore<>(p ->
+                MessaggioServerGrpc.newBuilder().setPromozione(p).build());
+        if (promozioniStreams.putIfAbsent(idSessione, adattatore) == null) {
+            promozioniEsistenti.accept(adattatore);
+        }
+    }
+
+    /**
+     * 📤 Scritture serializzate: lo stream gRPC non è thread-safe
+     */
+    private void invia(MessaggioServerGrpc messaggio) {
+        synchronized (uscita) {
+            if (chiusa || uscita.isCancelled()) {
+                throw new IllegalStateException("Sessione chiusa: " + idSessione);
+            }
+            uscita.onNext(messaggio);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        System.out.println("🔌 Sessione interrotta dal client: " + idSessione + " (" + t.getMessage() + ")");
+        chiudi(false);
+    }
+
+    /**
+     * ✋ Il client ha finito di inviare: lo stream si chiude dopo l'ultima risposta in corso
+     */
+    @Override
+    public void onCompleted() {
+        synchronized (uscita) {
+            clientTerminato = true;
+        }
+        chiudiSeFinito();
+    }
+
+    private void chiudiSeFinito() {
+        synchronized (uscita) {
+            if (!clientTerminato || richiesteInCorso > 0) {
+                return;
+            }
+        }
+        chiudi(true);
+    }
+
+    /**
+     * 🛑 Rimuove tutte le iscrizioni; con {@code completaStream} chiude anche lo stream verso il client
+     */
+    public void chiudi(boolean completaStream) {
+        synchronized (uscita) {
+            if (chiusa) {
+                return;
+            }
+            chiusa = true;
+        }
+
+        tratteIscritte.forEach(notificaDispatcher::rimuoviOsservatore);
+        tratteIscritte.clear();
+        promozioniStreams.remove(idSessione);
+        allaChiusura.accept(this);
+
+        if (completaStream) {
+            try {
+                uscita.onCompleted();
+            } catch (Exception e) {
+                System.err.println("❌ Errore chiusura sessione: " + e.getMessage());
+            }
+        }
+        System.out.println("🔌 Sessione chiusa: " + idSessione);
+    }
+
+    public String getIdSessione() {
+        return idSessione;
+    }
+
+    /**
+     * 🔀 Presenta questo stream come uno stream dedicato (promozioni o notifiche)
+     */
+    private final class Adattatore<T> implements StreamObserver<T> {
+        private final Function<T, MessaggioServerGrpc> incapsula;
+
+        private Adattatore(Function<T, MessaggioServerGrpc> incapsula) {
+            this.incapsula = incapsula;
+        }
+
+        @Override
+        public void onNext(T value) {
+            invia(incapsula.apply(value));
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            chiudi(false);
+        }
+
+        @Override
+        public void onCompleted() {
+            chiudi(true);
+        }
+    }
+}
@@ -14,8 +14,11 @@ import util.GrpcMapper;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -31,12 +34,34 @@ public class TrenicalServiceImpl extends TrenicalServiceImplBase {
     private final NotificaDispatcher notificaDispatcher;
     private final ServerRequestHandler requestHandler;
     private final MemoriaPromozioni memoriaPromozioni;
+    private final CacheRisposteIdempotenti cacheIdempotenza = new CacheRisposteIdempotenti();
 
     // Stream management
     private final ConcurrentHashMap<String, StreamObserver<PromozioneGrpc>> promozioniStreams = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
     private final ConcurrentHashMap<String, StreamObserver<NotificaTrattaGrpc>> notificheStreams = new ConcurrentHashMap<>();
 
+    // Richieste in blocco: pool condiviso e limite di richieste in volo per stream
+    private static final int THREAD_BATCH = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int MAX_RICHIESTE_IN_VOLO_PER_STREAM = 32;
+    private final ConcurrentHashMap<String, SessioneCliente> sessioni = new ConcurrentHashMap<>();
+    private final ExecutorService batchExecutor = Executors.newFixedThreadPool(THREAD_BATCH, r -> {
+        Thread t = new Thread(r, "Trenical-Batch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 💳 Comandi che attendono la banca (fino a ATTESA_ESITO_MS): pool a parte, così
+    // ricerche e mappe posti delle stesse sessioni non restano dietro ai pagamenti lenti
+    private static final Set<String> TIPI_CON_PAGAMENTO = Set.of(
+            "ACQUISTA", "ACQUISTA_GRUPPO", "CHECKOUT_CARRELLO", "MODIFICA", "CONFERMA", "CARTA_FEDELTA");
+    private static final int THREAD_PAGAMENTI = 64;
+    private final ExecutorService pagamentiExecutor = Executors.newFixedThreadPool(THREAD_PAGAMENTI, r -> {
+        Thread t = new Thread(r, "Trenical-Pagamenti");
+        t.setDaemon(true);
+        return t;
+    });
+
     // ✅ COSTRUTTORE PRINCIPALE (usato da ServerMain)
     public TrenicalServiceImpl(NotificaDispatcher notificaDispatcher,
                                ServerRequestHandler requestHandler,
@@ -61,28 +86,109 @@ public class TrenicalServiceImpl extends TrenicalServiceImplBase {
     @Override
     public void inviaRichiesta(RichiestaGrpc request, StreamObserver<RispostaGrpc> responseObserver) {
         try {
-            System.out.println("📨 Ricevuta richiesta: " + request.getTipo() + " da cliente: " + request.getIdCliente());
+            responseObserver.onNext(gestisciRichiesta(request));
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            System.err.println("❌ Errore invio risposta: " + e.getMessage());
+            inviaErrore(responseObserver, "Errore interno del server: " + e.getMessage());
+        }
+    }
 
-            RichiestaDTO richiestaDTO = GrpcMapper.toDTO(request);
-            RispostaDTO rispostaDTO = requestHandler.gestisci(richiestaDTO);
-            RispostaGrpc rispostaGrpc = GrpcMapper.fromDTO(rispostaDTO);
+    /**
+     * 📦 Richieste in blocco per agenzie e chioschi: un solo stream, elaborazione
+     * parallela limitata, ogni risposta con l'id di correlazione della richiesta
+     */
+    @Override
+    public StreamObserver<RichiestaBatchGrpc> inviaRichiesteBatch(StreamObserver<RispostaBatchGrpc> responseObserver) {
+        return new SessioneBatch(responseObserver, this::gestisciRichiesta, this::executorPer, MAX_RICHIESTE_IN_VOLO_PER_STREAM);
+    }
 
-            System.out.println("📤 Risposta inviata: " + rispostaDTO.getEsito() + " - " + rispostaDTO.getMessaggio());
+    /**
+     * 🔌 Sessione persistente: un solo stream per richieste, promozioni e notifiche
+     */
+    @Override
+    public StreamObserver<MessaggioClienteGrpc> sessione(StreamObserver<MessaggioServerGrpc> responseObserver) {
+        SessioneCliente sessione = new SessioneCliente(responseObserver, this::gestisciRichiesta, this::executorPer,
+                notificaDispatcher, promozioniStreams, this::inviaPromozioniEsistenti,
+                MAX_RICHIESTE_IN_VOLO_PER_STREAM, chiusa -> sessioni.remove(chiusa.getIdSessione()));
+        sessioni.put(sessione.getIdSessione(), sessione);
+        return sessione;
+    }
 
-            responseObserver.onNext(rispostaGrpc);
-            responseObserver.onCompleted();
+    /**
+     * 📄 Ricerca tratte paginata: le pagine escono una alla volta, solo quando il client può riceverle
+     */
+    @Override
+    public void cercaTratte(RichiestaGrpc request, StreamObserver<RispostaGrpc> responseObserver) {
+        new RicercaPaginata(request, responseObserver, this::gestisciRichiesta).avvia();
+    }
+
+    /**
+     * 🔤 Autocompletamento stazioni: risposta dal dizionario in memoria, nessuna ricerca tratte
+     */
+    @Override
+    public void suggerisciStazioni(RichiestaGrpc request, StreamObserver<RispostaGrpc> responseObserver) {
+        responseObserver.onNext(gestisciRichiesta(request.toBuilder().setTipo("SUGGERISCI_STAZIONI").build()));
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * 📅 Calendario prezzi: un mese di prezzi minimi con una sola chiamata
+     */
+    @Override
+    public void calendarioPrezzi(RichiestaGrpc request, StreamObserver<RispostaGrpc> responseObserver) {
+        responseObserver.onNext(gestisciRichiesta(request.toBuilder().setTipo("CALENDARIO_PREZZI").build()));
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * 🧵 Pool per una richiesta di sessione o in blocco: i pagamenti non occupano i thread delle letture
+     */
+    private Executor executorPer(RichiestaGrpc richiesta) {
+        return TIPI_CON_PAGAMENTO.contains(richiesta.getTipo()) ? pagamentiExecutor : batchExecutor;
+    }
+
+    /**
+     * 🚉 Tabellone partenze: istantanea iniziale, poi solo le variazioni della stazione
+     */
+    @Override
+    public void tabellonePartenze(IscrizioneTabelloneGrpc request, StreamObserver<VariazioneTabelloneGrpc> responseObserver) {
+        new IscrizioneTabellone(request, responseObserver, requestHandler.getTabellonePartenze()).avvia();
+    }
+
+    /**
+     * 🔄 Elaborazione comune a richieste singole e in blocco: mai eccezioni, sempre una risposta
+     */
+    private RispostaGrpc gestisciRichiesta(RichiestaGrpc request) {
+        try {
+            System.out.println("📨 Ricevuta richiesta: " + request.getTipo() + " da cliente: " + request.getIdCliente());
+
+            // 🔁 Retry con la stessa chiave: risposta salvata, nessuna nuova elaborazione
+            RispostaGrpc rispostaGrpc = request.getChiaveIdempotenza().isEmpty()
+                    ? elabora(request)
+                    : cacheIdempotenza.eseguiUnaVolta(request.getIdCliente(), request.getChiaveIdempotenza(),
+                            () -> elabora(request));
+
+            System.out.println("📤 Risposta inviata: " + rispostaGrpc.getEsito() + " - " + rispostaGrpc.getMessaggio());
+            return rispostaGrpc;
 
         } catch (IllegalArgumentException e) {
             System.err.println("❌ Errore validazione richiesta: " + e.getMessage());
-            inviaErrore(responseObserver, "Parametri richiesta non validi: " + e.getMessage());
+            return rispostaErrore("Parametri richiesta non validi: " + e.getMessage());
 
         } catch (Exception e) {
             System.err.println("❌ Errore interno durante elaborazione richiesta: " + e.getMessage());
             e.printStackTrace();
-            inviaErrore(responseObserver, "Errore interno del server: " + e.getMessage());
+            return rispostaErrore("Errore interno del server: " + e.getMessage());
         }
     }
 
+    private RispostaGrpc elabora(RichiestaGrpc request) {
+        RichiestaDTO richiestaDTO = GrpcMapper.toDTO(request);
+        RispostaDTO rispostaDTO = requestHandler.gestisci(richiestaDTO);
+        return GrpcMapper.fromDTO(rispostaDTO);
+    }
+
     /**
      * ✅ Gestisce lo stream delle promozioni
      */
@@ -120,9 +226,10 @@ public class TrenicalServiceImpl extends TrenicalServiceImplBase {
                     " per tratta: " + request.getTrattaId());
 
             UUID trattaId = UUID.fromString(request.getTrattaId());
+            UUID idCliente = request.getIdCliente().isEmpty() ? null : UUID.fromString(request.getIdCliente());
 
             notificheStreams.put(clientKey, responseObserver);
-            notificaDispatcher.registraOsservatore(trattaId, responseObserver);
+            notificaDispatcher.registraOsservatore(trattaId, idCliente, responseObserver);
 
             NotificaTrattaGrpc conferma = NotificaTrattaGrpc.newBuilder()
                     .setMessaggio("✅ Iscrizione completata per la tratta " + request.getTrattaId())
@@ -199,19 +306,30 @@ public class TrenicalServiceImpl extends TrenicalServiceImplBase {
      * ✅ METODO PUBBLICO - Ottieni statistiche stream attivi
      */
     public String getStreamStats() {
-        return String.format("📊 Stream Attivi: Promozioni=%d, Notifiche=%d",
-                promozioniStreams.size(), notificheStreams.size());
+        return String.format("📊 Stream Attivi: Promozioni=%d, Notifiche=%d, Sessioni=%d",
+                promozioniStreams.size(), notificheStreams.size(), sessioni.size());
+    }
+
+    /**
+     * 📊 Statistiche della cache di idempotenza (retry serviti senza rielaborare)
+     */
+    public String getStatisticheIdempotenza() {
+        return cacheIdempotenza.getStatistiche();
     }
 
     // ================================================================================
     // 🔧 METODI PRIVATI di supporto
     // ================================================================================
 
-    private void inviaErrore(StreamObserver<RispostaGrpc> responseObserver, String messaggio) {
-        RispostaGrpc errore = RispostaGrpc.newBuilder()
+    private static RispostaGrpc rispostaErrore(String messaggio) {
+        return RispostaGrpc.newBuilder()
                 .setEsito("KO")
                 .setMessaggio(messaggio)
                 .build();
+    }
+
+    private void inviaErrore(StreamObserver<RispostaGrpc> responseObserver, String messaggio) {
+        RispostaGrpc errore = rispostaErrore(messaggio);
 
         try {
             responseObserver.onNext(errore);
@@ -310,6 +428,10 @@ public class TrenicalServiceImpl extends TrenicalServiceImplBase {
             }
         });
 
+        sessioni.values().forEach(sessione -> sessione.chiudi(true));
+
+        batchExecutor.shutdown();
+        pagamentiExecutor.shutdown();
         scheduler.shutdown();
         try {
             if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -11,6 +11,8 @@ import io.grpc.ServerBuilder;
 import model.Tratta;
 import observer.*;
 import persistence.*;
+import scheduling.ListaAttesaPosti;
+import scheduling.ProcessoreOutboxPagamenti;
 import service.BancaServiceClient;
 
 import java.time.LocalDate;
@@ -51,6 +53,7 @@ public class ServerConsoleMain {
     private static MemoriaTratte memoriaTratte;
     private static MemoriaPromozioni memoriaPromozioni;
     private static MemoriaOsservatori memoriaOsservatori; // ✅ OTTIMIZZATA UUID
+    private static BancaServiceClient bancaClient;
 
     public static void main(String[] args) {
         System.out.println("🖥️ ===== TRENICAL SERVER CONSOLE - VERSIONE OTTIMIZZATA UUID =====");
@@ -112,10 +115,16 @@ public class ServerConsoleMain {
         }
 
         // 4. Client banca e handler THREAD-SAFE
-        BancaServiceClient bancaClient = new BancaServiceClient("localhost", BANCA_PORT);
+        bancaClient = new BancaServiceClient("localhost", BANCA_PORT);
+        ListaAttesaPosti listaAttesa = new ListaAttesaPosti(memoriaBiglietti, memoriaTratte);
+        listaAttesa.avvia();
+        // Outbox pagamenti: riprende gli acquisti rimasti a metà prima di accettare richieste
+        ProcessoreOutboxPagamenti outboxPagamenti = new ProcessoreOutboxPagamenti(memoriaBiglietti, memoriaTratte, bancaClient);
+        outboxPagamenti.avvia();
         ServerRequestHandler handler = new ServerRequestHandler(
-                memoriaBiglietti, memoriaClientiFedeli, memoriaTratte, bancaClient, memoriaOsservatori
+                memoriaBiglietti, memoriaClientiFedeli, memoriaTratte, bancaClient, memoriaOsservatori, listaAttesa, outboxPagamenti
         );
+        handler.collegaPromozioni(memoriaPromozioni);
 
         // 5. Dispatcher per notifiche gRPC
         GrpcNotificaDispatcher notificaDispatcher = new GrpcNotificaDispatcher();
@@ -272,6 +281,15 @@ public class ServerConsoleMain {
         boolean integra = memoriaBiglietti.verificaIntegrita(capienzaPerTratta);
         System.out.println("   Capienza rispettata: " + (integra ? "✅ SÌ" : "❌ NO"));
 
+        if (bancaClient != null) {
+            System.out.println("\n🏦 BANCA:");
+            System.out.println("   " + bancaClient.getStatistiche());
+        }
+        if (trenicalService != null) {
+            System.out.println("\n🔁 RETRY CLIENT:");
+            System.out.println("   " + trenicalService.getStatisticheIdempotenza());
+        }
+
         pausaETornaMenu();
     }
 
@@ -735,6 +753,10 @@ public class ServerConsoleMain {
                 System.out.println("✅ Server TreniCal fermato");
             }
 
+            if (bancaClient != null) {
+                bancaClient.shutdown();
+            }
+
             if (bancaServer != null) {
                 System.out.println("🏦 Shutdown Server Banca...");
                 bancaServer.shutdown();
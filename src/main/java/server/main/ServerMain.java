@@ -12,6 +12,8 @@ import observer.NotificaEventiListener;
 import observer.EventoLoggerListener;
 import eventi.ListaEventiS;
 import persistence.*;
+import scheduling.ListaAttesaPosti;
+import scheduling.ProcessoreOutboxPagamenti;
 import service.BancaServiceClient;
 
 import java.time.LocalDate;
@@ -75,9 +77,15 @@ public class ServerMain {
 
         // 3️⃣ Client banca e handler
         BancaServiceClient bancaClient = new BancaServiceClient("localhost", BANCA_PORT);
+        ListaAttesaPosti listaAttesa = new ListaAttesaPosti(memoriaBiglietti, memoriaTratte);
+        listaAttesa.avvia();
+        // Outbox pagamenti: riprende gli acquisti rimasti a metà prima di accettare richieste
+        ProcessoreOutboxPagamenti outboxPagamenti = new ProcessoreOutboxPagamenti(memoriaBiglietti, memoriaTratte, bancaClient);
+        outboxPagamenti.avvia();
         ServerRequestHandler handler = new ServerRequestHandler(
-                memoriaBiglietti, memoriaClienti, memoriaTratte, bancaClient, memoriaOsservatori
+                memoriaBiglietti, memoriaClienti, memoriaTratte, bancaClient, memoriaOsservatori, listaAttesa, outboxPagamenti
         );
+        handler.collegaPromozioni(memoriaPromozioni);
 
         // 4️⃣ Dispatcher per notifiche gRPC
         GrpcNotificaDispatcher notificaDispatcher = new GrpcNotificaDispatcher();
@@ -17,6 +17,7 @@ public class Biglietto {
     private final double prezzoPagato;
     private final LocalDate dataAcquisto;
     private final String tipoAcquisto;
+    private final Integer numeroPosto;   // null = posto non ancora assegnato (biglietti storici)
 
     // ✅ Constructor per Jackson
     @JsonCreator
@@ -28,7 +29,8 @@ public class Biglietto {
             @JsonProperty("conCartaFedelta") boolean conCartaFedelta,
             @JsonProperty("prezzoPagato") double prezzoPagato,
             @JsonProperty("dataAcquisto") LocalDate dataAcquisto,
-            @JsonProperty("tipoAcquisto") String tipoAcquisto
+            @JsonProperty("tipoAcquisto") String tipoAcquisto,
+            @JsonProperty("numeroPosto") Integer numeroPosto
     ) {
         this.id = id;
         this.idCliente = idCliente;
@@ -38,6 +40,12 @@ public class Biglietto {
         this.prezzoPagato = prezzoPagato;
         this.dataAcquisto = dataAcquisto;
         this.tipoAcquisto = tipoAcquisto;
+        this.numeroPosto = numeroPosto;
+    }
+
+    public Biglietto(UUID id, UUID idCliente, UUID idTratta, ClasseServizio classe, boolean conCartaFedelta,
+                     double prezzoPagato, LocalDate dataAcquisto, String tipoAcquisto) {
+        this(id, idCliente, idTratta, classe, conCartaFedelta, prezzoPagato, dataAcquisto, tipoAcquisto, null);
     }
 
     // ✅ Constructor privato per Builder
@@ -50,6 +58,15 @@ public class Biglietto {
         this.prezzoPagato = builder.prezzoPagato;
         this.dataAcquisto = builder.dataAcquisto;
         this.tipoAcquisto = builder.tipoAcquisto;
+        this.numeroPosto = builder.numeroPosto;
+    }
+
+    /**
+     * 💺 Copia del biglietto con il posto assegnato
+     */
+    public Biglietto conPosto(int numeroPosto) {
+        return new Biglietto(id, idCliente, idTratta, classe, conCartaFedelta,
+                prezzoPagato, dataAcquisto, tipoAcquisto, numeroPosto);
     }
 
     public UUID getId() {
@@ -84,6 +101,10 @@ public class Biglietto {
         return tipoAcquisto;
     }
 
+    public Integer getNumeroPosto() {
+        return numeroPosto;
+    }
+
     public static class Builder {
         private UUID id = UUID.randomUUID();
         private UUID idCliente;
@@ -93,6 +114,12 @@ public class Biglietto {
         private double prezzoPagato;
         private LocalDate dataAcquisto;
         private String tipoAcquisto;
+        private Integer numeroPosto;
+
+        public Builder id(UUID id) {
+            this.id = id;
+            return this;
+        }
 
         public Builder idCliente(UUID idCliente) {
             this.idCliente = idCliente;
@@ -129,6 +156,11 @@ public class Biglietto {
             return this;
         }
 
+        public Builder numeroPosto(Integer numeroPosto) {
+            this.numeroPosto = numeroPosto;
+            return this;
+        }
+
         public Biglietto build() {
             return new Biglietto(this);
         }
@@ -145,6 +177,7 @@ public class Biglietto {
                 ", prezzoPagato=" + prezzoPagato +
                 ", dataAcquisto=" + dataAcquisto +
                 ", tipoAcquisto='" + tipoAcquisto + '\'' +
+                ", numeroPosto=" + numeroPosto +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 🧭 ITINERARIO - Sequenza di tratte con cambi, prodotta dal pianificatore viaggi
+ *
+ * Gli orari di arrivo sono stimati: una tratta ha solo l'orario di partenza.
+ */
+public final class Itinerario {
+
+    private final List<Tratta> tratte;
+    private final List<LocalDateTime> arriviStimati;
+
+    public Itinerario(List<Tratta> tratte, List<LocalDateTime> arriviStimati) {
+        this.tratte = List.copyOf(tratte);
+        this.arriviStimati = List.copyOf(arriviStimati);
+    }
+
+    public List<Tratta> getTratte() { return tratte; }
+    public List<LocalDateTime> getArriviStimati() { return arriviStimati; }
+
+    public LocalDateTime getPartenza() {
+        Tratta prima = tratte.get(0);
+        return prima.getData().atTime(prima.getOra());
+    }
+
+    public LocalDateTime getArrivoStimato() {
+        return arriviStimati.get(arriviStimati.size() - 1);
+    }
+
+    public int getCambi() {
+        return tratte.size() - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Itinerario{" +
+                "tratte=" + tratte.size() +
+                ", partenza=" + getPartenza() +
+                ", arrivoStimato=" + getArrivoStimato() +
+                ", cambi=" + getCambi() +
+                '}';
+    }
+}
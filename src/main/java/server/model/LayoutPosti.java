@@ -0,0 +1,133 @@
+package model;
+
+import enums.ClasseServizio;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 💺 LAYOUT POSTI - Disposizione di carrozze e posti di un treno
+ *
+ * I posti sono numerati da 1 e raggruppati in carrozze da {@code postiPerCarrozza}.
+ * Ogni classe occupa carrozze proprie, in ordine GOLD → ARGENTO → BASE; l'ultima
+ * carrozza di una classe può essere incompleta (i numeri restanti non esistono).
+ *
+ * Un treno senza suddivisione per classe ha un solo segmento condiviso:
+ * qualunque classe può occupare qualunque posto (comportamento storico).
+ */
+public final class LayoutPosti {
+
+    public static final int POSTI_PER_CARROZZA_DEFAULT = 20;
+
+    private static final ClasseServizio[] ORDINE_CARROZZE = {
+            ClasseServizio.GOLD, ClasseServizio.ARGENTO, ClasseServizio.BASE
+    };
+
+    private final int postiPerCarrozza;
+    private final int capienzaTotale;
+    private final int estensione;
+    private final boolean condiviso;
+    private final Map<ClasseServizio, Integer> primoIndice = new EnumMap<>(ClasseServizio.class);
+    private final Map<ClasseServizio, Integer> numeroPosti = new EnumMap<>(ClasseServizio.class);
+
+    private LayoutPosti(Map<ClasseServizio, Integer> postiPerClasse, int capienzaCondivisa, int postiPerCarrozza) {
+        this.postiPerCarrozza = postiPerCarrozza > 0 ? postiPerCarrozza : POSTI_PER_CARROZZA_DEFAULT;
+        this.condiviso = postiPerClasse == null;
+
+        if (condiviso) {
+            this.capienzaTotale = Math.max(0, capienzaCondivisa);
+            this.estensione = capienzaTotale;
+            for (ClasseServizio classe : ClasseServizio.values()) {
+                primoIndice.put(classe, 0);
+                numeroPosti.put(classe, capienzaTotale);
+            }
+            return;
+        }
+
+        int indice = 0;
+        int totale = 0;
+        for (ClasseServizio classe : ORDINE_CARROZZE) {
+            int posti = Math.max(0, postiPerClasse.getOrDefault(classe, 0));
+            primoIndice.put(classe, indice);
+            numeroPosti.put(classe, posti);
+            totale += posti;
+            // La classe successiva parte da una carrozza nuova
+            indice += ((posti + this.postiPerCarrozza - 1) / this.postiPerCarrozza) * this.postiPerCarrozza;
+        }
+        this.capienzaTotale = totale;
+        this.estensione = indice;
+    }
+
+    /**
+     * 🚃 Tutti i posti condivisi tra le classi, carrozze di dimensione standard
+     */
+    public static LayoutPosti unico(int capienza) {
+        return new LayoutPosti(null, capienza, POSTI_PER_CARROZZA_DEFAULT);
+    }
+
+    public static LayoutPosti perClasse(Map<ClasseServizio, Integer> postiPerClasse, int postiPerCarrozza) {
+        return new LayoutPosti(Map.copyOf(postiPerClasse), 0, postiPerCarrozza);
+    }
+
+    /**
+     * 🚂 Layout di un treno: per classe se configurato, altrimenti condiviso
+     */
+    public static LayoutPosti di(Treno treno) {
+        if (treno.getPostiPerClasse() == null || treno.getPostiPerClasse().isEmpty()) {
+            return new LayoutPosti(null, treno.getCapienzaTotale(), treno.getPostiPerCarrozza());
+        }
+        return new LayoutPosti(treno.getPostiPerClasse(), 0, treno.getPostiPerCarrozza());
+    }
+
+    public boolean isCondiviso() { return condiviso; }
+    public int getPostiPerCarrozza() { return postiPerCarrozza; }
+    public int getCapienzaTotale() { return capienzaTotale; }
+
+    /** Numero di indici (0-based) usati dalla mappa, incluse le code di carrozza inesistenti */
+    public int getEstensione() { return estensione; }
+
+    /** Indice 0-based del primo posto della classe */
+    public int getPrimoIndice(ClasseServizio classe) {
+        return primoIndice.get(classe != null ? classe : ClasseServizio.BASE);
+    }
+
+    public int getNumeroPosti(ClasseServizio classe) {
+        return numeroPosti.get(classe != null ? classe : ClasseServizio.BASE);
+    }
+
+    /**
+     * 🔎 Vero se il posto esiste e può essere assegnato alla classe
+     */
+    public boolean contiene(ClasseServizio classe, int numeroPosto) {
+        int indice = numeroPosto - 1;
+        int primo = getPrimoIndice(classe);
+        return indice >= primo && indice < primo + getNumeroPosti(classe);
+    }
+
+    public int carrozzaDi(int numeroPosto) {
+        return (numeroPosto - 1) / postiPerCarrozza + 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LayoutPosti altro)) return false;
+        return postiPerCarrozza == altro.postiPerCarrozza
+                && condiviso == altro.condiviso
+                && capienzaTotale == altro.capienzaTotale
+                && numeroPosti.equals(altro.numeroPosti);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(postiPerCarrozza, condiviso, capienzaTotale, numeroPosti);
+    }
+
+    @Override
+    public String toString() {
+        return condiviso
+                ? "LayoutPosti{condiviso, posti=" + capienzaTotale + ", postiPerCarrozza=" + postiPerCarrozza + "}"
+                : "LayoutPosti{" + numeroPosti + ", postiPerCarrozza=" + postiPerCarrozza + "}";
+    }
+}
@@ -0,0 +1,94 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 📮 OPERAZIONE PAGAMENTO - Record dell'outbox dei pagamenti
+ *
+ * Contiene tutto ciò che serve per completare un acquisto anche dopo un crash:
+ * il biglietto da emettere, la trattenuta del posto (se ancora in memoria) e la
+ * causale. L'id è anche la chiave di idempotenza verso la banca, così ripetere
+ * il pagamento in fase di recupero non addebita due volte.
+ *
+ * RIMBORSO_IN_CORSO segna un addebito da restituire (posto non più disponibile):
+ * il rimborso usa una chiave derivata dall'id e viene ripetuto finché non riesce.
+ */
+public final class OperazionePagamento {
+
+    public enum Stato { IN_ATTESA, RIMBORSO_IN_CORSO, COMPLETATA, ANNULLATA }
+
+    private final UUID id;
+    private final Biglietto biglietto;
+    private final UUID idTrattenuta;     // null dopo un riavvio: il posto va riassegnato
+    private final String causale;
+    private final Stato stato;
+    private final LocalDateTime creata;
+
+    @JsonCreator
+    public OperazionePagamento(
+            @JsonProperty("id") UUID id,
+            @JsonProperty("biglietto") Biglietto biglietto,
+            @JsonProperty("idTrattenuta") UUID idTrattenuta,
+            @JsonProperty("causale") String causale,
+            @JsonProperty("stato") Stato stato,
+            @JsonProperty("creata") LocalDateTime creata
+    ) {
+        this.id = id;
+        this.biglietto = biglietto;
+        this.idTrattenuta = idTrattenuta;
+        this.causale = causale;
+        this.stato = stato;
+        this.creata = creata;
+    }
+
+    public static OperazionePagamento nuova(Biglietto biglietto, UUID idTrattenuta, String causale) {
+        return nuova(UUID.randomUUID(), biglietto, idTrattenuta, causale);
+    }
+
+    public static OperazionePagamento nuova(UUID id, Biglietto biglietto, UUID idTrattenuta, String causale) {
+        return new OperazionePagamento(id, biglietto, idTrattenuta, causale, Stato.IN_ATTESA, LocalDateTime.now());
+    }
+
+    public OperazionePagamento conStato(Stato nuovoStato) {
+        return new OperazionePagamento(id, biglietto, idTrattenuta, causale, nuovoStato, creata);
+    }
+
+    /**
+     * ⏳ Ancora da chiudere: pagamento da completare o rimborso da eseguire
+     */
+    @JsonIgnore
+    public boolean isInSospeso() {
+        return stato == Stato.IN_ATTESA || stato == Stato.RIMBORSO_IN_CORSO;
+    }
+
+    /**
+     * 🔑 Chiave di idempotenza del rimborso, stabile tra tentativi e riavvii
+     */
+    @JsonIgnore
+    public String getChiaveRimborso() {
+        return "rimborso:" + id;
+    }
+
+    public UUID getId() { return id; }
+    public Biglietto getBiglietto() { return biglietto; }
+    public UUID getIdTrattenuta() { return idTrattenuta; }
+    public String getCausale() { return causale; }
+    public Stato getStato() { return stato; }
+    public LocalDateTime getCreata() { return creata; }
+
+    @Override
+    public String toString() {
+        return "OperazionePagamento{" +
+                "id=" + id +
+                ", biglietto=" + (biglietto != null ? biglietto.getId() : null) +
+                ", idTrattenuta=" + idTrattenuta +
+                ", stato=" + stato +
+                ", creata=" + creata +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+package model;
+
+import enums.ClasseServizio;
+
+import java.util.UUID;
+
+/**
+ * ⏳ TRATTENUTA - Posto bloccato per un cliente per un tempo limitato
+ *
+ * Vive solo in memoria: occupa il posto nella mappa posti ma non è un biglietto
+ * e non viene salvata. Alla scadenza il posto torna libero.
+ */
+public final class Trattenuta {
+
+    private final UUID id;
+    private final UUID idTratta;
+    private final UUID idCliente;
+    private final ClasseServizio classe;
+    private final int numeroPosto;
+    private final long scadenzaMillis;
+
+    public Trattenuta(UUID idTratta, UUID idCliente, ClasseServizio classe, int numeroPosto, long scadenzaMillis) {
+        this.id = UUID.randomUUID();
+        this.idTratta = idTratta;
+        this.idCliente = idCliente;
+        this.classe = classe;
+        this.numeroPosto = numeroPosto;
+        this.scadenzaMillis = scadenzaMillis;
+    }
+
+    public UUID getId() { return id; }
+    public UUID getIdTratta() { return idTratta; }
+    public UUID getIdCliente() { return idCliente; }
+    public ClasseServizio getClasse() { return classe; }
+    public int getNumeroPosto() { return numeroPosto; }
+    public long getScadenzaMillis() { return scadenzaMillis; }
+
+    public boolean isScaduta(long oraMillis) {
+        return oraMillis >= scadenzaMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Trattenuta{" +
+                "id=" + id +
+                ", idTratta=" + idTratta +
+                ", idCliente=" + idCliente +
+                ", classe=" + classe +
+                ", numeroPosto=" + numeroPosto +
+                ", scadenzaMillis=" + scadenzaMillis +
+                '}';
+    }
+}
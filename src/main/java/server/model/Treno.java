@@ -3,6 +3,9 @@ package model;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 
+import enums.ClasseServizio;
+
+import java.util.Map;
 import java.util.UUID;
 
 @JsonDeserialize(builder = Treno.Builder.class)
@@ -18,6 +21,8 @@ public class Treno {
     private final String serviziRistorazione;
     private final boolean accessibileDisabili;
     private final String nomeCommerciale;
+    private final Map<ClasseServizio, Integer> postiPerClasse;  // vuota = posti condivisi tra le classi
+    private final int postiPerCarrozza;                         // 0 = default di LayoutPosti
 
     private Treno(Builder builder) {
         this.id = builder.id;
@@ -30,6 +35,8 @@ public class Treno {
         this.serviziRistorazione = builder.serviziRistorazione;
         this.accessibileDisabili = builder.accessibileDisabili;
         this.nomeCommerciale = builder.nomeCommerciale;
+        this.postiPerClasse = builder.postiPerClasse != null ? Map.copyOf(builder.postiPerClasse) : Map.of();
+        this.postiPerCarrozza = builder.postiPerCarrozza;
     }
 
     public UUID getId() { return id; }
@@ -42,6 +49,8 @@ public class Treno {
     public String getServiziRistorazione() { return serviziRistorazione; }
     public boolean isAccessibileDisabili() { return accessibileDisabili; }
     public String getNomeCommerciale() { return nomeCommerciale; }
+    public Map<ClasseServizio, Integer> getPostiPerClasse() { return postiPerClasse; }
+    public int getPostiPerCarrozza() { return postiPerCarrozza; }
 
     @JsonPOJOBuilder(withPrefix = "")
     public static class Builder {
@@ -55,6 +64,8 @@ public class Treno {
         private String serviziRistorazione;
         private boolean accessibileDisabili;
         private String nomeCommerciale;
+        private Map<ClasseServizio, Integer> postiPerClasse;
+        private int postiPerCarrozza;
 
         public Builder id(UUID id) { this.id = id; return this; }
         public Builder numero(int numero) { this.numero = numero; return this; }
@@ -66,6 +77,8 @@ public class Treno {
         public Builder serviziRistorazione(String serviziRistorazione) { this.serviziRistorazione = serviziRistorazione; return this; }
         public Builder accessibileDisabili(boolean accessibileDisabili) { this.accessibileDisabili = accessibileDisabili; return this; }
         public Builder nomeCommerciale(String nomeCommerciale) { this.nomeCommerciale = nomeCommerciale; return this; }
+        public Builder postiPerClasse(Map<ClasseServizio, Integer> postiPerClasse) { this.postiPerClasse = postiPerClasse; return this; }
+        public Builder postiPerCarrozza(int postiPerCarrozza) { this.postiPerCarrozza = postiPerCarrozza; return this; }
 
         public Treno build() { return new Treno(this); }
     }
@@ -12,18 +12,57 @@ public class GrpcNotificaDispatcher implements NotificaDispatcher {
 
     // Usa una mappa concorrente + liste sicure per lettura/scrittura
     private final Map<UUID, List<StreamObserver<NotificaTrattaGrpc>>> observers = new ConcurrentHashMap<>();
+    // Cliente che ha aperto ciascuno stream (solo per le iscrizioni con ID cliente)
+    private final Map<StreamObserver<NotificaTrattaGrpc>, UUID> clientiPerStream = new ConcurrentHashMap<>();
 
     @Override
     public void registraOsservatore(UUID idTratta, StreamObserver<NotificaTrattaGrpc> observer) {
         observers.computeIfAbsent(idTratta, k -> new CopyOnWriteArrayList<>()).add(observer);
     }
 
+    @Override
+    public void registraOsservatore(UUID idTratta, UUID idCliente, StreamObserver<NotificaTrattaGrpc> observer) {
+        if (idCliente != null) {
+            clientiPerStream.put(observer, idCliente);
+        }
+        registraOsservatore(idTratta, observer);
+    }
+
+    @Override
+    public void rimuoviOsservatore(UUID idTratta, StreamObserver<NotificaTrattaGrpc> observer) {
+        List<StreamObserver<NotificaTrattaGrpc>> lista = observers.get(idTratta);
+        if (lista != null) {
+            lista.remove(observer);
+        }
+        clientiPerStream.remove(observer);
+    }
+
+    @Override
+    public boolean inviaNotificaACliente(UUID idTratta, UUID idCliente, NotificaTrattaGrpc notifica) {
+        boolean consegnata = false;
+        for (StreamObserver<NotificaTrattaGrpc> obs : observers.getOrDefault(idTratta, List.of())) {
+            if (!idCliente.equals(clientiPerStream.get(obs))) {
+                continue;
+            }
+            try {
+                obs.onNext(notifica);
+                consegnata = true;
+            } catch (Exception e) {
+                System.err.println("❌ Errore durante l'invio della notifica al client: " + e.getMessage());
+            }
+        }
+        return consegnata;
+    }
+
     @Override
     public void inviaNotifica(UUID idTratta, String messaggio) {
-        NotificaTrattaGrpc notifica = NotificaTrattaGrpc.newBuilder()
+        inviaNotifica(idTratta, NotificaTrattaGrpc.newBuilder()
                 .setMessaggio(messaggio)
-                .build();
+                .build());
+    }
 
+    @Override
+    public void inviaNotifica(UUID idTratta, NotificaTrattaGrpc notifica) {
         List<StreamObserver<NotificaTrattaGrpc>> lista = observers.getOrDefault(idTratta, List.of());
 
         for (StreamObserver<NotificaTrattaGrpc> obs : lista) {
@@ -7,5 +7,19 @@ import java.util.UUID;
 
 public interface NotificaDispatcher {
     void inviaNotifica(UUID trattaId, String messaggio);
+    void inviaNotifica(UUID trattaId, NotificaTrattaGrpc notifica);
     void registraOsservatore(UUID trattaId, StreamObserver<NotificaTrattaGrpc> observer);
+
+    /**
+     * 📡 Iscrizione di un cliente noto: riceve le notifiche della tratta e quelle rivolte solo a lui
+     */
+    void registraOsservatore(UUID trattaId, UUID idCliente, StreamObserver<NotificaTrattaGrpc> observer);
+
+    /**
+     * 🎯 Notifica privata: solo agli stream della tratta iscritti da {@code idCliente}
+     *
+     * @return true se almeno uno stream l'ha ricevuta
+     */
+    boolean inviaNotificaACliente(UUID trattaId, UUID idCliente, NotificaTrattaGrpc notifica);
+    void rimuoviOsservatore(UUID trattaId, StreamObserver<NotificaTrattaGrpc> observer);
 }
\ No newline at end of file
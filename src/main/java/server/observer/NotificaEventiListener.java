@@ -4,11 +4,17 @@ import eventi.*;
 import model.Tratta;
 import model.Promozione;
 import model.Biglietto;
+import model.Trattenuta;
 import persistence.MemoriaTratte;
 import persistence.MemoriaBiglietti;  // ✅ AGGIUNTO
+import grpc.DatiNotificaGrpc;
+import grpc.NotificaTrattaGrpc;
 import grpc.TrenicalServiceImpl;
 import dto.PromozioneDTO;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.UUID;
 import java.util.List;
 import java.util.Set;
@@ -76,6 +82,9 @@ public class NotificaEventiListener implements EventListener {
             System.out.println("📡 Promozione tratta broadcasted: " + promo.getNome() +
                     " (per " + promo.getTratteDestinate().size() + " tratte)");
 
+        } else if (evento instanceof EventoPostoOfferto e) {
+            gestisciPostoOfferto(e.getTrattenuta());
+
         } else {
             System.out.println("🔔 NotificaEventiListener: Evento non gestito: " +
                     evento.getClass().getSimpleName());
@@ -122,6 +131,40 @@ public class NotificaEventiListener implements EventListener {
         System.out.println("   ✅ Totale notifiche inviate: " + (clientiIscritti + clientiNotificati));
     }
 
+    /**
+     * 💺 Posto offerto dalla lista d'attesa: notifica privata al cliente in attesa
+     *
+     * Va solo agli stream che il cliente ha aperto con il proprio ID, mai agli altri
+     * iscritti della tratta: il token della trattenuta vale come diritto al posto.
+     * Il cliente può acquistare entro la scadenza: il posto trattenuto gli viene assegnato.
+     */
+    private void gestisciPostoOfferto(Trattenuta trattenuta) {
+        Tratta tratta = memoriaTratte.getTrattaById(trattenuta.getIdTratta());
+        String descrizione = tratta != null
+                ? tratta.getStazionePartenza() + " → " + tratta.getStazioneArrivo() + " del " + tratta.getData()
+                : trattenuta.getIdTratta().toString().substring(0, 8);
+        LocalDateTime scadenza = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(trattenuta.getScadenzaMillis()), ZoneId.systemDefault());
+
+        NotificaTrattaGrpc notifica = NotificaTrattaGrpc.newBuilder()
+                .setMessaggio("💺 Posto " + trattenuta.getNumeroPosto() + " disponibile per te su " + descrizione +
+                        " - acquista entro le " + scadenza.toLocalTime().withNano(0))
+                .setTrattaId(trattenuta.getIdTratta().toString())
+                .setTipoNotifica("POSTO_DISPONIBILE")
+                .setTimestamp(LocalDateTime.now().toString())
+                .setPriorita(3)
+                .setDati(DatiNotificaGrpc.newBuilder()
+                        .setIdClienteDestinatario(trattenuta.getIdCliente().toString())
+                        .setNumeroPosto(trattenuta.getNumeroPosto())
+                        .setIdTrattenuta(trattenuta.getId().toString())
+                        .setScadenzaTrattenuta(scadenza.toString()))
+                .build();
+
+        boolean consegnata = dispatcher.inviaNotificaACliente(trattenuta.getIdTratta(), trattenuta.getIdCliente(), notifica);
+        System.out.println((consegnata ? "📡 Posto " : "⚠️ Nessuno stream attivo, posto ") + trattenuta.getNumeroPosto() +
+                " offerto a cliente " + trattenuta.getIdCliente().toString().substring(0, 8) + "...");
+    }
+
     /**
      * 📡 Notifica client già iscritti al stream tratta (sistema esistente)
      */
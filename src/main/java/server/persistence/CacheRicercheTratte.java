@@ -0,0 +1,111 @@
+package persistence;
+
+import model.Tratta;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🗂️ CACHE RICERCHE TRATTE - LRU dei risultati di ricerca per filtro normalizzato
+ *
+ * Invalidazione precisa: quando una tratta viene aggiunta, rimossa o modificata
+ * si scartano solo le ricerche il cui filtro ammette la tratta prima o dopo la
+ * modifica. Le altre voci restano valide perché il loro risultato non può cambiare.
+ *
+ * Il chiamante (MemoriaTratte) riempie e invalida sotto il proprio lock, così un
+ * risultato calcolato prima di una modifica non può essere inserito dopo di essa.
+ */
+public class CacheRicercheTratte {
+
+    public static final int CAPACITA_DEFAULT = 512;
+
+    private final int capacita;
+    private final Map<FiltroTratte, List<Tratta>> voci;
+
+    // 📊 Metriche
+    private final AtomicLong hit = new AtomicLong();
+    private final AtomicLong miss = new AtomicLong();
+    private final AtomicLong evizioni = new AtomicLong();
+    private final AtomicLong invalidazioni = new AtomicLong();
+
+    public CacheRicercheTratte() {
+        this(CAPACITA_DEFAULT);
+    }
+
+    public CacheRicercheTratte(int capacita) {
+        if (capacita <= 0) {
+            throw new IllegalArgumentException("Capacità cache non valida: " + capacita);
+        }
+        this.capacita = capacita;
+        this.voci = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FiltroTratte, List<Tratta>> piuVecchia) {
+                if (size() > CacheRicercheTratte.this.capacita) {
+                    evizioni.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Risultato in cache per il filtro, null se assente
+     */
+    public synchronized List<Tratta> get(FiltroTratte filtro) {
+        List<Tratta> risultato = voci.get(filtro);
+        if (risultato != null) {
+            hit.incrementAndGet();
+        } else {
+            miss.incrementAndGet();
+        }
+        return risultato;
+    }
+
+    public synchronized void metti(FiltroTratte filtro, List<Tratta> risultato) {
+        voci.put(filtro, risultato);
+    }
+
+    /**
+     * Scarta le ricerche che includevano o includerebbero una delle tratte
+     */
+    public synchronized void invalida(Collection<Tratta> tratte) {
+        if (tratte.isEmpty() || voci.isEmpty()) return;
+        Iterator<FiltroTratte> it = voci.keySet().iterator();
+        while (it.hasNext()) {
+            FiltroTratte filtro = it.next();
+            for (Tratta t : tratte) {
+                if (filtro.ammette(t)) {
+                    it.remove();
+                    invalidazioni.incrementAndGet();
+                    break;
+                }
+            }
+        }
+    }
+
+    public synchronized int getDimensione() {
+        return voci.size();
+    }
+
+    public long getHit() { return hit.get(); }
+    public long getMiss() { return miss.get(); }
+    public long getEvizioni() { return evizioni.get(); }
+    public long getInvalidazioni() { return invalidazioni.get(); }
+
+    public double getHitRatio() {
+        long h = hit.get();
+        long totale = h + miss.get();
+        return totale == 0 ? 0.0 : (double) h / totale;
+    }
+
+    public String getStatistiche() {
+        return String.format("CacheRicerche: voci=%d/%d, hit=%d, miss=%d, hitRatio=%.1f%%, evizioni=%d, invalidazioni=%d",
+                getDimensione(), capacita, hit.get(), miss.get(), getHitRatio() * 100,
+                evizioni.get(), invalidazioni.get());
+    }
+}
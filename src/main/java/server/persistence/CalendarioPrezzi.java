@@ -0,0 +1,248 @@
+package persistence;
+
+import enums.ClasseServizio;
+import model.Prezzo;
+import model.Promozione;
+import model.Tratta;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 📅 CALENDARIO PREZZI - Vista materializzata del prezzo più basso per giorno
+ *
+ * Per ogni (partenza, arrivo, data) conserva le tratte del giorno e il prezzo
+ * minimo già calcolato per classe: un mese di calendario è una sottomappa
+ * ordinata per data, senza nessuna ricerca tratte.
+ *
+ * Aggiornamento incrementale:
+ * - tratta aggiunta, modificata o rimossa: si ricalcolano solo i giorni
+ *   in cui era e in cui si trova ora (avvisi di MemoriaTratte)
+ * - promozione aggiunta: si ricalcolano solo i giorni delle tratte a cui si applica
+ * - cambio di giorno: le promozioni attive possono cambiare, ricalcolo completo
+ *   una sola volta al giorno
+ *
+ * Il prezzo mostrato è quello intero scontato dalla migliore promozione
+ * pubblica attiva oggi (come PrezzoPromozionaleStrategy); le promozioni
+ * riservate alla carta fedeltà non entrano nel calendario.
+ */
+public class CalendarioPrezzi {
+
+    /**
+     * 💶 Prezzo più basso di un giorno per una classe
+     */
+    public static final class PrezzoGiorno {
+        private final LocalDate data;
+        private final double prezzo;
+        private final UUID idTratta;
+        private final int numeroTratte;
+
+        PrezzoGiorno(LocalDate data, double prezzo, UUID idTratta, int numeroTratte) {
+            this.data = data;
+            this.prezzo = prezzo;
+            this.idTratta = idTratta;
+            this.numeroTratte = numeroTratte;
+        }
+
+        public LocalDate getData() { return data; }
+        public double getPrezzo() { return prezzo; }
+        public UUID getIdTratta() { return idTratta; }
+        public int getNumeroTratte() { return numeroTratte; }
+    }
+
+    private static final class Giorno {
+        final Map<UUID, Tratta> tratte = new HashMap<>();
+        final Map<ClasseServizio, PrezzoGiorno> minimi = new EnumMap<>(ClasseServizio.class);
+    }
+
+    private final MemoriaTratte memoriaTratte;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protetti da lock
+    private final Map<String, TreeMap<LocalDate, Giorno>> perRotta = new HashMap<>();
+    private final Map<UUID, Tratta> indicizzate = new HashMap<>();
+    private MemoriaPromozioni memoriaPromozioni;
+    private List<Promozione> promozioniDelGiorno = List.of();
+    private LocalDate giornoPromozioni;
+
+    public CalendarioPrezzi(MemoriaTratte memoriaTratte) {
+        this.memoriaTratte = memoriaTratte;
+        memoriaTratte.aggiungiAscoltatoreModifiche(this::aggiorna);
+        lock.writeLock().lock();
+        try {
+            giornoPromozioni = LocalDate.now();
+            for (Tratta t : memoriaTratte.getTutteTratte()) {
+                inserisci(t);
+            }
+            perRotta.values().forEach(giorni -> giorni.values().forEach(this::ricalcola));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 🎉 Da ora il calendario applica le promozioni pubbliche attive
+     */
+    public void collegaPromozioni(MemoriaPromozioni memoriaPromozioni) {
+        memoriaPromozioni.aggiungiAscoltatore(this::promozioneAggiunta);
+        lock.writeLock().lock();
+        try {
+            this.memoriaPromozioni = memoriaPromozioni;
+            ricalcolaTutto(LocalDate.now());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Allinea il calendario a una tratta di MemoriaTratte (aggiunta, modifica o rimozione)
+     */
+    public void aggiorna(UUID idTratta) {
+        Tratta attuale = memoriaTratte.getTrattaById(idTratta);
+        lock.writeLock().lock();
+        try {
+            Giorno vecchio = rimuovi(idTratta);
+            if (vecchio != null) ricalcola(vecchio);
+            if (attuale != null) ricalcola(inserisci(attuale));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 📅 Prezzo più basso di ogni giorno del mese con almeno una tratta
+     * da {@code partenza} ad {@code arrivo}, in ordine di data
+     */
+    public List<PrezzoGiorno> mese(String partenza, String arrivo, YearMonth mese, ClasseServizio classe) {
+        allineaGiorno();
+        lock.readLock().lock();
+        try {
+            TreeMap<LocalDate, Giorno> giorni = perRotta.get(rotta(partenza, arrivo));
+            if (giorni == null) return List.of();
+
+            List<PrezzoGiorno> risultato = new ArrayList<>();
+            for (Giorno g : giorni.subMap(mese.atDay(1), true, mese.atEndOfMonth(), true).values()) {
+                PrezzoGiorno minimo = g.minimi.get(classe);
+                if (minimo != null) risultato.add(minimo);
+            }
+            return risultato;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void promozioneAggiunta(Promozione promozione) {
+        lock.writeLock().lock();
+        try {
+            LocalDate oggi = LocalDate.now();
+            if (!oggi.equals(giornoPromozioni)) {
+                ricalcolaTutto(oggi);
+                return;
+            }
+            if (!isPubblica(promozione) || !promozione.isAttiva(oggi)) return;
+
+            List<Promozione> aggiornate = new ArrayList<>(promozioniDelGiorno);
+            aggiornate.add(promozione);
+            promozioniDelGiorno = aggiornate;
+
+            Set<Giorno> toccati = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Tratta t : indicizzate.values()) {
+                if (promozione.siApplicaAllaTratta(t.getId())) {
+                    toccati.add(giornoDi(t));
+                }
+            }
+            toccati.forEach(this::ricalcola);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Le promozioni valgono per il giorno d'acquisto: al cambio di data si ricalcola tutto
+    private void allineaGiorno() {
+        LocalDate oggi = LocalDate.now();
+        lock.readLock().lock();
+        try {
+            if (oggi.equals(giornoPromozioni)) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (!oggi.equals(giornoPromozioni)) ricalcolaTutto(oggi);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ricalcolaTutto(LocalDate oggi) {
+        giornoPromozioni = oggi;
+        promozioniDelGiorno = memoriaPromozioni == null ? List.of()
+                : memoriaPromozioni.getPromozioniAttive().stream()
+                        .filter(p -> isPubblica(p) && p.isAttiva(oggi))
+                        .toList();
+        perRotta.values().forEach(giorni -> giorni.values().forEach(this::ricalcola));
+    }
+
+    private void ricalcola(Giorno giorno) {
+        giorno.minimi.clear();
+        for (Tratta t : giorno.tratte.values()) {
+            double sconto = miglioreSconto(t);
+            for (Map.Entry<ClasseServizio, Prezzo> e : t.getPrezzi().entrySet()) {
+                double prezzo = Math.round(e.getValue().getIntero() * (1 - sconto) * 100) / 100.0;
+                PrezzoGiorno attuale = giorno.minimi.get(e.getKey());
+                if (attuale == null || prezzo < attuale.prezzo
+                        || (prezzo == attuale.prezzo && t.getId().compareTo(attuale.idTratta) < 0)) {
+                    giorno.minimi.put(e.getKey(), new PrezzoGiorno(t.getData(), prezzo, t.getId(), giorno.tratte.size()));
+                }
+            }
+        }
+    }
+
+    private double miglioreSconto(Tratta t) {
+        double sconto = 0.0;
+        for (Promozione p : promozioniDelGiorno) {
+            if (p.getSconto() > sconto && p.siApplicaAllaTratta(t.getId())) {
+                sconto = p.getSconto();
+            }
+        }
+        return sconto;
+    }
+
+    private Giorno inserisci(Tratta t) {
+        indicizzate.put(t.getId(), t);
+        Giorno giorno = perRotta.computeIfAbsent(rotta(t.getStazionePartenza(), t.getStazioneArrivo()), k -> new TreeMap<>())
+                .computeIfAbsent(t.getData(), k -> new Giorno());
+        giorno.tratte.put(t.getId(), t);
+        return giorno;
+    }
+
+    // Giorno da cui è stata tolta la tratta, null se non era nel calendario
+    private Giorno rimuovi(UUID idTratta) {
+        Tratta vecchia = indicizzate.remove(idTratta);
+        if (vecchia == null) return null;
+
+        String rotta = rotta(vecchia.getStazionePartenza(), vecchia.getStazioneArrivo());
+        TreeMap<LocalDate, Giorno> giorni = perRotta.get(rotta);
+        Giorno giorno = giorni.get(vecchia.getData());
+        giorno.tratte.remove(idTratta);
+        if (giorno.tratte.isEmpty()) {
+            giorni.remove(vecchia.getData());
+            if (giorni.isEmpty()) perRotta.remove(rotta);
+        }
+        return giorno;
+    }
+
+    private Giorno giornoDi(Tratta t) {
+        return perRotta.get(rotta(t.getStazionePartenza(), t.getStazioneArrivo())).get(t.getData());
+    }
+
+    private static boolean isPubblica(Promozione p) {
+        return !p.applicabileSoloCartaFedelta();
+    }
+
+    private static String rotta(String partenza, String arrivo) {
+        return FiltroTratte.normalizza(partenza) + "→" + FiltroTratte.normalizza(arrivo);
+    }
+}
@@ -0,0 +1,227 @@
+package persistence;
+
+import model.Tratta;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 🔤 DIZIONARIO STAZIONI - Ricerca per prefisso e tollerante agli errori di battitura
+ *
+ * - Trie sui nomi normalizzati (minuscolo, senza accenti, spazi e punteggiatura):
+ *   ogni nodo conserva già i primi suggerimenti in ordine alfabetico, quindi
+ *   l'autocompletamento costa quanto la lunghezza del testo digitato
+ * - Indice di trigrammi: i nomi simili si trovano contando i trigrammi in comune
+ *   (coefficiente di Dice), senza confrontare il testo con ogni stazione
+ *
+ * Le stazioni si aggiungono dalle tratte che entrano in MemoriaTratte e non
+ * vengono mai rimosse: il dizionario è l'elenco delle stazioni conosciute.
+ */
+public class DizionarioStazioni {
+
+    public static final int SUGGERIMENTI_DEFAULT = 5;
+    public static final int SUGGERIMENTI_MAX = 20;
+
+    // Sotto questa somiglianza un nome non è un suggerimento plausibile
+    static final double SOMIGLIANZA_MINIMA = 0.3;
+
+    private static final class Nodo {
+        final Map<Character, Nodo> figli = new HashMap<>();
+        final List<String> primi = new ArrayList<>();   // ordinati, al più SUGGERIMENTI_MAX
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protetti da lock
+    private final Nodo radice = new Nodo();
+    private final Map<String, String> perChiave = new HashMap<>();      // chiave normalizzata → nome
+    private final List<String> nomi = new ArrayList<>();                // id → nome
+    private final List<Integer> numeroTrigrammi = new ArrayList<>();    // id → trigrammi distinti
+    private final Map<String, List<Integer>> perTrigramma = new HashMap<>();
+
+    public DizionarioStazioni(Collection<String> stazioniNote) {
+        stazioniNote.forEach(this::aggiungi);
+    }
+
+    /**
+     * Dizionario delle stazioni note più quelle delle tratte in memoria,
+     * aggiornato a ogni tratta aggiunta o modificata
+     */
+    public DizionarioStazioni(Collection<String> stazioniNote, MemoriaTratte memoriaTratte) {
+        this(stazioniNote);
+        memoriaTratte.aggiungiAscoltatoreModifiche(id -> {
+            Tratta t = memoriaTratte.getTrattaById(id);
+            if (t != null) {
+                aggiungi(t.getStazionePartenza());
+                aggiungi(t.getStazioneArrivo());
+            }
+        });
+        for (Tratta t : memoriaTratte.getTutteTratte()) {
+            aggiungi(t.getStazionePartenza());
+            aggiungi(t.getStazioneArrivo());
+        }
+    }
+
+    public void aggiungi(String stazione) {
+        String chiave = chiave(stazione);
+        if (chiave.isEmpty()) return;
+
+        lock.readLock().lock();
+        try {
+            if (perChiave.containsKey(chiave)) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (perChiave.putIfAbsent(chiave, stazione) != null) return;
+
+            Nodo nodo = radice;
+            inserisciOrdinato(nodo.primi, stazione);
+            for (char c : chiave.toCharArray()) {
+                nodo = nodo.figli.computeIfAbsent(c, k -> new Nodo());
+                inserisciOrdinato(nodo.primi, stazione);
+            }
+
+            int id = nomi.size();
+            Set<String> trigrammi = trigrammi(chiave);
+            nomi.add(stazione);
+            numeroTrigrammi.add(trigrammi.size());
+            for (String g : trigrammi) {
+                perTrigramma.computeIfAbsent(g, k -> new ArrayList<>()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 💡 Suggerimenti per il testo digitato: prima i nomi che iniziano così,
+     * poi quelli più simili (errori di battitura), senza duplicati
+     */
+    public List<String> suggerisci(String testo, int limite) {
+        String chiave = chiave(testo);
+        int max = Math.min(limite <= 0 ? SUGGERIMENTI_DEFAULT : limite, SUGGERIMENTI_MAX);
+        if (chiave.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            LinkedHashSet<String> risultato = new LinkedHashSet<>();
+            Nodo nodo = radice;
+            for (int i = 0; i < chiave.length() && nodo != null; i++) {
+                nodo = nodo.figli.get(chiave.charAt(i));
+            }
+            if (nodo != null) {
+                for (String nome : nodo.primi) {
+                    if (risultato.size() >= max) break;
+                    risultato.add(nome);
+                }
+            }
+            if (risultato.size() < max) {
+                for (String nome : simili(chiave)) {
+                    if (risultato.size() >= max) break;
+                    risultato.add(nome);
+                }
+            }
+            return new ArrayList<>(risultato);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 🩹 Nome della stazione che corrisponde al testo (anche con maiuscole, spazi
+     * o accenti diversi), oppure la più simile se abbastanza vicina; null se nessuna
+     */
+    public String correggi(String testo) {
+        String chiave = chiave(testo);
+        if (chiave.isEmpty()) return null;
+
+        lock.readLock().lock();
+        try {
+            String esatto = perChiave.get(chiave);
+            if (esatto != null) return esatto;
+            List<String> simili = simili(chiave);
+            return simili.isEmpty() ? null : simili.get(0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contiene(String stazione) {
+        String chiave = chiave(stazione);
+        lock.readLock().lock();
+        try {
+            return perChiave.containsKey(chiave);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNumeroStazioni() {
+        lock.readLock().lock();
+        try {
+            return nomi.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Nomi per somiglianza decrescente (sotto read lock)
+    private List<String> simili(String chiave) {
+        Set<String> trigrammi = trigrammi(chiave);
+        Map<Integer, Integer> comuni = new HashMap<>();
+        for (String g : trigrammi) {
+            List<Integer> ids = perTrigramma.get(g);
+            if (ids == null) continue;
+            for (int id : ids) {
+                comuni.merge(id, 1, Integer::sum);
+            }
+        }
+
+        List<Map.Entry<String, Double>> candidati = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> e : comuni.entrySet()) {
+            int id = e.getKey();
+            double dice = 2.0 * e.getValue() / (trigrammi.size() + numeroTrigrammi.get(id));
+            if (dice >= SOMIGLIANZA_MINIMA) {
+                candidati.add(Map.entry(nomi.get(id), dice));
+            }
+        }
+        candidati.sort(Map.Entry.<String, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        List<String> risultato = new ArrayList<>(candidati.size());
+        candidati.forEach(c -> risultato.add(c.getKey()));
+        return risultato;
+    }
+
+    private static void inserisciOrdinato(List<String> primi, String nome) {
+        int pos = Collections.binarySearch(primi, nome, String.CASE_INSENSITIVE_ORDER);
+        if (pos < 0) pos = -pos - 1;
+        if (pos < SUGGERIMENTI_MAX) {
+            primi.add(pos, nome);
+            if (primi.size() > SUGGERIMENTI_MAX) {
+                primi.remove(primi.size() - 1);
+            }
+        }
+    }
+
+    // Trigrammi con due spazi iniziali e uno finale: pesano anche inizio e fine del nome
+    static Set<String> trigrammi(String chiave) {
+        String s = "  " + chiave + " ";
+        Set<String> trigrammi = new HashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            trigrammi.add(s.substring(i, i + 3));
+        }
+        return trigrammi;
+    }
+
+    // "Reggio Calabria", "reggiocalabria" e "Réggio-Calabria" hanno la stessa chiave
+    static String chiave(String testo) {
+        if (testo == null) return "";
+        String senzaAccenti = Normalizer.normalize(testo, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return senzaAccenti.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+}
@@ -0,0 +1,168 @@
+package persistence;
+
+import enums.ClasseServizio;
+import model.Tratta;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 🔎 FILTRO TRATTE - Criteri di ricerca normalizzati per l'indice di MemoriaTratte
+ *
+ * Stazioni e tipo treno sono confrontati senza distinzione di maiuscole,
+ * la fascia oraria segue le stesse soglie storiche di FiltraTratteCommand.
+ * Un criterio null non filtra.
+ */
+public final class FiltroTratte {
+
+    private static final LocalTime INIZIO_SERA = LocalTime.of(18, 0);
+
+    private final LocalDate data;
+    private final String partenza;
+    private final String arrivo;
+    private final String tipoTreno;
+    private final ClasseServizio classe;
+    private final String fascia;
+
+    private FiltroTratte(Builder builder) {
+        this.data = builder.data;
+        this.partenza = normalizza(builder.partenza);
+        this.arrivo = normalizza(builder.arrivo);
+        this.tipoTreno = normalizza(builder.tipoTreno);
+        this.classe = builder.classe;
+        String f = normalizza(builder.fascia);
+        this.fascia = f == null ? null : f.toUpperCase(Locale.ROOT);
+    }
+
+    static String normalizza(String valore) {
+        if (valore == null) return null;
+        String v = valore.trim();
+        return v.isEmpty() ? null : v.toLowerCase(Locale.ROOT);
+    }
+
+    public LocalDate getData() { return data; }
+    public String getPartenza() { return partenza; }
+    public String getArrivo() { return arrivo; }
+    public String getTipoTreno() { return tipoTreno; }
+    public ClasseServizio getClasse() { return classe; }
+    public String getFascia() { return fascia; }
+
+    /**
+     * Prima ora (inclusa) da cui può iniziare la fascia: usata per saltare
+     * direttamente nella lista del giorno ordinata per orario.
+     */
+    LocalTime inizioFascia() {
+        if (fascia == null) return LocalTime.MIN;
+        return switch (fascia) {
+            case "POMERIGGIO" -> LocalTime.NOON;
+            case "SERA" -> INIZIO_SERA;
+            default -> LocalTime.MIN;
+        };
+    }
+
+    /**
+     * Ora (esclusa) oltre la quale nessuna tratta rientra più nella fascia, null se illimitata
+     */
+    LocalTime fineFascia() {
+        if (fascia == null) return null;
+        return switch (fascia) {
+            case "MATTINA", "MATTINO" -> LocalTime.NOON;
+            case "POMERIGGIO" -> INIZIO_SERA;
+            default -> null;
+        };
+    }
+
+    public boolean ammetteOra(LocalTime ora) {
+        if (fascia == null) return true;
+        return switch (fascia) {
+            case "MATTINA", "MATTINO" -> ora.isBefore(LocalTime.NOON);
+            case "POMERIGGIO" -> ora.isAfter(LocalTime.NOON) && ora.isBefore(INIZIO_SERA);
+            case "SERA" -> ora.isAfter(INIZIO_SERA);
+            default -> true;
+        };
+    }
+
+    public boolean ammette(Tratta t) {
+        return (data == null || t.getData().equals(data))
+                && (partenza == null || partenza.equals(normalizza(t.getStazionePartenza())))
+                && (arrivo == null || arrivo.equals(normalizza(t.getStazioneArrivo())))
+                && (tipoTreno == null || tipoTreno.equals(normalizza(t.getTreno().getTipologia())))
+                && (classe == null || t.getPrezzi().containsKey(classe))
+                && ammetteOra(t.getOra());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FiltroTratte)) return false;
+        FiltroTratte altro = (FiltroTratte) o;
+        return Objects.equals(data, altro.data)
+                && Objects.equals(partenza, altro.partenza)
+                && Objects.equals(arrivo, altro.arrivo)
+                && Objects.equals(tipoTreno, altro.tipoTreno)
+                && classe == altro.classe
+                && Objects.equals(fascia, altro.fascia);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(data, partenza, arrivo, tipoTreno, classe, fascia);
+    }
+
+    @Override
+    public String toString() {
+        return "FiltroTratte{" +
+                "data=" + data +
+                ", partenza='" + partenza + '\'' +
+                ", arrivo='" + arrivo + '\'' +
+                ", tipoTreno='" + tipoTreno + '\'' +
+                ", classe=" + classe +
+                ", fascia='" + fascia + '\'' +
+                '}';
+    }
+
+    public static class Builder {
+        private LocalDate data;
+        private String partenza;
+        private String arrivo;
+        private String tipoTreno;
+        private ClasseServizio classe;
+        private String fascia;
+
+        public Builder data(LocalDate data) {
+            this.data = data;
+            return this;
+        }
+
+        public Builder partenza(String partenza) {
+            this.partenza = partenza;
+            return this;
+        }
+
+        public Builder arrivo(String arrivo) {
+            this.arrivo = arrivo;
+            return this;
+        }
+
+        public Builder tipoTreno(String tipoTreno) {
+            this.tipoTreno = tipoTreno;
+            return this;
+        }
+
+        public Builder classe(ClasseServizio classe) {
+            this.classe = classe;
+            return this;
+        }
+
+        public Builder fascia(String fascia) {
+            this.fascia = fascia;
+            return this;
+        }
+
+        public FiltroTratte build() {
+            return new FiltroTratte(this);
+        }
+    }
+}
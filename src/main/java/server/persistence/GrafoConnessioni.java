@@ -0,0 +1,236 @@
+package persistence;
+
+import model.Itinerario;
+import model.Tratta;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 🧭 GRAFO CONNESSIONI - Orario come elenco di connessioni per il pianificatore viaggi
+ *
+ * Ogni tratta è una connessione stazione → stazione, ordinata per orario di
+ * partenza. Le query usano il Connection Scan Algorithm a giri (come RAPTOR):
+ * il giro k trova l'arrivo più presto con al massimo k tratte, così una sola
+ * scansione per giro restituisce sia il viaggio con meno cambi sia quello che
+ * arriva prima, con un tempo minimo di cambio tra una tratta e l'altra.
+ *
+ * Il grafo si aggiorna in modo incrementale dagli avvisi di MemoriaTratte
+ * (tratta aggiunta, modificata o rimossa), senza ricostruzioni complete.
+ *
+ * Una tratta ha solo l'orario di partenza: la durata è stimata per tipo treno.
+ */
+public class GrafoConnessioni {
+
+    public static final int CAMBIO_MINIMO_MINUTI = 10;
+    public static final int MAX_TRATTE_DEFAULT = 4;
+
+    private static final Map<String, Integer> DURATA_STIMATA_MINUTI = Map.of(
+            "frecciarossa", 90,
+            "frecciargento", 120,
+            "regionale", 150);
+    private static final int DURATA_STIMATA_DEFAULT_MINUTI = 120;
+
+    private static final long INFINITO = Long.MAX_VALUE;
+
+    private static final class Connessione {
+        final Tratta tratta;
+        final int da;
+        final int a;
+        final long partenza;   // minuti dall'epoch
+        final long arrivo;
+
+        Connessione(Tratta tratta, int da, int a, long partenza, long arrivo) {
+            this.tratta = tratta;
+            this.da = da;
+            this.a = a;
+            this.partenza = partenza;
+            this.arrivo = arrivo;
+        }
+    }
+
+    private static final Comparator<Connessione> PER_PARTENZA =
+            Comparator.<Connessione>comparingLong(c -> c.partenza)
+                    .thenComparing(c -> c.tratta.getId());
+
+    private final MemoriaTratte memoriaTratte;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protetti da lock
+    private final List<Connessione> connessioni = new ArrayList<>();
+    private final Map<UUID, Connessione> perTratta = new HashMap<>();
+    private final Map<String, Integer> indiceStazioni = new HashMap<>();
+
+    public GrafoConnessioni(MemoriaTratte memoriaTratte) {
+        this.memoriaTratte = memoriaTratte;
+        memoriaTratte.aggiungiAscoltatoreModifiche(this::aggiorna);
+        lock.writeLock().lock();
+        try {
+            for (Tratta t : memoriaTratte.getTutteTratte()) {
+                inserisci(t);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Allinea la connessione di una tratta a MemoriaTratte (aggiunta, modifica o rimozione)
+     */
+    public void aggiorna(UUID idTratta) {
+        Tratta attuale = memoriaTratte.getTrattaById(idTratta);
+        lock.writeLock().lock();
+        try {
+            rimuovi(idTratta);
+            if (attuale != null) {
+                inserisci(attuale);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static Duration durataStimata(Tratta t) {
+        String tipo = t.getTreno() != null ? FiltroTratte.normalizza(t.getTreno().getTipologia()) : null;
+        return Duration.ofMinutes(tipo != null
+                ? DURATA_STIMATA_MINUTI.getOrDefault(tipo, DURATA_STIMATA_DEFAULT_MINUTI)
+                : DURATA_STIMATA_DEFAULT_MINUTI);
+    }
+
+    /**
+     * 🔎 Itinerari da {@code partenza} ad {@code arrivo} partendo non prima di {@code da}.
+     *
+     * Restituisce il fronte di Pareto cambi/arrivo: il primo è quello con meno
+     * cambi, ogni successivo ha un cambio in più e arriva strettamente prima.
+     * Lista vuota se la destinazione non è raggiungibile con {@code maxTratte} tratte.
+     */
+    public List<Itinerario> pianifica(String partenza, String arrivo, LocalDateTime da, int maxTratte) {
+        lock.readLock().lock();
+        try {
+            Integer origine = indiceStazioni.get(FiltroTratte.normalizza(partenza));
+            Integer destinazione = indiceStazioni.get(FiltroTratte.normalizza(arrivo));
+            if (origine == null || destinazione == null || origine.equals(destinazione) || maxTratte <= 0) {
+                return List.of();
+            }
+
+            int n = indiceStazioni.size();
+            long inizio = minuti(da);
+
+            // pronto[s]: primo minuto da cui si può partire da s (arrivo + cambio minimo)
+            long[] pronto = new long[n];
+            Arrays.fill(pronto, INFINITO);
+            pronto[origine] = inizio;
+
+            Connessione[][] genitore = new Connessione[maxTratte + 1][];
+            int[][] giroDi = new int[maxTratte + 1][];
+            genitore[0] = new Connessione[n];
+            giroDi[0] = new int[n];
+
+            int primo = primaConnessioneDa(inizio);
+            long migliorArrivo = INFINITO;
+            List<Itinerario> risultati = new ArrayList<>();
+
+            for (int k = 1; k <= maxTratte; k++) {
+                long[] nuovoPronto = pronto.clone();
+                genitore[k] = genitore[k - 1].clone();
+                giroDi[k] = giroDi[k - 1].clone();
+                boolean migliorato = false;
+
+                for (int i = primo; i < connessioni.size(); i++) {
+                    Connessione c = connessioni.get(i);
+                    if (c.partenza >= migliorArrivo) break;       // nessun viaggio migliore oltre questo orario
+                    if (pronto[c.da] > c.partenza) continue;        // stazione non raggiunta in tempo al giro k-1
+
+                    long disponibile = c.a == destinazione ? c.arrivo : c.arrivo + CAMBIO_MINIMO_MINUTI;
+                    if (disponibile < nuovoPronto[c.a]) {
+                        nuovoPronto[c.a] = disponibile;
+                        genitore[k][c.a] = c;
+                        giroDi[k][c.a] = k;
+                        migliorato = true;
+                    }
+                }
+
+                if (nuovoPronto[destinazione] < migliorArrivo) {
+                    migliorArrivo = nuovoPronto[destinazione];
+                    risultati.add(ricostruisci(origine, destinazione, k, genitore, giroDi));
+                }
+                if (!migliorato) break;
+                pronto = nuovoPronto;
+            }
+            return risultati;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNumeroConnessioni() {
+        lock.readLock().lock();
+        try {
+            return connessioni.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Risale i genitori: la tratta che raggiunge una stazione al giro k è preceduta
+    // da quella che ne raggiunge la partenza al giro precedente
+    private static Itinerario ricostruisci(int origine, int destinazione, int giro,
+                                           Connessione[][] genitore, int[][] giroDi) {
+        LinkedList<Tratta> tratte = new LinkedList<>();
+        LinkedList<LocalDateTime> arrivi = new LinkedList<>();
+        int stazione = destinazione;
+        int k = giro;
+        while (stazione != origine) {
+            Connessione c = genitore[k][stazione];
+            k = giroDi[k][stazione] - 1;
+            tratte.addFirst(c.tratta);
+            arrivi.addFirst(LocalDateTime.ofEpochSecond(c.arrivo * 60, 0, ZoneOffset.UTC));
+            stazione = c.da;
+        }
+        return new Itinerario(tratte, arrivi);
+    }
+
+    // Ricerca binaria della prima connessione che parte da "inizio" in poi
+    private int primaConnessioneDa(long inizio) {
+        int lo = 0, hi = connessioni.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (connessioni.get(mid).partenza < inizio) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void inserisci(Tratta t) {
+        long partenza = minuti(t.getData().atTime(t.getOra()));
+        Connessione c = new Connessione(t, stazione(t.getStazionePartenza()), stazione(t.getStazioneArrivo()),
+                partenza, partenza + durataStimata(t).toMinutes());
+        int pos = Collections.binarySearch(connessioni, c, PER_PARTENZA);
+        connessioni.add(pos < 0 ? -pos - 1 : pos, c);
+        perTratta.put(t.getId(), c);
+    }
+
+    private void rimuovi(UUID idTratta) {
+        Connessione c = perTratta.remove(idTratta);
+        if (c != null) {
+            int pos = Collections.binarySearch(connessioni, c, PER_PARTENZA);
+            if (pos >= 0) {
+                connessioni.remove(pos);
+            }
+        }
+    }
+
+    private int stazione(String nome) {
+        return indiceStazioni.computeIfAbsent(String.valueOf(FiltroTratte.normalizza(nome)), k -> indiceStazioni.size());
+    }
+
+    private static long minuti(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+}
@@ -0,0 +1,160 @@
+package persistence;
+
+import enums.ClasseServizio;
+import model.LayoutPosti;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 💺 MAPPA POSTI - Occupazione dei posti di una tratta su bitmap
+ *
+ * Un bit per posto (1 = occupato) e un contatore di posti liberi per classe:
+ * - primo posto libero: {@link BitSet#nextClearBit} salta 64 posti per parola
+ * - posti adiacenti per i gruppi: scansione delle sequenze libere nella stessa carrozza
+ * - vista compatta per i client: i byte della bitmap, senza creare oggetti posto
+ *
+ * NON è thread-safe: viene usata solo sotto il write lock di {@link MemoriaBiglietti}.
+ */
+public class MappaPosti {
+
+    private final LayoutPosti layout;
+    private final BitSet occupati;
+    private final Map<ClasseServizio, Integer> liberiPerClasse = new EnumMap<>(ClasseServizio.class);
+    private int liberiCondivisi;
+
+    MappaPosti(LayoutPosti layout) {
+        this.layout = layout;
+        this.occupati = new BitSet(layout.getEstensione());
+        this.liberiCondivisi = layout.getCapienzaTotale();
+        for (ClasseServizio classe : ClasseServizio.values()) {
+            liberiPerClasse.put(classe, layout.getNumeroPosti(classe));
+        }
+    }
+
+    private MappaPosti(MappaPosti originale) {
+        this.layout = originale.layout;
+        this.occupati = (BitSet) originale.occupati.clone();
+        this.liberiPerClasse.putAll(originale.liberiPerClasse);
+        this.liberiCondivisi = originale.liberiCondivisi;
+    }
+
+    /**
+     * 🎯 First-fit: occupa il primo posto libero della classe
+     *
+     * @return numero del posto (da 1), oppure -1 se la classe è piena
+     */
+    int occupaPrimoLibero(ClasseServizio classe) {
+        int primo = layout.getPrimoIndice(classe);
+        int fine = primo + layout.getNumeroPosti(classe);
+        int indice = occupati.nextClearBit(primo);
+        if (indice >= fine) {
+            return -1;
+        }
+        segna(classe, indice, true);
+        return indice + 1;
+    }
+
+    /**
+     * 👨‍👩‍👧‍👦 Occupa {@code quanti} posti della classe, preferendo una fila contigua
+     * nella stessa carrozza; se non esiste ripiega sul first-fit posto per posto.
+     *
+     * @return numeri dei posti assegnati, oppure {@code null} se i posti non bastano
+     */
+    int[] occupaAdiacenti(ClasseServizio classe, int quanti) {
+        if (quanti <= 0 || getPostiLiberi(classe) < quanti) {
+            return null;
+        }
+
+        int[] posti = new int[quanti];
+        int inizio = cercaFilaLibera(classe, quanti);
+        if (inizio >= 0) {
+            for (int i = 0; i < quanti; i++) {
+                segna(classe, inizio + i, true);
+                posti[i] = inizio + i + 1;
+            }
+            return posti;
+        }
+
+        for (int i = 0; i < quanti; i++) {
+            posti[i] = occupaPrimoLibero(classe);
+        }
+        return posti;
+    }
+
+    private int cercaFilaLibera(ClasseServizio classe, int quanti) {
+        int postiPerCarrozza = layout.getPostiPerCarrozza();
+        int fine = layout.getPrimoIndice(classe) + layout.getNumeroPosti(classe);
+        int indice = occupati.nextClearBit(layout.getPrimoIndice(classe));
+
+        while (indice + quanti <= fine) {
+            int fineCarrozza = Math.min(fine, (indice / postiPerCarrozza + 1) * postiPerCarrozza);
+            int prossimoOccupato = occupati.nextSetBit(indice);
+            int fineFila = prossimoOccupato < 0 ? fineCarrozza : Math.min(prossimoOccupato, fineCarrozza);
+
+            if (fineFila - indice >= quanti) {
+                return indice;
+            }
+            indice = occupati.nextClearBit(fineFila);
+        }
+        return -1;
+    }
+
+    /**
+     * 📌 Occupa un posto preciso (biglietti già assegnati al caricamento)
+     */
+    boolean occupa(ClasseServizio classe, int numeroPosto) {
+        if (!layout.contiene(classe, numeroPosto) || occupati.get(numeroPosto - 1)) {
+            return false;
+        }
+        segna(classe, numeroPosto - 1, true);
+        return true;
+    }
+
+    void libera(ClasseServizio classe, int numeroPosto) {
+        if (layout.contiene(classe, numeroPosto) && occupati.get(numeroPosto - 1)) {
+            segna(classe, numeroPosto - 1, false);
+        }
+    }
+
+    private void segna(ClasseServizio classe, int indice, boolean occupato) {
+        occupati.set(indice, occupato);
+        int delta = occupato ? -1 : 1;
+        if (layout.isCondiviso()) {
+            liberiCondivisi += delta;
+        } else {
+            liberiPerClasse.merge(classe != null ? classe : ClasseServizio.BASE, delta, Integer::sum);
+        }
+    }
+
+    /**
+     * 📸 Copia indipendente, leggibile fuori dal lock
+     */
+    MappaPosti copia() {
+        return new MappaPosti(this);
+    }
+
+    public LayoutPosti getLayout() {
+        return layout;
+    }
+
+    public int getPostiLiberi(ClasseServizio classe) {
+        return layout.isCondiviso()
+                ? liberiCondivisi
+                : liberiPerClasse.get(classe != null ? classe : ClasseServizio.BASE);
+    }
+
+    public boolean isOccupato(int numeroPosto) {
+        return occupati.get(numeroPosto - 1);
+    }
+
+    /**
+     * 🗺️ Bitmap dei posti della classe: il bit i corrisponde al posto
+     * {@code primoIndice + i + 1} (formato {@link BitSet#toByteArray()})
+     */
+    public byte[] getBitmap(ClasseServizio classe) {
+        int primo = layout.getPrimoIndice(classe);
+        return occupati.get(primo, primo + layout.getNumeroPosti(classe)).toByteArray();
+    }
+}
@@ -1,10 +1,15 @@
 package persistence;
 
+import enums.ClasseServizio;
 import model.Biglietto;
+import model.LayoutPosti;
+import model.Trattenuta;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * 🔍 MEMORIA BIGLIETTI - VERSIONE DETECTIVE
@@ -15,6 +20,26 @@ public class MemoriaBiglietti {
     private final List<Biglietto> biglietti = new ArrayList<>();
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    // 🗂️ Gli stessi biglietti raggruppati per tratta (protetto dal lock): le mappe posti
+    // si costruiscono senza scorrere i biglietti di tutte le altre tratte
+    private final Map<UUID, List<Biglietto>> bigliettiPerTratta = new HashMap<>();
+
+    // 💺 Mappe posti per tratta, costruite alla prima prenotazione (protette dal lock)
+    private final Map<UUID, MappaPosti> mappePosti = new HashMap<>();
+
+    // ⏳ Trattenute: solo in memoria, mai salvate (protette dal lock)
+    private final Map<UUID, Trattenuta> trattenute = new HashMap<>();
+    private final PriorityQueue<Trattenuta> scadenzeTrattenute =
+            new PriorityQueue<>(Comparator.comparingLong(Trattenuta::getScadenzaMillis));
+
+    // 🔔 Tratte con posti liberati durante l'operazione corrente, notificate dopo l'unlock
+    private final Set<UUID> tratteConPostiLiberati = new LinkedHashSet<>();
+    private final List<Consumer<UUID>> ascoltatoriPostiLiberati = new CopyOnWriteArrayList<>();
+
+    // 📊 Tratte con posti occupati o liberati durante l'operazione corrente (tabelloni partenze)
+    private final Set<UUID> tratteConOccupazioneCambiata = new LinkedHashSet<>();
+    private final List<Consumer<UUID>> ascoltatoriOccupazione = new CopyOnWriteArrayList<>();
+
     // Statistiche per debugging
     private int tentativiTotali = 0;
     private int tentativiAccettati = 0;
@@ -27,6 +52,7 @@ public class MemoriaBiglietti {
     public MemoriaBiglietti() {
         try {
             biglietti.addAll(BigliettiPersistenceManager.caricaBiglietti());
+            biglietti.forEach(this::indicizza);
             System.out.println("💾 MemoriaBiglietti DETECTIVE: Caricati " + biglietti.size() + " biglietti");
         } catch (IOException e) {
             System.err.println("❌ Errore caricamento biglietti: " + e.getMessage());
@@ -37,15 +63,22 @@ public class MemoriaBiglietti {
      * 🔒 METODO ATOMICO (dovrebbe essere l'UNICO punto di inserimento)
      */
     public boolean aggiungiSeSpazioDiponibile(Biglietto biglietto, int capienzaMassima) {
+        return riservaPosto(biglietto, LayoutPosti.unico(capienzaMassima)) != null;
+    }
+
+    /**
+     * 💺 Assegna il primo posto libero della classe e inserisce il biglietto
+     *
+     * @return il biglietto con il posto assegnato, oppure {@code null} se la classe è piena
+     */
+    public Biglietto riservaPosto(Biglietto biglietto, LayoutPosti layout) {
         lock.writeLock().lock();
         try {
             tentativiTotali++;
             String logPrefix = "[ATOMICO #" + tentativiTotali + "]";
 
-            // Conta biglietti esistenti per questa tratta
-            long bigliettiEsistenti = biglietti.stream()
-                    .filter(b -> b.getIdTratta().equals(biglietto.getIdTratta()))
-                    .count();
+            scadiTrattenuteInterno(System.currentTimeMillis());
+            MappaPosti mappa = mappaPer(biglietto.getIdTratta(), layout);
 
             String trattaId = biglietto.getIdTratta().toString().substring(0, 8);
             String bigliettoId = biglietto.getId().toString().substring(0, 8);
@@ -53,29 +86,148 @@ public class MemoriaBiglietti {
             System.out.println("🔍 " + logPrefix + " CONTROLLO ATOMICO:");
             System.out.println("   Thread: " + Thread.currentThread().getName());
             System.out.println("   Tratta: " + trattaId + " | Biglietto: " + bigliettoId);
-            System.out.println("   Esistenti: " + bigliettiEsistenti + "/" + capienzaMassima);
+            System.out.println("   Liberi " + biglietto.getClasse() + ": " + mappa.getPostiLiberi(biglietto.getClasse()) +
+                    "/" + layout.getNumeroPosti(biglietto.getClasse()));
 
-            // Decisione atomica
-            if (bigliettiEsistenti < capienzaMassima) {
-                biglietti.add(biglietto);
-                salvaInterno();
+            // Decisione atomica: un posto trattenuto per il cliente ha la precedenza
+            Trattenuta trattenuta = trattenutaDi(biglietto.getIdTratta(), biglietto.getIdCliente(), classeDi(biglietto));
+            if (trattenuta != null) {
+                trattenute.remove(trattenuta.getId());
+                System.out.println("⏳ " + logPrefix + " Uso posto trattenuto " + trattenuta.getNumeroPosto());
+            }
+            int posto = trattenuta != null ? trattenuta.getNumeroPosto() : mappa.occupaPrimoLibero(biglietto.getClasse());
+            if (posto < 0) {
+                tentativiRifiutati++;
+                System.out.println("❌ " + logPrefix + " RIFIUTATO: treno pieno");
+                return null;
+            }
+            tratteConOccupazioneCambiata.add(biglietto.getIdTratta());
 
-                // 🔍 DETECTIVE: Traccia inserimento
-                inserimentiTotali++;
-                inserimentiPerMetodo.merge("aggiungiSeSpazioDiponibile", 1, Integer::sum);
+            Biglietto conPosto = biglietto.conPosto(posto);
+            aggiungiInterno(conPosto);
+            salvaInterno();
 
-                tentativiAccettati++;
-                System.out.println("✅ " + logPrefix + " ACCETTATO: posto " + (bigliettiEsistenti + 1) + "/" + capienzaMassima);
-                System.out.println("   🔍 DETECTIVE: Inserimento #" + inserimentiTotali + " via ATOMICO");
+            // 🔍 DETECTIVE: Traccia inserimento
+            inserimentiTotali++;
+            inserimentiPerMetodo.merge("aggiungiSeSpazioDiponibile", 1, Integer::sum);
 
-                return true;
-            } else {
-                tentativiRifiutati++;
-                System.out.println("❌ " + logPrefix + " RIFIUTATO: treno pieno");
-                return false;
+            tentativiAccettati++;
+            System.out.println("✅ " + logPrefix + " ACCETTATO: carrozza " + layout.carrozzaDi(posto) + ", posto " + posto);
+            System.out.println("   🔍 DETECTIVE: Inserimento #" + inserimentiTotali + " via ATOMICO");
+
+            return conPosto;
+        } finally {
+            sbloccaScrittura();
+        }
+    }
+
+    /**
+     * 👨‍👩‍👧‍👦 ACQUISTO DI GRUPPO ATOMICO
+     *
+     * Tutti i biglietti devono essere sulla stessa tratta: un solo conteggio,
+     * un solo inserimento e un solo salvataggio. O entrano tutti o nessuno.
+     */
+    public boolean aggiungiGruppoSeSpazioDisponibile(List<Biglietto> gruppo, int capienzaMassima) {
+        if (gruppo.isEmpty()) {
+            return false;
+        }
+
+        UUID idTratta = gruppo.get(0).getIdTratta();
+        if (gruppo.stream().anyMatch(b -> !b.getIdTratta().equals(idTratta))) {
+            throw new IllegalArgumentException("Il gruppo deve riguardare una sola tratta");
+        }
+
+        return aggiungiTuttiSeSpazioDisponibile(gruppo, Map.of(idTratta, capienzaMassima));
+    }
+
+    /**
+     * 🛒 INSERIMENTO MULTI-TRATTA ATOMICO (checkout carrello, gruppi)
+     *
+     * @param capienzaPerTratta capienza massima di ogni tratta presente nei biglietti
+     */
+    public boolean aggiungiTuttiSeSpazioDisponibile(List<Biglietto> nuovi, Map<UUID, Integer> capienzaPerTratta) {
+        Map<UUID, LayoutPosti> layoutPerTratta = new HashMap<>();
+        capienzaPerTratta.forEach((idTratta, capienza) -> layoutPerTratta.put(idTratta, LayoutPosti.unico(capienza)));
+        return riservaPosti(nuovi, layoutPerTratta) != null;
+    }
+
+    /**
+     * 🛒 RISERVA POSTI MULTI-TRATTA ATOMICA (checkout carrello, gruppi)
+     *
+     * I biglietti della stessa tratta e classe ricevono posti adiacenti nella stessa
+     * carrozza quando possibile. Se anche una sola tratta non ha posti sufficienti
+     * non viene inserito nulla. Le tratte sono servite in ordine di ID, così log ed
+     * esiti sono deterministici.
+     *
+     * @return i biglietti con i posti assegnati (stesso ordine), oppure {@code null}
+     */
+    public List<Biglietto> riservaPosti(List<Biglietto> nuovi, Map<UUID, LayoutPosti> layoutPerTratta) {
+        if (nuovi.isEmpty()) {
+            return null;
+        }
+
+        Map<UUID, Map<ClasseServizio, List<Integer>>> richiestePerTratta = new TreeMap<>();
+        for (int i = 0; i < nuovi.size(); i++) {
+            Biglietto b = nuovi.get(i);
+            if (!layoutPerTratta.containsKey(b.getIdTratta())) {
+                throw new IllegalArgumentException("Capienza mancante per la tratta " + b.getIdTratta());
+            }
+            richiestePerTratta
+                    .computeIfAbsent(b.getIdTratta(), id -> new EnumMap<>(ClasseServizio.class))
+                    .computeIfAbsent(classeDi(b), c -> new ArrayList<>())
+                    .add(i);
+        }
+
+        lock.writeLock().lock();
+        try {
+            tentativiTotali++;
+            String logPrefix = "[MULTI #" + tentativiTotali + "]";
+            scadiTrattenuteInterno(System.currentTimeMillis());
+
+            System.out.println("🔍 " + logPrefix + " CONTROLLO ATOMICO: " + nuovi.size() + " posti su " +
+                    richiestePerTratta.size() + " tratte");
+
+            Biglietto[] conPosto = new Biglietto[nuovi.size()];
+            List<Biglietto> assegnati = new ArrayList<>();
+
+            for (Map.Entry<UUID, Map<ClasseServizio, List<Integer>>> tratta : richiestePerTratta.entrySet()) {
+                MappaPosti mappa = mappaPer(tratta.getKey(), layoutPerTratta.get(tratta.getKey()));
+
+                for (Map.Entry<ClasseServizio, List<Integer>> classe : tratta.getValue().entrySet()) {
+                    List<Integer> indici = classe.getValue();
+                    System.out.println("   Tratta " + tratta.getKey().toString().substring(0, 8) + " " +
+                            classe.getKey() + ": " + indici.size() + " richiesti, " +
+                            mappa.getPostiLiberi(classe.getKey()) + " liberi");
+
+                    int[] posti = mappa.occupaAdiacenti(classe.getKey(), indici.size());
+                    if (posti == null) {
+                        assegnati.forEach(this::liberaPosto);
+                        tentativiRifiutati++;
+                        System.out.println("❌ " + logPrefix + " RIFIUTATO: posti insufficienti, nessun biglietto inserito");
+                        return null;
+                    }
+                    tratteConOccupazioneCambiata.add(tratta.getKey());
+
+                    for (int i = 0; i < posti.length; i++) {
+                        Biglietto b = nuovi.get(indici.get(i)).conPosto(posti[i]);
+                        conPosto[indici.get(i)] = b;
+                        assegnati.add(b);
+                    }
+                }
             }
+
+            List<Biglietto> risultato = Arrays.asList(conPosto);
+            risultato.forEach(this::aggiungiInterno);
+            salvaInterno();
+
+            inserimentiTotali += nuovi.size();
+            inserimentiPerMetodo.merge("aggiungiTuttiSeSpazioDisponibile", nuovi.size(), Integer::sum);
+
+            tentativiAccettati++;
+            System.out.println("✅ " + logPrefix + " ACCETTATO: " + nuovi.size() + " biglietti inseriti");
+            return risultato;
         } finally {
-            lock.writeLock().unlock();
+            sbloccaScrittura();
         }
     }
 
@@ -89,17 +241,22 @@ public class MemoriaBiglietti {
             System.out.println("   Thread: " + Thread.currentThread().getName());
             System.out.println("   Prenotazione ID: " + prenotazione.getId().toString().substring(0, 8));
 
-            // Trova e rimuovi la prenotazione
+            // Trova e rimuovi la prenotazione (il posto resta assegnato)
             int sizePreRimozione = biglietti.size();
-            boolean prenotazioneTrovata = biglietti.removeIf(b ->
-                    b.getId().equals(prenotazione.getId()) &&
-                            "prenotazione".equals(b.getTipoAcquisto()));
+            Biglietto salvata = biglietti.stream()
+                    .filter(b -> b.getId().equals(prenotazione.getId()) &&
+                            "prenotazione".equals(b.getTipoAcquisto()))
+                    .findFirst()
+                    .orElse(null);
+            if (salvata != null) {
+                rimuoviInterno(salvata);
+            }
             int sizePostRimozione = biglietti.size();
 
             System.out.println("   🔍 Rimozione: " + sizePreRimozione + " → " + sizePostRimozione +
-                    " (trovata: " + prenotazioneTrovata + ")");
+                    " (trovata: " + (salvata != null) + ")");
 
-            if (!prenotazioneTrovata) {
+            if (salvata == null) {
                 System.out.println("❌ CONFERMA: Prenotazione non trovata " +
                         prenotazione.getId().toString().substring(0, 8));
                 return false;
@@ -114,11 +271,12 @@ public class MemoriaBiglietti {
                     prenotazione.isConCartaFedelta(),
                     prenotazione.getPrezzoPagato(),
                     java.time.LocalDate.now(),
-                    "acquisto" // Tipo cambia
+                    "acquisto", // Tipo cambia
+                    salvata.getNumeroPosto() // Stesso posto
             );
 
             int sizePreAggiunta = biglietti.size();
-            biglietti.add(confermato);
+            aggiungiInterno(confermato);
             int sizePostAggiunta = biglietti.size();
             salvaInterno();
 
@@ -133,7 +291,7 @@ public class MemoriaBiglietti {
             return true;
 
         } finally {
-            lock.writeLock().unlock();
+            sbloccaScrittura();
         }
     }
 
@@ -141,13 +299,50 @@ public class MemoriaBiglietti {
      * 🔄 MODIFICA BIGLIETTO ATOMICA
      */
     public boolean modificaBigliettoAtomico(UUID idVecchio, Biglietto nuovo, int capienzaMassima) {
+        return modificaConPosto(idVecchio, nuovo, LayoutPosti.unico(capienzaMassima)) != null;
+    }
+
+    /**
+     * 🔄 MODIFICA CON NUOVO POSTO: il posto del biglietto originale viene liberato
+     * solo se il nuovo posto è stato assegnato
+     *
+     * @return il nuovo biglietto con il posto assegnato, oppure {@code null}
+     */
+    public Biglietto modificaConPosto(UUID idVecchio, Biglietto nuovo, LayoutPosti layout) {
+        return modificaConPosto(idVecchio, nuovo, layout, null);
+    }
+
+    /**
+     * 🔄 MODIFICA SUL POSTO GIÀ TRATTENUTO (commit della saga di modifica)
+     *
+     * @param tokenTrattenuta trattenuta dello stesso cliente sulla nuova tratta e classe;
+     *                        {@code null} per assegnare il primo posto libero
+     * @return il nuovo biglietto, oppure {@code null} se la trattenuta non è più valida
+     */
+    public Biglietto modificaConPosto(UUID idVecchio, Biglietto nuovo, LayoutPosti layout, UUID tokenTrattenuta) {
         lock.writeLock().lock();
         try {
+            scadiTrattenuteInterno(System.currentTimeMillis());
+            Trattenuta trattenuta = null;
+            if (tokenTrattenuta != null) {
+                trattenuta = trattenute.get(tokenTrattenuta);
+                if (trattenuta == null
+                        || !trattenuta.getIdTratta().equals(nuovo.getIdTratta())
+                        || !trattenuta.getIdCliente().equals(nuovo.getIdCliente())
+                        || trattenuta.getClasse() != classeDi(nuovo)) {
+                    System.out.println("❌ MODIFICA: Trattenuta scaduta o non valida");
+                    return null;
+                }
+            }
+
             System.out.println("🔍 DETECTIVE MODIFICA: Inizio operazione");
             System.out.println("   Thread: " + Thread.currentThread().getName());
             System.out.println("   ID Vecchio: " + idVecchio.toString().substring(0, 8));
             System.out.println("   ID Nuovo: " + nuovo.getId().toString().substring(0, 8));
 
+            // La mappa va preparata prima: può assegnare il posto ai biglietti storici
+            MappaPosti mappa = mappaPer(nuovo.getIdTratta(), layout);
+
             // Trova biglietto originale
             Biglietto originale = biglietti.stream()
                     .filter(b -> b.getId().equals(idVecchio))
@@ -156,28 +351,41 @@ public class MemoriaBiglietti {
 
             if (originale == null) {
                 System.out.println("❌ MODIFICA: Biglietto originale non trovato");
-                return false;
+                return null;
             }
 
-            // Controlla capienza per la nuova tratta
-            long bigliettiNuovaTratta = biglietti.stream()
-                    .filter(b -> b.getIdTratta().equals(nuovo.getIdTratta()))
-                    .filter(b -> !b.getId().equals(idVecchio)) // Escludi quello che modifichiamo
-                    .count();
+            // Sulla stessa tratta il posto originale torna disponibile per il nuovo biglietto
+            boolean stessaTratta = originale.getIdTratta().equals(nuovo.getIdTratta());
+            if (stessaTratta && trattenuta == null) {
+                liberaPosto(originale);
+            }
 
-            System.out.println("   🔍 Capienza nuova tratta: " + bigliettiNuovaTratta + "/" + capienzaMassima);
+            System.out.println("   🔍 Liberi nuova tratta (" + nuovo.getClasse() + "): " +
+                    mappa.getPostiLiberi(nuovo.getClasse()) + "/" + layout.getNumeroPosti(nuovo.getClasse()));
 
-            if (bigliettiNuovaTratta >= capienzaMassima) {
+            int posto = trattenuta != null ? trattenuta.getNumeroPosto() : mappa.occupaPrimoLibero(nuovo.getClasse());
+            if (posto < 0) {
+                if (stessaTratta && originale.getNumeroPosto() != null) {
+                    mappa.occupa(originale.getClasse(), originale.getNumeroPosto());
+                }
                 System.out.println("❌ MODIFICA: Nuova tratta piena");
-                return false;
+                return null;
+            }
+            tratteConOccupazioneCambiata.add(nuovo.getIdTratta());
+            if (!stessaTratta || trattenuta != null) {
+                liberaPosto(originale);
+            }
+            if (trattenuta != null) {
+                trattenute.remove(trattenuta.getId());
             }
 
             // Operazione atomica: rimuovi vecchio + aggiungi nuovo
+            Biglietto conPosto = nuovo.conPosto(posto);
             int sizePreRimozione = biglietti.size();
-            biglietti.removeIf(b -> b.getId().equals(idVecchio));
+            rimuoviInterno(originale);
             int sizePostRimozione = biglietti.size();
 
-            biglietti.add(nuovo);
+            aggiungiInterno(conPosto);
             int sizePostAggiunta = biglietti.size();
             salvaInterno();
 
@@ -188,13 +396,13 @@ public class MemoriaBiglietti {
             System.out.println("   🔍 Rimozione: " + sizePreRimozione + " → " + sizePostRimozione);
             System.out.println("   🔍 Aggiunta: " + sizePostRimozione + " → " + sizePostAggiunta);
             System.out.println("✅ MODIFICA ATOMICA: " + idVecchio.toString().substring(0, 8) +
-                    " → " + nuovo.getId().toString().substring(0, 8));
+                    " → " + nuovo.getId().toString().substring(0, 8) + " (posto " + posto + ")");
             System.out.println("   🔍 DETECTIVE: Inserimento #" + inserimentiTotali + " via MODIFICA");
 
-            return true;
+            return conPosto;
 
         } finally {
-            lock.writeLock().unlock();
+            sbloccaScrittura();
         }
     }
 
@@ -219,8 +427,9 @@ public class MemoriaBiglietti {
             }
 
             int sizePreAggiunta = biglietti.size();
-            biglietti.add(b);
+            aggiungiInterno(b);
             int sizePostAggiunta = biglietti.size();
+            mappePosti.remove(b.getIdTratta()); // ricostruita alla prossima prenotazione
             salvaInterno();
 
             // 🔍 DETECTIVE: Traccia inserimento ILLEGALE
@@ -231,7 +440,7 @@ public class MemoriaBiglietti {
             System.out.println("🚨 DETECTIVE: Inserimento ILLEGALE #" + inserimentiTotali + " via DEPRECATO");
 
         } finally {
-            lock.writeLock().unlock();
+            sbloccaScrittura();
         }
     }
 
@@ -257,7 +466,14 @@ public class MemoriaBiglietti {
             System.out.println("   Thread: " + Thread.currentThread().getName());
 
             int sizePreRimozione = biglietti.size();
-            boolean rimosso = biglietti.removeIf(b -> b.getId().equals(idBiglietto));
+            boolean rimosso = biglietti.removeIf(b -> {
+                if (!b.getId().equals(idBiglietto)) {
+                    return false;
+                }
+                liberaPosto(b);
+                togliDaIndice(b);
+                return true;
+            });
             int sizePostRimozione = biglietti.size();
 
             if (rimosso) {
@@ -270,7 +486,35 @@ public class MemoriaBiglietti {
 
             return rimosso;
         } finally {
-            lock.writeLock().unlock();
+            sbloccaScrittura();
+        }
+    }
+
+    /**
+     * 🗑️ Rimuovi più biglietti con un solo salvataggio (rollback acquisti di gruppo)
+     */
+    public int rimuoviBiglietti(Collection<UUID> idBiglietti) {
+        Set<UUID> daRimuovere = new HashSet<>(idBiglietti);
+        lock.writeLock().lock();
+        try {
+            int sizePreRimozione = biglietti.size();
+            biglietti.removeIf(b -> {
+                if (!daRimuovere.contains(b.getId())) {
+                    return false;
+                }
+                liberaPosto(b);
+                togliDaIndice(b);
+                return true;
+            });
+            int rimossi = sizePreRimozione - biglietti.size();
+
+            if (rimossi > 0) {
+                salvaInterno();
+            }
+            System.out.println("🗑️ DETECTIVE RIMOZIONE GRUPPO: " + rimossi + "/" + daRimuovere.size() + " biglietti");
+            return rimossi;
+        } finally {
+            sbloccaScrittura();
         }
     }
 
@@ -386,6 +630,387 @@ public class MemoriaBiglietti {
         }
     }
 
+    /**
+     * ⏳ Blocca un posto per un cliente senza creare biglietti né salvare
+     *
+     * Il posto resta occupato fino al riscatto (acquisto dello stesso cliente sulla
+     * stessa tratta e classe), al rilascio o alla scadenza.
+     *
+     * @return la trattenuta, oppure {@code null} se la classe è piena
+     */
+    public Trattenuta trattieniPosto(UUID idTratta, UUID idCliente, ClasseServizio classe,
+                                     LayoutPosti layout, long durataMillis) {
+        lock.writeLock().lock();
+        try {
+            scadiTrattenuteInterno(System.currentTimeMillis());
+            int posto = mappaPer(idTratta, layout).occupaPrimoLibero(classe);
+            if (posto < 0) {
+                return null;
+            }
+            tratteConOccupazioneCambiata.add(idTratta);
+
+            Trattenuta trattenuta = new Trattenuta(idTratta, idCliente, classe, posto,
+                    System.currentTimeMillis() + durataMillis);
+            trattenute.put(trattenuta.getId(), trattenuta);
+            scadenzeTrattenute.add(trattenuta);
+
+            System.out.println("⏳ TRATTENUTA: posto " + posto + " tratta " + idTratta.toString().substring(0, 8) +
+                    " per cliente " + idCliente.toString().substring(0, 8) + " (" + durataMillis / 1000 + "s)");
+            return trattenuta;
+        } finally {
+            sbloccaScrittura();
+        }
+    }
+
+    /**
+     * 🔓 Rilascia una trattenuta non più necessaria
+     */
+    public boolean rilasciaTrattenuta(UUID idTrattenuta) {
+        lock.writeLock().lock();
+        try {
+            Trattenuta trattenuta = trattenute.remove(idTrattenuta);
+            if (trattenuta == null) {
+                return false;
+            }
+            liberaPosto(trattenuta);
+            return true;
+        } finally {
+            sbloccaScrittura();
+        }
+    }
+
+    /**
+     * ⌛ Libera i posti delle trattenute scadute (in ordine di scadenza, senza scansioni)
+     *
+     * @return numero di trattenute scadute
+     */
+    public int scadiTrattenute() {
+        lock.writeLock().lock();
+        try {
+            return scadiTrattenuteInterno(System.currentTimeMillis());
+        } finally {
+            sbloccaScrittura();
+        }
+    }
+
+    /**
+     * 🎟️ Trattenuta valida per il token, oppure {@code null} se inesistente o scaduta
+     */
+    public Trattenuta getTrattenuta(UUID token) {
+        long ora = System.currentTimeMillis();
+        lock.readLock().lock();
+        try {
+            Trattenuta trattenuta = trattenute.get(token);
+            return trattenuta != null && !trattenuta.isScaduta(ora) ? trattenuta : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 🎟️ Trasforma una trattenuta in biglietto: unico momento in cui si scrive su disco
+     *
+     * Il biglietto deve essere dello stesso cliente, tratta e classe della trattenuta.
+     *
+     * @return il biglietto con il posto trattenuto, oppure {@code null} se il token non è valido
+     */
+    public Biglietto riscattaTrattenuta(UUID token, Biglietto biglietto) {
+        lock.writeLock().lock();
+        try {
+            scadiTrattenuteInterno(System.currentTimeMillis());
+
+            Trattenuta trattenuta = trattenute.get(token);
+            if (trattenuta == null
+                    || !trattenuta.getIdTratta().equals(biglietto.getIdTratta())
+                    || !trattenuta.getIdCliente().equals(biglietto.getIdCliente())
+                    || trattenuta.getClasse() != classeDi(biglietto)) {
+                System.out.println("❌ RISCATTO TRATTENUTA rifiutato: token non valido o scaduto");
+                return null;
+            }
+
+            trattenute.remove(token);
+            Biglietto conPosto = biglietto.conPosto(trattenuta.getNumeroPosto());
+            aggiungiInterno(conPosto);
+            salvaInterno();
+
+            inserimentiTotali++;
+            inserimentiPerMetodo.merge("riscattaTrattenuta", 1, Integer::sum);
+
+            System.out.println("🎟️ TRATTENUTA RISCATTATA: posto " + trattenuta.getNumeroPosto() +
+                    " → biglietto " + conPosto.getId().toString().substring(0, 8));
+            return conPosto;
+        } finally {
+            sbloccaScrittura();
+        }
+    }
+
+    /**
+     * 🔎 Trattenuta valida del cliente sulla tratta e classe (es. offerta della lista d'attesa)
+     */
+    public Trattenuta trovaTrattenuta(UUID idTratta, UUID idCliente, ClasseServizio classe) {
+        lock.readLock().lock();
+        try {
+            return trattenutaDi(idTratta, idCliente, classe != null ? classe : ClasseServizio.BASE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNumeroTrattenute() {
+        lock.readLock().lock();
+        try {
+            return trattenute.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 🔔 Registra chi deve sapere quando una tratta ha di nuovo posti liberi
+     * (rimozioni, rollback, modifiche, trattenute scadute). Chiamato fuori dal lock.
+     */
+    public void aggiungiAscoltatorePostiLiberati(Consumer<UUID> ascoltatore) {
+        ascoltatoriPostiLiberati.add(ascoltatore);
+    }
+
+    /**
+     * 📊 Registra chi deve sapere quando cambiano i posti occupati di una tratta
+     * (vendite, trattenute, rimborsi, modifiche). Chiamato fuori dal lock.
+     */
+    public void aggiungiAscoltatoreOccupazione(Consumer<UUID> ascoltatore) {
+        ascoltatoriOccupazione.add(ascoltatore);
+    }
+
+    /**
+     * 🗺️ Fotografia della mappa posti di una tratta (bitmap + posti liberi per classe)
+     *
+     * Come {@link #getPostiDisponibili}: la copia di una mappa già costruita richiede
+     * solo il read lock, il write lock serve alla prima costruzione o a un cambio di layout.
+     */
+    public MappaPosti getMappaPosti(UUID idTratta, LayoutPosti layout) {
+        lock.readLock().lock();
+        try {
+            MappaPosti mappa = mappePosti.get(idTratta);
+            if (mappa != null && mappa.getLayout().equals(layout)) {
+                return mappa.copia();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            return mappaPer(idTratta, layout).copia();
+        } finally {
+            sbloccaScrittura();
+        }
+    }
+
+    /**
+     * 📊 Posti liberi per classe, letti dai contatori della mappa posti
+     *
+     * Nessuna scansione dei biglietti: se la mappa esiste basta il read lock;
+     * solo la prima richiesta per una tratta (o un cambio di layout) la costruisce.
+     */
+    public Map<ClasseServizio, Integer> getPostiDisponibili(UUID idTratta, LayoutPosti layout) {
+        lock.readLock().lock();
+        try {
+            MappaPosti mappa = mappePosti.get(idTratta);
+            if (mappa != null && mappa.getLayout().equals(layout)) {
+                return postiLiberiPerClasse(mappa);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            return postiLiberiPerClasse(mappaPer(idTratta, layout));
+        } finally {
+            sbloccaScrittura();
+        }
+    }
+
+    private static Map<ClasseServizio, Integer> postiLiberiPerClasse(MappaPosti mappa) {
+        Map<ClasseServizio, Integer> liberi = new EnumMap<>(ClasseServizio.class);
+        for (ClasseServizio classe : ClasseServizio.values()) {
+            liberi.put(classe, mappa.getPostiLiberi(classe));
+        }
+        return liberi;
+    }
+
+    /**
+     * 💺 Mappa posti della tratta (chiamato sotto write lock)
+     *
+     * Costruita dai biglietti della tratta alla prima richiesta o se il layout cambia:
+     * i biglietti con posto valido lo mantengono, quelli senza posto (storici) o in
+     * conflitto ricevono il primo posto libero della loro classe. I posti assegnati
+     * vengono salvati subito, così restano gli stessi dopo un riavvio.
+     */
+    private MappaPosti mappaPer(UUID idTratta, LayoutPosti layout) {
+        MappaPosti mappa = mappePosti.get(idTratta);
+        if (mappa != null && mappa.getLayout().equals(layout)) {
+            return mappa;
+        }
+
+        mappa = new MappaPosti(layout);
+        List<Biglietto> dellaTratta = bigliettiPerTratta.getOrDefault(idTratta, List.of());
+        List<Integer> senzaPosto = new ArrayList<>();
+        for (int i = 0; i < dellaTratta.size(); i++) {
+            Biglietto b = dellaTratta.get(i);
+            if (b.getNumeroPosto() == null || !mappa.occupa(classeDi(b), b.getNumeroPosto())) {
+                senzaPosto.add(i);
+            }
+        }
+
+        Map<Biglietto, Biglietto> assegnati = new IdentityHashMap<>();
+        for (int i : senzaPosto) {
+            Biglietto b = dellaTratta.get(i);
+            int posto = mappa.occupaPrimoLibero(classeDi(b));
+            if (posto > 0) {
+                Biglietto conPosto = b.conPosto(posto);
+                dellaTratta.set(i, conPosto);
+                assegnati.put(b, conPosto);
+            }
+        }
+        if (!assegnati.isEmpty()) {
+            biglietti.replaceAll(b -> assegnati.getOrDefault(b, b));
+            salvaInterno();
+        }
+
+        // Le trattenute non sono biglietti: vanno rimesse sulla mappa ricostruita
+        for (Iterator<Trattenuta> it = trattenute.values().iterator(); it.hasNext(); ) {
+            Trattenuta t = it.next();
+            if (t.getIdTratta().equals(idTratta) && !mappa.occupa(t.getClasse(), t.getNumeroPosto())) {
+                it.remove();
+            }
+        }
+
+        if (!senzaPosto.isEmpty()) {
+            System.out.println("💺 Mappa posti tratta " + idTratta.toString().substring(0, 8) +
+                    ": assegnati " + assegnati.size() + " posti a biglietti esistenti");
+        }
+        mappePosti.put(idTratta, mappa);
+        return mappa;
+    }
+
+    // Inserimenti e rimozioni passano da qui per tenere allineato l'indice per tratta
+    private void aggiungiInterno(Biglietto b) {
+        biglietti.add(b);
+        indicizza(b);
+    }
+
+    private void rimuoviInterno(Biglietto b) {
+        biglietti.remove(b);
+        togliDaIndice(b);
+    }
+
+    private void indicizza(Biglietto b) {
+        bigliettiPerTratta.computeIfAbsent(b.getIdTratta(), k -> new ArrayList<>()).add(b);
+    }
+
+    private void togliDaIndice(Biglietto b) {
+        List<Biglietto> dellaTratta = bigliettiPerTratta.get(b.getIdTratta());
+        if (dellaTratta != null) {
+            dellaTratta.remove(b);
+            if (dellaTratta.isEmpty()) {
+                bigliettiPerTratta.remove(b.getIdTratta());
+            }
+        }
+    }
+
+    private void liberaPosto(Biglietto b) {
+        MappaPosti mappa = mappePosti.get(b.getIdTratta());
+        if (mappa != null && b.getNumeroPosto() != null) {
+            mappa.libera(classeDi(b), b.getNumeroPosto());
+            tratteConPostiLiberati.add(b.getIdTratta());
+            tratteConOccupazioneCambiata.add(b.getIdTratta());
+        }
+    }
+
+    private void liberaPosto(Trattenuta t) {
+        MappaPosti mappa = mappePosti.get(t.getIdTratta());
+        if (mappa != null) {
+            mappa.libera(t.getClasse(), t.getNumeroPosto());
+            tratteConPostiLiberati.add(t.getIdTratta());
+            tratteConOccupazioneCambiata.add(t.getIdTratta());
+        }
+    }
+
+    /**
+     * Scadenze in ordine dalla coda di priorità: costo proporzionale alle sole
+     * trattenute scadute, così si può chiamare prima di ogni assegnazione posti
+     */
+    private int scadiTrattenuteInterno(long ora) {
+        int scadute = 0;
+        while (!scadenzeTrattenute.isEmpty() && scadenzeTrattenute.peek().isScaduta(ora)) {
+            Trattenuta trattenuta = scadenzeTrattenute.poll();
+            // Le trattenute già riscattate o rilasciate non sono più nella mappa
+            if (trattenute.remove(trattenuta.getId()) != null) {
+                liberaPosto(trattenuta);
+                scadute++;
+            }
+        }
+        if (scadute > 0) {
+            System.out.println("⌛ TRATTENUTE SCADUTE: " + scadute + " posti liberati");
+        }
+        return scadute;
+    }
+
+    private Trattenuta trattenutaDi(UUID idTratta, UUID idCliente, ClasseServizio classe) {
+        long ora = System.currentTimeMillis();
+        for (Trattenuta t : trattenute.values()) {
+            if (t.getIdTratta().equals(idTratta) && t.getIdCliente().equals(idCliente)
+                    && t.getClasse() == classe && !t.isScaduta(ora)) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 🔓 Rilascia il write lock e, uscendo dal lock più esterno, avvisa gli ascoltatori
+     * delle tratte che hanno liberato posti (così possono prenotare senza deadlock)
+     * e di quelle con occupazione cambiata
+     */
+    private void sbloccaScrittura() {
+        List<UUID> liberate = List.of();
+        List<UUID> cambiate = List.of();
+        if (lock.getWriteHoldCount() == 1 && !tratteConPostiLiberati.isEmpty()) {
+            liberate = new ArrayList<>(tratteConPostiLiberati);
+            tratteConPostiLiberati.clear();
+        }
+        if (lock.getWriteHoldCount() == 1 && !tratteConOccupazioneCambiata.isEmpty()) {
+            cambiate = new ArrayList<>(tratteConOccupazioneCambiata);
+            tratteConOccupazioneCambiata.clear();
+        }
+        lock.writeLock().unlock();
+
+        for (UUID idTratta : cambiate) {
+            for (Consumer<UUID> ascoltatore : ascoltatoriOccupazione) {
+                try {
+                    ascoltatore.accept(idTratta);
+                } catch (Exception e) {
+                    System.err.println("❌ Errore ascoltatore occupazione: " + e.getMessage());
+                }
+            }
+        }
+
+        for (UUID idTratta : liberate) {
+            for (Consumer<UUID> ascoltatore : ascoltatoriPostiLiberati) {
+                try {
+                    ascoltatore.accept(idTratta);
+                } catch (Exception e) {
+                    System.err.println("❌ Errore ascoltatore posti liberati: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static ClasseServizio classeDi(Biglietto b) {
+        return b.getClasse() != null ? b.getClasse() : ClasseServizio.BASE;
+    }
+
     /**
      * 💾 Salvataggio interno (chiamato sotto lock)
      */
@@ -4,12 +4,17 @@ import model.Promozione;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 public class MemoriaPromozioni {
     private final List<Promozione> promozioni = new ArrayList<>();
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    // Avvisati (fuori dal lock) con ogni promozione aggiunta
+    private final List<Consumer<Promozione>> ascoltatori = new CopyOnWriteArrayList<>();
+
     public MemoriaPromozioni() {
         try {
             promozioni.addAll(PromozionePersistenceManager.caricaPromozioni());
@@ -35,6 +40,13 @@ public class MemoriaPromozioni {
         } finally {
             lock.writeLock().unlock();
         }
+        for (Consumer<Promozione> ascoltatore : ascoltatori) {
+            ascoltatore.accept(p);
+        }
+    }
+
+    public void aggiungiAscoltatore(Consumer<Promozione> ascoltatore) {
+        ascoltatori.add(ascoltatore);
     }
 
     private void salva() {
@@ -4,19 +4,56 @@ import model.Tratta;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
+/**
+ * 🚆 MEMORIA TRATTE - Tratte in memoria con indice di ricerca
+ *
+ * Accanto alla lista persistita mantiene, sotto lo stesso lock, un indice
+ * invertito: giorno → tratte ordinate per orario, stazione di partenza/arrivo
+ * e tipo treno → posting list. {@link #cerca(FiltroTratte)} parte dalla
+ * posting list più corta e verifica gli altri criteri solo sui candidati,
+ * quindi il costo dipende dai risultati e non dalle tratte dell'orizzonte.
+ * I risultati mantengono l'ordine di inserimento, come la scansione di {@link #getTutteTratte()}.
+ *
+ * Davanti all'indice c'è una {@link CacheRicercheTratte}: ogni modifica invalida,
+ * sotto il write lock, solo le ricerche che la tratta toccata soddisfa.
+ */
 public class MemoriaTratte {
+
+    private static final Comparator<Tratta> PER_ORARIO =
+            Comparator.comparing(Tratta::getData)
+                    .thenComparing(Tratta::getOra)
+                    .thenComparing(Tratta::getId);
+
     private final List<Tratta> tratte = new ArrayList<>();
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    // 📇 Indice invertito (protetto da lock)
+    private final Map<UUID, Tratta> perId = new HashMap<>();
+    private final Map<UUID, Long> sequenza = new HashMap<>();
+    private long prossimaSequenza = 0;
+    private final Map<LocalDate, List<Tratta>> perGiorno = new HashMap<>();
+    private final Map<String, Map<UUID, Tratta>> perPartenza = new HashMap<>();
+    private final Map<String, Map<UUID, Tratta>> perArrivo = new HashMap<>();
+    private final Map<String, Map<UUID, Tratta>> perTipoTreno = new HashMap<>();
+
+    private final CacheRicercheTratte cacheRicerche = new CacheRicercheTratte();
+
+    // Avvisati (fuori dal lock) con l'id di ogni tratta aggiunta, modificata o rimossa
+    private final List<Consumer<UUID>> ascoltatoriModifiche = new CopyOnWriteArrayList<>();
+
     public MemoriaTratte() {
         try {
             tratte.addAll(TrattaPersistenceManager.caricaTratte());
         } catch (IOException e) {
             e.printStackTrace();
         }
+        tratte.forEach(this::indicizza);
     }
 
     public List<Tratta> getTutteTratte() {
@@ -32,34 +69,208 @@ public class MemoriaTratte {
         lock.writeLock().lock();
         try {
             tratte.add(tratta);
+            indicizza(tratta);
+            cacheRicerche.invalida(List.of(tratta));
             salva();
         } finally {
             lock.writeLock().unlock();
         }
+        avvisaModifica(tratta.getId());
     }
 
     public void rimuoviTratteDelGiorno(LocalDate data) {
+        List<Tratta> rimosse = new ArrayList<>();
         lock.writeLock().lock();
         try {
             tratte.removeIf(t -> t.getData().equals(data));
+            List<Tratta> delGiorno = perGiorno.get(data);
+            if (delGiorno != null) {
+                rimosse.addAll(delGiorno);
+                rimosse.forEach(this::deindicizza);
+                cacheRicerche.invalida(rimosse);
+            }
+            salva();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rimosse.forEach(t -> avvisaModifica(t.getId()));
+    }
+
+    /**
+     * ✏️ Sostituisce una tratta con la sua versione modificata (stesso id),
+     * mantenendone la posizione. Ritorna false se la tratta non esiste.
+     */
+    public boolean sostituisciTratta(Tratta modificata) {
+        lock.writeLock().lock();
+        try {
+            Tratta vecchia = perId.get(modificata.getId());
+            if (vecchia == null) {
+                return false;
+            }
+            tratte.set(tratte.indexOf(vecchia), modificata);
+
+            long posizione = sequenza.get(vecchia.getId());
+            deindicizza(vecchia);
+            indicizza(modificata);
+            sequenza.put(modificata.getId(), posizione);
+
+            cacheRicerche.invalida(List.of(vecchia, modificata));
             salva();
         } finally {
             lock.writeLock().unlock();
         }
+        avvisaModifica(modificata.getId());
+        return true;
+    }
+
+    public void aggiungiAscoltatoreModifiche(Consumer<UUID> ascoltatore) {
+        ascoltatoriModifiche.add(ascoltatore);
+    }
+
+    private void avvisaModifica(UUID idTratta) {
+        for (Consumer<UUID> ascoltatore : ascoltatoriModifiche) {
+            ascoltatore.accept(idTratta);
+        }
     }
 
     public Tratta getTrattaById(UUID id) {
         lock.readLock().lock();
         try {
-            return tratte.stream()
-                    .filter(t -> t.getId().equals(id))
-                    .findFirst()
-                    .orElse(null);
+            return perId.get(id);
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    /**
+     * 🔎 Ricerca multi-criterio sull'indice.
+     *
+     * Con la data il giorno è già ordinato per orario: la fascia diventa un
+     * intervallo della lista invece di un filtro su ogni tratta del giorno.
+     * La lista restituita è immutabile e può essere condivisa dalla cache.
+     */
+    public List<Tratta> cerca(FiltroTratte filtro) {
+        lock.readLock().lock();
+        try {
+            // Riempimento sotto read lock: nessuna modifica può interporsi tra calcolo e inserimento
+            List<Tratta> risultato = cacheRicerche.get(filtro);
+            if (risultato == null) {
+                risultato = Collections.unmodifiableList(cercaSuIndice(filtro));
+                cacheRicerche.metti(filtro, risultato);
+            }
+            return risultato;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public CacheRicercheTratte getCacheRicerche() {
+        return cacheRicerche;
+    }
+
+    private List<Tratta> cercaSuIndice(FiltroTratte filtro) {
+        Collection<Tratta> candidati = null;
+        candidati = piuCorta(candidati, filtro.getPartenza(), perPartenza);
+        candidati = piuCorta(candidati, filtro.getArrivo(), perArrivo);
+        candidati = piuCorta(candidati, filtro.getTipoTreno(), perTipoTreno);
+
+        if (filtro.getData() != null) {
+            List<Tratta> delGiorno = perGiorno.getOrDefault(filtro.getData(), List.of());
+            if (candidati == null || delGiorno.size() <= candidati.size()) {
+                return perInserimento(scorriGiorno(delGiorno, filtro));
+            }
+        }
+
+        List<Tratta> risultati = new ArrayList<>();
+        for (Tratta t : candidati != null ? candidati : tratte) {
+            if (filtro.ammette(t)) {
+                risultati.add(t);
+            }
+        }
+        // Le posting list seguono l'ordine di indicizzazione, non quello del catalogo
+        return candidati != null ? perInserimento(risultati) : risultati;
+    }
+
+    private List<Tratta> perInserimento(List<Tratta> risultati) {
+        risultati.sort(Comparator.comparing(t -> sequenza.get(t.getId())));
+        return risultati;
+    }
+
+    private static Collection<Tratta> piuCorta(Collection<Tratta> attuale, String chiave,
+                                               Map<String, Map<UUID, Tratta>> indice) {
+        if (chiave == null) return attuale;
+        Collection<Tratta> posting = indice.getOrDefault(chiave, Map.of()).values();
+        return attuale == null || posting.size() < attuale.size() ? posting : attuale;
+    }
+
+    private static List<Tratta> scorriGiorno(List<Tratta> delGiorno, FiltroTratte filtro) {
+        LocalTime fine = filtro.fineFascia();
+        List<Tratta> risultati = new ArrayList<>();
+        for (int i = primoIndiceDa(delGiorno, filtro.inizioFascia()); i < delGiorno.size(); i++) {
+            Tratta t = delGiorno.get(i);
+            if (fine != null && !t.getOra().isBefore(fine)) break;
+            if (filtro.ammette(t)) {
+                risultati.add(t);
+            }
+        }
+        return risultati;
+    }
+
+    // Ricerca binaria della prima tratta del giorno con ora >= da
+    private static int primoIndiceDa(List<Tratta> delGiorno, LocalTime da) {
+        int lo = 0, hi = delGiorno.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (delGiorno.get(mid).getOra().isBefore(da)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void indicizza(Tratta t) {
+        perId.put(t.getId(), t);
+        sequenza.put(t.getId(), prossimaSequenza++);
+
+        List<Tratta> delGiorno = perGiorno.computeIfAbsent(t.getData(), d -> new ArrayList<>());
+        int pos = Collections.binarySearch(delGiorno, t, PER_ORARIO);
+        delGiorno.add(pos < 0 ? -pos - 1 : pos, t);
+
+        posting(perPartenza, t.getStazionePartenza()).put(t.getId(), t);
+        posting(perArrivo, t.getStazioneArrivo()).put(t.getId(), t);
+        posting(perTipoTreno, t.getTreno() != null ? t.getTreno().getTipologia() : null).put(t.getId(), t);
+    }
+
+    private void deindicizza(Tratta t) {
+        perId.remove(t.getId());
+        sequenza.remove(t.getId());
+
+        List<Tratta> delGiorno = perGiorno.get(t.getData());
+        if (delGiorno != null) {
+            delGiorno.removeIf(x -> x.getId().equals(t.getId()));
+            if (delGiorno.isEmpty()) perGiorno.remove(t.getData());
+        }
+
+        rimuoviPosting(perPartenza, t.getStazionePartenza(), t.getId());
+        rimuoviPosting(perArrivo, t.getStazioneArrivo(), t.getId());
+        rimuoviPosting(perTipoTreno, t.getTreno() != null ? t.getTreno().getTipologia() : null, t.getId());
+    }
+
+    private static Map<UUID, Tratta> posting(Map<String, Map<UUID, Tratta>> indice, String valore) {
+        return indice.computeIfAbsent(String.valueOf(FiltroTratte.normalizza(valore)), k -> new LinkedHashMap<>());
+    }
+
+    private static void rimuoviPosting(Map<String, Map<UUID, Tratta>> indice, String valore, UUID id) {
+        String chiave = String.valueOf(FiltroTratte.normalizza(valore));
+        Map<UUID, Tratta> posting = indice.get(chiave);
+        if (posting != null) {
+            posting.remove(id);
+            if (posting.isEmpty()) indice.remove(chiave);
+        }
+    }
+
     private void salva() {
         try {
             TrattaPersistenceManager.salvaTratte(tratte);
@@ -67,4 +278,4 @@ public class MemoriaTratte {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
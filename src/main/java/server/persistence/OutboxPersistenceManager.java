@@ -0,0 +1,91 @@
+package persistence;
+
+import model.OperazionePagamento;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 📮 OUTBOX PERSISTENCE MANAGER - Journal append-only delle operazioni di pagamento
+ *
+ * Una riga JSON per ogni cambio di stato: registrare un'operazione costa un append,
+ * non la riscrittura di un file. All'avvio l'ultima riga di ogni operazione ne
+ * decide lo stato e il file viene compattato alle sole operazioni in sospeso.
+ */
+public class OutboxPersistenceManager extends BasePersistenceManager {
+
+    public static final String PATH = "src/main/resources/data/outbox_pagamenti.jsonl";
+
+    /**
+     * ➕ Aggiunge lo stato corrente dell'operazione in coda al journal
+     */
+    public static void appendi(String path, OperazionePagamento operazione) throws IOException {
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+        try (Writer writer = new FileWriter(file, StandardCharsets.UTF_8, true)) {
+            writer.write(MAPPER.writeValueAsString(operazione) + "\n");
+        }
+    }
+
+    /**
+     * 📋 Operazioni ancora IN_ATTESA o RIMBORSO_IN_CORSO, nell'ordine di registrazione
+     *
+     * Una riga illeggibile (scrittura interrotta da un crash) viene scartata.
+     */
+    public static List<OperazionePagamento> caricaInSospeso(String path) throws IOException {
+        File file = new File(path);
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+
+        Map<UUID, OperazionePagamento> ultime = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String riga;
+            while ((riga = reader.readLine()) != null) {
+                if (riga.isBlank()) {
+                    continue;
+                }
+                try {
+                    OperazionePagamento operazione = MAPPER.readValue(riga, OperazionePagamento.class);
+                    ultime.put(operazione.getId(), operazione);
+                } catch (IOException e) {
+                    System.err.println("⚠️ Outbox: riga non leggibile scartata: " + e.getMessage());
+                }
+            }
+        }
+
+        List<OperazionePagamento> inSospeso = new ArrayList<>();
+        for (OperazionePagamento operazione : ultime.values()) {
+            if (operazione.isInSospeso()) {
+                inSospeso.add(operazione);
+            }
+        }
+        return inSospeso;
+    }
+
+    /**
+     * 🗜️ Riscrive il journal con le sole operazioni in sospeso (file temporaneo + rename)
+     */
+    public static void compatta(String path, List<OperazionePagamento> inSospeso) throws IOException {
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+        File temporaneo = new File(path + ".tmp");
+        try (Writer writer = new FileWriter(temporaneo, StandardCharsets.UTF_8, false)) {
+            for (OperazionePagamento operazione : inSospeso) {
+                writer.write(MAPPER.writeValueAsString(operazione) + "\n");
+            }
+        }
+        Files.move(temporaneo.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,273 @@
+package persistence;
+
+import model.LayoutPosti;
+import model.Tratta;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 🚉 TABELLONE PARTENZE - Partenze di ogni stazione in ordine di orario, con iscrizioni
+ *
+ * Chi si iscrive a una stazione riceve prima le prossime partenze e poi solo le
+ * variazioni: nuova tratta, ritardo o cambio d'orario, cambio binario, posti
+ * liberi cambiati, tratta rimossa. Le variazioni arrivano dagli avvisi di
+ * MemoriaTratte (modifiche) e di MemoriaBiglietti (vendite, trattenute,
+ * rimborsi), quindi il costo è proporzionale ai cambiamenti e non a quante
+ * volte i client interrogherebbero FILTRA.
+ *
+ * Istantanea e variazioni sono consegnate sotto lo stesso lock: un iscritto non
+ * riceve mai una variazione prima della sua istantanea né fuori ordine.
+ * I posti liberi si leggono solo per le stazioni con iscritti.
+ */
+public class TabellonePartenze {
+
+    public static final int PARTENZE_DEFAULT = 20;
+    public static final int PARTENZE_MAX = 100;
+
+    public enum TipoVariazione { INIZIALE, NUOVA, RITARDO, ORARIO, BINARIO, OCCUPAZIONE, RIMOSSA }
+
+    /**
+     * 🚆 Una riga del tabellone (immutabile); postiLiberi null = non ancora letti
+     */
+    public static final class Riga {
+        private final Tratta tratta;
+        private final Integer postiLiberi;
+
+        Riga(Tratta tratta, Integer postiLiberi) {
+            this.tratta = tratta;
+            this.postiLiberi = postiLiberi;
+        }
+
+        public Tratta getTratta() { return tratta; }
+        public Integer getPostiLiberi() { return postiLiberi; }
+
+        LocalDateTime partenza() {
+            return tratta.getData().atTime(tratta.getOra());
+        }
+    }
+
+    /**
+     * 📣 Variazione consegnata agli iscritti di una stazione
+     */
+    public static final class Variazione {
+        private final TipoVariazione tipo;
+        private final Riga riga;
+        private final int minutiRitardo;
+
+        Variazione(TipoVariazione tipo, Riga riga, int minutiRitardo) {
+            this.tipo = tipo;
+            this.riga = riga;
+            this.minutiRitardo = minutiRitardo;
+        }
+
+        public TipoVariazione getTipo() { return tipo; }
+        public Riga getRiga() { return riga; }
+        public int getMinutiRitardo() { return minutiRitardo; }
+    }
+
+    private static final Comparator<Riga> PER_ORARIO = Comparator.comparing(Riga::partenza)
+            .thenComparing(r -> r.tratta.getId());
+
+    private final MemoriaTratte memoriaTratte;
+    private final MemoriaBiglietti memoriaBiglietti;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Protetti da lock
+    private final Map<String, TreeSet<Riga>> perStazione = new HashMap<>();
+    private final Map<UUID, Riga> righe = new HashMap<>();
+    private final Map<String, List<Consumer<Variazione>>> iscritti = new HashMap<>();
+
+    private final AtomicLong variazioniInviate = new AtomicLong();
+
+    public TabellonePartenze(MemoriaTratte memoriaTratte, MemoriaBiglietti memoriaBiglietti) {
+        this.memoriaTratte = memoriaTratte;
+        this.memoriaBiglietti = memoriaBiglietti;
+        memoriaTratte.aggiungiAscoltatoreModifiche(this::trattaCambiata);
+        memoriaBiglietti.aggiungiAscoltatoreOccupazione(this::occupazioneCambiata);
+        lock.lock();
+        try {
+            for (Tratta t : memoriaTratte.getTutteTratte()) {
+                inserisci(new Riga(t, null));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 📡 Iscrive {@code ricevitore} alle partenze di una stazione: riceve subito le
+     * prossime {@code maxPartenze} come INIZIALE, poi le variazioni.
+     *
+     * @return azione che annulla l'iscrizione
+     */
+    public Runnable iscrivi(String stazione, int maxPartenze, Consumer<Variazione> ricevitore) {
+        String chiave = String.valueOf(FiltroTratte.normalizza(stazione));
+        int max = maxPartenze <= 0 ? PARTENZE_DEFAULT : Math.min(maxPartenze, PARTENZE_MAX);
+
+        lock.lock();
+        try {
+            TreeSet<Riga> tabellone = perStazione.getOrDefault(chiave, new TreeSet<>(PER_ORARIO));
+            List<Riga> prossime = new ArrayList<>(max);
+            for (Riga r : tabellone.tailSet(new Riga(sentinella(LocalDateTime.now()), null), true)) {
+                if (prossime.size() >= max) break;
+                prossime.add(r);
+            }
+            for (Riga r : prossime) {
+                invia(ricevitore, new Variazione(TipoVariazione.INIZIALE, conPostiLiberi(r), 0));
+            }
+            iscritti.computeIfAbsent(chiave, k -> new ArrayList<>()).add(ricevitore);
+        } finally {
+            lock.unlock();
+        }
+
+        return () -> {
+            lock.lock();
+            try {
+                List<Consumer<Variazione>> lista = iscritti.get(chiave);
+                if (lista != null) {
+                    lista.remove(ricevitore);
+                    if (lista.isEmpty()) iscritti.remove(chiave);
+                }
+            } finally {
+                lock.unlock();
+            }
+        };
+    }
+
+    public int getNumeroIscritti() {
+        lock.lock();
+        try {
+            return iscritti.values().stream().mapToInt(List::size).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getStatistiche() {
+        return String.format("TabellonePartenze: stazioni=%d, iscritti=%d, variazioniInviate=%d",
+                perStazione.size(), getNumeroIscritti(), variazioniInviate.get());
+    }
+
+    private void trattaCambiata(UUID idTratta) {
+        Tratta attuale = memoriaTratte.getTrattaById(idTratta);
+        lock.lock();
+        try {
+            Riga vecchia = righe.get(idTratta);
+            if (vecchia != null) {
+                rimuovi(vecchia);
+            }
+            if (attuale == null) {
+                if (vecchia != null) pubblica(vecchia, TipoVariazione.RIMOSSA, 0);
+                return;
+            }
+
+            Riga nuova = new Riga(attuale, vecchia != null ? vecchia.postiLiberi : null);
+            inserisci(nuova);
+
+            boolean stessaStazione = vecchia != null
+                    && chiave(vecchia.tratta).equals(chiave(attuale));
+            if (vecchia != null && !stessaStazione) {
+                pubblica(vecchia, TipoVariazione.RIMOSSA, 0);
+            }
+            if (vecchia == null || !stessaStazione) {
+                pubblica(nuova, TipoVariazione.NUOVA, 0);
+                return;
+            }
+
+            long minuti = Duration.between(vecchia.partenza(), nuova.partenza()).toMinutes();
+            if (minuti > 0) {
+                pubblica(nuova, TipoVariazione.RITARDO, (int) minuti);
+            } else if (minuti < 0) {
+                pubblica(nuova, TipoVariazione.ORARIO, 0);
+            } else if (vecchia.tratta.getBinario() != attuale.getBinario()) {
+                pubblica(nuova, TipoVariazione.BINARIO, 0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void occupazioneCambiata(UUID idTratta) {
+        lock.lock();
+        try {
+            Riga riga = righe.get(idTratta);
+            if (riga == null || !iscritti.containsKey(chiave(riga.tratta))) return;
+
+            Riga aggiornata = conPostiLiberi(riga);
+            if (!Objects.equals(riga.postiLiberi, aggiornata.postiLiberi)) {
+                pubblica(aggiornata, TipoVariazione.OCCUPAZIONE, 0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Sotto lock: legge i posti liberi e aggiorna la riga nel tabellone
+    private Riga conPostiLiberi(Riga riga) {
+        Tratta t = riga.tratta;
+        LayoutPosti layout = LayoutPosti.di(t.getTreno());
+        int totale = 0;
+        for (int liberi : memoriaBiglietti.getPostiDisponibili(t.getId(), layout).values()) {
+            totale = layout.isCondiviso() ? Math.max(totale, liberi) : totale + liberi;
+        }
+        if (riga.postiLiberi != null && riga.postiLiberi == totale) {
+            return riga;
+        }
+        Riga aggiornata = new Riga(t, totale);
+        rimuovi(riga);
+        inserisci(aggiornata);
+        return aggiornata;
+    }
+
+    // Sotto lock: consegna la variazione agli iscritti della stazione se la partenza non è passata
+    private void pubblica(Riga riga, TipoVariazione tipo, int minutiRitardo) {
+        List<Consumer<Variazione>> destinatari = iscritti.get(chiave(riga.tratta));
+        if (destinatari == null || riga.partenza().isBefore(LocalDateTime.now())) return;
+
+        Variazione variazione = new Variazione(tipo, riga, minutiRitardo);
+        for (Consumer<Variazione> ricevitore : List.copyOf(destinatari)) {
+            invia(ricevitore, variazione);
+        }
+    }
+
+    private void invia(Consumer<Variazione> ricevitore, Variazione variazione) {
+        try {
+            ricevitore.accept(variazione);
+            variazioniInviate.incrementAndGet();
+        } catch (Exception e) {
+            System.err.println("❌ Errore invio variazione tabellone: " + e.getMessage());
+        }
+    }
+
+    private void inserisci(Riga riga) {
+        righe.put(riga.tratta.getId(), riga);
+        perStazione.computeIfAbsent(chiave(riga.tratta), k -> new TreeSet<>(PER_ORARIO)).add(riga);
+    }
+
+    private void rimuovi(Riga riga) {
+        righe.remove(riga.tratta.getId());
+        TreeSet<Riga> tabellone = perStazione.get(chiave(riga.tratta));
+        if (tabellone != null) {
+            tabellone.remove(riga);
+            if (tabellone.isEmpty()) perStazione.remove(chiave(riga.tratta));
+        }
+    }
+
+    // Tratta fittizia che precede tutte quelle che partono da "da" in poi
+    private static Tratta sentinella(LocalDateTime da) {
+        LocalDate data = da.toLocalDate();
+        LocalTime ora = da.toLocalTime();
+        return new Tratta(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), "", "", data, ora, 0, null, Map.of());
+    }
+
+    private static String chiave(Tratta t) {
+        return String.valueOf(FiltroTratte.normalizza(t.getStazionePartenza()));
+    }
+}
@@ -0,0 +1,200 @@
+package scheduling;
+
+import enums.ClasseServizio;
+import eventi.EventoPostoOfferto;
+import eventi.ListaEventiS;
+import model.LayoutPosti;
+import model.Tratta;
+import model.Trattenuta;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaTratte;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ⏳ LISTA D'ATTESA POSTI - Promozione automatica quando un posto si libera
+ *
+ * Una coda FIFO per tratta. Quando MemoriaBiglietti libera un posto (rimozione,
+ * modifica, trattenuta scaduta) il primo cliente in attesa per quella classe riceve
+ * una trattenuta a tempo e una notifica POSTO_DISPONIBILE. Se non acquista entro la
+ * scadenza il posto torna libero e passa al successivo.
+ */
+public class ListaAttesaPosti {
+
+    public static final long DURATA_OFFERTA_MS_DEFAULT = 120_000;
+    private static final long INTERVALLO_SCADENZE_MS = 1_000;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lista-attesa-posti");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean avviata = new AtomicBoolean(false);
+
+    private final MemoriaBiglietti memoriaBiglietti;
+    private final MemoriaTratte memoriaTratte;
+    private final long durataOffertaMs;
+
+    // Code per tratta, protette da synchronized(this)
+    private final Map<UUID, Deque<InAttesa>> code = new HashMap<>();
+
+    // Statistiche
+    private int iscrizioniTotali = 0;
+    private int postiOfferti = 0;
+
+    public ListaAttesaPosti(MemoriaBiglietti memoriaBiglietti, MemoriaTratte memoriaTratte) {
+        this(memoriaBiglietti, memoriaTratte, DURATA_OFFERTA_MS_DEFAULT);
+    }
+
+    public ListaAttesaPosti(MemoriaBiglietti memoriaBiglietti, MemoriaTratte memoriaTratte, long durataOffertaMs) {
+        this.memoriaBiglietti = memoriaBiglietti;
+        this.memoriaTratte = memoriaTratte;
+        this.durataOffertaMs = durataOffertaMs;
+    }
+
+    /**
+     * Si registra sui posti liberati e avvia il controllo delle trattenute scadute
+     */
+    public void avvia() {
+        if (!avviata.compareAndSet(false, true)) {
+            return;
+        }
+        memoriaBiglietti.aggiungiAscoltatorePostiLiberati(this::offri);
+        scheduler.scheduleAtFixedRate(this::scadiTrattenute,
+                INTERVALLO_SCADENZE_MS, INTERVALLO_SCADENZE_MS, TimeUnit.MILLISECONDS);
+        System.out.println("⏳ ListaAttesaPosti avviata (offerte valide " + durataOffertaMs / 1000 + "s)");
+    }
+
+    /**
+     * 📝 Mette il cliente in coda per la tratta (una sola volta per tratta)
+     *
+     * @return posizione in coda, a partire da 1
+     */
+    public synchronized int iscrivi(UUID idTratta, UUID idCliente, ClasseServizio classe) {
+        Deque<InAttesa> coda = code.computeIfAbsent(idTratta, id -> new ArrayDeque<>());
+        int posizione = posizioneIn(coda, idCliente);
+        if (posizione > 0) {
+            return posizione;
+        }
+
+        coda.addLast(new InAttesa(idCliente, classe != null ? classe : ClasseServizio.BASE));
+        iscrizioniTotali++;
+        System.out.println("📝 LISTA ATTESA: cliente " + idCliente.toString().substring(0, 8) +
+                " in coda per tratta " + idTratta.toString().substring(0, 8) + " (posizione " + coda.size() + ")");
+        return coda.size();
+    }
+
+    public synchronized boolean rimuovi(UUID idTratta, UUID idCliente) {
+        Deque<InAttesa> coda = code.get(idTratta);
+        if (coda == null) {
+            return false;
+        }
+        boolean rimosso = coda.removeIf(w -> w.idCliente.equals(idCliente));
+        if (coda.isEmpty()) {
+            code.remove(idTratta);
+        }
+        return rimosso;
+    }
+
+    /**
+     * @return posizione in coda a partire da 1, oppure 0 se il cliente non è in attesa
+     */
+    public synchronized int getPosizione(UUID idTratta, UUID idCliente) {
+        Deque<InAttesa> coda = code.get(idTratta);
+        return coda == null ? 0 : posizioneIn(coda, idCliente);
+    }
+
+    /**
+     * 💺 Offre i posti liberi della tratta ai clienti in coda, in ordine di arrivo
+     *
+     * Un cliente la cui classe è esaurita non blocca chi aspetta un'altra classe.
+     *
+     * @return numero di posti offerti
+     */
+    public int offri(UUID idTratta) {
+        Tratta tratta = memoriaTratte.getTrattaById(idTratta);
+        if (tratta == null) {
+            return 0;
+        }
+        LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+
+        List<Trattenuta> offerte = new ArrayList<>();
+        synchronized (this) {
+            Deque<InAttesa> coda = code.get(idTratta);
+            if (coda == null) {
+                return 0;
+            }
+
+            Set<ClasseServizio> esaurite = EnumSet.noneOf(ClasseServizio.class);
+            for (Iterator<InAttesa> it = coda.iterator(); it.hasNext(); ) {
+                InAttesa attesa = it.next();
+                if (esaurite.contains(attesa.classe)) {
+                    continue;
+                }
+                Trattenuta trattenuta = memoriaBiglietti.trattieniPosto(
+                        idTratta, attesa.idCliente, attesa.classe, layout, durataOffertaMs);
+                if (trattenuta == null) {
+                    esaurite.add(attesa.classe);
+                    continue;
+                }
+                it.remove();
+                offerte.add(trattenuta);
+            }
+
+            if (coda.isEmpty()) {
+                code.remove(idTratta);
+            }
+            postiOfferti += offerte.size();
+        }
+
+        // Notifiche fuori dal lock
+        for (Trattenuta trattenuta : offerte) {
+            ListaEventiS.getInstance().notifica(new EventoPostoOfferto(trattenuta));
+        }
+        return offerte.size();
+    }
+
+    public synchronized String getStatistiche() {
+        int inAttesa = code.values().stream().mapToInt(Deque::size).sum();
+        return String.format("ListaAttesa Stats: InAttesa=%d, Tratte=%d, Iscrizioni=%d, PostiOfferti=%d",
+                inAttesa, code.size(), iscrizioniTotali, postiOfferti);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        System.out.println("⏳ ListaAttesaPosti fermata");
+    }
+
+    private void scadiTrattenute() {
+        try {
+            memoriaBiglietti.scadiTrattenute();
+        } catch (Exception e) {
+            System.err.println("❌ Errore scadenza trattenute: " + e.getMessage());
+        }
+    }
+
+    private static int posizioneIn(Deque<InAttesa> coda, UUID idCliente) {
+        int posizione = 1;
+        for (InAttesa attesa : coda) {
+            if (attesa.idCliente.equals(idCliente)) {
+                return posizione;
+            }
+            posizione++;
+        }
+        return 0;
+    }
+
+    private static final class InAttesa {
+        private final UUID idCliente;
+        private final ClasseServizio classe;
+
+        private InAttesa(UUID idCliente, ClasseServizio classe) {
+            this.idCliente = idCliente;
+            this.classe = classe;
+        }
+    }
+}
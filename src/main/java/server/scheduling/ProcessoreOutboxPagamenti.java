@@ -0,0 +1,374 @@
+package scheduling;
+
+import model.Biglietto;
+import model.LayoutPosti;
+import model.OperazionePagamento;
+import model.Tratta;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaTratte;
+import persistence.OutboxPersistenceManager;
+import service.BancaServiceClient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📮 PROCESSORE OUTBOX PAGAMENTI - Acquisto coerente tra biglietto e banca
+ *
+ * Il percorso di richiesta trattiene il posto in memoria e registra l'operazione
+ * nell'outbox (un append). Un lavoratore in background addebita con l'id
+ * dell'operazione come chiave di idempotenza e solo a pagamento riuscito emette il
+ * biglietto: un pagamento rifiutato non scrive mai biglietti su disco.
+ *
+ * Un pagamento con esito incerto (deadline o errore di trasporto dopo l'invio) non
+ * viene annullato: l'operazione resta IN_ATTESA con il suo posto e il pagamento
+ * viene ripetuto più tardi con la stessa chiave, finché la banca non risponde.
+ *
+ * Al riavvio le operazioni rimaste IN_ATTESA vengono riprese: il pagamento ripetuto
+ * restituisce l'esito originale, il posto viene riassegnato e, se non ce n'è più,
+ * l'importo viene rimborsato. Il rimborso è registrato (RIMBORSO_IN_CORSO) prima di
+ * essere chiesto, usa una chiave derivata dall'operazione e viene ripetuto finché la
+ * banca non lo conferma: solo allora l'operazione diventa ANNULLATA.
+ *
+ * Un acquisto ripetuto con lo stesso id di operazione (retry del client dopo una
+ * risposta IN_ELABORAZIONE) si aggancia all'operazione in corso o al suo esito
+ * recente, senza trattenere un altro posto né pagare di nuovo.
+ */
+public class ProcessoreOutboxPagamenti {
+
+    private static final int LAVORATORI = 8;
+    private static final long PRIMO_RITENTATIVO_MS = 500;
+    private static final long MAX_RITENTATIVO_MS = 30_000;
+    private static final long CONSERVA_ESITO_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final MemoriaBiglietti memoriaBiglietti;
+    private final MemoriaTratte memoriaTratte;
+    private final BancaServiceClient banca;
+    private final String pathOutbox;
+
+    private final ExecutorService lavoratori = Executors.newFixedThreadPool(LAVORATORI, r -> {
+        Thread t = new Thread(r, "outbox-pagamenti");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService ritentativi = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "outbox-ritentativi");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean avviato = new AtomicBoolean(false);
+    private final Object journalLock = new Object();
+
+    private final Map<UUID, OperazionePagamento> inCorso = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<Biglietto>> esiti = new ConcurrentHashMap<>();
+
+    // Statistiche
+    private final AtomicLong registrate = new AtomicLong();
+    private final AtomicLong completate = new AtomicLong();
+    private final AtomicLong annullate = new AtomicLong();
+    private final AtomicLong rimborsate = new AtomicLong();
+    private final AtomicLong recuperate = new AtomicLong();
+    private final AtomicLong ritentati = new AtomicLong();
+
+    public ProcessoreOutboxPagamenti(MemoriaBiglietti mb, MemoriaTratte mt, BancaServiceClient banca) {
+        this(mb, mt, banca, OutboxPersistenceManager.PATH);
+    }
+
+    public ProcessoreOutboxPagamenti(MemoriaBiglietti mb, MemoriaTratte mt, BancaServiceClient banca, String pathOutbox) {
+        this.memoriaBiglietti = mb;
+        this.memoriaTratte = mt;
+        this.banca = banca;
+        this.pathOutbox = pathOutbox;
+    }
+
+    /**
+     * 🔁 Recupero all'avvio: riprende le operazioni rimaste in sospeso
+     */
+    public void avvia() {
+        if (!avviato.compareAndSet(false, true)) {
+            return;
+        }
+        if (banca == null) {
+            System.out.println("📮 Outbox: nessuna banca configurata, recupero rimandato");
+            return;
+        }
+
+        List<OperazionePagamento> inSospeso;
+        synchronized (journalLock) {
+            try {
+                inSospeso = OutboxPersistenceManager.caricaInSospeso(pathOutbox);
+                OutboxPersistenceManager.compatta(pathOutbox, inSospeso);
+            } catch (IOException e) {
+                System.err.println("❌ Outbox: recupero non riuscito: " + e.getMessage());
+                return;
+            }
+        }
+
+        for (OperazionePagamento operazione : inSospeso) {
+            recuperate.incrementAndGet();
+            inCorso.put(operazione.getId(), operazione);
+            lavoratori.execute(() -> processa(operazione, 0));
+        }
+        System.out.println("📮 Outbox avviato: " + inSospeso.size() + " operazioni in sospeso riprese");
+    }
+
+    /**
+     * 📮 Registra l'acquisto nell'outbox e lo affida al lavoratore
+     *
+     * @param idTrattenuta trattenuta che tiene il posto fino all'esito del pagamento
+     * @return il biglietto emesso, oppure {@code null} se il pagamento o il posto non sono andati a buon fine;
+     *         con esito incerto si completa solo quando un nuovo tentativo lo chiarisce
+     */
+    public CompletableFuture<Biglietto> accoda(Biglietto biglietto, UUID idTrattenuta, String causale) {
+        return accoda(UUID.randomUUID(), biglietto, idTrattenuta, causale);
+    }
+
+    /**
+     * 📮 Come {@link #accoda(Biglietto, UUID, String)} con id di operazione scelto dal
+     * chiamante: se è già in corso (o appena concluso) si restituisce il suo esito e la
+     * trattenuta passata, se diversa dalla sua, viene rilasciata
+     */
+    public CompletableFuture<Biglietto> accoda(UUID idOperazione, Biglietto biglietto, UUID idTrattenuta, String causale) {
+        CompletableFuture<Biglietto> esito = new CompletableFuture<>();
+        CompletableFuture<Biglietto> esistente = esiti.putIfAbsent(idOperazione, esito);
+        if (esistente != null || inCorso.containsKey(idOperazione)) {
+            OperazionePagamento registrata = inCorso.get(idOperazione);
+            if (idTrattenuta != null && (registrata == null || !idTrattenuta.equals(registrata.getIdTrattenuta()))) {
+                memoriaBiglietti.rilasciaTrattenuta(idTrattenuta);
+            }
+            // Operazione ripresa al riavvio: "esito" si completa alla sua chiusura
+            return esistente != null ? esistente : esito;
+        }
+
+        OperazionePagamento operazione = OperazionePagamento.nuova(idOperazione, biglietto, idTrattenuta, causale);
+        if (!registra(operazione)) {
+            esiti.remove(idOperazione, esito);
+            memoriaBiglietti.rilasciaTrattenuta(idTrattenuta);
+            return CompletableFuture.completedFuture(null);
+        }
+        registrate.incrementAndGet();
+        inCorso.put(operazione.getId(), operazione);
+        lavoratori.execute(() -> processa(operazione, 0));
+        return esito;
+    }
+
+    /**
+     * 💸 Rimborso registrato nel journal (RIMBORSO_IN_CORSO) per un addebito fatto con
+     * chiave di idempotenza {@code idAddebito}: viene ripetuto, anche dopo un riavvio,
+     * finché la banca non lo conferma. Un addebito con esito incerto viene prima chiarito
+     * ripetendolo con la stessa chiave, quindi si può chiedere anche per quelli.
+     *
+     * @param riferimento cliente e importo ({@code prezzoPagato}) dell'addebito da restituire
+     */
+    public void rimborsa(UUID idAddebito, Biglietto riferimento, String causaleAddebito) {
+        OperazionePagamento operazione = OperazionePagamento.nuova(idAddebito, riferimento, null, causaleAddebito)
+                .conStato(OperazionePagamento.Stato.RIMBORSO_IN_CORSO);
+        if (!registra(operazione)) {
+            System.err.println("⚠️ Outbox: rimborso " + idAddebito + " non registrato, tentato comunque");
+        }
+        registrate.incrementAndGet();
+        inCorso.put(operazione.getId(), operazione);
+        lavoratori.execute(() -> processa(operazione, 0));
+    }
+
+    /**
+     * 🔎 Esito di un'operazione in corso o conclusa da poco, {@code null} se sconosciuta
+     */
+    public CompletableFuture<Biglietto> esitoDi(UUID idOperazione) {
+        return esiti.get(idOperazione);
+    }
+
+    private void processa(OperazionePagamento operazione, int tentativo) {
+        if (operazione.getStato() == OperazionePagamento.Stato.RIMBORSO_IN_CORSO) {
+            rimborsa(operazione, tentativo);
+            return;
+        }
+
+        Biglietto richiesto = operazione.getBiglietto();
+
+        // Crash dopo l'emissione ma prima della chiusura: il biglietto esiste già
+        Biglietto esistente = memoriaBiglietti.getById(richiesto.getId());
+        if (esistente != null) {
+            if (operazione.getIdTrattenuta() != null) {
+                memoriaBiglietti.rilasciaTrattenuta(operazione.getIdTrattenuta());
+            }
+            chiudi(operazione, OperazionePagamento.Stato.COMPLETATA, esistente);
+            return;
+        }
+
+        BancaServiceClient.EsitoPagamento esito;
+        try {
+            esito = banca.pagaConEsito(richiesto.getIdCliente().toString(), richiesto.getPrezzoPagato(),
+                    operazione.getCausale(), operazione.getId().toString());
+        } catch (IllegalStateException e) {
+            // Client banca chiuso: un tentativo precedente può aver addebitato, si riprende al riavvio
+            lasciaInSospeso(operazione, e.getMessage());
+            return;
+        }
+
+        switch (esito) {
+            case INCERTO -> riprova(operazione, tentativo);
+            case RIFIUTATO -> {
+                if (operazione.getIdTrattenuta() != null) {
+                    memoriaBiglietti.rilasciaTrattenuta(operazione.getIdTrattenuta());
+                }
+                chiudi(operazione, OperazionePagamento.Stato.ANNULLATA, null);
+            }
+            case ADDEBITATO -> {
+                Biglietto emesso = emetti(operazione);
+                if (emesso == null) {
+                    // 💸 Compensazione: pagato ma il posto non è più disponibile
+                    OperazionePagamento daRimborsare = operazione.conStato(OperazionePagamento.Stato.RIMBORSO_IN_CORSO);
+                    registra(daRimborsare);
+                    inCorso.put(daRimborsare.getId(), daRimborsare);
+                    rimborsa(daRimborsare, 0);
+                } else {
+                    chiudi(operazione, OperazionePagamento.Stato.COMPLETATA, emesso);
+                }
+            }
+        }
+    }
+
+    /**
+     * 💸 Rimborso con chiave stabile: ripeterlo dopo un errore o un riavvio accredita una
+     * sola volta; l'operazione si chiude ANNULLATA solo a rimborso confermato
+     */
+    private void rimborsa(OperazionePagamento operazione, int tentativo) {
+        Biglietto richiesto = operazione.getBiglietto();
+        boolean rimborsato;
+        try {
+            // Si rimborsa solo un addebito certo: ripetere l'addebito con la sua chiave ne
+            // restituisce l'esito (un addebito mai arrivato alla banca viene eseguito ora e
+            // subito rimborsato, un rifiuto non lascia nulla da rimborsare)
+            BancaServiceClient.EsitoPagamento addebito = banca.pagaConEsito(richiesto.getIdCliente().toString(),
+                    richiesto.getPrezzoPagato(), operazione.getCausale(), operazione.getId().toString());
+            if (addebito == BancaServiceClient.EsitoPagamento.INCERTO) {
+                riprova(operazione, tentativo);
+                return;
+            }
+            if (addebito == BancaServiceClient.EsitoPagamento.RIFIUTATO) {
+                chiudi(operazione, OperazionePagamento.Stato.ANNULLATA, null);
+                return;
+            }
+            rimborsato = banca.rimborsa(richiesto.getIdCliente().toString(), richiesto.getPrezzoPagato(),
+                    "Rimborso: " + operazione.getCausale(), operazione.getChiaveRimborso());
+        } catch (IllegalStateException e) {
+            lasciaInSospeso(operazione, e.getMessage());
+            return;
+        }
+
+        if (!rimborsato) {
+            riprova(operazione, tentativo);
+            return;
+        }
+        rimborsate.incrementAndGet();
+        chiudi(operazione, OperazionePagamento.Stato.ANNULLATA, null);
+    }
+
+    /**
+     * 🔁 Esito incerto o rimborso non riuscito: l'operazione resta nel suo stato (con il
+     * suo posto) e il passo viene ripetuto con la stessa chiave, con attesa crescente
+     */
+    private void riprova(OperazionePagamento operazione, int tentativo) {
+        long attesaMs = Math.min(MAX_RITENTATIVO_MS, PRIMO_RITENTATIVO_MS << Math.min(tentativo, 10));
+        ritentati.incrementAndGet();
+        System.out.println("🔁 Outbox: " + operazione.getStato() + " senza esito per " + operazione.getId() +
+                ", nuovo tentativo tra " + attesaMs + "ms");
+        try {
+            ritentativi.schedule(() -> {
+                try {
+                    lavoratori.execute(() -> processa(operazione, tentativo + 1));
+                } catch (RejectedExecutionException e) {
+                    lasciaInSospeso(operazione, "outbox fermato");
+                }
+            }, attesaMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            lasciaInSospeso(operazione, "outbox fermato");
+        }
+    }
+
+    /**
+     * ⏸️ Nessun esito definitivo prima dello spegnimento: l'operazione resta nel journal
+     * e viene ripresa da {@link #avvia()} al prossimo avvio
+     */
+    private void lasciaInSospeso(OperazionePagamento operazione, String motivo) {
+        System.err.println("⏸️ Outbox: operazione " + operazione.getId() + " rimandata al riavvio: " + motivo);
+        inCorso.remove(operazione.getId());
+        esiti.remove(operazione.getId());
+    }
+
+    private Biglietto emetti(OperazionePagamento operazione) {
+        Biglietto richiesto = operazione.getBiglietto();
+        if (operazione.getIdTrattenuta() != null) {
+            Biglietto riscattato = memoriaBiglietti.riscattaTrattenuta(operazione.getIdTrattenuta(), richiesto);
+            if (riscattato != null) {
+                return riscattato;
+            }
+        }
+
+        // Trattenuta persa (riavvio) o scaduta: si prova con un posto libero
+        Tratta tratta = memoriaTratte.getTrattaById(richiesto.getIdTratta());
+        if (tratta == null) {
+            return null;
+        }
+        return memoriaBiglietti.riservaPosto(richiesto, LayoutPosti.di(tratta.getTreno()));
+    }
+
+    private boolean registra(OperazionePagamento operazione) {
+        synchronized (journalLock) {
+            try {
+                OutboxPersistenceManager.appendi(pathOutbox, operazione);
+                return true;
+            } catch (IOException e) {
+                System.err.println("❌ Outbox: registrazione non riuscita: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private void chiudi(OperazionePagamento operazione, OperazionePagamento.Stato stato, Biglietto biglietto) {
+        registra(operazione.conStato(stato));
+        inCorso.remove(operazione.getId());
+        if (stato == OperazionePagamento.Stato.COMPLETATA) {
+            completate.incrementAndGet();
+        } else {
+            annullate.incrementAndGet();
+        }
+        // L'esito resta consultabile per un po': un retry del client lo ritrova senza ripagare
+        CompletableFuture<Biglietto> esito = esiti.computeIfAbsent(operazione.getId(), id -> new CompletableFuture<>());
+        esito.complete(biglietto);
+        try {
+            ritentativi.schedule(() -> esiti.remove(operazione.getId(), esito), CONSERVA_ESITO_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            esiti.remove(operazione.getId(), esito);
+        }
+    }
+
+    public int getInCorso() {
+        return inCorso.size();
+    }
+
+    public String getStatistiche() {
+        return String.format("Outbox Stats: Registrate=%d, Completate=%d, Annullate=%d, Rimborsate=%d, Recuperate=%d, " +
+                        "Ritentati=%d, InCorso=%d",
+                registrate.get(), completate.get(), annullate.get(), rimborsate.get(), recuperate.get(),
+                ritentati.get(), inCorso.size());
+    }
+
+    public void shutdown() {
+        ritentativi.shutdownNow();
+        lavoratori.shutdown();
+        System.out.println("📮 Outbox pagamenti fermato");
+    }
+}
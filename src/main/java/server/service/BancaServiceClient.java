@@ -3,29 +3,574 @@ package service;
 
 import banca.grpc.BancaServiceGrpc;
 import banca.grpc.RichiestaPagamento;
+import banca.grpc.RichiestaPagamentoBatch;
 import banca.grpc.RispostaPagamento;
+import banca.grpc.RispostaPagamentoBatch;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import util.IstogrammaLatenze;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 💳 CLIENT BANCA - MICRO-BATCHING + DEADLINE, HEDGING E CIRCUIT BREAKER
+ *
+ * Le chiamate concorrenti a {@link #paga} vengono accodate e un thread dedicato
+ * le invia con una sola RPC {@code pagaBatch} quando si raggiunge la dimensione
+ * massima del batch o scade la finestra temporale. Ogni chiamante resta bloccato
+ * sul proprio esito, come con la RPC unaria.
+ *
+ * Ogni RPC ha una deadline: una banca lenta produce un esito negativo entro
+ * {@code timeoutMs} invece di bloccare il thread di acquisto (e il posto riservato).
+ * Dopo troppi errori consecutivi il {@link CircuitBreaker} si apre e {@link #paga}
+ * restituisce subito false, così i Command rilasciano il posto senza attendere.
+ *
+ * Ogni pagamento porta una chiave di idempotenza: i tentativi ripetuti (hedging,
+ * retry) riusano la stessa richiesta e la banca addebita una sola volta.
+ *
+ * {@link #pagaConEsito} distingue il rifiuto certo (la banca ha detto no, oppure la
+ * richiesta non è mai partita) dall'esito incerto (deadline o errore di trasporto
+ * dopo l'invio): nel secondo caso l'addebito può essere avvenuto e va ripetuto con
+ * la stessa chiave, non annullato. {@link #pagaFinoAEsito} lo fa in background e
+ * restituisce l'esito definitivo quando la banca risponde.
+ */
 public class BancaServiceClient {
 
+    /**
+     * 💳 Esito di un pagamento visto dal client
+     */
+    public enum EsitoPagamento {
+        ADDEBITATO,
+        RIFIUTATO,  // rifiutato dalla banca o mai inviato: nessun addebito
+        INCERTO     // inviato senza risposta: l'addebito può essere avvenuto
+    }
+
+    public static final int DIMENSIONE_BATCH_DEFAULT = 32;
+    public static final long FINESTRA_BATCH_MS_DEFAULT = 2;
+    public static final long TIMEOUT_MS_DEFAULT = 3000;
+    public static final long RITARDO_HEDGING_MS_DEFAULT = 200;
+    public static final int SOGLIA_CIRCUITO_DEFAULT = 5;
+    public static final long APERTURA_CIRCUITO_MS_DEFAULT = 10000;
+
+    private static final long PRIMO_RITENTATIVO_MS = 500;
+    private static final long MAX_RITENTATIVO_MS = 30_000;
+    private static final int THREAD_RITENTATIVI = 4;
+
+    private final ManagedChannel channel;
     private final BancaServiceGrpc.BancaServiceBlockingStub stub;
 
+    // Micro-batching
+    private final int dimensioneMaxBatch;
+    private final long finestraBatchMs;
+    private final BlockingQueue<PagamentoInAttesa> coda = new LinkedBlockingQueue<>();
+    private final Thread batcher;
+    private volatile boolean attivo = true;
+
+    // Resilienza
+    private final long timeoutMs;
+    private final boolean hedgingAttivo;
+    private final long ritardoHedgingMs;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService hedgingExecutor;
+
+    // Pagamenti con esito incerto ripetuti in background, per chiave di idempotenza
+    private final ScheduledExecutorService ritentativi;
+    private final Map<String, CompletableFuture<EsitoPagamento>> pagamentiIncerti = new ConcurrentHashMap<>();
+
+    // Statistiche
+    private final AtomicLong pagamentiInviati = new AtomicLong();
+    private final AtomicLong batchInviati = new AtomicLong();
+    private final AtomicLong chiamateFallite = new AtomicLong();
+    private final AtomicLong richiesteHedging = new AtomicLong();
+    private final AtomicLong rifiutatiDalCircuito = new AtomicLong();
+    private final AtomicLong rimborsiRiusciti = new AtomicLong();
+    private final AtomicLong rimborsiFalliti = new AtomicLong();
+    private final IstogrammaLatenze latenze = new IstogrammaLatenze();
+
     public BancaServiceClient(String host, int port) {
-        ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port)
+        this(new Builder(host, port));
+    }
+
+    /**
+     * @param dimensioneMaxBatch numero massimo di pagamenti per RPC (1 = nessun batching)
+     * @param finestraBatchMs attesa massima per riempire un batch dopo il primo pagamento
+     */
+    public BancaServiceClient(String host, int port, int dimensioneMaxBatch, long finestraBatchMs) {
+        this(new Builder(host, port).dimensioneMaxBatch(dimensioneMaxBatch).finestraBatchMs(finestraBatchMs));
+    }
+
+    private BancaServiceClient(Builder builder) {
+        this.channel = ManagedChannelBuilder.forAddress(builder.host, builder.port)
                 .usePlaintext()
                 .build();
         this.stub = BancaServiceGrpc.newBlockingStub(channel);
+        this.dimensioneMaxBatch = Math.max(1, builder.dimensioneMaxBatch);
+        this.finestraBatchMs = Math.max(0, builder.finestraBatchMs);
+        this.timeoutMs = Math.max(1, builder.timeoutMs);
+        this.hedgingAttivo = builder.hedgingAttivo;
+        this.ritardoHedgingMs = Math.max(0, builder.ritardoHedgingMs);
+        this.circuitBreaker = new CircuitBreaker(builder.sogliaCircuito, builder.aperturaCircuitoMs);
+
+        if (hedgingAttivo) {
+            this.hedgingExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "BancaServiceClient-Hedging");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.hedgingExecutor = null;
+        }
+
+        this.ritentativi = Executors.newScheduledThreadPool(THREAD_RITENTATIVI, r -> {
+            Thread t = new Thread(r, "BancaServiceClient-Ritentativi");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (this.dimensioneMaxBatch > 1) {
+            this.batcher = new Thread(this::cicloBatcher, "BancaServiceClient-Batcher");
+            this.batcher.setDaemon(true);
+            this.batcher.start();
+        } else {
+            this.batcher = null;
+        }
     }
 
+    /**
+     * 💳 Esegue un pagamento: false se rifiutato, scaduto o con banca non disponibile
+     */
     public boolean paga(String idCliente, double importo, String causale) {
+        return paga(idCliente, importo, causale, UUID.randomUUID().toString());
+    }
+
+    /**
+     * 💳 Pagamento con chiave di idempotenza scelta dal chiamante: ripeterlo con la
+     * stessa chiave restituisce l'esito del primo tentativo senza nuovo addebito
+     */
+    public boolean paga(String idCliente, double importo, String causale, String chiaveIdempotenza) {
+        return pagaConEsito(idCliente, importo, causale, chiaveIdempotenza) == EsitoPagamento.ADDEBITATO;
+    }
+
+    /**
+     * 💳 Come {@link #paga}, ma un esito {@link EsitoPagamento#INCERTO} non viene
+     * confuso con un rifiuto: chi lo riceve deve ripetere il pagamento con la stessa chiave
+     */
+    public EsitoPagamento pagaConEsito(String idCliente, double importo, String causale, String chiaveIdempotenza) {
+        RichiestaPagamento richiesta = RichiestaPagamento.newBuilder()
+                .setIdCliente(idCliente)
+                .setImporto(importo)
+                .setCausale(causale)
+                .setChiaveIdempotenza(chiaveIdempotenza)
+                .build();
+
+        if (!attivo) {
+            throw new IllegalStateException("BancaServiceClient chiuso");
+        }
+
+        // Fail-fast: con circuito aperto non si accoda nemmeno
+        if (circuitBreaker.isBloccato()) {
+            rifiutatiDalCircuito.incrementAndGet();
+            System.out.println("🔌 Pagamento rifiutato subito: banca degradata (circuito aperto)");
+            return EsitoPagamento.RIFIUTATO;
+        }
+
+        if (batcher == null) {
+            try {
+                RispostaPagamento risposta = invoca(s -> s.paga(richiesta));
+                pagamentiInviati.incrementAndGet();
+                batchInviati.incrementAndGet();
+                return risposta.getSuccesso() ? EsitoPagamento.ADDEBITATO : EsitoPagamento.RIFIUTATO;
+            } catch (CircuitoAperto e) {
+                return EsitoPagamento.RIFIUTATO;
+            } catch (RuntimeException e) {
+                System.err.println("❓ Pagamento senza esito: " + e.getMessage());
+                return EsitoPagamento.INCERTO;
+            }
+        }
+
+        PagamentoInAttesa pagamento = new PagamentoInAttesa(richiesta);
+        coda.add(pagamento);
+        // shutdown() tra il controllo di "attivo" e l'accodamento: il batcher può aver
+        // già fatto l'ultimo svuotamento, quindi il pagamento rimasto in coda si chiude qui
+        if (!attivo && coda.remove(pagamento)) {
+            pagamento.esito.complete(EsitoPagamento.RIFIUTATO);
+        }
+        return attendiEsito(pagamento);
+    }
+
+    /**
+     * 🔁 Pagamento che non resta incerto: un esito {@link EsitoPagamento#INCERTO} viene
+     * ripetuto in background con la stessa chiave (attesa crescente) finché la banca non
+     * risponde. Il future si completa con ADDEBITATO o RIFIUTATO; con INCERTO solo se il
+     * client viene chiuso prima. Chiamate con una chiave già in ripetizione ricevono lo
+     * stesso future.
+     */
+    public CompletableFuture<EsitoPagamento> pagaFinoAEsito(String idCliente, double importo, String causale,
+                                                           String chiaveIdempotenza) {
+        CompletableFuture<EsitoPagamento> inCorso = pagamentiIncerti.get(chiaveIdempotenza);
+        if (inCorso != null) {
+            return inCorso;
+        }
+
+        EsitoPagamento esito = pagaConEsito(idCliente, importo, causale, chiaveIdempotenza);
+        if (esito != EsitoPagamento.INCERTO) {
+            return CompletableFuture.completedFuture(esito);
+        }
+
+        CompletableFuture<EsitoPagamento> futuro = new CompletableFuture<>();
+        CompletableFuture<EsitoPagamento> esistente = pagamentiIncerti.putIfAbsent(chiaveIdempotenza, futuro);
+        if (esistente != null) {
+            return esistente;
+        }
+        futuro.whenComplete((e, t) -> pagamentiIncerti.remove(chiaveIdempotenza, futuro));
+        riprova(idCliente, importo, causale, chiaveIdempotenza, futuro, 0);
+        return futuro;
+    }
+
+    private void riprova(String idCliente, double importo, String causale, String chiave,
+                         CompletableFuture<EsitoPagamento> futuro, int tentativo) {
+        long attesaMs = Math.min(MAX_RITENTATIVO_MS, PRIMO_RITENTATIVO_MS << Math.min(tentativo, 10));
+        System.out.println("🔁 Pagamento " + chiave + " senza esito, nuovo tentativo tra " + attesaMs + "ms");
+        try {
+            ritentativi.schedule(() -> {
+                EsitoPagamento esito;
+                try {
+                    esito = pagaConEsito(idCliente, importo, causale, chiave);
+                } catch (IllegalStateException e) {
+                    futuro.complete(EsitoPagamento.INCERTO);
+                    return;
+                }
+                if (esito == EsitoPagamento.INCERTO) {
+                    riprova(idCliente, importo, causale, chiave, futuro, tentativo + 1);
+                } else {
+                    futuro.complete(esito);
+                }
+            }, attesaMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            futuro.complete(EsitoPagamento.INCERTO);
+        }
+    }
+
+    /**
+     * ⏱️ Attesa limitata dell'esito di un pagamento accodato: un batch davanti al nostro
+     * più il nostro, ciascuno entro la deadline. Se allo scadere è ancora in coda non
+     * partirà più (rifiutato); se è già stato inviato l'esito resta incerto.
+     */
+    private EsitoPagamento attendiEsito(PagamentoInAttesa pagamento) {
+        long attesaMassimaMs = finestraBatchMs + 2 * timeoutMs;
+        try {
+            return pagamento.esito.get(attesaMassimaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            boolean maiInviato = coda.remove(pagamento);
+            System.err.println("⏱️ Nessun esito dopo " + attesaMassimaMs + "ms" +
+                    (maiInviato ? ", pagamento tolto dalla coda" : ", pagamento già inviato"));
+            return maiInviato ? EsitoPagamento.RIFIUTATO : EsitoPagamento.INCERTO;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return coda.remove(pagamento) ? EsitoPagamento.RIFIUTATO : EsitoPagamento.INCERTO;
+        } catch (ExecutionException e) {
+            System.err.println("❓ Pagamento senza esito: " + e.getCause().getMessage());
+            return EsitoPagamento.INCERTO;
+        }
+    }
+
+    /**
+     * 💸 Rimborsa un importo già addebitato (compensazione): false se non riuscito
+     */
+    public boolean rimborsa(String idCliente, double importo, String causale) {
+        return rimborsa(idCliente, importo, causale, UUID.randomUUID().toString());
+    }
+
+    /**
+     * 💸 Rimborso con chiave di idempotenza scelta dal chiamante: ripeterlo dopo un
+     * errore o un riavvio con la stessa chiave accredita una sola volta
+     */
+    public boolean rimborsa(String idCliente, double importo, String causale, String chiaveIdempotenza) {
         RichiestaPagamento richiesta = RichiestaPagamento.newBuilder()
                 .setIdCliente(idCliente)
                 .setImporto(importo)
                 .setCausale(causale)
+                .setChiaveIdempotenza(chiaveIdempotenza)
                 .build();
 
-        RispostaPagamento risposta = stub.paga(richiesta);
-        return risposta.getSuccesso(); // true in ogni caso per ora
+        if (!attivo) {
+            throw new IllegalStateException("BancaServiceClient chiuso");
+        }
+
+        try {
+            boolean successo = invoca(s -> s.rimborsa(richiesta)).getSuccesso();
+            (successo ? rimborsiRiusciti : rimborsiFalliti).incrementAndGet();
+            return successo;
+        } catch (RuntimeException e) {
+            rimborsiFalliti.incrementAndGet();
+            System.err.println("❌ Rimborso di €" + importo + " a " + idCliente + " non completato: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 🔄 Thread batcher: attende il primo pagamento, poi raccoglie quelli
+     * arrivati entro la finestra (o fino alla dimensione massima) e li invia insieme
+     */
+    private void cicloBatcher() {
+        List<PagamentoInAttesa> batch = new ArrayList<>(dimensioneMaxBatch);
+
+        while (attivo || !coda.isEmpty()) {
+            try {
+                PagamentoInAttesa primo = coda.poll(100, TimeUnit.MILLISECONDS);
+                if (primo == null) {
+                    continue;
+                }
+                batch.add(primo);
+
+                long scadenza = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(finestraBatchMs);
+                while (batch.size() < dimensioneMaxBatch) {
+                    coda.drainTo(batch, dimensioneMaxBatch - batch.size());
+                    long attesa = scadenza - System.nanoTime();
+                    if (batch.size() >= dimensioneMaxBatch || attesa <= 0) {
+                        break;
+                    }
+                    PagamentoInAttesa altro = coda.poll(attesa, TimeUnit.NANOSECONDS);
+                    if (altro == null) {
+                        break;
+                    }
+                    batch.add(altro);
+                }
+
+                inviaBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Chi è rimasto in coda dopo l'interruzione non deve restare bloccato
+        PagamentoInAttesa residuo;
+        while ((residuo = coda.poll()) != null) {
+            residuo.esito.complete(EsitoPagamento.RIFIUTATO);
+        }
+    }
+
+    /**
+     * 📦 Una RPC per tutto il batch, esiti demultiplexati per posizione
+     */
+    private void inviaBatch(List<PagamentoInAttesa> batch) {
+        RichiestaPagamentoBatch.Builder builder = RichiestaPagamentoBatch.newBuilder();
+        batch.forEach(p -> builder.addPagamenti(p.richiesta));
+        RichiestaPagamentoBatch richiesta = builder.build();
+
+        try {
+            RispostaPagamentoBatch risposta = invoca(s -> s.pagaBatch(richiesta));
+            pagamentiInviati.addAndGet(batch.size());
+            batchInviati.incrementAndGet();
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (i < risposta.getEsitiCount()) {
+                    batch.get(i).esito.complete(risposta.getEsiti(i).getSuccesso()
+                            ? EsitoPagamento.ADDEBITATO : EsitoPagamento.RIFIUTATO);
+                } else {
+                    System.err.println("❓ Esito mancante nel batch per il pagamento " + i);
+                    batch.get(i).esito.complete(EsitoPagamento.INCERTO);
+                }
+            }
+        } catch (CircuitoAperto e) {
+            batch.forEach(p -> p.esito.complete(EsitoPagamento.RIFIUTATO));
+        } catch (RuntimeException e) {
+            System.err.println("❌ Errore batch pagamenti (" + batch.size() + " operazioni): " + e.getMessage());
+            batch.forEach(p -> p.esito.complete(EsitoPagamento.INCERTO));
+        }
+    }
+
+    /**
+     * 🛡️ Chiamata verso la banca con circuit breaker, deadline, hedging e metriche
+     */
+    private <T> T invoca(Function<BancaServiceGrpc.BancaServiceBlockingStub, T> chiamata) {
+        if (!circuitBreaker.consentiChiamata()) {
+            rifiutatiDalCircuito.incrementAndGet();
+            throw new CircuitoAperto();
+        }
+
+        long inizio = System.nanoTime();
+        try {
+            T risultato = hedgingAttivo ? invocaConHedging(chiamata) : chiamata.apply(stubConDeadline(timeoutMs));
+            circuitBreaker.registraSuccesso();
+            return risultato;
+        } catch (RuntimeException e) {
+            chiamateFallite.incrementAndGet();
+            circuitBreaker.registraFallimento();
+            throw e;
+        } finally {
+            latenze.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    /**
+     * 🐇 Hedging: se la prima chiamata non risponde entro {@code ritardoHedgingMs}
+     * ne parte una seconda e vince la prima che riesce, sempre entro la deadline.
+     * Entrambi i tentativi inviano la stessa richiesta (stessa chiave di idempotenza),
+     * quindi la banca addebita al più una volta.
+     */
+    private <T> T invocaConHedging(Function<BancaServiceGrpc.BancaServiceBlockingStub, T> chiamata) {
+        long scadenza = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        CompletableFuture<T> primaria = CompletableFuture.supplyAsync(
+                () -> chiamata.apply(stubConDeadline(timeoutMs)), hedgingExecutor);
+
+        try {
+            try {
+                return primaria.get(Math.min(ritardoHedgingMs, timeoutMs), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException lenta) {
+                long residuoMs = TimeUnit.NANOSECONDS.toMillis(scadenza - System.nanoTime());
+                if (residuoMs <= 0) {
+                    throw lenta;
+                }
+
+                richiesteHedging.incrementAndGet();
+                CompletableFuture<T> secondaria = CompletableFuture.supplyAsync(
+                        () -> chiamata.apply(stubConDeadline(residuoMs)), hedgingExecutor);
+
+                return primaConSuccesso(primaria, secondaria).get(residuoMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw Status.DEADLINE_EXCEEDED.withDescription("Banca oltre " + timeoutMs + "ms").asRuntimeException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Status.CANCELLED.withDescription("Pagamento interrotto").asRuntimeException();
+        }
+    }
+
+    private static <T> CompletableFuture<T> primaConSuccesso(CompletableFuture<T> a, CompletableFuture<T> b) {
+        CompletableFuture<T> vincitore = new CompletableFuture<>();
+        AtomicInteger fallimenti = new AtomicInteger();
+        for (CompletableFuture<T> tentativo : List.of(a, b)) {
+            tentativo.whenComplete((risultato, errore) -> {
+                if (errore == null) {
+                    vincitore.complete(risultato);
+                } else if (fallimenti.incrementAndGet() == 2) {
+                    vincitore.completeExceptionally(errore);
+                }
+            });
+        }
+        return vincitore;
+    }
+
+    private BancaServiceGrpc.BancaServiceBlockingStub stubConDeadline(long millis) {
+        return stub.withDeadlineAfter(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public CircuitBreaker.Stato getStatoCircuito() {
+        return circuitBreaker.getStato();
+    }
+
+    public IstogrammaLatenze getLatenze() {
+        return latenze;
+    }
+
+    /**
+     * 📊 Statistiche batching, resilienza e latenze per monitoring
+     */
+    public String getStatistiche() {
+        long batch = batchInviati.get();
+        long pagamenti = pagamentiInviati.get();
+        return String.format("Banca: %d pagamenti in %d RPC (media %.1f per RPC) | %s | Latenza %s | " +
+                        "Fallite: %d | Hedging: %d | Rifiutati fail-fast: %d | Rimborsi: %d ok, %d falliti",
+                pagamenti, batch, batch > 0 ? (double) pagamenti / batch : 0.0,
+                circuitBreaker.getStatistiche(), latenze.getRiepilogo(),
+                chiamateFallite.get(), richiesteHedging.get(), rifiutatiDalCircuito.get(),
+                rimborsiRiusciti.get(), rimborsiFalliti.get());
+    }
+
+    /**
+     * 🛑 Svuota la coda e chiude il canale verso la banca
+     */
+    public void shutdown() {
+        attivo = false;
+        ritentativi.shutdownNow();
+        // Chi attende un esito incerto non deve restare bloccato: resta incerto
+        pagamentiIncerti.values().forEach(f -> f.complete(EsitoPagamento.INCERTO));
+        if (batcher != null) {
+            try {
+                batcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (hedgingExecutor != null) {
+            hedgingExecutor.shutdownNow();
+        }
+        channel.shutdown();
+    }
+
+    private static final class PagamentoInAttesa {
+        private final RichiestaPagamento richiesta;
+        private final CompletableFuture<EsitoPagamento> esito = new CompletableFuture<>();
+
+        private PagamentoInAttesa(RichiestaPagamento richiesta) {
+            this.richiesta = richiesta;
+        }
+    }
+
+    /**
+     * 🔌 Chiamata rifiutata dal circuit breaker prima di partire: nessun addebito possibile
+     */
+    private static final class CircuitoAperto extends StatusRuntimeException {
+        private CircuitoAperto() {
+            super(Status.UNAVAILABLE.withDescription("Circuit breaker aperto"));
+        }
+    }
+
+    /**
+     * 🏗️ Configurazione del client banca (valori di default per tutti i parametri)
+     */
+    public static class Builder {
+        private final String host;
+        private final int port;
+        private int dimensioneMaxBatch = DIMENSIONE_BATCH_DEFAULT;
+        private long finestraBatchMs = FINESTRA_BATCH_MS_DEFAULT;
+        private long timeoutMs = TIMEOUT_MS_DEFAULT;
+        private boolean hedgingAttivo = false;
+        private long ritardoHedgingMs = RITARDO_HEDGING_MS_DEFAULT;
+        private int sogliaCircuito = SOGLIA_CIRCUITO_DEFAULT;
+        private long aperturaCircuitoMs = APERTURA_CIRCUITO_MS_DEFAULT;
+
+        public Builder(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        public Builder dimensioneMaxBatch(int dimensioneMaxBatch) { this.dimensioneMaxBatch = dimensioneMaxBatch; return this; }
+        public Builder finestraBatchMs(long finestraBatchMs) { this.finestraBatchMs = finestraBatchMs; return this; }
+        public Builder timeoutMs(long timeoutMs) { this.timeoutMs = timeoutMs; return this; }
+        public Builder hedging(boolean hedgingAttivo) { this.hedgingAttivo = hedgingAttivo; return this; }
+        public Builder ritardoHedgingMs(long ritardoHedgingMs) { this.ritardoHedgingMs = ritardoHedgingMs; return this; }
+        public Builder sogliaCircuito(int sogliaCircuito) { this.sogliaCircuito = sogliaCircuito; return this; }
+        public Builder aperturaCircuitoMs(long aperturaCircuitoMs) { this.aperturaCircuitoMs = aperturaCircuitoMs; return this; }
+
+        public BancaServiceClient build() { return new BancaServiceClient(this); }
     }
-}
\ No newline at end of file
+}
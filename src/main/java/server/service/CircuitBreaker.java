@@ -0,0 +1,100 @@
+package service;
+
+/**
+ * 🔌 CIRCUIT BREAKER - Fail-fast verso un servizio degradato
+ *
+ * CHIUSO: le chiamate passano, si contano i fallimenti consecutivi.
+ * APERTO: dopo {@code sogliaFallimenti} errori le chiamate vengono rifiutate
+ *         subito per {@code durataAperturaMs}.
+ * SEMI_APERTO: scaduta l'apertura passa una sola chiamata di prova; se riesce
+ *              il circuito si richiude, altrimenti si riapre.
+ */
+public class CircuitBreaker {
+
+    public enum Stato {
+        CHIUSO,
+        APERTO,
+        SEMI_APERTO
+    }
+
+    private final int sogliaFallimenti;
+    private final long durataAperturaMs;
+
+    private Stato stato = Stato.CHIUSO;
+    private int fallimentiConsecutivi = 0;
+    private long apertoFinoA = 0;
+    private boolean provaInCorso = false;
+
+    // Statistiche
+    private long aperture = 0;
+    private long chiamateRifiutate = 0;
+
+    public CircuitBreaker(int sogliaFallimenti, long durataAperturaMs) {
+        this.sogliaFallimenti = Math.max(1, sogliaFallimenti);
+        this.durataAperturaMs = Math.max(0, durataAperturaMs);
+    }
+
+    /**
+     * 🚦 true se la chiamata può partire (in SEMI_APERTO riserva l'unica prova)
+     */
+    public synchronized boolean consentiChiamata() {
+        switch (stato) {
+            case CHIUSO:
+                return true;
+            case APERTO:
+                if (System.currentTimeMillis() >= apertoFinoA) {
+                    stato = Stato.SEMI_APERTO;
+                    provaInCorso = true;
+                    return true;
+                }
+                chiamateRifiutate++;
+                return false;
+            default:
+                if (!provaInCorso) {
+                    provaInCorso = true;
+                    return true;
+                }
+                chiamateRifiutate++;
+                return false;
+        }
+    }
+
+    /**
+     * 🚦 Controllo non distruttivo: true se una chiamata verrebbe rifiutata adesso
+     */
+    public synchronized boolean isBloccato() {
+        return (stato == Stato.APERTO && System.currentTimeMillis() < apertoFinoA)
+                || (stato == Stato.SEMI_APERTO && provaInCorso);
+    }
+
+    public synchronized void registraSuccesso() {
+        fallimentiConsecutivi = 0;
+        provaInCorso = false;
+        if (stato != Stato.CHIUSO) {
+            System.out.println("🔌 Circuit breaker CHIUSO: servizio di nuovo disponibile");
+        }
+        stato = Stato.CHIUSO;
+    }
+
+    public synchronized void registraFallimento() {
+        fallimentiConsecutivi++;
+        provaInCorso = false;
+        if (stato == Stato.SEMI_APERTO || fallimentiConsecutivi >= sogliaFallimenti) {
+            if (stato != Stato.APERTO) {
+                aperture++;
+                System.out.println("🔌 Circuit breaker APERTO per " + durataAperturaMs + "ms dopo " +
+                        fallimentiConsecutivi + " fallimenti consecutivi");
+            }
+            stato = Stato.APERTO;
+            apertoFinoA = System.currentTimeMillis() + durataAperturaMs;
+        }
+    }
+
+    public synchronized Stato getStato() {
+        return stato;
+    }
+
+    public synchronized String getStatistiche() {
+        return String.format("Circuito: %s (aperture=%d, rifiutate=%d)", stato, aperture, chiamateRifiutate);
+    }
+}
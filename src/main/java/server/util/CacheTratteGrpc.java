@@ -0,0 +1,125 @@
+package util;
+
+import Assembler.AssemblerTratta;
+import dto.TrattaDTO;
+import enums.ClasseServizio;
+import grpc.TrattaGrpc;
+import model.Tratta;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🧩 CACHE TRATTE GRPC - Frammenti TrattaDTO/TrattaGrpc già costruiti per tratta
+ *
+ * Tratta è immutabile: la parte statica della risposta (stazioni, orario,
+ * binario, treno, prezzi, capienza) si costruisce una volta sola. Ogni voce
+ * ricorda l'istanza da cui è nata, quindi una tratta modificata (nuova istanza)
+ * non può mai ricevere il frammento vecchio; MemoriaTratte segnala inoltre le
+ * tratte modificate o rimosse per liberare subito le voci.
+ *
+ * I DTO restituiti da {@link #toDTO} condividono le mappe immutabili della voce:
+ * è da questa condivisione che {@link #toGrpc} riconosce un DTO "suo" e risponde
+ * con il messaggio in cache, aggiungendo solo i posti disponibili del momento.
+ */
+public class CacheTratteGrpc {
+
+    private static final CacheTratteGrpc instance = new CacheTratteGrpc();
+
+    private static final class Voce {
+        final Tratta sorgente;
+        final TrattaDTO base;
+        final TrattaGrpc grpc;
+
+        Voce(Tratta sorgente, TrattaDTO base, TrattaGrpc grpc) {
+            this.sorgente = sorgente;
+            this.base = base;
+            this.grpc = grpc;
+        }
+    }
+
+    private final Map<UUID, Voce> voci = new ConcurrentHashMap<>();
+
+    // 📊 Metriche
+    private final AtomicLong hit = new AtomicLong();
+    private final AtomicLong miss = new AtomicLong();
+    private final AtomicLong invalidazioni = new AtomicLong();
+
+    private CacheTratteGrpc() {}
+
+    public static CacheTratteGrpc getInstance() {
+        return instance;
+    }
+
+    /**
+     * DTO della tratta con i posti disponibili indicati ({@code null} = non calcolati)
+     */
+    public TrattaDTO toDTO(Tratta tratta, Map<ClasseServizio, Integer> postiDisponibili) {
+        TrattaDTO base = voce(tratta).base;
+        if (postiDisponibili == null) {
+            return base;
+        }
+        return new TrattaDTO(base.getId(), base.getStazionePartenza(), base.getStazioneArrivo(),
+                base.getData(), base.getOra(), base.getBinario(), base.getTreno(), base.getPrezzi(),
+                base.getCapienzaPerClasse(), postiDisponibili);
+    }
+
+    /**
+     * Messaggio in cache per un DTO prodotto da {@link #toDTO}, null altrimenti
+     */
+    TrattaGrpc toGrpc(TrattaDTO dto) {
+        Voce voce = voci.get(dto.getId());
+        if (voce == null || voce.base.getPrezzi() != dto.getPrezzi()) {
+            return null;
+        }
+        if (dto.getPostiDisponibili() == null) {
+            return voce.grpc;
+        }
+        TrattaGrpc.Builder builder = voce.grpc.toBuilder();
+        dto.getPostiDisponibili().forEach((classe, posti) -> builder.putPostiDisponibiliPerClasse(classe.name(), posti));
+        return builder.setPostiDisponibili(GrpcMapper.postiDisponibiliTotali(dto)).build();
+    }
+
+    public void invalida(UUID idTratta) {
+        if (voci.remove(idTratta) != null) {
+            invalidazioni.incrementAndGet();
+        }
+    }
+
+    private Voce voce(Tratta tratta) {
+        Voce voce = voci.get(tratta.getId());
+        if (voce != null && voce.sorgente == tratta) {
+            hit.incrementAndGet();
+            return voce;
+        }
+        miss.incrementAndGet();
+
+        TrattaDTO dto = AssemblerTratta.toDTO(tratta);
+        TrattaDTO base = new TrattaDTO(dto.getId(), dto.getStazionePartenza(), dto.getStazioneArrivo(),
+                dto.getData(), dto.getOra(), dto.getBinario(), dto.getTreno(),
+                Collections.unmodifiableMap(dto.getPrezzi()),
+                Collections.unmodifiableMap(dto.getCapienzaPerClasse()), null);
+        Voce nuova = new Voce(tratta, base, GrpcMapper.costruisciTrattaGrpc(base));
+
+        // Una put concorrente con un'istanza più vecchia costa al massimo un miss: il controllo d'identità la scarta
+        voci.put(tratta.getId(), nuova);
+        return nuova;
+    }
+
+    public int getDimensione() {
+        return voci.size();
+    }
+
+    public long getHit() { return hit.get(); }
+    public long getMiss() { return miss.get(); }
+
+    public String getStatistiche() {
+        long h = hit.get();
+        long totale = h + miss.get();
+        return String.format("CacheTratteGrpc: voci=%d, hit=%d, miss=%d, hitRatio=%.1f%%, invalidazioni=%d",
+                voci.size(), h, miss.get(), totale == 0 ? 0.0 : h * 100.0 / totale, invalidazioni.get());
+    }
+}
@@ -4,12 +4,17 @@ import dto.*;
 import enums.ClasseServizio;
 import enums.StatoBiglietto;
 import enums.TipoPrezzo;
+import com.google.protobuf.ByteString;
 import grpc.*;
 import model.Biglietto;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -53,6 +58,35 @@ public class GrpcMapper {
         if (dto.getFasciaOraria() != null) {
             builder.setFasciaOraria(dto.getFasciaOraria());
         }
+        if (dto.getChiaveIdempotenza() != null) {
+            builder.setChiaveIdempotenza(dto.getChiaveIdempotenza());
+        }
+        if (dto.getNumeroPosti() != null) {
+            builder.setNumeroPosti(dto.getNumeroPosti());
+        }
+        if (dto.getTokenTrattenuta() != null) {
+            builder.setTokenTrattenuta(dto.getTokenTrattenuta());
+        }
+        if (dto.getDimensionePagina() != null) {
+            builder.setDimensionePagina(dto.getDimensionePagina());
+        }
+        if (dto.getTokenContinuazione() != null) {
+            builder.setTokenContinuazione(dto.getTokenContinuazione());
+        }
+        if (dto.getOrdinamento() != null) {
+            builder.setOrdinamento(dto.getOrdinamento());
+        }
+        if (dto.getPostiMinimi() != null) {
+            builder.setPostiMinimi(dto.getPostiMinimi());
+        }
+        if (dto.getCarrello() != null) {
+            for (ElementoCarrelloDTO elemento : dto.getCarrello()) {
+                builder.addCarrello(ElementoCarrelloGrpc.newBuilder()
+                        .setTrattaId(elemento.getIdTratta().toString())
+                        .setClasseServizio(elemento.getClasseServizio().name())
+                        .setTipoPrezzo(elemento.getTipoPrezzo() != null ? elemento.getTipoPrezzo().name() : ""));
+            }
+        }
 
         return builder.build();
     }
@@ -110,6 +144,35 @@ public class GrpcMapper {
         if (!grpc.getFasciaOraria().isEmpty()) {
             builder.fasciaOraria(grpc.getFasciaOraria());
         }
+        if (!grpc.getChiaveIdempotenza().isEmpty()) {
+            builder.chiaveIdempotenza(grpc.getChiaveIdempotenza());
+        }
+        if (grpc.getNumeroPosti() > 0) {
+            builder.numeroPosti(grpc.getNumeroPosti());
+        }
+        if (!grpc.getTokenTrattenuta().isEmpty()) {
+            builder.tokenTrattenuta(grpc.getTokenTrattenuta());
+        }
+        if (grpc.getDimensionePagina() > 0) {
+            builder.dimensionePagina(grpc.getDimensionePagina());
+        }
+        if (!grpc.getTokenContinuazione().isEmpty()) {
+            builder.tokenContinuazione(grpc.getTokenContinuazione());
+        }
+        if (!grpc.getOrdinamento().isEmpty()) {
+            builder.ordinamento(grpc.getOrdinamento());
+        }
+        if (grpc.getPostiMinimi() > 0) {
+            builder.postiMinimi(grpc.getPostiMinimi());
+        }
+        if (grpc.getCarrelloCount() > 0) {
+            builder.carrello(grpc.getCarrelloList().stream()
+                    .map(e -> new ElementoCarrelloDTO(
+                            UUID.fromString(e.getTrattaId()),
+                            ClasseServizio.valueOf(e.getClasseServizio()),
+                            e.getTipoPrezzo().isEmpty() ? TipoPrezzo.INTERO : TipoPrezzo.valueOf(e.getTipoPrezzo())))
+                    .collect(Collectors.toList()));
+        }
 
         return builder.build();
     }
@@ -133,6 +196,45 @@ public class GrpcMapper {
             System.out.println("❌ DEBUG: Nessun biglietto da aggiungere alla risposta gRPC");
         }
 
+        if (dto.getBiglietti() != null) {
+            System.out.println("✅ DEBUG: Aggiungendo " + dto.getBiglietti().size() + " biglietti alla risposta gRPC");
+            builder.addAllBiglietti(dto.getBiglietti().stream()
+                    .map(GrpcMapper::toGrpc)
+                    .collect(Collectors.toList()));
+        }
+
+        if (dto.getMappaPosti() != null) {
+            builder.setMappaPosti(toGrpc(dto.getMappaPosti()));
+        }
+
+        if (dto.getTrattenuta() != null) {
+            builder.setTrattenuta(toGrpc(dto.getTrattenuta()));
+        }
+
+        if (dto.getPaginaTratte() != null) {
+            builder.setPagina(toGrpc(dto.getPaginaTratte()));
+        }
+
+        if (dto.getCalendario() != null) {
+            builder.addAllCalendario(dto.getCalendario().stream()
+                    .map(GrpcMapper::toGrpc)
+                    .collect(Collectors.toList()));
+        }
+
+        if (dto.getSuggerimenti() != null) {
+            builder.addAllSuggerimenti(dto.getSuggerimenti());
+        }
+
+        if (dto.getIdOperazione() != null) {
+            builder.setIdOperazione(dto.getIdOperazione().toString());
+        }
+
+        if (dto.getItinerari() != null) {
+            builder.addAllItinerari(dto.getItinerari().stream()
+                    .map(GrpcMapper::toGrpc)
+                    .collect(Collectors.toList()));
+        }
+
         if (dto.getTratte() != null && !dto.getTratte().isEmpty()) {
             System.out.println("✅ DEBUG: Aggiungendo " + dto.getTratte().size() + " tratte alla risposta gRPC");
             builder.addAllTratte(dto.getTratte().stream()
@@ -164,7 +266,28 @@ public class GrpcMapper {
                 .map(GrpcMapper::fromGrpc)
                 .collect(Collectors.toList());
 
-        Object dati = biglietto != null ? biglietto : (!tratte.isEmpty() ? tratte : null);
+        List<BigliettoDTO> biglietti = grpc.getBigliettiList().stream()
+                .map(GrpcMapper::fromGrpc)
+                .collect(Collectors.toList());
+
+        List<ItinerarioDTO> itinerari = grpc.getItinerariList().stream()
+                .map(GrpcMapper::fromGrpc)
+                .collect(Collectors.toList());
+
+        List<PrezzoGiornoDTO> calendario = grpc.getCalendarioList().stream()
+                .map(GrpcMapper::fromGrpc)
+                .collect(Collectors.toList());
+
+        Object dati = biglietto != null ? biglietto
+                : grpc.hasMappaPosti() ? fromGrpc(grpc.getMappaPosti())
+                : grpc.hasTrattenuta() ? fromGrpc(grpc.getTrattenuta())
+                : grpc.hasPagina() ? fromGrpc(grpc.getPagina())
+                : !biglietti.isEmpty() ? biglietti
+                : !itinerari.isEmpty() ? itinerari
+                : !calendario.isEmpty() ? calendario
+                : grpc.getSuggerimentiCount() > 0 ? new ArrayList<>(grpc.getSuggerimentiList())
+                : !grpc.getIdOperazione().isEmpty() ? UUID.fromString(grpc.getIdOperazione())
+                : (!tratte.isEmpty() ? tratte : null);
 
         System.out.println("📋 DEBUG: Dati finali per RispostaDTO: " + (dati != null ? dati.getClass().getSimpleName() : "NULL"));
 
@@ -191,6 +314,7 @@ public class GrpcMapper {
                 .setPrezzoPagato(b.getPrezzoEffettivo())
                 .setDataAcquisto(LocalDate.now().toString())
                 .setConCartaFedelta(b.getTipoPrezzo() == TipoPrezzo.FEDELTA)
+                .setNumeroPosto(b.getNumeroPosto() != null ? b.getNumeroPosto() : 0)
                 .build();
     }
 
@@ -228,7 +352,8 @@ public class GrpcMapper {
                     g.getConCartaFedelta() ? TipoPrezzo.FEDELTA : TipoPrezzo.INTERO,
                     g.getPrezzoPagato(),
                     g.getTipoAcquisto().equalsIgnoreCase("CONFERMATO") ?
-                            StatoBiglietto.CONFERMATO : StatoBiglietto.NON_CONFERMATO
+                            StatoBiglietto.CONFERMATO : StatoBiglietto.NON_CONFERMATO,
+                    g.getNumeroPosto() > 0 ? g.getNumeroPosto() : null
             );
 
             System.out.println("✅ DEBUG: BigliettoDTO creato con successo");
@@ -241,17 +366,152 @@ public class GrpcMapper {
         }
     }
 
+    // 🔁 MappaPostiDTO ➜ MappaPostiGrpc
+    public static MappaPostiGrpc toGrpc(MappaPostiDTO m) {
+        MappaPostiGrpc.Builder builder = MappaPostiGrpc.newBuilder()
+                .setTrattaId(m.getIdTratta().toString())
+                .setPostiPerCarrozza(m.getPostiPerCarrozza());
+        for (MappaPostiDTO.Segmento s : m.getSegmenti()) {
+            builder.addSegmenti(SegmentoPostiGrpc.newBuilder()
+                    .setClasse(s.getClasse() != null ? s.getClasse().name() : "")
+                    .setPrimoPosto(s.getPrimoPosto())
+                    .setNumeroPosti(s.getNumeroPosti())
+                    .setPostiLiberi(s.getPostiLiberi())
+                    .setOccupati(ByteString.copyFrom(s.getBitmap())));
+        }
+        return builder.build();
+    }
+
+    // 🔁 MappaPostiGrpc ➜ MappaPostiDTO
+    public static MappaPostiDTO fromGrpc(MappaPostiGrpc g) {
+        List<MappaPostiDTO.Segmento> segmenti = g.getSegmentiList().stream()
+                .map(s -> new MappaPostiDTO.Segmento(
+                        s.getClasse().isEmpty() ? null : ClasseServizio.valueOf(s.getClasse()),
+                        s.getPrimoPosto(),
+                        s.getNumeroPosti(),
+                        s.getPostiLiberi(),
+                        s.getOccupati().toByteArray()))
+                .collect(Collectors.toList());
+        return new MappaPostiDTO(UUID.fromString(g.getTrattaId()), g.getPostiPerCarrozza(), segmenti);
+    }
+
+    // 🔁 TrattenutaDTO ➜ TrattenutaGrpc
+    public static TrattenutaGrpc toGrpc(TrattenutaDTO t) {
+        return TrattenutaGrpc.newBuilder()
+                .setToken(t.getToken().toString())
+                .setTrattaId(t.getIdTratta().toString())
+                .setClasseServizio(t.getClasse().name())
+                .setNumeroPosto(t.getNumeroPosto())
+                .setScadenza(t.getScadenza().toString())
+                .build();
+    }
+
+    // 🔁 TrattenutaGrpc ➜ TrattenutaDTO
+    public static TrattenutaDTO fromGrpc(TrattenutaGrpc g) {
+        return new TrattenutaDTO(
+                UUID.fromString(g.getToken()),
+                UUID.fromString(g.getTrattaId()),
+                ClasseServizio.valueOf(g.getClasseServizio()),
+                g.getNumeroPosto(),
+                LocalDateTime.parse(g.getScadenza()));
+    }
+
+    // 🔁 PaginaTratteDTO ➜ PaginaTratteGrpc
+    public static PaginaTratteGrpc toGrpc(PaginaTratteDTO p) {
+        PaginaTratteGrpc.Builder builder = PaginaTratteGrpc.newBuilder()
+                .setTotaleRisultati(p.getTotaleRisultati())
+                .setTokenContinuazione(p.getTokenContinuazione() != null ? p.getTokenContinuazione() : "");
+        for (TrattaDTO t : p.getTratte()) {
+            builder.addTratte(toGrpc(t));
+        }
+        return builder.build();
+    }
+
+    // 🔁 PaginaTratteGrpc ➜ PaginaTratteDTO
+    public static PaginaTratteDTO fromGrpc(PaginaTratteGrpc g) {
+        return new PaginaTratteDTO(
+                g.getTratteList().stream().map(GrpcMapper::fromGrpc).collect(Collectors.toList()),
+                g.getTokenContinuazione().isEmpty() ? null : g.getTokenContinuazione(),
+                g.getTotaleRisultati());
+    }
+
+    // 🔁 PrezzoGiornoDTO ➜ PrezzoGiornoGrpc
+    public static PrezzoGiornoGrpc toGrpc(PrezzoGiornoDTO g) {
+        return PrezzoGiornoGrpc.newBuilder()
+                .setData(g.getData().toString())
+                .setClasse(g.getClasse().name())
+                .setPrezzoMinimo(g.getPrezzoMinimo())
+                .setIdTratta(g.getIdTratta().toString())
+                .setNumeroTratte(g.getNumeroTratte())
+                .build();
+    }
+
+    // 🔁 PrezzoGiornoGrpc ➜ PrezzoGiornoDTO
+    public static PrezzoGiornoDTO fromGrpc(PrezzoGiornoGrpc g) {
+        return new PrezzoGiornoDTO(
+                LocalDate.parse(g.getData()),
+                ClasseServizio.valueOf(g.getClasse()),
+                g.getPrezzoMinimo(),
+                UUID.fromString(g.getIdTratta()),
+                g.getNumeroTratte());
+    }
+
+    // 🔁 ItinerarioDTO ➜ ItinerarioGrpc
+    public static ItinerarioGrpc toGrpc(ItinerarioDTO i) {
+        ItinerarioGrpc.Builder builder = ItinerarioGrpc.newBuilder();
+        for (TrattaDTO t : i.getTratte()) {
+            builder.addTratte(toGrpc(t));
+        }
+        for (LocalDateTime arrivo : i.getArriviStimati()) {
+            builder.addArriviStimati(arrivo.toString());
+        }
+        return builder.build();
+    }
+
+    // 🔁 ItinerarioGrpc ➜ ItinerarioDTO
+    public static ItinerarioDTO fromGrpc(ItinerarioGrpc g) {
+        return new ItinerarioDTO(
+                g.getTratteList().stream().map(GrpcMapper::fromGrpc).collect(Collectors.toList()),
+                g.getArriviStimatiList().stream().map(LocalDateTime::parse).collect(Collectors.toList()));
+    }
+
     // 🔁 TrattaDTO ➜ TrattaGrpc
     public static TrattaGrpc toGrpc(TrattaDTO t) {
-        return TrattaGrpc.newBuilder()
+        // 🧩 Frammento già costruito per le tratte arrivate dalla cache (risultati di FILTRA)
+        TrattaGrpc inCache = CacheTratteGrpc.getInstance().toGrpc(t);
+        return inCache != null ? inCache : costruisciTrattaGrpc(t);
+    }
+
+    static TrattaGrpc costruisciTrattaGrpc(TrattaDTO t) {
+        TrattaGrpc.Builder builder = TrattaGrpc.newBuilder()
                 .setId(t.getId().toString())
                 .setStazionePartenza(t.getStazionePartenza())
                 .setStazioneArrivo(t.getStazioneArrivo())
                 .setData(t.getData().toString())
                 .setOra(t.getOra().toString())
                 .setBinario(String.valueOf(t.getBinario()))
-                .setTipoTreno(t.getTreno() != null ? t.getTreno().getNomeCommerciale() : "Sconosciuto")
-                .build();
+                .setTipoTreno(t.getTreno() != null ? t.getTreno().getNomeCommerciale() : "Sconosciuto");
+
+        if (t.getTreno() != null) {
+            builder.setCapienzaTotale(t.getTreno().getCapienzaTotale());
+        }
+        if (t.getCapienzaPerClasse() != null) {
+            t.getCapienzaPerClasse().forEach((classe, posti) -> builder.putCapienzaPerClasse(classe.name(), posti));
+        }
+        if (t.getPostiDisponibili() != null) {
+            t.getPostiDisponibili().forEach((classe, posti) -> builder.putPostiDisponibiliPerClasse(classe.name(), posti));
+            builder.setPostiDisponibili(postiDisponibiliTotali(t));
+        }
+        return builder.build();
+    }
+
+    // Con posti condivisi tra le classi ogni classe riporta lo stesso numero: non va sommato
+    static int postiDisponibiliTotali(TrattaDTO t) {
+        boolean condivisi = t.getTreno() != null && t.getCapienzaPerClasse() != null
+                && t.getCapienzaPerClasse().values().stream().allMatch(c -> c == t.getTreno().getCapienzaTotale());
+        return condivisi
+                ? t.getPostiDisponibili().values().stream().mapToInt(Integer::intValue).max().orElse(0)
+                : t.getPostiDisponibili().values().stream().mapToInt(Integer::intValue).sum();
     }
 
     // 🔁 TrattaGrpc ➜ TrattaDTO
@@ -264,7 +524,18 @@ public class GrpcMapper {
                 LocalTime.parse(g.getOra()),
                 Integer.parseInt(g.getBinario()),
                 null, // ⚠️ TrenoDTO non disponibile da gRPC
-                null  // ⚠️ Prezzi non disponibili da gRPC
+                null, // ⚠️ Prezzi non disponibili da gRPC
+                perClasse(g.getCapienzaPerClasseMap()),
+                perClasse(g.getPostiDisponibiliPerClasseMap())
         );
     }
+
+    private static Map<ClasseServizio, Integer> perClasse(Map<String, Integer> valori) {
+        if (valori.isEmpty()) {
+            return null;
+        }
+        Map<ClasseServizio, Integer> risultato = new EnumMap<>(ClasseServizio.class);
+        valori.forEach((classe, posti) -> risultato.put(ClasseServizio.valueOf(classe), posti));
+        return risultato;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * ⏱️ ISTOGRAMMA LATENZE - Finestra scorrevole degli ultimi campioni
+ *
+ * Mantiene le ultime N misure in un buffer circolare e calcola i percentili
+ * su richiesta (ordinando una copia). Pensato per il monitoring, non per
+ * il percorso critico: la registrazione costa O(1).
+ */
+public class IstogrammaLatenze {
+
+    private static final int CAMPIONI_DEFAULT = 2048;
+
+    private final long[] campioni;
+    private int prossimo = 0;
+    private int presenti = 0;
+    private long totaleRegistrati = 0;
+
+    public IstogrammaLatenze() {
+        this(CAMPIONI_DEFAULT);
+    }
+
+    public IstogrammaLatenze(int dimensioneFinestra) {
+        this.campioni = new long[Math.max(1, dimensioneFinestra)];
+    }
+
+    /**
+     * ➕ Registra una latenza espressa in nanosecondi
+     */
+    public synchronized void registra(long nanos) {
+        campioni[prossimo] = nanos;
+        prossimo = (prossimo + 1) % campioni.length;
+        if (presenti < campioni.length) {
+            presenti++;
+        }
+        totaleRegistrati++;
+    }
+
+    /**
+     * 📊 Percentile (0-100) in millisecondi sulla finestra corrente, 0 se vuota
+     */
+    public synchronized double percentileMs(double percentile) {
+        if (presenti == 0) {
+            return 0.0;
+        }
+        long[] ordinati = Arrays.copyOf(campioni, presenti);
+        Arrays.sort(ordinati);
+        int indice = (int) Math.ceil(percentile / 100.0 * presenti) - 1;
+        indice = Math.max(0, Math.min(presenti - 1, indice));
+        return ordinati[indice] / 1_000_000.0;
+    }
+
+    public synchronized long getTotaleRegistrati() {
+        return totaleRegistrati;
+    }
+
+    /**
+     * 📊 Riepilogo compatto per log e console
+     */
+    public String getRiepilogo() {
+        return String.format("p50=%.1fms p95=%.1fms p99=%.1fms (n=%d)",
+                percentileMs(50), percentileMs(95), percentileMs(99), getTotaleRegistrati());
+    }
+}
@@ -0,0 +1,76 @@
+package util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 🛫 RICHIESTE IN VOLO - Calcoli identici e concorrenti eseguiti una sola volta
+ *
+ * La prima richiesta per una chiave esegue il calcolo; quelle con la stessa
+ * chiave che arrivano mentre è in corso lo attendono e ricevono lo stesso
+ * risultato (o la stessa eccezione). Finito il calcolo la chiave si libera:
+ * non è una cache, la richiesta successiva ricalcola.
+ *
+ * Chi si aggancia riceve un risultato calcolato durante la sua attesa, quindi
+ * vecchio al più quanto un calcolo in corso. Il risultato è condiviso tra tutte
+ * le richieste: va trattato in sola lettura.
+ */
+public class RichiesteInVolo<K, V> {
+
+    private final String nome;
+    private final Map<K, CompletableFuture<V>> inCorso = new ConcurrentHashMap<>();
+
+    // 📊 Metriche
+    private final AtomicLong eseguite = new AtomicLong();
+    private final AtomicLong condivise = new AtomicLong();
+
+    public RichiesteInVolo(String nome) {
+        this.nome = nome;
+    }
+
+    public V esegui(K chiave, Supplier<V> calcolo) {
+        CompletableFuture<V> mio = new CompletableFuture<>();
+        CompletableFuture<V> inVolo = inCorso.putIfAbsent(chiave, mio);
+        if (inVolo != null) {
+            condivise.incrementAndGet();
+            return attendi(inVolo);
+        }
+
+        eseguite.incrementAndGet();
+        try {
+            V risultato = calcolo.get();
+            mio.complete(risultato);
+            return risultato;
+        } catch (RuntimeException | Error e) {
+            mio.completeExceptionally(e);
+            throw e;
+        } finally {
+            inCorso.remove(chiave, mio);
+        }
+    }
+
+    private static <V> V attendi(CompletableFuture<V> inVolo) {
+        try {
+            return inVolo.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    public long getEseguite() { return eseguite.get(); }
+    public long getCondivise() { return condivise.get(); }
+    public int getInVolo() { return inCorso.size(); }
+
+    public String getStatistiche() {
+        long c = condivise.get();
+        long totale = c + eseguite.get();
+        return String.format("%s: eseguite=%d, condivise=%d, condiviseRatio=%.1f%%, inVolo=%d",
+                nome, eseguite.get(), c, totale == 0 ? 0.0 : c * 100.0 / totale, inCorso.size());
+    }
+}
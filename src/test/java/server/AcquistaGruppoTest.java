@@ -0,0 +1,140 @@
+package server;
+
+import Assembler.AssemblerTratta;
+import IMPL.BancaServiceImpl;
+import IMPL.ProfiloBanca;
+import command.AcquistaGruppoCommand;
+import dto.BigliettoDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import enums.ClasseServizio;
+import enums.TipoPrezzo;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import model.LayoutPosti;
+import model.Prezzo;
+import model.Tratta;
+import org.junit.jupiter.api.Test;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaClientiFedeli;
+import persistence.MemoriaOsservatori;
+import persistence.MemoriaTratte;
+import service.BancaServiceClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.trattaPiccola;
+
+public class AcquistaGruppoTest {
+
+    private static final int BANCA_PORT = 8138;
+    private static final double SALDO = 100.0;
+
+    private final MemoriaBiglietti memoriaBiglietti = new MemoriaBiglietti();
+    private final MemoriaTratte memoriaTratte = new MemoriaTratte();
+    private final String cliente = UUID.randomUUID().toString();
+
+    private RispostaDTO acquista(BancaServiceClient banca, Tratta tratta, ClasseServizio classe,
+                                 TipoPrezzo tipoPrezzo, int posti) {
+        RichiestaDTO richiesta = new RichiestaDTO.Builder()
+                .tipo("ACQUISTA_GRUPPO")
+                .idCliente(cliente)
+                .tratta(tratta != null ? AssemblerTratta.toDTO(tratta) : null)
+                .classeServizio(classe)
+                .tipoPrezzo(tipoPrezzo)
+                .numeroPosti(posti)
+                .chiaveIdempotenza(UUID.randomUUID().toString())
+                .build();
+        return new AcquistaGruppoCommand(richiesta, memoriaBiglietti, new MemoriaClientiFedeli(),
+                memoriaTratte, new MemoriaOsservatori(), banca).esegui();
+    }
+
+    private int postiLiberi(Tratta tratta) {
+        return memoriaBiglietti.getPostiDisponibili(tratta.getId(), LayoutPosti.di(tratta.getTreno()))
+                .get(ClasseServizio.BASE);
+    }
+
+    private static Server avvia(BancaServiceImpl banca) throws Exception {
+        return ServerBuilder.forPort(BANCA_PORT).addService(banca).build().start();
+    }
+
+    private static void ferma(Server server, BancaServiceClient client) throws InterruptedException {
+        client.shutdown();
+        server.shutdown();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void richiestaIncompletaDaKoSenzaToccareIPosti() throws Exception {
+        BancaServiceImpl bancaImpl = new BancaServiceImpl(new ProfiloBanca.Builder().saldoIniziale(SALDO).build());
+        Server server = avvia(bancaImpl);
+        BancaServiceClient banca = new BancaServiceClient("localhost", BANCA_PORT);
+        try {
+            Tratta tratta = trattaPiccola(memoriaTratte, 4);
+            Tratta soloBase = new Tratta(UUID.randomUUID(), "TestPartenza", "TestArrivo", tratta.getData(),
+                    tratta.getOra(), 1, tratta.getTreno(), Map.of(ClasseServizio.BASE, new Prezzo(10.0, 8.0, 6.0)));
+            memoriaTratte.aggiungiTratta(soloBase);
+            ClasseServizio senzaPrezzo = ClasseServizio.values()[ClasseServizio.values().length - 1];
+
+            assertEquals("KO", acquista(banca, null, ClasseServizio.BASE, TipoPrezzo.INTERO, 2).getEsito());
+            assertEquals("KO", acquista(banca, tratta, null, TipoPrezzo.INTERO, 2).getEsito());
+            RispostaDTO nonVenduta = acquista(banca, soloBase, senzaPrezzo, TipoPrezzo.INTERO, 2);
+            assertEquals("KO", nonVenduta.getEsito());
+            assertTrue(nonVenduta.getMessaggio().contains(senzaPrezzo.toString()));
+            assertEquals(4, postiLiberi(tratta));
+
+            // Senza tipo di prezzo vale INTERO
+            RispostaDTO senzaTipo = acquista(banca, tratta, ClasseServizio.BASE, null, 2);
+            assertEquals("OK", senzaTipo.getEsito(), senzaTipo.getMessaggio());
+            assertTrue(senzaTipo.getBiglietti().stream().allMatch(b -> b.getTipoPrezzo() == TipoPrezzo.INTERO));
+            assertEquals(SALDO - 20.0, bancaImpl.getRegistro().getSaldo(cliente), 0.001);
+        } finally {
+            ferma(server, banca);
+        }
+    }
+
+    @Test
+    void esitoIncertoTieneIPostiERiprovaConLaStessaChiave() throws Exception {
+        BancaSenzaRisposta bancaMuta = new BancaSenzaRisposta(
+                new ProfiloBanca.Builder().saldoIniziale(SALDO).build(), 1, 0);
+        Server server = avvia(bancaMuta);
+        BancaServiceClient banca = new BancaServiceClient("localhost", BANCA_PORT);
+        try {
+            Tratta tratta = trattaPiccola(memoriaTratte, 3);
+
+            // Prima risposta persa dopo l'addebito: il gruppo non viene sciolto
+            RispostaDTO risposta = acquista(banca, tratta, ClasseServizio.BASE, TipoPrezzo.INTERO, 3);
+
+            assertEquals("OK", risposta.getEsito(), risposta.getMessaggio());
+            List<BigliettoDTO> biglietti = risposta.getBiglietti();
+            assertEquals(3, biglietti.size());
+            biglietti.forEach(b -> assertNotNull(memoriaBiglietti.getById(b.getId())));
+            assertEquals(0, postiLiberi(tratta));
+            assertEquals(SALDO - 30.0, bancaMuta.getRegistro().getSaldo(cliente), 0.001, "Un solo addebito");
+        } finally {
+            ferma(server, banca);
+        }
+    }
+
+    @Test
+    void rifiutoCertoLiberaTuttiIPosti() throws Exception {
+        BancaServiceImpl bancaImpl = new BancaServiceImpl(new ProfiloBanca.Builder().saldoIniziale(15.0).build());
+        Server server = avvia(bancaImpl);
+        BancaServiceClient banca = new BancaServiceClient("localhost", BANCA_PORT);
+        try {
+            Tratta tratta = trattaPiccola(memoriaTratte, 3);
+
+            RispostaDTO risposta = acquista(banca, tratta, ClasseServizio.BASE, TipoPrezzo.INTERO, 2);
+
+            assertEquals("KO", risposta.getEsito());
+            assertEquals(3, postiLiberi(tratta));
+            assertEquals(15.0, bancaImpl.getRegistro().getSaldo(cliente), 0.001);
+        } finally {
+            ferma(server, banca);
+        }
+    }
+}
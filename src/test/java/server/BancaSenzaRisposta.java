@@ -0,0 +1,60 @@
+package server;
+
+import IMPL.BancaServiceImpl;
+import IMPL.ProfiloBanca;
+import banca.grpc.RichiestaPagamento;
+import banca.grpc.RichiestaPagamentoBatch;
+import banca.grpc.RispostaPagamento;
+import banca.grpc.RispostaPagamentoBatch;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🙊 Banca di prova che elabora pagamenti e rimborsi ma perde le prime risposte:
+ * per il client l'esito è incerto anche se l'addebito (o l'accredito) è avvenuto
+ */
+final class BancaSenzaRisposta extends BancaServiceImpl {
+
+    private final AtomicInteger rispostePagamentoDaPerdere;
+    private final AtomicInteger risposteRimborsoDaPerdere;
+
+    BancaSenzaRisposta(int rispostePagamentoDaPerdere, int risposteRimborsoDaPerdere) {
+        this(ProfiloBanca.IMMEDIATO, rispostePagamentoDaPerdere, risposteRimborsoDaPerdere);
+    }
+
+    BancaSenzaRisposta(ProfiloBanca profilo, int rispostePagamentoDaPerdere, int risposteRimborsoDaPerdere) {
+        super(profilo);
+        this.rispostePagamentoDaPerdere = new AtomicInteger(rispostePagamentoDaPerdere);
+        this.risposteRimborsoDaPerdere = new AtomicInteger(risposteRimborsoDaPerdere);
+    }
+
+    @Override
+    public void pagaBatch(RichiestaPagamentoBatch request, StreamObserver<RispostaPagamentoBatch> responseObserver) {
+        if (rispostePagamentoDaPerdere.getAndDecrement() > 0) {
+            super.pagaBatch(request, rispostaPersa(responseObserver));
+        } else {
+            super.pagaBatch(request, responseObserver);
+        }
+    }
+
+    @Override
+    public void rimborsa(RichiestaPagamento request, StreamObserver<RispostaPagamento> responseObserver) {
+        if (risposteRimborsoDaPerdere.getAndDecrement() > 0) {
+            super.rimborsa(request, rispostaPersa(responseObserver));
+        } else {
+            super.rimborsa(request, responseObserver);
+        }
+    }
+
+    private static <T> StreamObserver<T> rispostaPersa(StreamObserver<?> responseObserver) {
+        return new StreamObserver<>() {
+            @Override public void onNext(T value) {}
+            @Override public void onError(Throwable t) { responseObserver.onError(t); }
+            @Override public void onCompleted() {
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Risposta persa").asRuntimeException());
+            }
+        };
+    }
+}
@@ -0,0 +1,221 @@
+package server;
+
+import IMPL.BancaServiceImpl;
+import IMPL.ProfiloBanca;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import service.BancaServiceClient;
+import service.CircuitBreaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BancaServiceClientTest {
+
+    private static final int BANCA_PORT = 8121;
+
+    private static Server bancaServer;
+
+    @BeforeAll
+    static void avviaBanca() throws Exception {
+        bancaServer = ServerBuilder.forPort(BANCA_PORT)
+                .addService(new BancaServiceImpl())
+                .build()
+                .start();
+    }
+
+    @AfterAll
+    static void fermaBanca() throws InterruptedException {
+        bancaServer.shutdown();
+        bancaServer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void pagamentoSingoloRiesce() {
+        BancaServiceClient client = new BancaServiceClient("localhost", BANCA_PORT);
+        try {
+            assertTrue(client.paga("cliente-1", 10.0, "Test singolo"));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void pagamentiConcorrentiVengonoAggregati() throws Exception {
+        BancaServiceClient client = new BancaServiceClient("localhost", BANCA_PORT, 16, 20);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Boolean>> esiti = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                final int n = i;
+                esiti.add(executor.submit(() -> client.paga("cliente-" + n, n, "Test batch")));
+            }
+
+            for (Future<Boolean> esito : esiti) {
+                assertTrue(esito.get(10, TimeUnit.SECONDS), "Ogni pagamento deve ricevere il proprio esito");
+            }
+
+            String statistiche = client.getStatistiche();
+            System.out.println("📊 " + statistiche);
+            assertTrue(statistiche.startsWith("Banca: 64 pagamenti"), statistiche);
+            assertFalse(statistiche.contains("in 64 RPC"), "I pagamenti concorrenti devono essere aggregati");
+        } finally {
+            executor.shutdownNow();
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void bancaIrraggiungibileApreIlCircuito() {
+        BancaServiceClient client = new BancaServiceClient.Builder("localhost", 8129)
+                .dimensioneMaxBatch(1)
+                .timeoutMs(500)
+                .sogliaCircuito(2)
+                .aperturaCircuitoMs(60000)
+                .build();
+        try {
+            assertFalse(client.paga("cliente-1", 10.0, "Banca spenta"));
+            assertFalse(client.paga("cliente-1", 10.0, "Banca spenta"));
+            assertEquals(CircuitBreaker.Stato.APERTO, client.getStatoCircuito());
+
+            long inizio = System.nanoTime();
+            assertFalse(client.paga("cliente-1", 10.0, "Circuito aperto"));
+            long durataMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inizio);
+            assertTrue(durataMs < 100, "Con circuito aperto il pagamento deve fallire subito: " + durataMs + "ms");
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void codaLungaSenzaTettoSuperaLaLatenzaMinima() {
+        ProfiloBanca codaLunga = new ProfiloBanca.Builder()
+                .tipoLatenza(ProfiloBanca.TipoLatenza.CODA_LUNGA)
+                .latenzaMs(20)
+                .alpha(1.5)
+                .build();
+
+        // P(campione > 40ms) = 0.5^1.5 ≈ 35%: su 1000 campioni la coda si vede di sicuro
+        long massimo = 0;
+        for (int i = 0; i < 1000; i++) {
+            long campione = codaLunga.campionaLatenzaMs();
+            assertTrue(campione >= 20, "La latenza non scende sotto il minimo: " + campione);
+            massimo = Math.max(massimo, campione);
+        }
+        assertTrue(massimo > 20, "Senza latenza.maxMs la coda non viene troncata al minimo");
+    }
+
+    @Test
+    void bancaLentaScadeEntroLaDeadline() throws Exception {
+        ProfiloBanca lenta = new ProfiloBanca.Builder()
+                .tipoLatenza(ProfiloBanca.TipoLatenza.FISSA)
+                .latenzaMs(2000)
+                .build();
+        Server server = ServerBuilder.forPort(8122).addService(new BancaServiceImpl(lenta)).build().start();
+        BancaServiceClient client = new BancaServiceClient.Builder("localhost", 8122)
+                .timeoutMs(300)
+                .build();
+        try {
+            long inizio = System.nanoTime();
+            assertFalse(client.paga("cliente-1", 10.0, "Banca lenta"));
+            long durataMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inizio);
+            assertTrue(durataMs < 1500, "Il pagamento deve fallire alla deadline, non dopo " + durataMs + "ms");
+        } finally {
+            client.shutdown();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    void codaPiuLungaDellaDeadlineNonBloccaIChiamanti() throws Exception {
+        ProfiloBanca lenta = new ProfiloBanca.Builder()
+                .tipoLatenza(ProfiloBanca.TipoLatenza.FISSA)
+                .latenzaMs(2000)
+                .build();
+        Server server = ServerBuilder.forPort(8128).addService(new BancaServiceImpl(lenta)).build().start();
+        BancaServiceClient client = new BancaServiceClient.Builder("localhost", 8128)
+                .dimensioneMaxBatch(2)
+                .finestraBatchMs(0)
+                .timeoutMs(300)
+                .sogliaCircuito(100)
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // 4 batch da 300ms in fila su un solo batcher: gli ultimi restano in coda oltre l'attesa massima
+            List<Future<Boolean>> esiti = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int n = i;
+                esiti.add(executor.submit(() -> client.paga("cliente-" + n, 10.0, "Coda lunga")));
+            }
+            for (Future<Boolean> esito : esiti) {
+                assertFalse(esito.get(3, TimeUnit.SECONDS), "Ogni chiamante riceve un esito entro l'attesa massima");
+            }
+        } finally {
+            executor.shutdownNow();
+            client.shutdown();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    void rifiutiSimulatiNonApronoIlCircuito() throws Exception {
+        ProfiloBanca rifiuta = new ProfiloBanca.Builder().rapportoRifiuti(1.0).build();
+        Server server = ServerBuilder.forPort(8123).addService(new BancaServiceImpl(rifiuta)).build().start();
+        BancaServiceClient client = new BancaServiceClient.Builder("localhost", 8123)
+                .sogliaCircuito(1)
+                .build();
+        try {
+            assertFalse(client.paga("cliente-1", 10.0, "Rifiutato"));
+            assertFalse(client.paga("cliente-1", 10.0, "Rifiutato"));
+            assertEquals(CircuitBreaker.Stato.CHIUSO, client.getStatoCircuito());
+        } finally {
+            client.shutdown();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    void saldoInsufficienteERimborsoSulRegistro() throws Exception {
+        BancaServiceImpl banca = new BancaServiceImpl(new ProfiloBanca.Builder().saldoIniziale(50).build());
+        Server server = ServerBuilder.forPort(8124).addService(banca).build().start();
+        BancaServiceClient client = new BancaServiceClient.Builder("localhost", 8124)
+                .dimensioneMaxBatch(1)
+                .build();
+        try {
+            assertTrue(client.paga("cliente-1", 30.0, "Primo"));
+            assertFalse(client.paga("cliente-1", 30.0, "Oltre il saldo"));
+            assertEquals(20.0, banca.getRegistro().getSaldo("cliente-1"), 0.001);
+
+            assertTrue(client.rimborsa("cliente-1", 30.0, "Compensazione"));
+            assertEquals(50.0, banca.getRegistro().getSaldo("cliente-1"), 0.001);
+        } finally {
+            client.shutdown();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    void stessaChiaveAddebitaUnaVolta() throws Exception {
+        BancaServiceImpl banca = new BancaServiceImpl(new ProfiloBanca.Builder().saldoIniziale(100).build());
+        Server server = ServerBuilder.forPort(8125).addService(banca).build().start();
+        BancaServiceClient client = new BancaServiceClient("localhost", 8125);
+        try {
+            assertTrue(client.paga("cliente-1", 40.0, "Tentativo", "chiave-1"));
+            assertTrue(client.paga("cliente-1", 40.0, "Retry", "chiave-1"));
+            assertEquals(60.0, banca.getRegistro().getSaldo("cliente-1"), 0.001);
+            assertTrue(banca.getRegistro().getStatistiche().contains("Duplicati intercettati: 1"));
+        } finally {
+            client.shutdown();
+            server.shutdownNow();
+        }
+    }
+}
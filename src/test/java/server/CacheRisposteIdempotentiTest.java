@@ -0,0 +1,94 @@
+package server;
+
+import dto.RispostaDTO;
+import grpc.CacheRisposteIdempotenti;
+import grpc.RispostaGrpc;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheRisposteIdempotentiTest {
+
+    private static RispostaGrpc risposta(String messaggio) {
+        return RispostaGrpc.newBuilder().setEsito("OK").setMessaggio(messaggio).build();
+    }
+
+    @Test
+    void retryConcorrentiElaboratiUnaVolta() throws Exception {
+        CacheRisposteIdempotenti cache = new CacheRisposteIdempotenti();
+        AtomicInteger elaborazioni = new AtomicInteger();
+        CountDownLatch via = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<RispostaGrpc>> esiti = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                esiti.add(executor.submit(() -> {
+                    via.await();
+                    return cache.eseguiUnaVolta("cliente-1", "chiave-1", () -> {
+                        elaborazioni.incrementAndGet();
+                        return risposta("acquisto " + elaborazioni.get());
+                    });
+                }));
+            }
+            via.countDown();
+
+            for (Future<RispostaGrpc> esito : esiti) {
+                assertEquals("acquisto 1", esito.get(5, TimeUnit.SECONDS).getMessaggio());
+            }
+            assertEquals(1, elaborazioni.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void chiaviScaduteEClientiDiversiVengonoRielaborati() throws Exception {
+        CacheRisposteIdempotenti cache = new CacheRisposteIdempotenti(100, 50);
+        AtomicInteger elaborazioni = new AtomicInteger();
+
+        cache.eseguiUnaVolta("cliente-1", "chiave", () -> risposta("n" + elaborazioni.incrementAndGet()));
+        cache.eseguiUnaVolta("cliente-2", "chiave", () -> risposta("n" + elaborazioni.incrementAndGet()));
+        assertEquals(2, elaborazioni.get());
+
+        Thread.sleep(80);
+        RispostaGrpc dopoScadenza = cache.eseguiUnaVolta("cliente-1", "chiave",
+                () -> risposta("n" + elaborazioni.incrementAndGet()));
+        assertEquals("n3", dopoScadenza.getMessaggio());
+    }
+
+    @Test
+    void cacheLimitataEFallimentiNonRicordati() {
+        CacheRisposteIdempotenti cache = new CacheRisposteIdempotenti(3, 60000);
+        for (int i = 0; i < 10; i++) {
+            cache.eseguiUnaVolta("cliente-1", "chiave-" + i, () -> risposta("ok"));
+        }
+        assertEquals(3, cache.size());
+
+        assertThrows(IllegalStateException.class, () -> cache.eseguiUnaVolta("cliente-1", "errore",
+                () -> { throw new IllegalStateException("interno"); }));
+        assertEquals("ok", cache.eseguiUnaVolta("cliente-1", "errore", () -> risposta("ok")).getMessaggio());
+    }
+
+    @Test
+    void rispostaInElaborazioneNonVieneRicordata() {
+        CacheRisposteIdempotenti cache = new CacheRisposteIdempotenti();
+        RispostaGrpc inElaborazione = RispostaGrpc.newBuilder()
+                .setEsito(RispostaDTO.ESITO_IN_ELABORAZIONE).setMessaggio("pagamento in corso").build();
+
+        assertSame(inElaborazione, cache.eseguiUnaVolta("cliente-1", "chiave", () -> inElaborazione));
+        assertEquals(0, cache.size());
+
+        // Il retry con la stessa chiave rielabora e ottiene l'esito definitivo, che resta
+        assertEquals("emesso", cache.eseguiUnaVolta("cliente-1", "chiave", () -> risposta("emesso")).getMessaggio());
+        assertEquals("emesso", cache.eseguiUnaVolta("cliente-1", "chiave", () -> risposta("ripetuto")).getMessaggio());
+    }
+}
@@ -0,0 +1,66 @@
+package server;
+
+import Assembler.AssemblerTratta;
+import dto.TrattaDTO;
+import enums.ClasseServizio;
+import factory.TrattaFactoryConcrete;
+import grpc.TrattaGrpc;
+import model.Tratta;
+import org.junit.jupiter.api.Test;
+import util.CacheTratteGrpc;
+import util.GrpcMapper;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheTratteGrpcTest {
+
+    private final CacheTratteGrpc cache = CacheTratteGrpc.getInstance();
+
+    private static Tratta tratta() {
+        return new TrattaFactoryConcrete().generaTratte(LocalDate.now().plusDays(3)).get(0);
+    }
+
+    @Test
+    void frammentoRiusatoPerRiferimentoEIdenticoAllaCostruzioneCompleta() {
+        Tratta t = tratta();
+
+        TrattaGrpc primo = GrpcMapper.toGrpc(cache.toDTO(t, null));
+        TrattaGrpc secondo = GrpcMapper.toGrpc(cache.toDTO(t, null));
+        assertSame(primo, secondo, "Senza posti disponibili il messaggio va restituito per riferimento");
+        assertEquals(GrpcMapper.toGrpc(AssemblerTratta.toDTO(t)), primo);
+
+        Map<ClasseServizio, Integer> posti = new EnumMap<>(ClasseServizio.class);
+        posti.put(ClasseServizio.BASE, 7);
+        posti.put(ClasseServizio.ARGENTO, 3);
+        posti.put(ClasseServizio.GOLD, 1);
+        TrattaDTO conPosti = cache.toDTO(t, posti);
+        assertEquals(GrpcMapper.toGrpc(AssemblerTratta.toDTO(t, posti)), GrpcMapper.toGrpc(conPosti),
+                "I posti disponibili si sovrappongono al frammento in cache");
+    }
+
+    @Test
+    void trattaModificataNonRiceveIlFrammentoVecchio() {
+        Tratta originale = tratta();
+        TrattaDTO dtoVecchio = cache.toDTO(originale, null);
+        GrpcMapper.toGrpc(dtoVecchio);
+
+        Tratta modificata = new Tratta(originale.getId(), originale.getStazionePartenza(),
+                originale.getStazioneArrivo(), originale.getData(), LocalTime.of(23, 15),
+                originale.getBinario() + 2, originale.getTreno(), originale.getPrezzi());
+
+        TrattaGrpc nuovo = GrpcMapper.toGrpc(cache.toDTO(modificata, null));
+        assertEquals("23:15", nuovo.getOra());
+        assertEquals(String.valueOf(originale.getBinario() + 2), nuovo.getBinario());
+
+        // Un DTO costruito prima della modifica viene convertito da sé, non col frammento nuovo
+        assertEquals(originale.getOra().toString(), GrpcMapper.toGrpc(dtoVecchio).getOra());
+
+        cache.invalida(modificata.getId());
+        assertEquals("23:15", GrpcMapper.toGrpc(cache.toDTO(modificata, null)).getOra());
+    }
+}
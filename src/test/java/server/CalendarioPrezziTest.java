@@ -0,0 +1,107 @@
+package server;
+
+import command.ServerRequestHandler;
+import dto.PrezzoGiornoDTO;
+import dto.RichiestaDTO;
+import enums.ClasseServizio;
+import factory.TrattaFactoryConcrete;
+import model.Prezzo;
+import model.PromozioneTratta;
+import model.Tratta;
+import org.junit.jupiter.api.Test;
+import persistence.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.outboxDiProva;
+
+public class CalendarioPrezziTest {
+
+    private static final LocalDate GIORNO = LocalDate.now().plusYears(8).withDayOfMonth(10);
+    private static final YearMonth MESE = YearMonth.from(GIORNO);
+
+    private static Tratta tratta(Tratta modello, LocalDate data, double prezzoBase) {
+        return tratta(modello, "Sibari", "Paola", data, prezzoBase);
+    }
+
+    private static Tratta tratta(Tratta modello, String partenza, String arrivo, LocalDate data, double prezzoBase) {
+        Map<ClasseServizio, Prezzo> prezzi = new EnumMap<>(ClasseServizio.class);
+        prezzi.put(ClasseServizio.BASE, new Prezzo(prezzoBase, prezzoBase * 0.8, prezzoBase * 0.6));
+        prezzi.put(ClasseServizio.GOLD, new Prezzo(prezzoBase * 2, prezzoBase * 1.6, prezzoBase * 1.2));
+        return new Tratta(UUID.randomUUID(), partenza, arrivo, data, LocalTime.of(9, 0), 1, modello.getTreno(), prezzi);
+    }
+
+    @Test
+    void prezzoMinimoPerGiornoSegueTratteEPromozioni() {
+        MemoriaTratte memoria = new MemoriaTratte();
+        MemoriaPromozioni promozioni = new MemoriaPromozioni();
+        CalendarioPrezzi calendario = new CalendarioPrezzi(memoria);
+        calendario.collegaPromozioni(promozioni);
+
+        Tratta modello = new TrattaFactoryConcrete().generaTratte(GIORNO).get(0);
+        Tratta cara = tratta(modello, GIORNO, 40.0);
+        Tratta economica = tratta(modello, GIORNO, 25.0);
+        Tratta altroGiorno = tratta(modello, GIORNO.plusDays(3), 30.0);
+        Tratta meseDopo = tratta(modello, GIORNO.plusMonths(1), 10.0);
+        List.of(cara, economica, altroGiorno, meseDopo).forEach(memoria::aggiungiTratta);
+
+        List<CalendarioPrezzi.PrezzoGiorno> base = calendario.mese("sibari", "PAOLA", MESE, ClasseServizio.BASE);
+        assertEquals(2, base.size(), "Solo i giorni del mese con tratte");
+        assertEquals(GIORNO, base.get(0).getData());
+        assertEquals(25.0, base.get(0).getPrezzo());
+        assertEquals(economica.getId(), base.get(0).getIdTratta());
+        assertEquals(2, base.get(0).getNumeroTratte());
+        assertEquals(30.0, base.get(1).getPrezzo());
+        assertEquals(50.0, calendario.mese("Sibari", "Paola", MESE, ClasseServizio.GOLD).get(0).getPrezzo());
+        assertTrue(calendario.mese("Paola", "Sibari", MESE, ClasseServizio.BASE).isEmpty());
+
+        // ✏️ Modifica della tratta più economica: il minimo passa all'altra
+        Tratta rincarata = tratta(modello, GIORNO, 45.0);
+        memoria.sostituisciTratta(new Tratta(economica.getId(), "Sibari", "Paola", GIORNO, economica.getOra(),
+                1, modello.getTreno(), rincarata.getPrezzi()));
+        assertEquals(cara.getId(), calendario.mese("Sibari", "Paola", MESE, ClasseServizio.BASE).get(0).getIdTratta());
+
+        // 🎉 Promozione attiva oggi sulla tratta dell'altro giorno
+        promozioni.aggiungiPromozione(new PromozioneTratta("Calendario", "Test calendario", 0.5,
+                LocalDate.now(), LocalDate.now().plusDays(1), Set.of(altroGiorno.getId())));
+        assertEquals(15.0, calendario.mese("Sibari", "Paola", MESE, ClasseServizio.BASE).get(1).getPrezzo());
+
+        memoria.rimuoviTratteDelGiorno(GIORNO);
+        List<CalendarioPrezzi.PrezzoGiorno> dopo = calendario.mese("Sibari", "Paola", MESE, ClasseServizio.BASE);
+        assertEquals(1, dopo.size());
+        assertEquals(GIORNO.plusDays(3), dopo.get(0).getData());
+    }
+
+    @Test
+    void comandoCalendarioPrezzi() {
+        MemoriaTratte memoria = new MemoriaTratte();
+        MemoriaBiglietti memoriaBiglietti = new MemoriaBiglietti();
+        ServerRequestHandler handler = new ServerRequestHandler(memoriaBiglietti, new MemoriaClientiFedeli(), memoria,
+                null, new MemoriaOsservatori(), outboxDiProva(memoriaBiglietti, memoria, null));
+        Tratta modello = new TrattaFactoryConcrete().generaTratte(GIORNO).get(0);
+        memoria.aggiungiTratta(tratta(modello, "Scalea", "Praia", GIORNO.plusDays(1), 19.9));
+
+        List<PrezzoGiornoDTO> giorni = handler.gestisci(new RichiestaDTO.Builder()
+                .tipo("CALENDARIO_PREZZI")
+                .partenza("Scalea")
+                .arrivo("Praia")
+                .data(GIORNO)
+                .build()).getCalendario();
+
+        assertNotNull(giorni);
+        PrezzoGiornoDTO giorno = giorni.stream().filter(g -> g.getData().equals(GIORNO.plusDays(1))).findFirst().orElseThrow();
+        assertEquals(ClasseServizio.BASE, giorno.getClasse());
+        assertEquals(19.9, giorno.getPrezzoMinimo());
+
+        assertEquals("KO", handler.gestisci(new RichiestaDTO.Builder()
+                .tipo("CALENDARIO_PREZZI").partenza("Scalea").build()).getEsito());
+    }
+}
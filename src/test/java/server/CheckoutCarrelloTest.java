@@ -0,0 +1,196 @@
+package server;
+
+import IMPL.BancaServiceImpl;
+import IMPL.ProfiloBanca;
+import command.CheckoutCarrelloCommand;
+import dto.BigliettoDTO;
+import dto.ElementoCarrelloDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import enums.ClasseServizio;
+import enums.TipoPrezzo;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import model.LayoutPosti;
+import model.Prezzo;
+import model.Tratta;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaClientiFedeli;
+import persistence.MemoriaOsservatori;
+import persistence.MemoriaTratte;
+import service.BancaServiceClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.biglietto;
+import static server.TratteDiProva.trattaPiccola;
+
+public class CheckoutCarrelloTest {
+
+    private static final int BANCA_PORT = 8136;
+    private static final int BANCA_SENZA_RISPOSTA_PORT = 8139;
+    private static final double SALDO = 30.0;
+
+    private static Server bancaServer;
+    private static BancaServiceImpl bancaImpl;
+    private static BancaServiceClient banca;
+
+    private final MemoriaBiglietti memoriaBiglietti = new MemoriaBiglietti();
+    private final MemoriaTratte memoriaTratte = new MemoriaTratte();
+    private final String cliente = UUID.randomUUID().toString();
+
+    @BeforeAll
+    static void avviaBanca() throws Exception {
+        bancaImpl = new BancaServiceImpl(new ProfiloBanca.Builder().saldoIniziale(SALDO).build());
+        bancaServer = ServerBuilder.forPort(BANCA_PORT).addService(bancaImpl).build().start();
+        banca = new BancaServiceClient("localhost", BANCA_PORT);
+    }
+
+    @AfterAll
+    static void fermaBanca() throws InterruptedException {
+        banca.shutdown();
+        bancaServer.shutdown();
+        bancaServer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private RispostaDTO checkout(ElementoCarrelloDTO... elementi) {
+        return checkout(banca, elementi);
+    }
+
+    private RispostaDTO checkout(BancaServiceClient banca, ElementoCarrelloDTO... elementi) {
+        RichiestaDTO richiesta = new RichiestaDTO.Builder()
+                .tipo("CHECKOUT_CARRELLO")
+                .idCliente(cliente)
+                .carrello(List.of(elementi))
+                .build();
+        return new CheckoutCarrelloCommand(richiesta, memoriaBiglietti, new MemoriaClientiFedeli(),
+                memoriaTratte, new MemoriaOsservatori(), banca).esegui();
+    }
+
+    private int postiLiberi(Tratta tratta) {
+        return memoriaBiglietti.getPostiDisponibili(tratta.getId(), LayoutPosti.di(tratta.getTreno()))
+                .get(ClasseServizio.BASE);
+    }
+
+    @Test
+    void bigliettiNellOrdineDelCarrelloConIlLoroTipoPrezzo() {
+        Tratta andata = trattaPiccola(memoriaTratte, 2);
+        Tratta ritorno = trattaPiccola(memoriaTratte, 2);
+
+        RispostaDTO risposta = checkout(
+                new ElementoCarrelloDTO(ritorno.getId(), ClasseServizio.BASE, TipoPrezzo.PROMOZIONE),
+                new ElementoCarrelloDTO(andata.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO),
+                new ElementoCarrelloDTO(ritorno.getId(), ClasseServizio.BASE, null));
+
+        assertEquals("OK", risposta.getEsito(), risposta.getMessaggio());
+        List<BigliettoDTO> biglietti = risposta.getBiglietti();
+        assertEquals(3, biglietti.size());
+
+        assertEquals(ritorno.getId(), biglietti.get(0).getTratta().getId());
+        assertEquals(TipoPrezzo.PROMOZIONE, biglietti.get(0).getTipoPrezzo());
+        assertEquals(8.0, biglietti.get(0).getPrezzoEffettivo());
+
+        assertEquals(andata.getId(), biglietti.get(1).getTratta().getId());
+        assertEquals(TipoPrezzo.INTERO, biglietti.get(1).getTipoPrezzo());
+        assertEquals(10.0, biglietti.get(1).getPrezzoEffettivo());
+
+        assertEquals(ritorno.getId(), biglietti.get(2).getTratta().getId());
+        assertEquals(TipoPrezzo.INTERO, biglietti.get(2).getTipoPrezzo(), "Senza tipo vale INTERO");
+        assertNotEquals(biglietti.get(0).getNumeroPosto(), biglietti.get(2).getNumeroPosto());
+
+        assertEquals(SALDO - 28.0, bancaImpl.getRegistro().getSaldo(cliente), 0.001);
+        assertEquals(1, postiLiberi(andata));
+        assertEquals(0, postiLiberi(ritorno));
+    }
+
+    @Test
+    void trattaSuccessivaPienaNonRiservaNulla() {
+        Tratta andata = trattaPiccola(memoriaTratte, 2);
+        Tratta ritorno = trattaPiccola(memoriaTratte, 1);
+        assertNotNull(memoriaBiglietti.riservaPosto(biglietto(ritorno.getId(), UUID.randomUUID()),
+                LayoutPosti.di(ritorno.getTreno())));
+        assertEquals(0, postiLiberi(ritorno));
+
+        RispostaDTO risposta = checkout(
+                new ElementoCarrelloDTO(andata.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO),
+                new ElementoCarrelloDTO(ritorno.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO));
+
+        assertEquals("KO", risposta.getEsito());
+        assertEquals(2, postiLiberi(andata), "Nessun posto preso sull'andata");
+        assertEquals(SALDO, bancaImpl.getRegistro().getSaldo(cliente), 0.001, "Nessun addebito");
+    }
+
+    @Test
+    void pagamentoFallitoRilasciaTuttiIPosti() {
+        Tratta andata = trattaPiccola(memoriaTratte, 2);
+        Tratta ritorno = trattaPiccola(memoriaTratte, 2);
+
+        // 40 euro oltre il saldo di 30: i posti ci sono ma la banca rifiuta
+        RispostaDTO risposta = checkout(
+                new ElementoCarrelloDTO(andata.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO),
+                new ElementoCarrelloDTO(andata.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO),
+                new ElementoCarrelloDTO(ritorno.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO),
+                new ElementoCarrelloDTO(ritorno.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO));
+
+        assertEquals("KO", risposta.getEsito());
+        assertEquals(2, postiLiberi(andata));
+        assertEquals(2, postiLiberi(ritorno));
+        assertEquals(SALDO, bancaImpl.getRegistro().getSaldo(cliente), 0.001);
+    }
+
+    @Test
+    void classeMancanteOSenzaPrezzoDaKo() {
+        Tratta tratta = trattaPiccola(memoriaTratte, 2);
+        Tratta soloBase = new Tratta(UUID.randomUUID(), "TestPartenza", "TestArrivo", tratta.getData(),
+                tratta.getOra(), 1, tratta.getTreno(), Map.of(ClasseServizio.BASE, new Prezzo(10.0, 8.0, 6.0)));
+        memoriaTratte.aggiungiTratta(soloBase);
+        ClasseServizio senzaPrezzo = ClasseServizio.values()[ClasseServizio.values().length - 1];
+        assertNotEquals(ClasseServizio.BASE, senzaPrezzo);
+
+        RispostaDTO senzaClasse = checkout(new ElementoCarrelloDTO(tratta.getId(), null, TipoPrezzo.INTERO));
+        assertEquals("KO", senzaClasse.getEsito());
+
+        RispostaDTO classeNonVenduta = checkout(
+                new ElementoCarrelloDTO(tratta.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO),
+                new ElementoCarrelloDTO(soloBase.getId(), senzaPrezzo, TipoPrezzo.INTERO));
+        assertEquals("KO", classeNonVenduta.getEsito());
+        assertTrue(classeNonVenduta.getMessaggio().contains(senzaPrezzo.toString()));
+
+        assertEquals(2, postiLiberi(tratta));
+        assertEquals(SALDO, bancaImpl.getRegistro().getSaldo(cliente), 0.001);
+    }
+
+    @Test
+    void esitoIncertoTieneIPostiERiprovaConLaStessaChiave() throws Exception {
+        BancaSenzaRisposta bancaMuta = new BancaSenzaRisposta(
+                new ProfiloBanca.Builder().saldoIniziale(SALDO).build(), 1, 0);
+        Server server = ServerBuilder.forPort(BANCA_SENZA_RISPOSTA_PORT).addService(bancaMuta).build().start();
+        BancaServiceClient client = new BancaServiceClient("localhost", BANCA_SENZA_RISPOSTA_PORT);
+        try {
+            Tratta andata = trattaPiccola(memoriaTratte, 1);
+            Tratta ritorno = trattaPiccola(memoriaTratte, 1);
+
+            // Prima risposta persa dopo l'addebito: il carrello non viene sciolto
+            RispostaDTO risposta = checkout(client,
+                    new ElementoCarrelloDTO(andata.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO),
+                    new ElementoCarrelloDTO(ritorno.getId(), ClasseServizio.BASE, TipoPrezzo.INTERO));
+
+            assertEquals("OK", risposta.getEsito(), risposta.getMessaggio());
+            assertEquals(2, risposta.getBiglietti().size());
+            assertEquals(0, postiLiberi(andata));
+            assertEquals(0, postiLiberi(ritorno));
+            assertEquals(SALDO - 20.0, bancaMuta.getRegistro().getSaldo(cliente), 0.001, "Un solo addebito");
+        } finally {
+            client.shutdown();
+            server.shutdown();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package server;
+
+import command.ServerRequestHandler;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import grpc.TrenicalServiceImpl;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import model.Tratta;
+import observer.GrpcNotificaDispatcher;
+import org.junit.jupiter.api.Test;
+import persistence.*;
+import service.ClientService;
+
+import factory.TrattaFactoryConcrete;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.outboxDiProva;
+
+public class DizionarioStazioniTest {
+
+    private static final int SERVER_PORT = 8134;
+
+    private static final List<String> STAZIONI = List.of(
+            "ReggioCalabria", "Rende", "Strongoli", "Milano", "Roma", "Napoli", "Torino", "Firenze");
+
+    @Test
+    void prefissoECorrezioneDegliErrori() {
+        DizionarioStazioni dizionario = new DizionarioStazioni(STAZIONI);
+
+        assertEquals(List.of("ReggioCalabria", "Rende", "Roma"), dizionario.suggerisci("r", 3));
+        assertEquals(List.of("ReggioCalabria", "Rende"), dizionario.suggerisci("RE", 2));
+        assertEquals("ReggioCalabria", dizionario.suggerisci("Reggio Calàbria", 5).get(0));
+
+        assertEquals("Milano", dizionario.correggi("Milnao"));
+        assertEquals("Firenze", dizionario.correggi("firenz"));
+        assertEquals("Napoli", dizionario.correggi(" NAPOLI "));
+        assertNull(dizionario.correggi("Bolzano"), "Nessuna stazione abbastanza simile");
+        assertTrue(dizionario.suggerisci("Milnao", 5).contains("Milano"));
+        assertTrue(dizionario.suggerisci("", 5).isEmpty());
+    }
+
+    @Test
+    void stazioniDelleNuoveTratteEntranoNelDizionario() {
+        MemoriaTratte memoria = new MemoriaTratte();
+        DizionarioStazioni dizionario = new DizionarioStazioni(STAZIONI, memoria);
+        assertFalse(dizionario.contiene("Castrovillari"));
+
+        Tratta modello = new TrattaFactoryConcrete().generaTratte(LocalDate.now().plusYears(7)).get(0);
+        memoria.aggiungiTratta(new Tratta(UUID.randomUUID(), "Castrovillari", "Milano", modello.getData(),
+                LocalTime.of(10, 0), 1, modello.getTreno(), modello.getPrezzi()));
+
+        assertTrue(dizionario.contiene("castrovillari"));
+        assertEquals(List.of("Castrovillari"), dizionario.suggerisci("cas", 5));
+    }
+
+    @Test
+    void filtraSuggerisceLaStazioneEIlServizioRisponde() throws Exception {
+        MemoriaTratte memoria = new MemoriaTratte();
+        MemoriaBiglietti memoriaBiglietti = new MemoriaBiglietti();
+        ServerRequestHandler handler = new ServerRequestHandler(memoriaBiglietti, new MemoriaClientiFedeli(), memoria,
+                null, new MemoriaOsservatori(), outboxDiProva(memoriaBiglietti, memoria, null));
+
+        RispostaDTO vuota = handler.gestisci(new RichiestaDTO.Builder()
+                .tipo("FILTRA")
+                .partenza("Milnao")
+                .build());
+        assertEquals("OK", vuota.getEsito());
+        assertTrue(vuota.getMessaggio().contains("forse cercavi \"Milano\""), vuota.getMessaggio());
+
+        Server server = ServerBuilder.forPort(SERVER_PORT)
+                .addService(new TrenicalServiceImpl(new GrpcNotificaDispatcher(), handler, new MemoriaPromozioni()))
+                .build()
+                .start();
+        try {
+            ClientService client = new ClientService("localhost", SERVER_PORT);
+            assertEquals("Napoli", client.suggerisciStazioni("nap", 5).get(0));
+            assertEquals("Torino", client.suggerisciStazioni("Trino", 1).get(0));
+        } finally {
+            server.shutdown();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package server;
+
+import command.ServerRequestHandler;
+import dto.ItinerarioDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import factory.TrattaFactoryConcrete;
+import model.Itinerario;
+import model.Tratta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.outboxDiProva;
+
+public class GrafoConnessioniTest {
+
+    private static final LocalDate GIORNO = LocalDate.now().plusYears(6);
+
+    private MemoriaTratte memoria;
+    private GrafoConnessioni grafo;
+    private Tratta modello;
+    private long durata;
+
+    @BeforeEach
+    void setUp() {
+        memoria = new MemoriaTratte();
+        grafo = new GrafoConnessioni(memoria);
+        modello = new TrattaFactoryConcrete().generaTratte(GIORNO).get(0);
+        durata = GrafoConnessioni.durataStimata(modello).toMinutes();
+    }
+
+    private Tratta tratta(String da, String a, LocalTime ora) {
+        return new Tratta(UUID.randomUUID(), da, a, GIORNO, ora, 1, modello.getTreno(), modello.getPrezzi());
+    }
+
+    @Test
+    void restituisceMenoCambiEArrivoPiuPrestoRispettandoIlCambioMinimo() {
+        LocalTime primaPartenza = LocalTime.of(8, 0);
+        LocalTime arrivoInB = primaPartenza.plusMinutes(durata);
+
+        Tratta diretta = tratta("Alfa", "Gamma", LocalTime.of(12, 0));
+        Tratta primaTratta = tratta("Alfa", "Beta", primaPartenza);
+        Tratta cambioTroppoBreve = tratta("Beta", "Gamma", arrivoInB.plusMinutes(GrafoConnessioni.CAMBIO_MINIMO_MINUTI - 5));
+        Tratta coincidenza = tratta("Beta", "Gamma", arrivoInB.plusMinutes(GrafoConnessioni.CAMBIO_MINIMO_MINUTI));
+        List.of(diretta, primaTratta, cambioTroppoBreve, coincidenza).forEach(memoria::aggiungiTratta);
+
+        List<Itinerario> itinerari = grafo.pianifica("alfa", " GAMMA ", GIORNO.atStartOfDay(),
+                GrafoConnessioni.MAX_TRATTE_DEFAULT);
+
+        assertEquals(2, itinerari.size());
+        assertEquals(List.of(diretta), itinerari.get(0).getTratte());
+        assertEquals(List.of(primaTratta, coincidenza), itinerari.get(1).getTratte());
+        assertEquals(1, itinerari.get(1).getCambi());
+        assertTrue(itinerari.get(1).getArrivoStimato().isBefore(itinerari.get(0).getArrivoStimato()));
+
+        assertTrue(grafo.pianifica("Alfa", "Gamma", GIORNO.atTime(8, 1), 4).stream()
+                .allMatch(i -> i.getTratte().equals(List.of(diretta))), "Partenze già passate escluse");
+        assertTrue(grafo.pianifica("Gamma", "Alfa", GIORNO.atStartOfDay(), 4).isEmpty());
+    }
+
+    @Test
+    void grafoSegueAggiunteModificheERimozioni() {
+        Tratta primaTratta = tratta("Delta", "Epsilon", LocalTime.of(6, 0));
+        Tratta coincidenza = tratta("Epsilon", "Zeta", LocalTime.of(6, 0).plusMinutes(durata + 30));
+        memoria.aggiungiTratta(primaTratta);
+        memoria.aggiungiTratta(coincidenza);
+        assertEquals(1, grafo.pianifica("Delta", "Zeta", GIORNO.atStartOfDay(), 4).get(0).getCambi());
+
+        Tratta diretta = tratta("Delta", "Zeta", LocalTime.of(5, 0));
+        memoria.aggiungiTratta(diretta);
+        List<Itinerario> conDiretta = grafo.pianifica("Delta", "Zeta", GIORNO.atStartOfDay(), 4);
+        assertEquals(1, conDiretta.size(), "La diretta che arriva prima domina l'itinerario con cambio");
+        assertEquals(List.of(diretta), conDiretta.get(0).getTratte());
+
+        // Coincidenza spostata prima dell'arrivo della prima tratta: niente più cambio possibile
+        memoria.sostituisciTratta(new Tratta(coincidenza.getId(), "Epsilon", "Zeta", GIORNO, LocalTime.of(6, 5),
+                1, modello.getTreno(), modello.getPrezzi()));
+        memoria.rimuoviTratteDelGiorno(GIORNO);
+        assertTrue(grafo.pianifica("Delta", "Zeta", GIORNO.atStartOfDay(), 4).isEmpty());
+    }
+
+    @Test
+    void comandoPianificaViaggio() {
+        memoria.aggiungiTratta(tratta("Eta", "Theta", LocalTime.of(9, 0)));
+        memoria.aggiungiTratta(tratta("Theta", "Iota", LocalTime.of(9, 0).plusMinutes(durata + 15)));
+
+        MemoriaBiglietti memoriaBiglietti = new MemoriaBiglietti();
+        ServerRequestHandler handler = new ServerRequestHandler(memoriaBiglietti, new MemoriaClientiFedeli(), memoria,
+                null, new MemoriaOsservatori(), outboxDiProva(memoriaBiglietti, memoria, null));
+        RispostaDTO risposta = handler.gestisci(new RichiestaDTO.Builder()
+                .tipo("PIANIFICA_VIAGGIO")
+                .data(GIORNO)
+                .partenza("Eta")
+                .arrivo("Iota")
+                .build());
+
+        assertEquals("OK", risposta.getEsito(), risposta.getMessaggio());
+        ItinerarioDTO itinerario = risposta.getItinerari().get(0);
+        assertEquals(1, itinerario.getCambi());
+        assertEquals("Theta", itinerario.getTratte().get(1).getStazionePartenza());
+
+        assertEquals("KO", handler.gestisci(new RichiestaDTO.Builder()
+                .tipo("PIANIFICA_VIAGGIO").partenza("Eta").build()).getEsito());
+    }
+}
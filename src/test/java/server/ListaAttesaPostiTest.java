@@ -0,0 +1,135 @@
+package server;
+
+import enums.ClasseServizio;
+import eventi.EventoPostoOfferto;
+import grpc.NotificaTrattaGrpc;
+import io.grpc.stub.StreamObserver;
+import model.Biglietto;
+import model.LayoutPosti;
+import model.Tratta;
+import model.Trattenuta;
+import observer.GrpcNotificaDispatcher;
+import observer.NotificaEventiListener;
+import org.junit.jupiter.api.Test;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaTratte;
+import scheduling.ListaAttesaPosti;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.biglietto;
+import static server.TratteDiProva.trattaPiccola;
+
+public class ListaAttesaPostiTest {
+
+    @Test
+    void postoLiberatoVaAlPrimoInAttesaDellaClasse() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, Map.of(ClasseServizio.GOLD, 1, ClasseServizio.BASE, 2));
+        LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+        ListaAttesaPosti lista = new ListaAttesaPosti(memoria, memoriaTratte);
+        lista.avvia();
+
+        Biglietto primo = memoria.riservaPosto(biglietto(tratta.getId(), UUID.randomUUID(), ClasseServizio.BASE), layout);
+        assertNotNull(memoria.riservaPosto(biglietto(tratta.getId(), UUID.randomUUID(), ClasseServizio.BASE), layout));
+
+        UUID clienteBase = UUID.randomUUID();
+        UUID clienteGold = UUID.randomUUID();
+        UUID secondoBase = UUID.randomUUID();
+        assertEquals(1, lista.iscrivi(tratta.getId(), clienteBase, ClasseServizio.BASE));
+        assertEquals(1, lista.iscrivi(tratta.getId(), clienteBase, ClasseServizio.BASE), "Nessuna doppia iscrizione");
+        lista.iscrivi(tratta.getId(), clienteGold, ClasseServizio.GOLD);
+        lista.iscrivi(tratta.getId(), secondoBase, ClasseServizio.BASE);
+
+        // GOLD ha un posto libero: servito subito, BASE pieno non blocca la coda
+        assertEquals(1, lista.offri(tratta.getId()));
+        assertEquals(0, lista.getPosizione(tratta.getId(), clienteGold));
+        assertEquals(1, lista.getPosizione(tratta.getId(), clienteBase));
+
+        // Liberare un posto BASE lo offre automaticamente al primo in coda
+        memoria.rimuoviBiglietto(primo.getId());
+        assertEquals(0, lista.getPosizione(tratta.getId(), clienteBase));
+        assertEquals(1, lista.getPosizione(tratta.getId(), secondoBase));
+        assertEquals(2, memoria.getNumeroTrattenute());
+
+        assertNull(memoria.riservaPosto(biglietto(tratta.getId(), UUID.randomUUID(), ClasseServizio.BASE), layout),
+                "Il posto trattenuto non è acquistabile da altri");
+        Biglietto riscattato = memoria.riservaPosto(biglietto(tratta.getId(), clienteBase, ClasseServizio.BASE), layout);
+        assertEquals(primo.getNumeroPosto(), riscattato.getNumeroPosto());
+        assertEquals(1, memoria.getNumeroTrattenute());
+    }
+
+    @Test
+    void offertaScadutaPassaAlSuccessivo() throws InterruptedException {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, Map.of(ClasseServizio.GOLD, 1, ClasseServizio.BASE, 2));
+        LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+        ListaAttesaPosti lista = new ListaAttesaPosti(memoria, memoriaTratte, 50);
+        lista.avvia();
+
+        memoria.riservaPosto(biglietto(tratta.getId(), UUID.randomUUID(), ClasseServizio.BASE), layout);
+        Biglietto ultimo = memoria.riservaPosto(biglietto(tratta.getId(), UUID.randomUUID(), ClasseServizio.BASE), layout);
+
+        UUID primoInAttesa = UUID.randomUUID();
+        UUID secondoInAttesa = UUID.randomUUID();
+        lista.iscrivi(tratta.getId(), primoInAttesa, ClasseServizio.BASE);
+        lista.iscrivi(tratta.getId(), secondoInAttesa, ClasseServizio.BASE);
+
+        memoria.rimuoviBiglietto(ultimo.getId());
+        assertEquals(1, lista.getPosizione(tratta.getId(), secondoInAttesa));
+
+        Thread.sleep(100);
+        memoria.scadiTrattenute();
+
+        assertEquals(0, lista.getPosizione(tratta.getId(), secondoInAttesa), "Il posto scaduto passa al successivo");
+        assertEquals(1, memoria.getNumeroTrattenute());
+        assertNull(memoria.riservaPosto(biglietto(tratta.getId(), primoInAttesa, ClasseServizio.BASE), layout),
+                "La trattenuta scaduta non vale più");
+        lista.shutdown();
+    }
+
+    @Test
+    void offertaSoloSulloStreamDelClienteInAttesa() {
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, 1);
+        GrpcNotificaDispatcher dispatcher = new GrpcNotificaDispatcher();
+        NotificaEventiListener listener = new NotificaEventiListener(dispatcher, memoriaTratte, new MemoriaBiglietti(), null);
+
+        UUID inAttesa = UUID.randomUUID();
+        List<NotificaTrattaGrpc> delClienteInAttesa = new CopyOnWriteArrayList<>();
+        List<NotificaTrattaGrpc> diUnAltroCliente = new CopyOnWriteArrayList<>();
+        List<NotificaTrattaGrpc> anonime = new CopyOnWriteArrayList<>();
+        dispatcher.registraOsservatore(tratta.getId(), inAttesa, raccogli(delClienteInAttesa));
+        dispatcher.registraOsservatore(tratta.getId(), UUID.randomUUID(), raccogli(diUnAltroCliente));
+        dispatcher.registraOsservatore(tratta.getId(), raccogli(anonime));
+
+        Trattenuta trattenuta = new Trattenuta(tratta.getId(), inAttesa, ClasseServizio.BASE, 1,
+                System.currentTimeMillis() + 60_000);
+        listener.onEvento(new EventoPostoOfferto(trattenuta));
+
+        assertEquals(1, delClienteInAttesa.size());
+        assertEquals("POSTO_DISPONIBILE", delClienteInAttesa.get(0).getTipoNotifica());
+        assertEquals(trattenuta.getId().toString(), delClienteInAttesa.get(0).getDati().getIdTrattenuta());
+        assertTrue(diUnAltroCliente.isEmpty(), "Il token della trattenuta non va agli altri clienti");
+        assertTrue(anonime.isEmpty(), "Né agli stream senza ID cliente");
+
+        // Le notifiche della tratta restano per tutti
+        dispatcher.inviaNotifica(tratta.getId(), "Ritardo 5 minuti");
+        assertEquals(1, diUnAltroCliente.size());
+        assertEquals(1, anonime.size());
+    }
+
+    private static StreamObserver<NotificaTrattaGrpc> raccogli(List<NotificaTrattaGrpc> ricevute) {
+        return new StreamObserver<>() {
+            @Override public void onNext(NotificaTrattaGrpc value) { ricevute.add(value); }
+            @Override public void onError(Throwable t) { }
+            @Override public void onCompleted() { }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package server;
+
+import enums.ClasseServizio;
+import model.Biglietto;
+import model.LayoutPosti;
+import org.junit.jupiter.api.Test;
+import persistence.MappaPosti;
+import persistence.MemoriaBiglietti;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappaPostiTest {
+
+    // GOLD: posti 1-4 (carrozza 1), BASE: posti 5-14 (carrozze 2-4, l'ultima incompleta)
+    private static final LayoutPosti LAYOUT = LayoutPosti.perClasse(
+            Map.of(ClasseServizio.GOLD, 4, ClasseServizio.BASE, 10), 4);
+
+    private static Biglietto biglietto(UUID idTratta, ClasseServizio classe) {
+        return new Biglietto.Builder()
+                .idCliente(UUID.randomUUID())
+                .idTratta(idTratta)
+                .classe(classe)
+                .prezzoPagato(10.0)
+                .dataAcquisto(LocalDate.now())
+                .tipoAcquisto("acquisto")
+                .build();
+    }
+
+    @Test
+    void postiSeparatiPerClasseConFirstFit() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        UUID idTratta = UUID.randomUUID();
+
+        assertEquals(5, memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT).getNumeroPosto());
+        assertEquals(1, memoria.riservaPosto(biglietto(idTratta, ClasseServizio.GOLD), LAYOUT).getNumeroPosto());
+        assertNull(memoria.riservaPosto(biglietto(idTratta, ClasseServizio.ARGENTO), LAYOUT),
+                "Una classe senza posti nel layout non deve occupare posti di altre classi");
+
+        Biglietto secondo = memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT);
+        assertEquals(6, secondo.getNumeroPosto());
+        memoria.rimuoviBiglietto(secondo.getId());
+        assertEquals(6, memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT).getNumeroPosto(),
+                "Il posto liberato deve tornare il primo disponibile");
+    }
+
+    @Test
+    void baseEsauritaNonConsumaPostiGold() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        UUID idTratta = UUID.randomUUID();
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT));
+        }
+        assertNull(memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT));
+
+        Map<ClasseServizio, Integer> liberi = memoria.getPostiDisponibili(idTratta, LAYOUT);
+        assertEquals(0, liberi.get(ClasseServizio.BASE));
+        assertEquals(4, liberi.get(ClasseServizio.GOLD));
+        assertEquals(0, liberi.get(ClasseServizio.ARGENTO));
+        assertNotNull(memoria.riservaPosto(biglietto(idTratta, ClasseServizio.GOLD), LAYOUT));
+        assertEquals(3, memoria.getPostiDisponibili(idTratta, LAYOUT).get(ClasseServizio.GOLD));
+    }
+
+    @Test
+    void gruppoSedutoVicinoNellaStessaCarrozza() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        UUID idTratta = UUID.randomUUID();
+
+        // Carrozza 2 (posti 5-8): occupati 5 e 7, restano solo posti sparsi
+        Biglietto p5 = memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT);
+        Biglietto p6 = memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT);
+        memoria.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT);
+        memoria.rimuoviBiglietto(p6.getId());
+        assertEquals(5, p5.getNumeroPosto());
+
+        List<Biglietto> gruppo = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            gruppo.add(biglietto(idTratta, ClasseServizio.BASE));
+        }
+        List<Biglietto> seduti = memoria.riservaPosti(gruppo, Map.of(idTratta, LAYOUT));
+
+        assertEquals(List.of(9, 10, 11), seduti.stream().map(Biglietto::getNumeroPosto).toList());
+        assertEquals(3, LAYOUT.carrozzaDi(9));
+
+        MappaPosti mappa = memoria.getMappaPosti(idTratta, LAYOUT);
+        assertEquals(10 - 5, mappa.getPostiLiberi(ClasseServizio.BASE));
+        BitSet bitmap = BitSet.valueOf(mappa.getBitmap(ClasseServizio.BASE));
+        assertTrue(bitmap.get(0), "Bit 0 = posto 5");
+        assertFalse(bitmap.get(1), "Posto 6 liberato");
+        assertTrue(bitmap.get(6), "Bit 6 = posto 11");
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void postoAssegnatoAUnBigliettoStoricoRestaDopoIlRiavvio() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        UUID idTratta = UUID.randomUUID();
+        Biglietto storico = biglietto(idTratta, ClasseServizio.BASE);
+        memoria.aggiungiBiglietto(storico);
+        assertNull(memoria.getById(storico.getId()).getNumeroPosto());
+
+        assertEquals(9, memoria.getPostiDisponibili(idTratta, LAYOUT).get(ClasseServizio.BASE));
+        assertEquals(5, memoria.getById(storico.getId()).getNumeroPosto());
+
+        MemoriaBiglietti dopoRiavvio = new MemoriaBiglietti();
+        assertEquals(5, dopoRiavvio.getById(storico.getId()).getNumeroPosto(), "Il posto assegnato è stato salvato");
+        assertEquals(6, dopoRiavvio.riservaPosto(biglietto(idTratta, ClasseServizio.BASE), LAYOUT).getNumeroPosto());
+
+        // Cambio di layout: la mappa si ricostruisce dai soli biglietti ancora presenti
+        dopoRiavvio.rimuoviBiglietto(storico.getId());
+        LayoutPosti piuGrande = LayoutPosti.perClasse(Map.of(ClasseServizio.BASE, 20), 4);
+        assertEquals(19, dopoRiavvio.getPostiDisponibili(idTratta, piuGrande).get(ClasseServizio.BASE));
+    }
+}
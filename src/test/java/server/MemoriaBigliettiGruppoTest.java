@@ -0,0 +1,71 @@
+package server;
+
+import enums.ClasseServizio;
+import model.Biglietto;
+import org.junit.jupiter.api.Test;
+import persistence.MemoriaBiglietti;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoriaBigliettiGruppoTest {
+
+    private static List<Biglietto> gruppo(UUID idTratta, int posti) {
+        UUID idCliente = UUID.randomUUID();
+        List<Biglietto> gruppo = new ArrayList<>();
+        for (int i = 0; i < posti; i++) {
+            gruppo.add(new Biglietto.Builder()
+                    .idCliente(idCliente)
+                    .idTratta(idTratta)
+                    .classe(ClasseServizio.BASE)
+                    .prezzoPagato(10.0)
+                    .dataAcquisto(LocalDate.now())
+                    .tipoAcquisto("acquisto")
+                    .build());
+        }
+        return gruppo;
+    }
+
+    @Test
+    void gruppoEntraTuttoONiente() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        UUID idTratta = UUID.randomUUID();
+
+        List<Biglietto> primo = gruppo(idTratta, 3);
+        assertTrue(memoria.aggiungiGruppoSeSpazioDisponibile(primo, 5));
+        assertFalse(memoria.aggiungiGruppoSeSpazioDisponibile(gruppo(idTratta, 3), 5),
+                "Un gruppo che non entra per intero non deve occupare posti");
+        assertEquals(3, memoria.contaBigliettiPerTratta(idTratta));
+
+        assertEquals(3, memoria.rimuoviBiglietti(primo.stream().map(Biglietto::getId).toList()));
+        assertEquals(0, memoria.contaBigliettiPerTratta(idTratta));
+    }
+
+    @Test
+    void gruppoSuTratteDiverseRifiutato() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        List<Biglietto> misto = new ArrayList<>(gruppo(UUID.randomUUID(), 1));
+        misto.addAll(gruppo(UUID.randomUUID(), 1));
+
+        assertThrows(IllegalArgumentException.class, () -> memoria.aggiungiGruppoSeSpazioDisponibile(misto, 10));
+    }
+
+    @Test
+    void carrelloMultiTrattaTuttoONiente() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        UUID andata = UUID.randomUUID();
+        UUID ritorno = UUID.randomUUID();
+        assertTrue(memoria.aggiungiGruppoSeSpazioDisponibile(gruppo(ritorno, 2), 2));
+
+        List<Biglietto> carrello = new ArrayList<>(gruppo(andata, 1));
+        carrello.addAll(gruppo(ritorno, 1));
+        assertFalse(memoria.aggiungiTuttiSeSpazioDisponibile(carrello, Map.of(andata, 10, ritorno, 2)),
+                "Se il ritorno è pieno non deve essere riservata nemmeno l'andata");
+        assertEquals(0, memoria.contaBigliettiPerTratta(andata));
+    }
+}
@@ -1,15 +1,20 @@
 package server;
 
 import factory.TrattaFactoryConcrete;
+import enums.ClasseServizio;
 import model.Tratta;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import persistence.CacheRicercheTratte;
+import persistence.FiltroTratte;
 import persistence.MemoriaTratte;
 import persistence.TrattaPersistenceManager;
 
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -54,4 +59,102 @@ public class MemoriaTratteTest {
             fail("Errore durante salvataggio/caricamento: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void indiceDiRicercaCoincideConScansioneCompleta() {
+        TrattaFactoryConcrete factory = new TrattaFactoryConcrete();
+        MemoriaTratte memoria = new MemoriaTratte();
+
+        LocalDate oggi = LocalDate.now().plusDays(1);
+        List<Tratta> tutte = new ArrayList<>();
+        for (int g = 0; g < 3; g++) {
+            for (Tratta t : factory.generaTratte(oggi.plusDays(g))) {
+                memoria.aggiungiTratta(t);
+                tutte.add(t);
+            }
+        }
+        Tratta campione = tutte.get(0);
+
+        List<FiltroTratte> filtri = List.of(
+                new FiltroTratte.Builder().build(),
+                new FiltroTratte.Builder().data(oggi).build(),
+                new FiltroTratte.Builder().data(oggi).fascia("mattina").build(),
+                new FiltroTratte.Builder().data(oggi.plusDays(1)).fascia("POMERIGGIO").build(),
+                new FiltroTratte.Builder().fascia("sera").build(),
+                new FiltroTratte.Builder().partenza(campione.getStazionePartenza().toUpperCase()).build(),
+                new FiltroTratte.Builder().data(oggi).partenza(campione.getStazionePartenza())
+                        .arrivo(campione.getStazioneArrivo()).build(),
+                new FiltroTratte.Builder().tipoTreno(campione.getTreno().getTipologia())
+                        .classe(ClasseServizio.GOLD).build(),
+                new FiltroTratte.Builder().data(oggi.plusDays(7)).build());
+
+        for (FiltroTratte filtro : filtri) {
+            List<Tratta> attese = tutte.stream().filter(filtro::ammette).toList();
+            List<Tratta> trovate = memoria.cerca(filtro);
+            assertEquals(attese, trovate, "Risultati o ordine diversi per " + filtro);
+        }
+
+        memoria.rimuoviTratteDelGiorno(oggi);
+        assertTrue(memoria.cerca(new FiltroTratte.Builder().data(oggi).build()).isEmpty());
+        assertNull(memoria.getTrattaById(campione.getId()));
+        assertTrue(memoria.cerca(new FiltroTratte.Builder().build()).stream()
+                .noneMatch(t -> t.getData().equals(oggi)));
+    }
+
+    @Test
+    void cacheRicercheInvalidaSoloLeRicercheToccate() {
+        TrattaFactoryConcrete factory = new TrattaFactoryConcrete();
+        MemoriaTratte memoria = new MemoriaTratte();
+        CacheRicercheTratte cache = memoria.getCacheRicerche();
+
+        LocalDate giorno = LocalDate.now().plusDays(1);
+        LocalDate altroGiorno = giorno.plusDays(1);
+        factory.generaTratte(giorno).forEach(memoria::aggiungiTratta);
+        factory.generaTratte(altroGiorno).forEach(memoria::aggiungiTratta);
+
+        FiltroTratte delGiorno = new FiltroTratte.Builder().data(giorno).build();
+        FiltroTratte dellAltroGiorno = new FiltroTratte.Builder().data(altroGiorno).build();
+        Tratta originale = memoria.cerca(delGiorno).get(0);
+        memoria.cerca(dellAltroGiorno);
+
+        assertSame(memoria.cerca(new FiltroTratte.Builder().data(giorno).build()), memoria.cerca(delGiorno),
+                "Filtri equivalenti devono condividere la voce in cache");
+        long hitPrima = cache.getHit();
+
+        Tratta modificata = new Tratta(originale.getId(), originale.getStazionePartenza(),
+                originale.getStazioneArrivo(), originale.getData(), LocalTime.of(23, 59),
+                originale.getBinario() + 1, originale.getTreno(), originale.getPrezzi());
+        assertTrue(memoria.sostituisciTratta(modificata));
+
+        Tratta riletta = memoria.cerca(delGiorno).stream()
+                .filter(t -> t.getId().equals(originale.getId()))
+                .findFirst().orElseThrow();
+        assertEquals(LocalTime.of(23, 59), riletta.getOra(), "Dopo la modifica non deve uscire l'orario vecchio");
+        assertEquals(originale.getBinario() + 1, riletta.getBinario());
+        assertEquals(hitPrima, cache.getHit(), "La ricerca del giorno modificato deve essere ricalcolata");
+
+        memoria.cerca(dellAltroGiorno);
+        assertEquals(hitPrima + 1, cache.getHit(), "Le ricerche di altri giorni restano in cache");
+        assertEquals(1, memoria.cerca(new FiltroTratte.Builder().data(giorno).fascia("SERA").build()).stream()
+                .filter(t -> t.getId().equals(originale.getId())).count());
+    }
+
+    @Test
+    void cacheRicercheEvictLru() {
+        CacheRicercheTratte cache = new CacheRicercheTratte(2);
+        LocalDate oggi = LocalDate.now();
+        FiltroTratte a = new FiltroTratte.Builder().data(oggi).build();
+        FiltroTratte b = new FiltroTratte.Builder().data(oggi.plusDays(1)).build();
+        FiltroTratte c = new FiltroTratte.Builder().data(oggi.plusDays(2)).build();
+
+        cache.metti(a, List.of());
+        cache.metti(b, List.of());
+        assertNotNull(cache.get(a));
+        cache.metti(c, List.of());
+
+        assertNull(cache.get(b), "La voce meno usata di recente deve essere scartata");
+        assertNotNull(cache.get(a));
+        assertEquals(1, cache.getEvizioni());
+        assertEquals(2.0 / 3, cache.getHitRatio(), 1e-9);
+    }
+}
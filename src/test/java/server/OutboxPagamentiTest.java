@@ -0,0 +1,332 @@
+package server;
+
+import IMPL.BancaServiceImpl;
+import command.ModificaBigliettoCommand;
+import dto.BigliettoDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import dto.TrattaDTO;
+import enums.ClasseServizio;
+import enums.TipoPrezzo;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import model.Biglietto;
+import model.LayoutPosti;
+import model.OperazionePagamento;
+import model.Tratta;
+import model.Treno;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaClientiFedeli;
+import persistence.MemoriaOsservatori;
+import persistence.MemoriaTratte;
+import persistence.OutboxPersistenceManager;
+import scheduling.ProcessoreOutboxPagamenti;
+import service.BancaServiceClient;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.biglietto;
+import static server.TratteDiProva.trattaPiccola;
+
+public class OutboxPagamentiTest {
+
+    private static final int BANCA_PORT = 8132;
+    private static final int BANCA_SENZA_RISPOSTA_PORT = 8137;
+
+    private static Server bancaServer;
+    private static BancaServiceImpl bancaImpl;
+    private static BancaServiceClient banca;
+
+    @TempDir
+    Path cartella;
+
+    @BeforeAll
+    static void avviaBanca() throws Exception {
+        bancaImpl = new BancaServiceImpl();
+        bancaServer = ServerBuilder.forPort(BANCA_PORT).addService(bancaImpl).build().start();
+        banca = new BancaServiceClient("localhost", BANCA_PORT);
+    }
+
+    @AfterAll
+    static void fermaBanca() throws InterruptedException {
+        banca.shutdown();
+        bancaServer.shutdown();
+        bancaServer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static void attendiCompletamento(ProcessoreOutboxPagamenti outbox) throws InterruptedException {
+        for (int i = 0; i < 100 && outbox.getInCorso() > 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, outbox.getInCorso(), "L'outbox deve svuotarsi");
+    }
+
+    @Test
+    void pagamentoRifiutatoNonScriveBiglietti() throws Exception {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, 2);
+        LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+        String journal = cartella.resolve("outbox.jsonl").toString();
+        ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, banca, journal);
+        outbox.avvia();
+
+        // Importo oltre il saldo: la banca rifiuta
+        UUID cliente = UUID.randomUUID();
+        Biglietto troppoCaro = new Biglietto.Builder()
+                .idCliente(cliente).idTratta(tratta.getId()).classe(ClasseServizio.BASE)
+                .prezzoPagato(5_000_000.0).dataAcquisto(LocalDate.now()).tipoAcquisto("acquisto").build();
+        var trattenuta = memoria.trattieniPosto(tratta.getId(), cliente, ClasseServizio.BASE, layout, 60_000);
+
+        assertNull(outbox.accoda(troppoCaro, trattenuta.getId(), "Test rifiuto").get(10, TimeUnit.SECONDS));
+        assertNull(memoria.getById(troppoCaro.getId()));
+        assertEquals(2, memoria.getPostiDisponibili(tratta.getId(), layout).get(ClasseServizio.BASE),
+                "Il posto trattenuto torna libero");
+        assertTrue(OutboxPersistenceManager.caricaInSospeso(journal).isEmpty());
+    }
+
+    @Test
+    void recuperoRiprendeSenzaDoppioAddebito() throws Exception {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, 2);
+        String journal = cartella.resolve("outbox.jsonl").toString();
+
+        // Crash simulato: operazione registrata e già addebitata, biglietto mai emesso
+        String cliente = UUID.randomUUID().toString();
+        OperazionePagamento operazione = OperazionePagamento.nuova(
+                biglietto(tratta.getId(), UUID.fromString(cliente), ClasseServizio.BASE, 25.0), UUID.randomUUID(), "Test recupero");
+        OutboxPersistenceManager.appendi(journal, operazione);
+        assertTrue(banca.paga(cliente, 25.0, "Test recupero", operazione.getId().toString()));
+        double saldoDopoAddebito = bancaImpl.getRegistro().getSaldo(cliente);
+
+        ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, banca, journal);
+        outbox.avvia();
+        attendiCompletamento(outbox);
+
+        assertNotNull(memoria.getById(operazione.getBiglietto().getId()), "Il biglietto viene emesso al recupero");
+        assertEquals(saldoDopoAddebito, bancaImpl.getRegistro().getSaldo(cliente), 0.001,
+                "Il pagamento ripetuto con la stessa chiave non addebita di nuovo");
+        assertTrue(OutboxPersistenceManager.caricaInSospeso(journal).isEmpty());
+    }
+
+    @Test
+    void recuperoSenzaPostiRimborsa() throws Exception {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, 1);
+        memoria.riservaPosto(biglietto(tratta.getId(), UUID.randomUUID()), LayoutPosti.di(tratta.getTreno()));
+        String journal = cartella.resolve("outbox.jsonl").toString();
+
+        String cliente = UUID.randomUUID().toString();
+        OperazionePagamento operazione = OperazionePagamento.nuova(
+                biglietto(tratta.getId(), UUID.fromString(cliente), ClasseServizio.BASE, 25.0), null, "Test rimborso");
+        OutboxPersistenceManager.appendi(journal, operazione);
+
+        ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, banca, journal);
+        outbox.avvia();
+        attendiCompletamento(outbox);
+
+        assertNull(memoria.getById(operazione.getBiglietto().getId()));
+        assertEquals(bancaImpl.getRegistro().getSaldo(UUID.randomUUID().toString()),
+                bancaImpl.getRegistro().getSaldo(cliente), 0.001, "Treno pieno: l'addebito viene rimborsato");
+        assertTrue(outbox.getStatistiche().contains("Rimborsate=1"), outbox.getStatistiche());
+    }
+
+    @Test
+    void esitoIncertoRiprovaConLaStessaChiave() throws Exception {
+        BancaSenzaRisposta bancaMuta = new BancaSenzaRisposta(1, 0);
+        Server server = ServerBuilder.forPort(BANCA_SENZA_RISPOSTA_PORT).addService(bancaMuta).build().start();
+        BancaServiceClient client = new BancaServiceClient("localhost", BANCA_SENZA_RISPOSTA_PORT);
+        try {
+            MemoriaBiglietti memoria = new MemoriaBiglietti();
+            MemoriaTratte memoriaTratte = new MemoriaTratte();
+            Tratta tratta = trattaPiccola(memoriaTratte, 1);
+            LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+            String journal = cartella.resolve("outbox.jsonl").toString();
+            ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, client, journal);
+            outbox.avvia();
+
+            UUID cliente = UUID.randomUUID();
+            Biglietto richiesto = biglietto(tratta.getId(), cliente, ClasseServizio.BASE, 25.0);
+            var trattenuta = memoria.trattieniPosto(tratta.getId(), cliente, ClasseServizio.BASE, layout, 60_000);
+
+            // Prima risposta persa dopo l'addebito: niente annullamento, si ripete con la stessa chiave
+            Biglietto emesso = outbox.accoda(richiesto, trattenuta.getId(), "Test esito incerto").get(10, TimeUnit.SECONDS);
+
+            assertNotNull(emesso, "L'addebito avvenuto si traduce in un biglietto");
+            assertEquals(richiesto.getId(), emesso.getId());
+            assertEquals(bancaMuta.getRegistro().getSaldo(UUID.randomUUID().toString()) - 25.0,
+                    bancaMuta.getRegistro().getSaldo(cliente.toString()), 0.001, "Un solo addebito");
+            assertTrue(outbox.getStatistiche().contains("Ritentati=1"), outbox.getStatistiche());
+            assertTrue(outbox.getStatistiche().contains("Annullate=0"), outbox.getStatistiche());
+            outbox.shutdown();
+        } finally {
+            client.shutdown();
+            server.shutdown();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void rimborsoNonRiuscitoRestaInSospesoERiprova() throws Exception {
+        BancaSenzaRisposta bancaMuta = new BancaSenzaRisposta(0, 1);
+        Server server = ServerBuilder.forPort(BANCA_SENZA_RISPOSTA_PORT).addService(bancaMuta).build().start();
+        BancaServiceClient client = new BancaServiceClient("localhost", BANCA_SENZA_RISPOSTA_PORT);
+        try {
+            MemoriaBiglietti memoria = new MemoriaBiglietti();
+            MemoriaTratte memoriaTratte = new MemoriaTratte();
+            Tratta tratta = trattaPiccola(memoriaTratte, 1);
+            memoria.riservaPosto(biglietto(tratta.getId(), UUID.randomUUID()), LayoutPosti.di(tratta.getTreno()));
+            String journal = cartella.resolve("outbox.jsonl").toString();
+
+            String cliente = UUID.randomUUID().toString();
+            OperazionePagamento operazione = OperazionePagamento.nuova(
+                    biglietto(tratta.getId(), UUID.fromString(cliente), ClasseServizio.BASE, 25.0), null, "Test rimborso");
+            OutboxPersistenceManager.appendi(journal, operazione);
+
+            ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, client, journal);
+            outbox.avvia();
+            attendiCompletamento(outbox);
+
+            // Prima risposta al rimborso persa dopo l'accredito: il secondo tentativo non accredita di nuovo
+            assertEquals(bancaMuta.getRegistro().getSaldo(UUID.randomUUID().toString()),
+                    bancaMuta.getRegistro().getSaldo(cliente), 0.001, "Rimborsato una sola volta");
+            assertTrue(outbox.getStatistiche().contains("Rimborsate=1"), outbox.getStatistiche());
+            assertTrue(outbox.getStatistiche().contains("Ritentati=1"), outbox.getStatistiche());
+            assertTrue(OutboxPersistenceManager.caricaInSospeso(journal).isEmpty());
+            outbox.shutdown();
+        } finally {
+            client.shutdown();
+            server.shutdown();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void rimborsoInCorsoVieneRipresoAlRiavvio() throws Exception {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, 2);
+        String journal = cartella.resolve("outbox.jsonl").toString();
+
+        // Crash dopo aver registrato il rimborso: il posto non va riassegnato, l'importo va restituito
+        String cliente = UUID.randomUUID().toString();
+        OperazionePagamento operazione = OperazionePagamento.nuova(
+                biglietto(tratta.getId(), UUID.fromString(cliente), ClasseServizio.BASE, 25.0), null, "Test rimborso");
+        OutboxPersistenceManager.appendi(journal, operazione);
+        assertTrue(banca.paga(cliente, 25.0, "Test rimborso", operazione.getId().toString()));
+        OutboxPersistenceManager.appendi(journal, operazione.conStato(OperazionePagamento.Stato.RIMBORSO_IN_CORSO));
+        assertEquals(1, OutboxPersistenceManager.caricaInSospeso(journal).size());
+
+        ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, banca, journal);
+        outbox.avvia();
+        attendiCompletamento(outbox);
+
+        assertNull(memoria.getById(operazione.getBiglietto().getId()));
+        assertEquals(bancaImpl.getRegistro().getSaldo(UUID.randomUUID().toString()),
+                bancaImpl.getRegistro().getSaldo(cliente), 0.001);
+        assertTrue(OutboxPersistenceManager.caricaInSospeso(journal).isEmpty());
+    }
+
+    @Test
+    void stessoIdOperazioneSiAgganciaSenzaRipagare() throws Exception {
+        BancaSenzaRisposta bancaMuta = new BancaSenzaRisposta(1, 0);
+        Server server = ServerBuilder.forPort(BANCA_SENZA_RISPOSTA_PORT).addService(bancaMuta).build().start();
+        BancaServiceClient client = new BancaServiceClient("localhost", BANCA_SENZA_RISPOSTA_PORT);
+        try {
+            MemoriaBiglietti memoria = new MemoriaBiglietti();
+            MemoriaTratte memoriaTratte = new MemoriaTratte();
+            Tratta tratta = trattaPiccola(memoriaTratte, 2);
+            LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+            String journal = cartella.resolve("outbox.jsonl").toString();
+            ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, client, journal);
+            outbox.avvia();
+
+            UUID cliente = UUID.randomUUID();
+            UUID idOperazione = UUID.randomUUID();
+            Biglietto richiesto = biglietto(tratta.getId(), cliente, ClasseServizio.BASE, 25.0);
+            var primaTrattenuta = memoria.trattieniPosto(tratta.getId(), cliente, ClasseServizio.BASE, layout, 60_000);
+            var primo = outbox.accoda(idOperazione, richiesto, primaTrattenuta.getId(), "Test retry");
+
+            // Il retry arriva mentre il pagamento è in attesa di un nuovo tentativo, con un'altra trattenuta
+            var secondaTrattenuta = memoria.trattieniPosto(tratta.getId(), UUID.randomUUID(), ClasseServizio.BASE, layout, 60_000);
+            var secondo = outbox.accoda(idOperazione, richiesto, secondaTrattenuta.getId(), "Test retry");
+
+            assertSame(primo, secondo);
+            assertNotNull(primo.get(10, TimeUnit.SECONDS));
+            assertSame(primo, outbox.esitoDi(idOperazione), "L'esito resta consultabile dopo la chiusura");
+            assertEquals(1, memoria.getPostiDisponibili(tratta.getId(), layout).get(ClasseServizio.BASE),
+                    "La trattenuta del retry viene rilasciata");
+            assertEquals(bancaMuta.getRegistro().getSaldo(UUID.randomUUID().toString()) - 25.0,
+                    bancaMuta.getRegistro().getSaldo(cliente.toString()), 0.001, "Un solo addebito");
+            assertTrue(outbox.getStatistiche().contains("Registrate=1"), outbox.getStatistiche());
+            outbox.shutdown();
+        } finally {
+            client.shutdown();
+            server.shutdown();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void modificaConAddebitoIncertoRimborsaTramiteOutbox() throws Exception {
+        BancaSenzaRisposta bancaMuta = new BancaSenzaRisposta(1, 1);
+        Server server = ServerBuilder.forPort(BANCA_SENZA_RISPOSTA_PORT).addService(bancaMuta).build().start();
+        BancaServiceClient client = new BancaServiceClient("localhost", BANCA_SENZA_RISPOSTA_PORT);
+        ExecutorService pagamenti = Executors.newFixedThreadPool(2);
+        try {
+            MemoriaBiglietti memoria = new MemoriaBiglietti();
+            MemoriaTratte memoriaTratte = new MemoriaTratte();
+            Tratta origine = trattaPiccola(memoriaTratte, 2);
+            Tratta destinazione = trattaPiccola(memoriaTratte, 2);
+            LayoutPosti layout = LayoutPosti.di(destinazione.getTreno());
+            String journal = cartella.resolve("outbox.jsonl").toString();
+            ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoria, memoriaTratte, client, journal);
+            outbox.avvia();
+
+            UUID cliente = UUID.randomUUID();
+            Biglietto originale = memoria.riservaPosto(biglietto(origine.getId(), cliente), LayoutPosti.di(origine.getTreno()));
+            RichiestaDTO richiesta = new RichiestaDTO.Builder()
+                    .tipo("MODIFICA")
+                    .idCliente(cliente.toString())
+                    .biglietto(new BigliettoDTO(originale.getId(), null, null, null, null, 0.0, null))
+                    .tratta(new TrattaDTO(destinazione.getId(), "", "", null, null, 0, null, null))
+                    .classeServizio(ClasseServizio.BASE)
+                    .tipoPrezzo(TipoPrezzo.INTERO)
+                    .chiaveIdempotenza(UUID.randomUUID().toString())
+                    .build();
+
+            // Prima risposta persa dopo l'addebito: la saga fallisce, ma il tratto incerto va rimborsato
+            RispostaDTO risposta = new ModificaBigliettoCommand(richiesta, memoria, new MemoriaClientiFedeli(),
+                    memoriaTratte, new MemoriaOsservatori(), client, outbox, pagamenti).esegui();
+
+            assertEquals("KO", risposta.getEsito());
+            assertNotNull(memoria.getById(originale.getId()), "Il biglietto originale resta valido");
+            assertEquals(2, memoria.getPostiDisponibili(destinazione.getId(), layout).get(ClasseServizio.BASE));
+            attendiCompletamento(outbox);
+
+            // Anche il primo rimborso perde la risposta: ripetuto con la stessa chiave, accredita una volta
+            assertEquals(bancaMuta.getRegistro().getSaldo(UUID.randomUUID().toString()),
+                    bancaMuta.getRegistro().getSaldo(cliente.toString()), 0.001, "Ogni addebito rimborsato una volta");
+            assertTrue(outbox.getStatistiche().contains("Rimborsate=2"), outbox.getStatistiche());
+            assertTrue(OutboxPersistenceManager.caricaInSospeso(journal).isEmpty());
+            outbox.shutdown();
+        } finally {
+            pagamenti.shutdown();
+            client.shutdown();
+            server.shutdown();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package server;
+
+import command.ServerRequestHandler;
+import dto.PaginaTratteDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import dto.TrattaDTO;
+import enums.ClasseServizio;
+import factory.TrattaFactoryConcrete;
+import grpc.TrenicalServiceImpl;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import model.LayoutPosti;
+import model.Tratta;
+import observer.GrpcNotificaDispatcher;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import persistence.*;
+import service.ClientService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.outboxDiProva;
+
+public class RicercaPaginataTest {
+
+    private static final int SERVER_PORT = 8133;
+    private static final LocalDate GIORNO = LocalDate.now().plusYears(5);
+
+    private static Server server;
+    private static ServerRequestHandler handler;
+    private static MemoriaBiglietti memoriaBiglietti;
+    private static List<Tratta> delGiorno;
+
+    @BeforeAll
+    static void avviaServer() throws Exception {
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        delGiorno = new TrattaFactoryConcrete().generaTratte(GIORNO);
+        delGiorno.forEach(memoriaTratte::aggiungiTratta);
+
+        memoriaBiglietti = new MemoriaBiglietti();
+        handler = new ServerRequestHandler(memoriaBiglietti, new MemoriaClientiFedeli(), memoriaTratte,
+                null, new MemoriaOsservatori(), outboxDiProva(memoriaBiglietti, memoriaTratte, null));
+        TrenicalServiceImpl servizio = new TrenicalServiceImpl(new GrpcNotificaDispatcher(), handler, new MemoriaPromozioni());
+        server = ServerBuilder.forPort(SERVER_PORT)
+                .addService(servizio)
+                .build()
+                .start();
+    }
+
+    @AfterAll
+    static void fermaServer() throws InterruptedException {
+        server.shutdown();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static RichiestaDTO.Builder ricerca(String ordinamento, int dimensione) {
+        return new RichiestaDTO.Builder()
+                .tipo("FILTRA_PAGINA")
+                .data(GIORNO)
+                .ordinamento(ordinamento)
+                .dimensionePagina(dimensione);
+    }
+
+    @Test
+    void paginePerOrarioCopronoTuttoSenzaDuplicati() {
+        assertTrue(delGiorno.size() > 3, "Servono più tratte di una pagina");
+
+        List<UUID> visti = new ArrayList<>();
+        String token = null;
+        int pagine = 0;
+        do {
+            RispostaDTO risposta = handler.gestisci(ricerca("ORARIO", 3).tokenContinuazione(token).build());
+            assertEquals("OK", risposta.getEsito(), risposta.getMessaggio());
+            PaginaTratteDTO pagina = risposta.getPaginaTratte();
+            assertTrue(pagina.getTratte().size() <= 3);
+            assertEquals(delGiorno.size(), pagina.getTotaleRisultati());
+            pagina.getTratte().forEach(t -> visti.add(t.getId()));
+            token = pagina.getTokenContinuazione();
+            pagine++;
+        } while (token != null);
+
+        List<UUID> attesi = delGiorno.stream()
+                .sorted(Comparator.comparing(Tratta::getOra).thenComparing(Tratta::getId))
+                .map(Tratta::getId)
+                .toList();
+        assertEquals(attesi, visti);
+        assertEquals((delGiorno.size() + 2) / 3, pagine);
+    }
+
+    @Test
+    void ordinamentoPerPrezzoETokenNonValido() {
+        RispostaDTO risposta = handler.gestisci(ricerca("prezzo", 100).classeServizio(ClasseServizio.BASE).build());
+        List<TrattaDTO> tratte = risposta.getPaginaTratte().getTratte();
+        for (int i = 1; i < tratte.size(); i++) {
+            assertTrue(tratte.get(i - 1).getPrezzi().get(ClasseServizio.BASE).getPrezzoIntero()
+                    <= tratte.get(i).getPrezzi().get(ClasseServizio.BASE).getPrezzoIntero());
+        }
+        assertNull(risposta.getPaginaTratte().getTokenContinuazione());
+
+        String tokenOrario = handler.gestisci(ricerca("ORARIO", 1).build()).getPaginaTratte().getTokenContinuazione();
+        assertEquals("KO", handler.gestisci(ricerca("PREZZO", 1).tokenContinuazione(tokenOrario).build()).getEsito(),
+                "Un token dell'ordinamento per orario non vale per quello per prezzo");
+        assertEquals("KO", handler.gestisci(ricerca("ORARIO", 1).tokenContinuazione("%%%").build()).getEsito());
+    }
+
+    @Test
+    void filtroPostiMinimiUsaLaDisponibilitaInTempoReale() {
+        Tratta trattenuta = delGiorno.get(0);
+        int capienzaBase = LayoutPosti.di(trattenuta.getTreno()).getNumeroPosti(ClasseServizio.BASE);
+        assertEquals("OK", handler.gestisci(new RichiestaDTO.Builder()
+                .tipo("TRATTIENI")
+                .idCliente(UUID.randomUUID().toString())
+                .tratta(new TrattaDTO(trattenuta.getId(), "", "", null, null, 0, null, null))
+                .classeServizio(ClasseServizio.BASE)
+                .build()).getEsito());
+
+        RichiestaDTO.Builder almenoCapienza = new RichiestaDTO.Builder()
+                .tipo("FILTRA")
+                .data(GIORNO)
+                .classeServizio(ClasseServizio.BASE)
+                .postiMinimi(capienzaBase);
+        List<TrattaDTO> trovate = handler.gestisci(almenoCapienza.build()).getTratte();
+        long attese = delGiorno.stream()
+                .filter(t -> memoriaBiglietti.getPostiDisponibili(t.getId(), LayoutPosti.di(t.getTreno()))
+                        .get(ClasseServizio.BASE) >= capienzaBase)
+                .count();
+        assertEquals(attese, trovate == null ? 0 : trovate.size());
+        assertTrue(trovate == null || trovate.stream().noneMatch(t -> t.getId().equals(trattenuta.getId())),
+                "La tratta con un posto trattenuto non ha più tutta la capienza libera");
+        assertTrue(trovate == null || trovate.stream()
+                .allMatch(t -> t.getPostiDisponibili(ClasseServizio.BASE) >= capienzaBase));
+
+        PaginaTratteDTO pagina = handler.gestisci(ricerca("ORARIO", 100)
+                .classeServizio(ClasseServizio.BASE).postiMinimi(capienzaBase).build()).getPaginaTratte();
+        assertEquals(attese, pagina.getTotaleRisultati());
+
+        List<TrattaDTO> conUnoInMeno = handler.gestisci(almenoCapienza.postiMinimi(capienzaBase - 1).build()).getTratte();
+        assertTrue(conUnoInMeno.stream().anyMatch(t -> t.getId().equals(trattenuta.getId())));
+    }
+
+    @Test
+    void streamGrpcSiFermaAlNumeroDiPagineRichiesto() {
+        ClientService client = new ClientService("localhost", SERVER_PORT);
+
+        List<PaginaTratteDTO> prime = client.cercaTratte(ricerca("ORARIO", 2).build(), 2);
+        assertEquals(2, prime.size());
+        assertNotNull(prime.get(1).getTokenContinuazione());
+
+        List<PaginaTratteDTO> resto = client.cercaTratte(
+                ricerca("ORARIO", 2).tokenContinuazione(prime.get(1).getTokenContinuazione()).build(), 0);
+        int ricevute = prime.stream().mapToInt(p -> p.getTratte().size()).sum()
+                + resto.stream().mapToInt(p -> p.getTratte().size()).sum();
+        assertEquals(delGiorno.size(), ricevute);
+        assertTrue(resto.get(resto.size() - 1).isUltima());
+    }
+
+    @Test
+    void chiaveIdempotenzaDelClientNonRipeteLaPrimaPagina() {
+        ClientService client = new ClientService("localhost", SERVER_PORT);
+
+        // Limite largo (servono metà pagine) perché un errore non diventi uno stream infinito
+        List<PaginaTratteDTO> pagine = client.cercaTratte(
+                ricerca("ORARIO", 2).chiaveIdempotenza(UUID.randomUUID().toString()).build(), delGiorno.size());
+        List<UUID> visti = new ArrayList<>();
+        pagine.forEach(p -> p.getTratte().forEach(t -> visti.add(t.getId())));
+
+        assertEquals(delGiorno.size(), visti.size());
+        assertEquals(visti.size(), visti.stream().distinct().count(), "Ogni pagina è diversa dalla prima");
+        assertTrue(pagine.get(pagine.size() - 1).isUltima());
+    }
+}
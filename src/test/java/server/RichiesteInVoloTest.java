@@ -0,0 +1,101 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import util.RichiesteInVolo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RichiesteInVoloTest {
+
+    private static final int IN_ATTESA = 8;
+
+    @Test
+    void richiesteIdenticheConcorrentiCondividonoUnCalcolo() throws Exception {
+        RichiesteInVolo<String, List<String>> inVolo = new RichiesteInVolo<>("Test");
+        CountDownLatch avviato = new CountDownLatch(1);
+        CountDownLatch sblocca = new CountDownLatch(1);
+        AtomicInteger calcoli = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(IN_ATTESA + 1);
+        try {
+            Future<List<String>> primo = pool.submit(() -> inVolo.esegui("Roma→Milano", () -> {
+                calcoli.incrementAndGet();
+                avviato.countDown();
+                try {
+                    sblocca.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return List.of("risultato");
+            }));
+            assertTrue(avviato.await(5, TimeUnit.SECONDS));
+
+            List<Future<List<String>>> altri = new ArrayList<>();
+            for (int i = 0; i < IN_ATTESA; i++) {
+                altri.add(pool.submit(() -> inVolo.esegui("Roma→Milano", () -> {
+                    calcoli.incrementAndGet();
+                    return List.of("ricalcolato");
+                })));
+            }
+            long limite = System.currentTimeMillis() + 5_000;
+            while (inVolo.getCondivise() < IN_ATTESA) {
+                assertTrue(System.currentTimeMillis() < limite, "Le richieste non si sono agganciate");
+                Thread.sleep(10);
+            }
+            sblocca.countDown();
+
+            List<String> risultato = primo.get(5, TimeUnit.SECONDS);
+            for (Future<List<String>> f : altri) {
+                assertSame(risultato, f.get(5, TimeUnit.SECONDS), "Stesso risultato per tutte");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, calcoli.get());
+        assertEquals(1, inVolo.getEseguite());
+        assertEquals(IN_ATTESA, inVolo.getCondivise());
+        assertEquals(0, inVolo.getInVolo(), "Finito il calcolo la chiave si libera");
+
+        // Non è una cache: a calcolo finito la stessa chiave ricalcola
+        assertEquals(List.of("nuovo"), inVolo.esegui("Roma→Milano", () -> List.of("nuovo")));
+        assertEquals(2, inVolo.getEseguite());
+    }
+
+    @Test
+    void eccezioneDelCalcoloArrivaATuttiIConcorrenti() throws Exception {
+        RichiesteInVolo<String, String> inVolo = new RichiesteInVolo<>("Test");
+        CountDownLatch avviato = new CountDownLatch(1);
+        CountDownLatch sblocca = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> primo = pool.submit(() -> inVolo.esegui("k", () -> {
+                avviato.countDown();
+                try {
+                    sblocca.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("guasto");
+            }));
+            assertTrue(avviato.await(5, TimeUnit.SECONDS));
+            Future<String> secondo = pool.submit(() -> inVolo.esegui("k", () -> "mai"));
+            while (inVolo.getCondivise() < 1) Thread.sleep(10);
+            sblocca.countDown();
+
+            for (Future<String> f : List.of(primo, secondo)) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("ok", inVolo.esegui("k", () -> "ok"), "Dopo un errore la chiave si libera");
+    }
+}
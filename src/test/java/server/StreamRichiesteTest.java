@@ -0,0 +1,186 @@
+package server;
+
+import command.ServerRequestHandler;
+import dto.PromozioneDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import grpc.RichiestaBatchGrpc;
+import grpc.RichiestaGrpc;
+import grpc.RispostaBatchGrpc;
+import grpc.TrenicalServiceGrpc;
+import grpc.TrenicalServiceImpl;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+import observer.GrpcNotificaDispatcher;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import persistence.*;
+import service.BancaServiceClient;
+import service.ClientService;
+import service.SessioneClient;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.outboxDiProva;
+
+public class StreamRichiesteTest {
+
+    private static final int SERVER_PORT = 8126;
+
+    private static Server server;
+    private static BancaServiceClient banca;
+    private static GrpcNotificaDispatcher dispatcher;
+    private static TrenicalServiceImpl servizio;
+
+    @BeforeAll
+    static void avviaServer() throws Exception {
+        banca = new BancaServiceClient("localhost", 8127);
+        MemoriaBiglietti memoriaBiglietti = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        ServerRequestHandler handler = new ServerRequestHandler(memoriaBiglietti, new MemoriaClientiFedeli(), memoriaTratte,
+                banca, new MemoriaOsservatori(), outboxDiProva(memoriaBiglietti, memoriaTratte, banca));
+        dispatcher = new GrpcNotificaDispatcher();
+        servizio = new TrenicalServiceImpl(dispatcher, handler, new MemoriaPromozioni());
+        server = ServerBuilder.forPort(SERVER_PORT)
+                .addService(servizio)
+                .build()
+                .start();
+    }
+
+    @AfterAll
+    static void fermaServer() throws InterruptedException {
+        banca.shutdown();
+        server.shutdown();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void risposteOrdinateConIdCorrelazione() throws Exception {
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", SERVER_PORT).usePlaintext().build();
+        try {
+            List<RispostaBatchGrpc> ricevute = new CopyOnWriteArrayList<>();
+            CompletableFuture<Void> fine = new CompletableFuture<>();
+
+            StreamObserver<RichiestaBatchGrpc> invio = TrenicalServiceGrpc.newStub(channel)
+                    .inviaRichiesteBatch(new StreamObserver<>() {
+                        @Override public void onNext(RispostaBatchGrpc value) { ricevute.add(value); }
+                        @Override public void onError(Throwable t) { fine.completeExceptionally(t); }
+                        @Override public void onCompleted() { fine.complete(null); }
+                    });
+
+            for (int i = 0; i < 200; i++) {
+                invio.onNext(RichiestaBatchGrpc.newBuilder()
+                        .setIdCorrelazione("req-" + i)
+                        .setOrdinato(true)
+                        .setRichiesta(RichiestaGrpc.newBuilder().setTipo(i % 2 == 0 ? "FILTRA" : "IGNOTO_" + i))
+                        .build());
+            }
+            invio.onCompleted();
+            fine.get(30, TimeUnit.SECONDS);
+
+            assertEquals(200, ricevute.size());
+            for (int i = 0; i < 200; i++) {
+                assertEquals("req-" + i, ricevute.get(i).getIdCorrelazione(), "Risposte nell'ordine di invio");
+            }
+            assertTrue(ricevute.get(1).getRisposta().getMessaggio().contains("IGNOTO_1"));
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+
+    @Test
+    void clientServiceRestituisceRisposteNellOrdineDellaLista() {
+        ClientService client = new ClientService("localhost", SERVER_PORT);
+        List<RichiestaDTO> richieste = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            richieste.add(new RichiestaDTO.Builder().tipo("IGNOTO_" + i).build());
+        }
+
+        List<RispostaDTO> risposte = client.inviaRichiesteBatch(richieste);
+
+        assertEquals(50, risposte.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("KO", risposte.get(i).getEsito());
+            assertTrue(risposte.get(i).getMessaggio().endsWith("IGNOTO_" + i), risposte.get(i).getMessaggio());
+        }
+    }
+
+    @Test
+    void sessioneMultiplexaRisposteENotifiche() throws Exception {
+        ClientService client = new ClientService("localhost", SERVER_PORT);
+        SessioneClient sessione = client.apriSessione();
+        UUID idTratta = UUID.randomUUID();
+        UUID idRitorno = UUID.randomUUID();
+        List<String> notifiche = new CopyOnWriteArrayList<>();
+        List<String> notificheRitorno = new CopyOnWriteArrayList<>();
+        List<String> promozioni = new CopyOnWriteArrayList<>();
+        try {
+            sessione.iscriviTratta(idTratta, "sessione@test.com", n -> notifiche.add(n.getMessaggio()));
+            sessione.iscriviTratta(idRitorno, "sessione@test.com", n -> notificheRitorno.add(n.getMessaggio()));
+            sessione.iscriviPromozioni(p -> promozioni.add(p.getNome()));
+
+            List<CompletableFuture<RispostaDTO>> risposte = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                risposte.add(sessione.invia(new RichiestaDTO.Builder().tipo("IGNOTO_" + i).build()));
+            }
+            for (int i = 0; i < 20; i++) {
+                RispostaDTO risposta = risposte.get(i).get(10, TimeUnit.SECONDS);
+                assertTrue(risposta.getMessaggio().endsWith("IGNOTO_" + i), "Risposta abbinata alla propria richiesta");
+            }
+
+            dispatcher.inviaNotifica(idTratta, "Ritardo 10 minuti");
+            dispatcher.inviaNotifica(idRitorno, "Binario 3");
+            servizio.broadcastPromozione(new PromozioneDTO("Promo sessione", "Test",
+                    LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1)));
+
+            long scadenza = System.currentTimeMillis() + 5000;
+            while ((!notifiche.contains("Ritardo 10 minuti") || !notificheRitorno.contains("Binario 3")
+                    || !promozioni.contains("Promo sessione"))
+                    && System.currentTimeMillis() < scadenza) {
+                Thread.sleep(20);
+            }
+            assertTrue(notifiche.contains("Ritardo 10 minuti"), notifiche.toString());
+            assertTrue(notificheRitorno.contains("Binario 3"), notificheRitorno.toString());
+            assertFalse(notifiche.contains("Binario 3"), "Ogni tratta al proprio listener");
+            assertFalse(notificheRitorno.contains("Ritardo 10 minuti"), "Ogni tratta al proprio listener");
+            assertTrue(promozioni.contains("Promo sessione"), promozioni.toString());
+            assertTrue(servizio.getStreamStats().contains("Sessioni=1"), servizio.getStreamStats());
+        } finally {
+            sessione.chiudi();
+        }
+
+        long scadenza = System.currentTimeMillis() + 5000;
+        while (!servizio.getStreamStats().contains("Sessioni=0") && System.currentTimeMillis() < scadenza) {
+            Thread.sleep(20);
+        }
+        assertTrue(servizio.getStreamStats().contains("Promozioni=0, Notifiche=0, Sessioni=0"), servizio.getStreamStats());
+    }
+
+    @Test
+    void chiusuraDelClientAttendeLeRisposteInCorso() throws Exception {
+        SessioneClient sessione = new ClientService("localhost", SERVER_PORT).apriSessione();
+
+        List<CompletableFuture<RispostaDTO>> risposte = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            risposte.add(sessione.invia(new RichiestaDTO.Builder().tipo("IGNOTO_" + i).build()));
+        }
+        sessione.chiudi();
+
+        for (int i = 0; i < 30; i++) {
+            RispostaDTO risposta = risposte.get(i).get(10, TimeUnit.SECONDS);
+            assertTrue(risposta.getMessaggio().endsWith("IGNOTO_" + i),
+                    "Le richieste inviate prima della chiusura ricevono la loro risposta");
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package server;
+
+import command.ServerRequestHandler;
+import factory.TrattaFactoryConcrete;
+import grpc.TrenicalServiceImpl;
+import grpc.VariazioneTabelloneGrpc;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import model.LayoutPosti;
+import model.Tratta;
+import observer.GrpcNotificaDispatcher;
+import org.junit.jupiter.api.Test;
+import persistence.*;
+import service.ClientService;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.outboxDiProva;
+
+public class TabellonePartenzeTest {
+
+    private static final int SERVER_PORT = 8135;
+    private static final LocalDate GIORNO = LocalDate.now().plusYears(9);
+
+    // Il file dati è condiviso: stazioni diverse a ogni esecuzione
+    private final String maratea = "Maratea" + UUID.randomUUID().toString().substring(0, 6);
+    private final String diamante = "Diamante" + UUID.randomUUID().toString().substring(0, 6);
+
+    private static Tratta tratta(Tratta modello, UUID id, String partenza, LocalTime ora, int binario) {
+        return new Tratta(id, partenza, "Tabellone Arrivo", GIORNO, ora, binario, modello.getTreno(), modello.getPrezzi());
+    }
+
+    private static TabellonePartenze.TipoVariazione ultimo(List<TabellonePartenze.Variazione> ricevute) {
+        return ricevute.get(ricevute.size() - 1).getTipo();
+    }
+
+    @Test
+    void istantaneaPoiSoloVariazioniDellaStazione() {
+        MemoriaTratte memoria = new MemoriaTratte();
+        MemoriaBiglietti biglietti = new MemoriaBiglietti();
+        TabellonePartenze tabellone = new TabellonePartenze(memoria, biglietti);
+
+        Tratta modello = new TrattaFactoryConcrete().generaTratte(GIORNO).get(0);
+        Tratta tardi = tratta(modello, UUID.randomUUID(), maratea, LocalTime.of(18, 0), 2);
+        Tratta presto = tratta(modello, UUID.randomUUID(), maratea, LocalTime.of(8, 0), 1);
+        memoria.aggiungiTratta(tardi);
+        memoria.aggiungiTratta(presto);
+
+        List<TabellonePartenze.Variazione> ricevute = new CopyOnWriteArrayList<>();
+        Runnable annulla = tabellone.iscrivi("  " + maratea.toUpperCase() + " ", 10, ricevute::add);
+
+        assertEquals(2, ricevute.size(), "Istantanea con le partenze della stazione");
+        assertEquals(presto.getId(), ricevute.get(0).getRiga().getTratta().getId(), "In ordine di orario");
+        assertEquals(TabellonePartenze.TipoVariazione.INIZIALE, ricevute.get(0).getTipo());
+        int postiIniziali = ricevute.get(0).getRiga().getPostiLiberi();
+        assertTrue(postiIniziali > 0);
+
+        // 🕐 Ritardo di 25 minuti
+        memoria.sostituisciTratta(tratta(modello, presto.getId(), maratea, LocalTime.of(8, 25), 1));
+        assertEquals(TabellonePartenze.TipoVariazione.RITARDO, ultimo(ricevute));
+        assertEquals(25, ricevute.get(ricevute.size() - 1).getMinutiRitardo());
+
+        // 🚏 Cambio binario
+        memoria.sostituisciTratta(tratta(modello, presto.getId(), maratea, LocalTime.of(8, 25), 4));
+        assertEquals(TabellonePartenze.TipoVariazione.BINARIO, ultimo(ricevute));
+        assertEquals(4, ricevute.get(ricevute.size() - 1).getRiga().getTratta().getBinario());
+
+        // 💺 Posto trattenuto: un posto libero in meno
+        assertNotNull(biglietti.trattieniPosto(presto.getId(), UUID.randomUUID(),
+                modello.getPrezzi().keySet().iterator().next(), LayoutPosti.di(modello.getTreno()), 60_000));
+        assertEquals(TabellonePartenze.TipoVariazione.OCCUPAZIONE, ultimo(ricevute));
+        assertEquals(postiIniziali - 1, ricevute.get(ricevute.size() - 1).getRiga().getPostiLiberi());
+
+        // Le altre stazioni non producono variazioni per questo iscritto
+        int primaAltre = ricevute.size();
+        memoria.aggiungiTratta(tratta(modello, UUID.randomUUID(), "Sapri", LocalTime.of(9, 0), 1));
+        assertEquals(primaAltre, ricevute.size());
+
+        Tratta nuova = tratta(modello, UUID.randomUUID(), maratea, LocalTime.of(12, 0), 3);
+        memoria.aggiungiTratta(nuova);
+        assertEquals(TabellonePartenze.TipoVariazione.NUOVA, ultimo(ricevute));
+
+        memoria.rimuoviTratteDelGiorno(GIORNO);
+        assertEquals(TabellonePartenze.TipoVariazione.RIMOSSA, ultimo(ricevute));
+
+        annulla.run();
+        int primaAnnullo = ricevute.size();
+        memoria.aggiungiTratta(tratta(modello, UUID.randomUUID(), maratea, LocalTime.of(20, 0), 1));
+        assertEquals(primaAnnullo, ricevute.size(), "Dopo l'annullo nessuna variazione");
+        assertEquals(0, tabellone.getNumeroIscritti());
+    }
+
+    @Test
+    void streamGrpcDelTabellone() throws Exception {
+        MemoriaTratte memoria = new MemoriaTratte();
+        MemoriaBiglietti memoriaBiglietti = new MemoriaBiglietti();
+        ServerRequestHandler handler = new ServerRequestHandler(memoriaBiglietti, new MemoriaClientiFedeli(), memoria,
+                null, new MemoriaOsservatori(), outboxDiProva(memoriaBiglietti, memoria, null));
+        Server server = ServerBuilder.forPort(SERVER_PORT)
+                .addService(new TrenicalServiceImpl(new GrpcNotificaDispatcher(), handler, new MemoriaPromozioni()))
+                .build()
+                .start();
+        try {
+            Tratta modello = new TrattaFactoryConcrete().generaTratte(GIORNO).get(0);
+            Tratta tratta = tratta(modello, UUID.randomUUID(), diamante, LocalTime.of(10, 0), 2);
+            memoria.aggiungiTratta(tratta);
+
+            List<VariazioneTabelloneGrpc> ricevute = new CopyOnWriteArrayList<>();
+            Runnable annulla = new ClientService("localhost", SERVER_PORT)
+                    .iscriviTabellonePartenze(diamante, 5, ricevute::add);
+            attendi(() -> ricevute.size() >= 1);
+            assertEquals("INIZIALE", ricevute.get(0).getTipo());
+            assertEquals(tratta.getId().toString(), ricevute.get(0).getTratta().getId());
+
+            memoria.sostituisciTratta(tratta(modello, tratta.getId(), diamante, LocalTime.of(9, 50), 2));
+            attendi(() -> ricevute.size() >= 2);
+            assertEquals("ORARIO", ricevute.get(1).getTipo());
+            assertEquals("09:50", ricevute.get(1).getTratta().getOra().substring(0, 5));
+
+            annulla.run();
+            attendi(() -> handler.getTabellonePartenze().getNumeroIscritti() == 0);
+        } finally {
+            server.shutdownNow();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void attendi(java.util.function.BooleanSupplier condizione) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5_000;
+        while (!condizione.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "Condizione non raggiunta in tempo");
+            Thread.sleep(20);
+        }
+    }
+}
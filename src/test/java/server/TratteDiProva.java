@@ -0,0 +1,90 @@
+package server;
+
+import enums.ClasseServizio;
+import model.Biglietto;
+import model.Prezzo;
+import model.Tratta;
+import model.Treno;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaTratte;
+import scheduling.ProcessoreOutboxPagamenti;
+import service.BancaServiceClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 🧪 Tratte e biglietti di prova con pochi posti, per i test su capienza e pagamenti
+ */
+final class TratteDiProva {
+
+    private TratteDiProva() {}
+
+    /**
+     * Tratta di domani (aggiunta a {@code memoriaTratte}) su un treno con i posti indicati
+     * per classe; ogni classe costa 10 / 8 / 6 euro
+     */
+    static Tratta trattaPiccola(MemoriaTratte memoriaTratte, Map<ClasseServizio, Integer> postiPerClasse) {
+        Treno treno = new Treno.Builder()
+                .numero(990)
+                .tipologia("TestTreno")
+                .capienzaTotale(postiPerClasse.values().stream().mapToInt(Integer::intValue).sum())
+                .postiPerClasse(postiPerClasse)
+                .nomeCommerciale("TrenoDiProva")
+                .build();
+
+        Map<ClasseServizio, Prezzo> prezzi = new HashMap<>();
+        for (ClasseServizio classe : ClasseServizio.values()) {
+            prezzi.put(classe, new Prezzo(10.0, 8.0, 6.0));
+        }
+
+        Tratta tratta = new Tratta(UUID.randomUUID(), "TestPartenza", "TestArrivo",
+                LocalDate.now().plusDays(1), LocalTime.of(10, 0), 1, treno, prezzi);
+        memoriaTratte.aggiungiTratta(tratta);
+        return tratta;
+    }
+
+    static Tratta trattaPiccola(MemoriaTratte memoriaTratte, int postiBase) {
+        return trattaPiccola(memoriaTratte, Map.of(ClasseServizio.BASE, postiBase));
+    }
+
+    static Biglietto biglietto(UUID idTratta, UUID idCliente, ClasseServizio classe, double prezzo) {
+        return new Biglietto.Builder()
+                .idCliente(idCliente)
+                .idTratta(idTratta)
+                .classe(classe)
+                .prezzoPagato(prezzo)
+                .dataAcquisto(LocalDate.now())
+                .tipoAcquisto("acquisto")
+                .build();
+    }
+
+    static Biglietto biglietto(UUID idTratta, UUID idCliente, ClasseServizio classe) {
+        return biglietto(idTratta, idCliente, classe, 10.0);
+    }
+
+    static Biglietto biglietto(UUID idTratta, UUID idCliente) {
+        return biglietto(idTratta, idCliente, ClasseServizio.BASE, 10.0);
+    }
+
+    /**
+     * Outbox pagamenti su un journal temporaneo, non avviato: nessun recupero di operazioni altrui
+     */
+    static ProcessoreOutboxPagamenti outboxDiProva(MemoriaBiglietti memoriaBiglietti, MemoriaTratte memoriaTratte,
+                                                   BancaServiceClient banca) {
+        try {
+            Path journal = Files.createTempFile("outbox-prova", ".jsonl");
+            journal.toFile().deleteOnExit();
+            return new ProcessoreOutboxPagamenti(memoriaBiglietti, memoriaTratte, banca, journal.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package server;
+
+import command.ServerRequestHandler;
+import dto.BigliettoDTO;
+import dto.RichiestaDTO;
+import dto.RispostaDTO;
+import dto.TrattaDTO;
+import dto.TrattenutaDTO;
+import enums.ClasseServizio;
+import enums.TipoPrezzo;
+import model.Biglietto;
+import model.LayoutPosti;
+import model.Tratta;
+import model.Treno;
+import org.junit.jupiter.api.Test;
+import persistence.MemoriaBiglietti;
+import persistence.MemoriaClientiFedeli;
+import persistence.MemoriaOsservatori;
+import persistence.MemoriaTratte;
+import util.GrpcMapper;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static server.TratteDiProva.biglietto;
+import static server.TratteDiProva.outboxDiProva;
+import static server.TratteDiProva.trattaPiccola;
+
+public class TrattenutePostiTest {
+
+    private static RichiestaDTO trattieni(Tratta tratta, UUID idCliente) {
+        return new RichiestaDTO.Builder()
+                .tipo("TRATTIENI")
+                .idCliente(idCliente.toString())
+                .tratta(new TrattaDTO(tratta.getId(), "", "", null, null, 0, null, null))
+                .classeServizio(ClasseServizio.BASE)
+                .build();
+    }
+
+    @Test
+    void tokenRiscattabileSoloDalClienteSenzaScrittureFinoAlRiscatto() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, 2);
+        LayoutPosti layout = LayoutPosti.di(tratta.getTreno());
+        ServerRequestHandler handler = new ServerRequestHandler(memoria, new MemoriaClientiFedeli(), memoriaTratte,
+                null, new MemoriaOsservatori(), outboxDiProva(memoria, memoriaTratte, null));
+
+        int bigliettiPrima = memoria.getTuttiIBiglietti().size();
+        UUID cliente = UUID.randomUUID();
+        RispostaDTO risposta = handler.gestisci(trattieni(tratta, cliente));
+
+        assertEquals("OK", risposta.getEsito());
+        TrattenutaDTO trattenuta = risposta.getTrattenuta();
+        assertNotNull(trattenuta);
+        assertEquals(bigliettiPrima, memoria.getTuttiIBiglietti().size(), "La trattenuta non crea biglietti");
+        assertEquals(1, memoria.getPostiDisponibili(tratta.getId(), layout).get(ClasseServizio.BASE));
+
+        assertNull(memoria.riscattaTrattenuta(trattenuta.getToken(), biglietto(tratta.getId(), UUID.randomUUID())),
+                "Un altro cliente non può riscattare il token");
+        Biglietto riscattato = memoria.riscattaTrattenuta(trattenuta.getToken(), biglietto(tratta.getId(), cliente));
+        assertEquals(trattenuta.getNumeroPosto(), riscattato.getNumeroPosto());
+        assertNull(memoria.getTrattenuta(trattenuta.getToken()), "Il token vale una sola volta");
+        assertEquals(1, memoria.getPostiDisponibili(tratta.getId(), layout).get(ClasseServizio.BASE));
+    }
+
+    @Test
+    void leaseScadutoLiberaIlPosto() throws InterruptedException {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta tratta = trattaPiccola(memoriaTratte, 2);
+        ServerRequestHandler handler = new ServerRequestHandler(memoria, new MemoriaClientiFedeli(), memoriaTratte,
+                null, new MemoriaOsservatori(), outboxDiProva(memoria, memoriaTratte, null));
+        handler.setDurataTrattenutaMs(30);
+
+        UUID cliente = UUID.randomUUID();
+        handler.gestisci(trattieni(tratta, cliente));
+        handler.gestisci(trattieni(tratta, UUID.randomUUID()));
+        assertEquals("KO", handler.gestisci(trattieni(tratta, UUID.randomUUID())).getEsito(), "Treno pieno di trattenute");
+
+        Thread.sleep(60);
+
+        RispostaDTO dopo = handler.gestisci(trattieni(tratta, cliente));
+        assertEquals("OK", dopo.getEsito(), "Le trattenute scadute liberano i posti");
+    }
+
+    @Test
+    void modificaVersoTrenoPienoNonAddebita() {
+        MemoriaBiglietti memoria = new MemoriaBiglietti();
+        MemoriaTratte memoriaTratte = new MemoriaTratte();
+        Tratta origine = trattaPiccola(memoriaTratte, 2);
+        Tratta piena = trattaPiccola(memoriaTratte, 2);
+        // Banca assente: qualsiasi addebito farebbe fallire il comando con errore interno
+        ServerRequestHandler handler = new ServerRequestHandler(memoria, new MemoriaClientiFedeli(), memoriaTratte,
+                null, new MemoriaOsservatori(), outboxDiProva(memoria, memoriaTratte, null));
+
+        UUID cliente = UUID.randomUUID();
+        Biglietto originale = memoria.riservaPosto(biglietto(origine.getId(), cliente), LayoutPosti.di(origine.getTreno()));
+        for (int i = 0; i < 2; i++) {
+            memoria.riservaPosto(biglietto(piena.getId(), UUID.randomUUID()), LayoutPosti.di(piena.getTreno()));
+        }
+
+        RispostaDTO risposta = handler.gestisci(new RichiestaDTO.Builder()
+                .tipo("MODIFICA")
+                .idCliente(cliente.toString())
+                .biglietto(new BigliettoDTO(originale.getId(), null, null, null, null, 0.0, null))
+                .tratta(new TrattaDTO(piena.getId(), "", "", null, null, 0, null, null))
+                .classeServizio(ClasseServizio.BASE)
+                .tipoPrezzo(TipoPrezzo.INTERO)
+                .build());
+
+        assertEquals("KO", risposta.getEsito());
+        assertTrue(risposta.getMessaggio().contains("treno pieno"), risposta.getMessaggio());
+        assertNotNull(memoria.getById(originale.getId()), "Il biglietto originale resta valido");
+        assertEquals(0, memoria.getNumeroTrattenute());
+    }
+
+    @Test
+    void trattenutaETokenAttraversanoGrpc() {
+        UUID token = UUID.randomUUID();
+        TrattenutaDTO dto = new TrattenutaDTO(token, UUID.randomUUID(), ClasseServizio.GOLD, 7,
+                java.time.LocalDateTime.of(2030, 1, 1, 10, 0));
+
+        RispostaDTO tornata = GrpcMapper.fromGrpc(GrpcMapper.fromDTO(new RispostaDTO("OK", "ok", dto)));
+        assertEquals(token, tornata.getTrattenuta().getToken());
+        assertEquals(7, tornata.getTrattenuta().getNumeroPosto());
+        assertEquals(ClasseServizio.GOLD, tornata.getTrattenuta().getClasse());
+
+        RichiestaDTO richiesta = new RichiestaDTO.Builder().tipo("ACQUISTA").tokenTrattenuta(token.toString()).build();
+        assertEquals(token.toString(), GrpcMapper.toDTO(GrpcMapper.toGrpc(richiesta)).getTokenTrattenuta());
+    }
+}
@@ -11,6 +11,7 @@ import io.grpc.ServerBuilder;
 import model.Tratta;
 import observer.GrpcNotificaDispatcher;
 import persistence.*;
+import scheduling.ProcessoreOutboxPagamenti;
 import service.BancaServiceClient;
 import service.ClientService;
 
@@ -18,6 +19,7 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.*;
@@ -75,8 +77,11 @@ public class CapienzaTestIsolato {
 
         // ✅ Handler SENZA EventDispatcher (architettura refactored)
         BancaServiceClient bancaClient = new BancaServiceClient("localhost", TEST_BANCA_PORT);
+        // Outbox su un journal temporaneo: nessun recupero di operazioni del server vero
+        ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoriaBiglietti, memoriaTratte, bancaClient,
+                Files.createTempFile("outbox-test", ".jsonl").toString());
         ServerRequestHandler handler = new ServerRequestHandler(
-                memoriaBiglietti, memoriaClienti, memoriaTratte, bancaClient,memoriaOsservatori
+                memoriaBiglietti, memoriaClienti, memoriaTratte, bancaClient,memoriaOsservatori, outbox
         );
 
         // Solo notifiche gRPC (no eventi persistenza)
@@ -11,6 +11,7 @@ import io.grpc.ServerBuilder;
 import model.Tratta;
 import observer.GrpcNotificaDispatcher;
 import persistence.*;
+import scheduling.ProcessoreOutboxPagamenti;
 import service.BancaServiceClient;
 import service.ClientService;
 
@@ -22,6 +23,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.junit.jupiter.params.provider.CsvSource;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.*;
@@ -101,8 +103,11 @@ class TestInfernale{
 
         // Handler thread-safe
         BancaServiceClient bancaClient = new BancaServiceClient("localhost", BANCA_PORT);
+        // Outbox su un journal temporaneo: nessun recupero di operazioni del server vero
+        ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoriaBiglietti, memoriaTratte, bancaClient,
+                Files.createTempFile("outbox-test", ".jsonl").toString());
         ServerRequestHandler handler = new ServerRequestHandler(
-                memoriaBiglietti, memoriaClienti, memoriaTratte, bancaClient, memoriaOsservatori
+                memoriaBiglietti, memoriaClienti, memoriaTratte, bancaClient, memoriaOsservatori, outbox
         );
 
         // Servizio gRPC
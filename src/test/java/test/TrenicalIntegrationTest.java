@@ -15,6 +15,7 @@ import io.grpc.stub.StreamObserver;
 import model.Tratta;
 import observer.*;
 import persistence.*;
+import scheduling.ProcessoreOutboxPagamenti;
 import service.BancaServiceClient;
 import service.ClientService;
 
@@ -27,6 +28,7 @@ import org.junit.jupiter.params.provider.CsvSource;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.*;
 
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -79,12 +81,16 @@ class TrenicallIntegrationTest {
 
         // ✅ CORREZIONE: Handler con le dipendenze corrette
         BancaServiceClient bancaClient = new BancaServiceClient("localhost", BANCA_PORT);
+        // Outbox su un journal temporaneo: nessun recupero di operazioni del server vero
+        ProcessoreOutboxPagamenti outbox = new ProcessoreOutboxPagamenti(memoriaBiglietti, memoriaTratte, bancaClient,
+                Files.createTempFile("outbox-test", ".jsonl").toString());
         ServerRequestHandler handler = new ServerRequestHandler(
                 memoriaBiglietti,
                 memoriaClienti,
                 memoriaTratte,
                 bancaClient,
-                memoriaOsservatori  // ✅ Aggiunto parametro mancante
+                memoriaOsservatori,  // ✅ Aggiunto parametro mancante
+                outbox
         );
 
         // ✅ CORREZIONE: Solo notifiche gRPC, no EventDispatcher complesso